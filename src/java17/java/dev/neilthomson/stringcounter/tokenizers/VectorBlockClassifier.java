@@ -0,0 +1,73 @@
+package dev.neilthomson.stringcounter.tokenizers;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Classifies blocks of bytes with the Vector API, 32 bytes per instruction.
+ * <p>
+ * JDK 17 does not compile {@link VectorMask#toLong()} into a single instruction, so the mask of word bytes is
+ * gathered into a long with multiplications instead: the mask becomes a vector of 0 and 1 bytes, each group of 8 bytes
+ * is multiplied by a constant that moves its ones into the top byte, and the top bytes are shifted into place and
+ * combined.
+ * <p>
+ * This class is compiled for JDK 17 and is only loaded through {@link BlockClassifier#load()}.
+ */
+final class VectorBlockClassifier implements BlockClassifier {
+
+    private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_256;
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_256;
+
+    /**
+     * Moves the low bit of each of the 8 bytes of a long into the top byte, lowest byte first.
+     */
+    private static final long GATHER = 0x0102040810204080L;
+
+    /**
+     * The position of the 8 bits gathered from each long of a vector within the mask of the vector.
+     */
+    private static final LongVector SHIFTS = LongVector.fromArray(LONGS, new long[]{0, 8, 16, 24}, 0);
+
+    /**
+     * Constructs a VectorBlockClassifier.
+     *
+     * @throws UnsupportedOperationException If the CPU has no 256-bit vector instructions, as the Vector API is far
+     *                                       slower than scalar code when it has to emulate them.
+     */
+    VectorBlockClassifier() {
+        if (ByteVector.SPECIES_PREFERRED.vectorByteSize() < BYTES.vectorByteSize())
+            throw new UnsupportedOperationException("No 256-bit vector instructions");
+    }
+
+    @Override
+    public boolean isAscii(byte[] bytes, int offset) {
+        ByteVector any = ByteVector.fromArray(BYTES, bytes, offset);
+        for (int i = BYTES.length(); i < BLOCK_SIZE; i += BYTES.length()) {
+            any = any.or(ByteVector.fromArray(BYTES, bytes, offset + i));
+        }
+        return !any.compare(VectorOperators.LT, (byte) 0).anyTrue();
+    }
+
+    @Override
+    public long wordBits(byte[] bytes, int offset) {
+        long bits = 0;
+        for (int i = 0; i < BLOCK_SIZE; i += BYTES.length()) {
+            ByteVector block = ByteVector.fromArray(BYTES, bytes, offset + i);
+            ByteVector folded = block.or((byte) 0x20); // lowercases letters, and maps no other ASCII byte onto one
+            VectorMask<Byte> letters = folded.compare(VectorOperators.GE, (byte) 'a')
+                    .and(folded.compare(VectorOperators.LE, (byte) 'z'));
+            block.blend(folded, letters).intoArray(bytes, offset + i);
+
+            VectorMask<Byte> word = letters.or(block.eq((byte) '\'')).or(block.eq((byte) '-'));
+            LongVector gathered = ByteVector.zero(BYTES).blend((byte) 1, word).reinterpretAsLongs()
+                    .lanewise(VectorOperators.MUL, GATHER)
+                    .lanewise(VectorOperators.LSHR, 56)
+                    .lanewise(VectorOperators.LSHL, SHIFTS);
+            bits |= gathered.reduceLanes(VectorOperators.OR) << i;
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,71 @@
+package dev.neilthomson.stringcounter.benchmarks;
+
+import dev.neilthomson.stringcounter.comparators.CountAndAlphaComparator;
+import dev.neilthomson.stringcounter.services.BufferedWordCounter;
+import dev.neilthomson.stringcounter.services.HashedWordCounter;
+import dev.neilthomson.stringcounter.services.WordCounter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how the buffer size affects the counters that read the input stream through a buffer of their own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class BufferSizeBenchmark {
+
+    @Param({"buffered", "bufferedBytes", "hashed"})
+    public String engine;
+
+    @Param({"64", "1024", "8192", "65536"})
+    public int bufferSize;
+
+    @Param({"0.0", "0.3"})
+    public double nonAsciiRatio;
+
+    private byte[] corpus;
+    private WordCounter wordCounter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        corpus = Corpus.generate(4 * 1024 * 1024, 50_000, 1.1, nonAsciiRatio, 42L);
+        switch (engine) {
+            case "buffered":
+                wordCounter = new BufferedWordCounter(bufferSize);
+                break;
+            case "bufferedBytes":
+                wordCounter = new BufferedWordCounter(bufferSize, true);
+                break;
+            case "hashed":
+                wordCounter = new HashedWordCounter(bufferSize);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown engine: " + engine);
+        }
+    }
+
+    @Benchmark
+    public List<Map.Entry<String, Long>> count() throws IOException {
+        return wordCounter.count(new ByteArrayInputStream(corpus), new CountAndAlphaComparator(false));
+    }
+}
@@ -0,0 +1,65 @@
+package dev.neilthomson.stringcounter.benchmarks;
+
+import dev.neilthomson.stringcounter.services.ConcurrentWordCounts;
+import dev.neilthomson.stringcounter.tokenizers.Utf8Tokenizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures many threads appending to one shared counter, comparing the striped {@link ConcurrentWordCounts} with a
+ * shared ConcurrentHashMap as used by groupingByConcurrent. Every operation appends one 64KB chunk of a Zipfian corpus,
+ * so hot words are updated by every thread. The number of threads is set with {@code -t}, or by {@link ScalingRunner}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConcurrentCountsBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Shared {
+        final byte[] chunk = Corpus.generate(64 * 1024, 10_000, 1.0, 0.0, 7L);
+        final ConcurrentWordCounts striped = new ConcurrentWordCounts();
+        final ConcurrentHashMap<String, Long> map = new ConcurrentHashMap<>();
+    }
+
+    @State(Scope.Thread)
+    public static class MapProducer {
+        final byte[] buffer = new byte[8192];
+        Utf8Tokenizer tokenizer;
+
+        @Setup
+        public void setUp(Shared shared) {
+            tokenizer = new Utf8Tokenizer((bytes, offset, length) ->
+                    shared.map.merge(new String(bytes, offset, length, StandardCharsets.UTF_8), 1L, Long::sum));
+        }
+    }
+
+    @Benchmark
+    public void striped(Shared shared) {
+        shared.striped.append(shared.chunk, 0, shared.chunk.length);
+    }
+
+    @Benchmark
+    public void concurrentHashMap(Shared shared, MapProducer producer) {
+        byte[] chunk = shared.chunk;
+        for (int position = 0; position < chunk.length; position += producer.buffer.length) {
+            int step = Math.min(producer.buffer.length, chunk.length - position);
+            System.arraycopy(chunk, position, producer.buffer, 0, step); // the tokenizer lowercases in place
+            producer.tokenizer.feed(producer.buffer, 0, step);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package dev.neilthomson.stringcounter.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Generates reproducible text for the benchmarks.
+ * <p>
+ * Words are drawn from a fixed vocabulary following a Zipf distribution, so that with a skew around 1 a few words
+ * dominate the text in the same way "the" and "of" dominate English, while a skew of 0 makes every word equally
+ * likely. A share of the vocabulary is made up of non-ASCII words, and words are separated by spaces and the occasional
+ * punctuation mark or line break.
+ */
+final class Corpus {
+
+    private static final String[] NON_ASCII_ALPHABETS = {
+            "\u00e0\u00e9\u00ee\u00f6\u00fc\u00df\u00e7\u00f1", // Latin-1 letters, two bytes each
+            "\u03b1\u03b2\u03b3\u03b4\u03b5\u03b6\u03b7\u03b8", // Greek, two bytes each
+            "\u65e5\u672c\u8a9e\u6587\u5b57\u5217\u8a08\u6570" // CJK, three bytes each
+    };
+
+    private static final String SEPARATORS = "      ,.\n";
+
+    private Corpus() {
+    }
+
+    /**
+     * Generates a corpus.
+     *
+     * @param size          the approximate size of the corpus in bytes.
+     * @param vocabulary    the number of distinct words to draw from.
+     * @param skew          the exponent of the Zipf distribution, 0 for a uniform distribution.
+     * @param nonAsciiRatio the share of the vocabulary, from 0 to 1, that contains non-ASCII letters.
+     * @param seed          the seed of the random number generator.
+     * @return the UTF-8 encoded corpus.
+     */
+    static byte[] generate(int size, int vocabulary, double skew, double nonAsciiRatio, long seed) {
+        Random random = new Random(seed);
+        String[] words = new String[vocabulary];
+        for (int i = 0; i < vocabulary; i++) {
+            words[i] = word(random, random.nextDouble() < nonAsciiRatio);
+        }
+
+        double[] cumulative = new double[vocabulary];
+        double sum = 0;
+        for (int i = 0; i < vocabulary; i++) {
+            sum += 1.0 / Math.pow(i + 1, skew);
+            cumulative[i] = sum;
+        }
+
+        StringBuilder text = new StringBuilder(size + 64);
+        int bytes = 0;
+        while (bytes < size) {
+            String word = words[rank(cumulative, random.nextDouble() * sum)];
+            char separator = SEPARATORS.charAt(random.nextInt(SEPARATORS.length()));
+            text.append(word).append(separator);
+            bytes += word.getBytes(StandardCharsets.UTF_8).length + 1;
+            if (separator != ' ') {
+                text.append(' ');
+                bytes++;
+            }
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int rank(double[] cumulative, double target) {
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (cumulative[middle] < target)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    private static String word(Random random, boolean nonAscii) {
+        int length = 2 + random.nextInt(9);
+        String alphabet = nonAscii ? NON_ASCII_ALPHABETS[random.nextInt(NON_ASCII_ALPHABETS.length)] : null;
+        StringBuilder word = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            boolean mixIn = alphabet != null && (i == 0 || random.nextInt(3) == 0);
+            word.append(mixIn ? alphabet.charAt(random.nextInt(alphabet.length())) : (char) ('a' + random.nextInt(26)));
+        }
+        if (random.nextInt(8) == 0)
+            word.setCharAt(0, Character.toUpperCase(word.charAt(0)));
+        return word.toString();
+    }
+}
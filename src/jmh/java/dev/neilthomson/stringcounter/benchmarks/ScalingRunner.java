@@ -0,0 +1,43 @@
+package dev.neilthomson.stringcounter.benchmarks;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Runs {@link ConcurrentCountsBenchmark} at 1, 2, 4, 8 and 16 threads and prints a scaling table, since JMH only
+ * takes a single thread count per run.
+ */
+public final class ScalingRunner {
+
+    private static final int[] THREADS = {1, 2, 4, 8, 16};
+
+    private ScalingRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        List<String> rows = new ArrayList<>();
+        for (int threads : THREADS) {
+            Options options = new OptionsBuilder()
+                    .include(ConcurrentCountsBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+            Collection<RunResult> results = new Runner(options).run();
+            for (RunResult result : results) {
+                String benchmark = result.getParams().getBenchmark();
+                double chunksPerSecond = result.getPrimaryResult().getScore();
+                rows.add(String.format("%-20s %8d %12.1f", benchmark.substring(benchmark.lastIndexOf('.') + 1),
+                        threads, chunksPerSecond * 64 / 1024));
+            }
+        }
+
+        System.out.printf("%-20s %8s %12s%n", "counter", "threads", "MB/s");
+        rows.forEach(System.out::println);
+    }
+}
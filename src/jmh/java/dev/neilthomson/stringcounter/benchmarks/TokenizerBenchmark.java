@@ -0,0 +1,69 @@
+package dev.neilthomson.stringcounter.benchmarks;
+
+import dev.neilthomson.stringcounter.tables.ByteWordTable;
+import dev.neilthomson.stringcounter.tokenizers.Utf8Tokenizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares splitting UTF-8 bytes into words with and without the vectorized block classifier of Utf8Tokenizer. Every
+ * combination of parameters runs in a fork of its own, so the classifier can be switched through its system property
+ * before the tokenizer is loaded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class TokenizerBenchmark {
+
+    private static final int SLICE_SIZE = 64 * 1024;
+
+    @Param({"true", "false"})
+    public boolean vector;
+
+    @Param({"0.0", "0.3"})
+    public double nonAsciiRatio;
+
+    private byte[] corpus;
+    private ByteWordTable table;
+    private Utf8Tokenizer tokenizer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        System.setProperty("stringcounter.vector", Boolean.toString(vector));
+        if (Utf8Tokenizer.isVectorized() != vector)
+            throw new IllegalStateException("The Vector API needs JDK 17 or later with --add-modules=jdk.incubator.vector");
+
+        corpus = Corpus.generate(4 * 1024 * 1024, 50_000, 1.1, nonAsciiRatio, 42L);
+        table = new ByteWordTable();
+        tokenizer = new Utf8Tokenizer((bytes, offset, length) -> table.add(bytes, offset, length, 1));
+    }
+
+    /**
+     * Tokenizes a copy of the corpus, as the tokenizer lowercases words in place, in the slices a counter would read.
+     */
+    @Benchmark
+    public int tokenize() {
+        table.clear();
+        byte[] bytes = corpus.clone();
+        for (int offset = 0; offset < bytes.length; offset += SLICE_SIZE) {
+            tokenizer.feed(bytes, offset, Math.min(SLICE_SIZE, bytes.length - offset));
+        }
+        tokenizer.finish();
+        return table.size();
+    }
+}
@@ -0,0 +1,120 @@
+package dev.neilthomson.stringcounter.benchmarks;
+
+import dev.neilthomson.stringcounter.comparators.CountAndAlphaComparator;
+import dev.neilthomson.stringcounter.services.BufferedWordCounter;
+import dev.neilthomson.stringcounter.services.ConcurrentWordCounter;
+import dev.neilthomson.stringcounter.services.FileWordCounter;
+import dev.neilthomson.stringcounter.services.HashedWordCounter;
+import dev.neilthomson.stringcounter.services.MappedParallelWordCounter;
+import dev.neilthomson.stringcounter.services.SimpleParallelWordCounter;
+import dev.neilthomson.stringcounter.services.SimpleWordCounter;
+import dev.neilthomson.stringcounter.services.SketchWordCounter;
+import dev.neilthomson.stringcounter.services.SpaceSavingWordCounter;
+import dev.neilthomson.stringcounter.services.SpillingWordCounter;
+import dev.neilthomson.stringcounter.services.WordCounter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures every counting engine on generated corpora of different sizes, vocabulary skews and shares of non-ASCII
+ * words.
+ * <p>
+ * Both throughput and sampled latency are reported, the latter with percentiles. Running with {@code -prof gc}, which
+ * is the default of the {@code jmh} Gradle task, adds the allocation rate and the bytes allocated per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class WordCounterBenchmark {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    @Param({"simple", "simpleParallel", "buffered", "bufferedBytes", "hashed", "offHeap", "mappedParallel",
+            "concurrent", "spilling", "spaceSaving", "sketch"})
+    public String engine;
+
+    @Param({"1048576", "16777216"})
+    public int corpusSize;
+
+    @Param({"0.0", "1.1"})
+    public double skew;
+
+    @Param({"0.0", "0.3"})
+    public double nonAsciiRatio;
+
+    private byte[] corpus;
+    private Path file;
+    private WordCounter wordCounter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        corpus = Corpus.generate(corpusSize, 50_000, skew, nonAsciiRatio, 42L);
+        file = Files.createTempFile("stringcounter-benchmark", ".txt");
+        Files.write(file, corpus);
+        wordCounter = create(engine);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public List<Map.Entry<String, Long>> count() throws IOException {
+        if (wordCounter instanceof FileWordCounter)
+            return ((FileWordCounter) wordCounter).count(file, new CountAndAlphaComparator(false));
+
+        return wordCounter.count(new ByteArrayInputStream(corpus), new CountAndAlphaComparator(false));
+    }
+
+    static WordCounter create(String engine) {
+        switch (engine) {
+            case "simple":
+                return new SimpleWordCounter();
+            case "simpleParallel":
+                return new SimpleParallelWordCounter();
+            case "buffered":
+                return new BufferedWordCounter(BUFFER_SIZE);
+            case "bufferedBytes":
+                return new BufferedWordCounter(BUFFER_SIZE, true);
+            case "hashed":
+                return new HashedWordCounter(BUFFER_SIZE);
+            case "offHeap":
+                return HashedWordCounter.offHeap(BUFFER_SIZE, 1 << 16, 16 * 1024 * 1024);
+            case "mappedParallel":
+                return new MappedParallelWordCounter(BUFFER_SIZE);
+            case "concurrent":
+                return new ConcurrentWordCounter(1024 * 1024);
+            case "spilling":
+                return new SpillingWordCounter(BUFFER_SIZE);
+            case "spaceSaving":
+                return new SpaceSavingWordCounter(BUFFER_SIZE, 1024);
+            case "sketch":
+                return new SketchWordCounter(BUFFER_SIZE);
+            default:
+                throw new IllegalArgumentException("Unknown engine: " + engine);
+        }
+    }
+}
@@ -1,26 +1,83 @@
 package dev.neilthomson.stringcounter;
 
+import dev.neilthomson.stringcounter.cache.CountCache;
 import dev.neilthomson.stringcounter.comparators.CountAndAlphaComparator;
+import dev.neilthomson.stringcounter.compression.CompressedInput;
+import dev.neilthomson.stringcounter.compression.Compression;
+import dev.neilthomson.stringcounter.index.WordIndex;
+import dev.neilthomson.stringcounter.index.WordIndexWriter;
+import dev.neilthomson.stringcounter.metrics.CountStats;
+import dev.neilthomson.stringcounter.output.CountWriter;
+import dev.neilthomson.stringcounter.output.OutputFormat;
+import dev.neilthomson.stringcounter.ranking.TopK;
+import dev.neilthomson.stringcounter.ranking.WordCountList;
+import dev.neilthomson.stringcounter.server.CountClient;
+import dev.neilthomson.stringcounter.server.CountServer;
+import dev.neilthomson.stringcounter.services.BatchWordCounter;
 import dev.neilthomson.stringcounter.services.BufferedWordCounter;
+import dev.neilthomson.stringcounter.services.CompressedWordCounter;
+import dev.neilthomson.stringcounter.services.DistributedWordCounter;
+import dev.neilthomson.stringcounter.services.EngineSelector;
+import dev.neilthomson.stringcounter.services.FileWordCounter;
+import dev.neilthomson.stringcounter.services.InputFiles;
+import dev.neilthomson.stringcounter.services.PipelinedWordCounter;
+import dev.neilthomson.stringcounter.services.StreamingWordCounter;
 import dev.neilthomson.stringcounter.services.WordCounter;
+import dev.neilthomson.stringcounter.tokenizers.NGramRule;
+import dev.neilthomson.stringcounter.tokenizers.StemRule;
+import dev.neilthomson.stringcounter.tokenizers.StopWordRule;
+import dev.neilthomson.stringcounter.tokenizers.TokenPipeline;
+import dev.neilthomson.stringcounter.tokenizers.TokenRule;
 
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.function.BiConsumer;
 
 /**
  * Main application class for word counting program.
  * <p>
- * This class takes a filename and optionally a debug flag as arguments. It utilizes a provided
- * {@link WordCounter} implementation to count word occurrences in the specified file and prints
- * the results.
+ * This class takes a filename and optionally a debug flag and a limit on the number of results as arguments. It
+ * utilizes a provided {@link WordCounter} implementation, which the {@link EngineSelector} chooses for the file unless
+ * it is given with --engine, to count word occurrences in the specified file and prints the results. When several
+ * files, a directory or a glob are given, they are all counted in the same JVM by a {@link BatchWordCounter} and the
+ * merged counts are printed, optionally preceded by the counts of every file, or with --engine pipelined by a
+ * {@link PipelinedWordCounter} that reads the files while it counts them.
+ * Files compressed with gzip, bzip2 or Zstandard are decompressed while they are counted. The counts can be saved to
+ * a {@link WordIndex}, which later runs query without counting the files again, and the counts of every file can be
+ * kept in a {@link CountCache}, so that later runs only count the files that have changed. A {@link CountServer} keeps
+ * a warm JVM resident for many small requests, which are sent to it with a {@link CountClient}. The words of a single
+ * file can be passed through a {@link TokenPipeline} that drops stop-words, stems words or counts n-grams. Inputs that
+ * are too large for one JVM can be sharded across worker processes by a {@link DistributedWordCounter}.
+ * <p>
+ * The counts are written to the standard output by a {@link CountWriter}, as text, TSV, JSON Lines or a binary format.
+ * When every count of a single file is printed, the most frequent words are written while the rest are still being
+ * sorted.
  */
 public class Application {
 
-    private static final int BUFFER_SIZE = 512;
+    private static final int BATCH_BUFFER_SIZE = 64 * 1024;
+    private static final int NO_LIMIT = -1;
+    private static final String USAGE = "Usage: java Application <file|directory|glob>... [--debug] [--stats] [--top N] [--per-file] [--save-index FILE]\n"
+            + "                        [--cache DIR] [--cache-limit MB] [--format text|tsv|jsonl|binary] [--workers N]\n"
+            + "       java Application <file> [--engine auto|buffered|parallel|spilling|pipelined] [--top N]\n"
+            + "       java Application <file|directory|glob>... --engine pipelined [--top N] [--format text|tsv|jsonl|binary]\n"
+            + "       java Application <file> [--stop-words english|FILE] [--stem] [--ngrams N] [--top N]\n"
+            + "       java Application --index FILE [word...] [--prefix P] [--top N]\n"
+            + "       java Application --serve PORT [--stats] [--cache DIR] [--cache-limit MB]\n"
+            + "       java Application --connect HOST:PORT [<file|directory|glob>...|-] [--top N]";
     private static boolean DEBUG = false;
 
     private final WordCounter wordCounter;
@@ -29,29 +86,241 @@ public class Application {
      * Main entry point for the application.
      *
      * @param args Command-line arguments:
-     *             - <filename>: The file containing the text to be processed.
-     *             - [--debug]: Optional flag to enable debug output.
+     *             - <file|directory|glob>...: The files containing the text to be processed.
+     *             - [--debug]: Optional flag to enable debug output, such as why a counter was chosen for a file.
+     *             - [--stats]: Optional flag to collect statistics while counting and print them to standard error.
+     *             - [--top N]: Optional flag to only print the N most frequent words.
+     *             - [--per-file]: Optional flag to also print the counts of every file.
+     *             - [--save-index FILE]: Optional flag to also save the counts to an index file.
+     *             - [--cache DIR]: Optional flag to keep the counts of every file in a cache directory and only count
+     *             the files that have changed since the last run.
+     *             - [--cache-limit MB]: Optional flag to limit the size of the cache, 1024 MB by default.
+     *             - [--format text|tsv|jsonl|binary]: Optional flag to choose the format the counts are printed in,
+     *             text by default. Only text can be combined with --per-file.
+     *             - [--workers N]: Optional flag to count the inputs in up to N worker JVMs at a time, each counting a
+     *             shard of the files, and merge their counts. It cannot be combined with --per-file or --cache.
+     *             - [--engine auto|buffered|parallel|spilling|pipelined]: Optional flag to choose the counter for a
+     *             single file instead of having it chosen from the size of the file, the hardware and a sample of the
+     *             file. Several files can be counted with pipelined, which overlaps slow reads with counting, but not
+     *             with --per-file, --cache or --workers.
+     *             - [--stop-words english|FILE]: Optional flag to drop common English words, or the words listed in a
+     *             file, when counting a single file.
+     *             - [--stem]: Optional flag to reduce plurals and possessives to their stem when counting a single file.
+     *             - [--ngrams N]: Optional flag to count runs of N consecutive words instead of words when counting a
+     *             single file. Stop-words are dropped and words are stemmed before the runs are formed.
+     *             - [--index FILE]: Query an index file instead of counting, the other arguments are the words to
+     *             look up, or a --prefix P to list every word starting with P, or else the top words are printed.
+     *             - [--serve PORT]: Serve counting requests on the loopback address until the process is stopped.
+     *             - [--connect HOST:PORT]: Have a server count the files, or the standard input for -, or else print
+     *             the request latencies of the server.
      */
     public static void main(String[] args) {
-        if (args.length == 0) {
-            System.out.println("Usage: java Application <filename> [--debug]");
+        List<String> inputs = new ArrayList<>();
+        boolean perFile = false;
+        int limit = NO_LIMIT;
+        String saveIndex = null;
+        String index = null;
+        String prefix = null;
+        String cache = null;
+        int serve = -1;
+        String connect = null;
+        long cacheLimit = CountCache.DEFAULT_MAX_BYTES;
+        String stopWords = null;
+        boolean stem = false;
+        int ngrams = 0;
+        OutputFormat format = OutputFormat.TEXT;
+        int workers = 0;
+        EngineSelector.Engine engine = EngineSelector.Engine.AUTO;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if ("--debug".equals(arg)) {
+                DEBUG = true;
+            } else if ("--stats".equals(arg)) {
+                CountStats.global().setEnabled(true);
+            } else if ("--top".equals(arg)) {
+                limit = i + 1 < args.length ? parseLimit(args[++i]) : -1;
+                if (limit < 0) {
+                    System.out.println(USAGE);
+                    return;
+                }
+            } else if ("--per-file".equals(arg)) {
+                perFile = true;
+            } else if ("--stem".equals(arg)) {
+                stem = true;
+            } else if ("--ngrams".equals(arg)) {
+                ngrams = i + 1 < args.length ? parseLimit(args[++i]) : -1;
+                if (ngrams < 2) {
+                    System.out.println(USAGE);
+                    return;
+                }
+            } else if ("--cache-limit".equals(arg)) {
+                int megabytes = i + 1 < args.length ? parseLimit(args[++i]) : -1;
+                if (megabytes < 0) {
+                    System.out.println(USAGE);
+                    return;
+                }
+                cacheLimit = megabytes * 1024L * 1024;
+            } else if ("--workers".equals(arg)) {
+                workers = i + 1 < args.length ? parseLimit(args[++i]) : -1;
+                if (workers < 1) {
+                    System.out.println(USAGE);
+                    return;
+                }
+            } else if ("--serve".equals(arg)) {
+                serve = i + 1 < args.length ? parseLimit(args[++i]) : -1;
+                if (serve < 0) {
+                    System.out.println(USAGE);
+                    return;
+                }
+            } else if ("--save-index".equals(arg) || "--index".equals(arg) || "--prefix".equals(arg) || "--cache".equals(arg)
+                    || "--connect".equals(arg) || "--stop-words".equals(arg) || "--format".equals(arg) || "--engine".equals(arg)) {
+                if (i + 1 == args.length) {
+                    System.out.println(USAGE);
+                    return;
+                }
+                if ("--save-index".equals(arg)) {
+                    saveIndex = args[++i];
+                } else if ("--index".equals(arg)) {
+                    index = args[++i];
+                } else if ("--cache".equals(arg)) {
+                    cache = args[++i];
+                } else if ("--connect".equals(arg)) {
+                    connect = args[++i];
+                } else if ("--stop-words".equals(arg)) {
+                    stopWords = args[++i];
+                } else if ("--format".equals(arg) || "--engine".equals(arg)) {
+                    try {
+                        if ("--format".equals(arg)) {
+                            format = OutputFormat.of(args[++i]);
+                        } else {
+                            engine = EngineSelector.Engine.of(args[++i]);
+                        }
+                    } catch (IllegalArgumentException e) {
+                        System.out.println(USAGE);
+                        return;
+                    }
+                } else {
+                    prefix = args[++i];
+                }
+            } else {
+                inputs.add(arg);
+            }
+        }
+
+        if (index != null) {
+            try {
+                query(Paths.get(index), inputs, prefix, limit, stdout(format));
+            } catch (IOException e) {
+                System.out.println("Error reading index: " + index);
+            }
             return;
         }
 
-        for (String arg : args) {
-            if ("--debug".equals(arg)) {
-                DEBUG = true;
-                break;
+        if (serve >= 0) {
+            try {
+                CountStats.register();
+                serve(serve, cache, cacheLimit);
+            } catch (IOException e) {
+                System.out.println("Error starting server on port " + serve);
             }
+            return;
         }
 
-        Application app = new Application(new BufferedWordCounter(BUFFER_SIZE));
-        String filename = args[0];
+        if (connect != null) {
+            try {
+                CountClient client = new CountClient(connect);
+                // the response is copied as the UTF-8 bytes the server sent, not re-encoded in the default charset
+                if (inputs.isEmpty()) {
+                    client.stats(System.out);
+                } else if (inputs.size() == 1 && "-".equals(inputs.get(0))) {
+                    client.count(System.in, limit, System.out);
+                } else {
+                    client.count(inputs, limit, System.out);
+                }
+                System.out.flush();
+            } catch (IOException e) {
+                System.out.println("Error from server " + connect + ": " + e.getMessage());
+            }
+            return;
+        }
+
+        if (inputs.isEmpty() || prefix != null) {
+            System.out.println(USAGE);
+            return;
+        }
+
+        TokenPipeline pipeline;
         try {
-            List<Map.Entry<String, Long>> counts = app.runFromFile(filename);
-            counts.forEach((c) -> System.out.printf("%s: %d\n", c.getKey(), c.getValue()));
+            pipeline = pipeline(stopWords, stem, ngrams);
         } catch (IOException e) {
-            System.out.println("Error reading file: " + filename);
+            System.out.println("Error reading stop-words: " + stopWords);
+            return;
+        }
+        if (workers > 0 && (perFile || cache != null || !pipeline.isEmpty())) {
+            System.out.println("--workers cannot be combined with --per-file, --cache, --stop-words, --stem or --ngrams");
+            return;
+        }
+        boolean singleFile = workers == 0 && inputs.size() == 1 && !perFile && cache == null && Files.isRegularFile(Paths.get(inputs.get(0)));
+        if (!pipeline.isEmpty() && !singleFile) {
+            System.out.println("--stop-words, --stem and --ngrams can only be used to count a single file");
+            return;
+        }
+        boolean pipelinedFiles = engine == EngineSelector.Engine.PIPELINED && !singleFile && workers == 0 && !perFile && cache == null;
+        if (engine != EngineSelector.Engine.AUTO && !pipelinedFiles && (!singleFile || !pipeline.isEmpty())) {
+            System.out.println("--engine can only be used to count a single file without --stop-words, --stem or --ngrams,"
+                    + " or several files with pipelined without --per-file, --cache or --workers");
+            return;
+        }
+        if (perFile && format != OutputFormat.TEXT) {
+            System.out.println("--per-file can only be used with the text format");
+            return;
+        }
+
+        CountWriter out = stdout(format);
+        try {
+            Application app = new Application(singleFile && pipeline.isEmpty() ? counter(Paths.get(inputs.get(0)), engine)
+                    : new BufferedWordCounter(BATCH_BUFFER_SIZE, true, pipeline));
+            if (singleFile && limit == NO_LIMIT && saveIndex == null) {
+                app.runFromFile(inputs.get(0), out);
+            } else {
+                List<Map.Entry<String, Long>> counts;
+                if (singleFile) {
+                    // an index must hold every word, so --top only limits what is printed from it
+                    counts = limit == NO_LIMIT || saveIndex != null ? app.runFromFile(inputs.get(0)) : app.runFromFile(inputs.get(0), limit);
+                } else if (pipelinedFiles) {
+                    counts = new PipelinedWordCounter(BATCH_BUFFER_SIZE).count(InputFiles.resolve(inputs), new CountAndAlphaComparator(false));
+                } else if (workers > 0) {
+                    counts = new DistributedWordCounter(workers).count(InputFiles.resolve(inputs), new CountAndAlphaComparator(false));
+                } else {
+                    final int fileLimit = limit;
+                    BiConsumer<Path, List<Map.Entry<String, Long>>> perFileAction = perFile ? (path, fileCounts) -> {
+                        try {
+                            out.writeLine("==> " + path + " <==");
+                            print(out, fileCounts, fileLimit);
+                            out.writeLine("");
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    } : null;
+                    if (cache == null) {
+                        counts = runFromFiles(inputs, perFileAction);
+                    } else {
+                        try (CountCache countCache = CountCache.open(Paths.get(cache), BatchWordCounter.VERSION, cacheLimit)) {
+                            counts = runFromFiles(inputs, perFileAction, countCache);
+                        }
+                    }
+                }
+                if (saveIndex != null)
+                    WordIndexWriter.write(Paths.get(saveIndex), counts);
+                print(out, counts, limit);
+            }
+            out.flush();
+            if (CountStats.enabled())
+                System.err.print(CountStats.global().report());
+        } catch (NoSuchFileException e) {
+            System.out.println(e.getReason() != null ? e.getReason() + ": " + e.getFile() : "Error reading file: " + String.join(" ", inputs));
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error reading file: " + String.join(" ", inputs));
         } catch (Exception t) {
             if (DEBUG) {
                 t.printStackTrace();
@@ -61,6 +330,98 @@ public class Application {
         }
     }
 
+    /**
+     * Starts a server on the loopback address, which keeps the JVM running, and closes it and saves the cache when the
+     * JVM is stopped.
+     */
+    private static void serve(int port, String cache, long cacheLimit) throws IOException {
+        CountCache countCache = cache == null ? null : CountCache.open(Paths.get(cache), BatchWordCounter.VERSION, cacheLimit);
+        CountServer server = new CountServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+                Runtime.getRuntime().availableProcessors(), countCache);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            try {
+                if (countCache != null)
+                    countCache.close();
+            } catch (IOException e) {
+                System.out.println("Error saving cache: " + cache);
+            }
+        }));
+        System.out.printf("Listening on %s:%d\n", server.address().getHostString(), server.address().getPort());
+    }
+
+    /**
+     * Builds the rules given on the command line, which are always applied in the same order: stop-words are dropped,
+     * the remaining words are stemmed and then joined into n-grams.
+     */
+    private static TokenPipeline pipeline(String stopWords, boolean stem, int ngrams) throws IOException {
+        List<TokenRule> rules = new ArrayList<>();
+        if (stopWords != null)
+            rules.add("english".equals(stopWords) ? StopWordRule.english() : StopWordRule.load(Paths.get(stopWords)));
+        if (stem)
+            rules.add(new StemRule());
+        if (ngrams > 0)
+            rules.add(new NGramRule(ngrams));
+        return new TokenPipeline(rules);
+    }
+
+    /**
+     * Chooses the counter for a single file, printing the choice and what it was based on to standard error with
+     * --debug.
+     */
+    private static WordCounter counter(Path path, EngineSelector.Engine engine) throws IOException {
+        EngineSelector.Choice choice = EngineSelector.choose(path, engine);
+        if (DEBUG)
+            System.err.println(choice);
+        return choice.counter();
+    }
+
+    private static void print(CountWriter out, List<Map.Entry<String, Long>> counts, int limit) throws IOException {
+        out.writeAll(limit == NO_LIMIT ? counts : TopK.truncate(counts, limit));
+    }
+
+    /**
+     * Opens a writer over the standard output, flushing whatever System.out still buffers first, so that counts are
+     * written as bytes instead of being formatted by a PrintStream.
+     */
+    private static CountWriter stdout(OutputFormat format) {
+        System.out.flush();
+        return new CountWriter(new FileOutputStream(FileDescriptor.out).getChannel(), format);
+    }
+
+    /**
+     * Answers a query from an index file: the counts of the given words, the words starting with the prefix, or
+     * otherwise the most frequent words.
+     */
+    private static void query(Path path, List<String> words, String prefix, int limit, CountWriter out) throws IOException {
+        try (WordIndex index = WordIndex.open(path)) {
+            int maximum = limit == NO_LIMIT ? Integer.MAX_VALUE : limit;
+            if (prefix != null) {
+                print(out, index.prefix(prefix.toLowerCase(Locale.ROOT), maximum), NO_LIMIT);
+            } else if (!words.isEmpty()) {
+                for (String word : words) {
+                    out.accept(word, index.count(word.toLowerCase(Locale.ROOT)));
+                }
+            } else {
+                print(out, index.top(maximum), NO_LIMIT);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Parses the value of the --top flag.
+     *
+     * @return the limit, or -1 if the value is not a non-negative integer.
+     */
+    private static int parseLimit(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
     /**
      * Creates an instance of the Application class with the given WordCounter implementation.
      *
@@ -72,15 +433,123 @@ public class Application {
 
     /**
      * Reads text from the specified file, counts word occurrences using the wordCounter, and returns the results.
+     * <p>
+     * If the wordCounter is a {@link FileWordCounter} and the filename refers to a regular file, the file is handed
+     * to it directly so that it can be processed without going through an InputStream. A compressed file is handed to
+     * a {@link CompressedWordCounter} instead, and otherwise the wordCounter reads it decompressed.
      *
      * @param filename The path to the file to read.
      * @return A List of Map.Entry objects where each entry represents a word and its count.
      * @throws IOException If an error occurs while reading the file.
      */
     public List<Map.Entry<String, Long>> runFromFile(String filename) throws IOException {
-        try (InputStream inputStream = Files.newInputStream(Paths.get(filename))) {
+        Path path = Paths.get(filename);
+        if (wordCounter instanceof FileWordCounter && Files.isRegularFile(path)) {
+            return fileWordCounter(path).count(path, new CountAndAlphaComparator(false));
+        }
+
+        try (InputStream inputStream = CompressedInput.open(path)) {
             return wordCounter.count(inputStream, new CountAndAlphaComparator(false));
         }
     }
-}
 
+    /**
+     * Reads text from the specified file, counts word occurrences using the wordCounter, and passes the results to a
+     * consumer in order.
+     * <p>
+     * A regular file is counted with {@link FileWordCounter#countTo(Path, java.util.Comparator, WordCountList.EntryConsumer)},
+     * which may pass the most frequent words on before the rest are sorted. Otherwise the results are counted like
+     * {@link #runFromFile(String)} and then passed on.
+     *
+     * @param filename The path to the file to read.
+     * @param consumer The consumer of every word and its count.
+     * @throws IOException If an error occurs while reading the file or the consumer cannot accept a word.
+     */
+    public void runFromFile(String filename, WordCountList.EntryConsumer consumer) throws IOException {
+        Path path = Paths.get(filename);
+        if (wordCounter instanceof FileWordCounter && Files.isRegularFile(path)) {
+            fileWordCounter(path).countTo(path, new CountAndAlphaComparator(false), consumer);
+            return;
+        }
+
+        if (wordCounter instanceof StreamingWordCounter) {
+            try (InputStream inputStream = CompressedInput.open(path)) {
+                ((StreamingWordCounter) wordCounter).count(inputStream, new CountAndAlphaComparator(false), entry -> {
+                    try {
+                        consumer.accept(entry.getKey(), entry.getValue());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return;
+        }
+
+        for (Map.Entry<String, Long> entry : runFromFile(filename)) {
+            consumer.accept(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Reads text from the specified file, counts word occurrences using the wordCounter, and returns only the most
+     * frequent words.
+     * <p>
+     * The results are selected with {@link WordCounter#countTop(InputStream, java.util.Comparator, int)} so that
+     * counters which support it do not have to sort every distinct word.
+     *
+     * @param filename The path to the file to read.
+     * @param limit    The maximum number of entries to return.
+     * @return A List of at most {@code limit} Map.Entry objects, where each entry represents a word and its count.
+     * @throws IOException If an error occurs while reading the file.
+     */
+    public List<Map.Entry<String, Long>> runFromFile(String filename, int limit) throws IOException {
+        Path path = Paths.get(filename);
+        if (wordCounter instanceof FileWordCounter && Files.isRegularFile(path)) {
+            return fileWordCounter(path).countTop(path, new CountAndAlphaComparator(false), limit);
+        }
+
+        try (InputStream inputStream = CompressedInput.open(path)) {
+            return wordCounter.countTop(inputStream, new CountAndAlphaComparator(false), limit);
+        }
+    }
+
+    /**
+     * Chooses the counter for a regular file: the wordCounter itself, which may map the file into memory, unless the
+     * file is compressed.
+     */
+    private FileWordCounter fileWordCounter(Path path) throws IOException {
+        if (Compression.detect(path) != Compression.NONE)
+            return new CompressedWordCounter(BATCH_BUFFER_SIZE);
+
+        return (FileWordCounter) wordCounter;
+    }
+
+    /**
+     * Counts every file matched by the inputs on a shared worker pool and returns the merged results.
+     *
+     * @param inputs        The files, directories and globs to count, see {@link InputFiles#resolve(List)}.
+     * @param perFileAction Receives the counts of every file once it has been counted, or null to skip them.
+     * @return A List of Map.Entry objects where each entry represents a word and its count across all files.
+     * @throws IOException If an input does not exist or an error occurs while reading a file.
+     */
+    public static List<Map.Entry<String, Long>> runFromFiles(List<String> inputs, BiConsumer<Path, List<Map.Entry<String, Long>>> perFileAction) throws IOException {
+        return runFromFiles(inputs, perFileAction, null);
+    }
+
+    /**
+     * Counts every file matched by the inputs like {@link #runFromFiles(List, BiConsumer)}, taking the counts of the
+     * files that have not changed from the cache.
+     *
+     * @param inputs        The files, directories and globs to count, see {@link InputFiles#resolve(List)}.
+     * @param perFileAction Receives the counts of every file once it has been counted, or null to skip them.
+     * @param cache         The cache of per-file counts, or null to count every file.
+     * @return A List of Map.Entry objects where each entry represents a word and its count across all files.
+     * @throws IOException If an input does not exist or an error occurs while reading a file or the cache.
+     */
+    public static List<Map.Entry<String, Long>> runFromFiles(List<String> inputs, BiConsumer<Path, List<Map.Entry<String, Long>>> perFileAction,
+                                                             CountCache cache) throws IOException {
+        return new BatchWordCounter(BATCH_BUFFER_SIZE).count(InputFiles.resolve(inputs), new CountAndAlphaComparator(false), perFileAction, cache);
+    }
+}
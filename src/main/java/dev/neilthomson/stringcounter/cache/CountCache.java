@@ -0,0 +1,316 @@
+package dev.neilthomson.stringcounter.cache;
+
+import dev.neilthomson.stringcounter.index.WordIndex;
+import dev.neilthomson.stringcounter.index.WordIndexWriter;
+import dev.neilthomson.stringcounter.tables.WordTable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Keeps the word counts of files on disk so that files which have not changed since they were last counted do not
+ * have to be counted again.
+ * <p>
+ * Every cached file has an entry keyed by its absolute path, which records its size, its modification time and the
+ * {@link ContentHash} of its contents, and refers to a {@link WordIndex} file holding its counts. A file is served
+ * from the cache if its size is unchanged and either its modification time is unchanged or, for a file that was
+ * touched or copied without being edited, its contents still hash the same.
+ * <p>
+ * The cache keeps its index files below a size limit by evicting the least recently used entries. The entries are
+ * listed in a manifest, which is rewritten when the cache is closed. The manifest records the version of the counting
+ * rules, and a cache opened with a different version is emptied, because the counts it holds would no longer match.
+ * <p>
+ * The methods are thread-safe, but a cache directory must only be used by one process at a time.
+ */
+public final class CountCache implements Closeable {
+
+    /**
+     * The default size limit of a cache, in bytes.
+     */
+    public static final long DEFAULT_MAX_BYTES = 1024L * 1024 * 1024;
+
+    private static final int MAGIC = 0x53434343; // "SCCC"
+    private static final int FORMAT = 1;
+    private static final String MANIFEST = "manifest";
+    private static final String ENTRY_SUFFIX = ".idx";
+
+    private final Path directory;
+    private final String version;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true); // least recently used first
+    private long totalBytes;
+    private boolean dirty;
+
+    private CountCache(Path directory, String version, long maxBytes) {
+        this.directory = directory;
+        this.version = version;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Opens a cache directory, creating it if it does not exist, and empties it if it was made for another version.
+     *
+     * @param directory the directory holding the cache.
+     * @param version   the version of the counting rules, which the cached counts must have been made with.
+     * @param maxBytes  the largest number of bytes the cached counts may take up.
+     * @return the opened cache.
+     * @throws IOException If the directory cannot be created or read.
+     */
+    public static CountCache open(Path directory, String version, long maxBytes) throws IOException {
+        if (directory == null)
+            throw new IllegalArgumentException("Directory cannot be null");
+
+        if (version == null)
+            throw new IllegalArgumentException("Version cannot be null");
+
+        if (maxBytes < 0)
+            throw new IllegalArgumentException("Max bytes cannot be negative");
+
+        Files.createDirectories(directory);
+        CountCache cache = new CountCache(directory, version, maxBytes);
+        cache.readManifest();
+        cache.deleteUnlisted();
+        cache.evict();
+        return cache;
+    }
+
+    /**
+     * Finds the cached counts of a file, if the file has not changed since they were cached.
+     *
+     * @param file       the file.
+     * @param attributes the current attributes of the file.
+     * @return the entry to {@link #load} the counts from, or null if there are none or the file has changed.
+     * @throws IOException If an error occurs while hashing the file.
+     */
+    public Entry find(Path file, BasicFileAttributes attributes) throws IOException {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key(file));
+        }
+        if (entry == null || entry.size != attributes.size())
+            return null;
+
+        long modified = attributes.lastModifiedTime().toMillis();
+        if (entry.modified != modified) {
+            if (ContentHash.of(file) != entry.hash)
+                return null;
+
+            synchronized (this) {
+                entry.modified = modified;
+                dirty = true;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Adds the cached counts of a file to a table.
+     *
+     * @param entry the entry returned by {@link #find}.
+     * @param table the table to add the counts to.
+     * @return false if the counts could not be read, for example because the entry has been evicted since, in which
+     *         case some of them may have been added to the table.
+     */
+    public boolean load(Entry entry, WordTable table) {
+        try (WordIndex index = WordIndex.open(directory.resolve(entry.fileName))) {
+            index.forEach(table::add);
+            return true;
+        } catch (IOException e) {
+            synchronized (this) {
+                remove(entry);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Caches the counts of a file, replacing any counts cached for it before. Nothing is cached if the file has been
+     * changed since the attributes were read, as the counts might then belong to neither version of the file.
+     *
+     * @param file       the file.
+     * @param attributes the attributes of the file from before it was counted.
+     * @param counts     the counts of the file.
+     * @throws IOException If an error occurs while hashing the file or writing the counts.
+     */
+    public void put(Path file, BasicFileAttributes attributes, WordTable counts) throws IOException {
+        long hash = ContentHash.of(file);
+        BasicFileAttributes current = Files.readAttributes(file, BasicFileAttributes.class);
+        if (current.size() != attributes.size() || !current.lastModifiedTime().equals(attributes.lastModifiedTime()))
+            return;
+
+        String fileName = Long.toHexString(ThreadLocalRandom.current().nextLong()) + ENTRY_SUFFIX;
+        Path entryFile = directory.resolve(fileName);
+        WordIndexWriter.write(entryFile, counts.entries());
+        Entry entry = new Entry(key(file), attributes.size(), attributes.lastModifiedTime().toMillis(), hash, fileName, Files.size(entryFile));
+        synchronized (this) {
+            Entry previous = entries.put(entry.key, entry);
+            if (previous != null)
+                delete(previous);
+            totalBytes += entry.bytes;
+            dirty = true;
+            evict();
+        }
+    }
+
+    /**
+     * Returns the number of cached files.
+     *
+     * @return the number of entries.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of bytes taken up by the cached counts.
+     *
+     * @return the total size of the index files of every entry.
+     */
+    public synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Saves the manifest if any entry has changed.
+     *
+     * @throws IOException If an error occurs while writing the manifest.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!dirty)
+            return;
+
+        Path temp = directory.resolve(MANIFEST + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT);
+                out.writeUTF(version);
+                out.writeInt(entries.size());
+                for (Entry entry : entries.values()) {
+                    out.writeUTF(entry.key);
+                    out.writeLong(entry.size);
+                    out.writeLong(entry.modified);
+                    out.writeLong(entry.hash);
+                    out.writeUTF(entry.fileName);
+                    out.writeLong(entry.bytes);
+                }
+            }
+            try {
+                Files.move(temp, directory.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, directory.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING);
+            }
+            dirty = false;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Reads the entries listed in the manifest, in order from least to most recently used. A manifest of another
+     * version, or one that cannot be read, leaves the cache empty.
+     */
+    private void readManifest() throws IOException {
+        Path manifest = directory.resolve(MANIFEST);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(manifest)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT || !version.equals(in.readUTF())) {
+                dirty = true;
+                return;
+            }
+
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Entry entry = new Entry(in.readUTF(), in.readLong(), in.readLong(), in.readLong(), in.readUTF(), in.readLong());
+                entries.put(entry.key, entry);
+                totalBytes += entry.bytes;
+            }
+        } catch (NoSuchFileException e) {
+            // a new cache
+        } catch (IOException e) {
+            entries.clear();
+            totalBytes = 0;
+            dirty = true;
+        }
+    }
+
+    /**
+     * Deletes the index files that no entry refers to, such as those of an older version or of a run that did not
+     * close the cache.
+     */
+    private void deleteUnlisted() throws IOException {
+        Set<String> listed = new HashSet<>();
+        for (Entry entry : entries.values()) {
+            listed.add(entry.fileName);
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + ENTRY_SUFFIX)) {
+            for (Path file : files) {
+                if (!listed.contains(file.getFileName().toString()))
+                    Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private void evict() throws IOException {
+        Iterator<Entry> leastRecentlyUsed = entries.values().iterator();
+        while (totalBytes > maxBytes && leastRecentlyUsed.hasNext()) {
+            Entry entry = leastRecentlyUsed.next();
+            leastRecentlyUsed.remove();
+            delete(entry);
+            dirty = true;
+        }
+    }
+
+    private void remove(Entry entry) {
+        if (entries.remove(entry.key, entry)) {
+            totalBytes -= entry.bytes;
+            dirty = true;
+        }
+    }
+
+    private void delete(Entry entry) throws IOException {
+        totalBytes -= entry.bytes;
+        Files.deleteIfExists(directory.resolve(entry.fileName));
+    }
+
+    private static String key(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+
+    /**
+     * The cached counts of one file.
+     */
+    public static final class Entry {
+        private final String key;
+        private final long size;
+        private long modified;
+        private final long hash;
+        private final String fileName;
+        private final long bytes;
+
+        private Entry(String key, long size, long modified, long hash, String fileName, long bytes) {
+            this.key = key;
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+            this.fileName = fileName;
+            this.bytes = bytes;
+        }
+    }
+}
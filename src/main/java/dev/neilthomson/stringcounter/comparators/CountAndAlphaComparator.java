@@ -24,6 +24,15 @@ public class CountAndAlphaComparator implements Comparator<Map.Entry<String, Lon
         this.ascending = ascending;
     }
 
+    /**
+     * Returns whether the counts are compared in ascending order.
+     *
+     * @return {@code true} for ascending order, {@code false} for descending order.
+     */
+    public boolean isAscending() {
+        return ascending;
+    }
+
     /**
      * Compares two Map entries by their associated values (count) and keys alphabetically.
      *
@@ -0,0 +1,468 @@
+package dev.neilthomson.stringcounter.compression;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decompresses bzip2 data, in pure Java as the JDK has no bzip2 decoder.
+ * <p>
+ * A block is decoded in full when the previous one has been read: its Huffman-coded move-to-front symbols are turned
+ * back into the Burrows-Wheeler transform of the block, which is then inverted lazily while the run-length encoding
+ * of the original data is undone. Every block is checked against its CRC, and every stream against its combined CRC.
+ * <p>
+ * The compressed stream is read one byte at a time and never beyond the end of a bzip2 stream, so callers can give
+ * it a buffered stream and know exactly where every bzip2 stream ended.
+ */
+public class BZip2InputStream extends InputStream {
+
+    private static final long BLOCK_MAGIC = 0x314159265359L;
+    private static final long END_MAGIC = 0x177245385090L;
+
+    private static final int MAX_GROUPS = 6;
+    private static final int GROUP_SIZE = 50;
+    private static final int MAX_CODE_LENGTH = 20;
+    private static final int MAX_ALPHABET_SIZE = 258;
+    private static final int MAX_SELECTORS = 18002;
+    private static final int RUN_A = 0;
+    private static final int RUN_B = 1;
+
+    private static final int[] CRC_TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i << 24;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x80000000) != 0 ? (crc << 1) ^ 0x04C11DB7 : crc << 1;
+            }
+            CRC_TABLE[i] = crc;
+        }
+    }
+
+    private final InputStream in;
+    private final boolean concatenated;
+
+    private long bitBuffer;
+    private int bitCount;
+
+    private int blockSize;
+    private int[] tt;
+    private int streamCrc;
+    private boolean endOfStream;
+
+    // state of the block being read
+    private boolean inBlock;
+    private int blockLength;
+    private int produced;
+    private int position;
+    private int expectedBlockCrc;
+    private int blockCrc;
+    private int lastByte;
+    private int runLength;
+    private int repeatByte;
+    private int repeatsLeft;
+
+    // tables for decoding one block, kept between blocks
+    private final byte[] selectors = new byte[MAX_SELECTORS];
+    private final byte[][] codeLengths = new byte[MAX_GROUPS][MAX_ALPHABET_SIZE];
+    private final int[][] limits = new int[MAX_GROUPS][MAX_CODE_LENGTH + 2];
+    private final int[][] bases = new int[MAX_GROUPS][MAX_CODE_LENGTH + 2];
+    private final int[][] perms = new int[MAX_GROUPS][MAX_ALPHABET_SIZE];
+    private final int[] minLengths = new int[MAX_GROUPS];
+    private final byte[] singleByte = new byte[1];
+
+    /**
+     * Constructs a BZip2InputStream that reads every concatenated bzip2 stream of the input.
+     *
+     * @param in the compressed input, which must start with a bzip2 stream header.
+     * @throws IOException If the input does not start with a bzip2 stream header.
+     */
+    public BZip2InputStream(InputStream in) throws IOException {
+        this(in, true);
+    }
+
+    /**
+     * Constructs a BZip2InputStream.
+     *
+     * @param in           the compressed input, which must start with a bzip2 stream header.
+     * @param concatenated whether to carry on with the next bzip2 stream of the input after the first one ends, or
+     *                     to stop reading right after the first one.
+     * @throws IOException If the input does not start with a bzip2 stream header.
+     */
+    public BZip2InputStream(InputStream in, boolean concatenated) throws IOException {
+        if (in == null)
+            throw new IllegalArgumentException("InputStream cannot be null");
+
+        this.in = in;
+        this.concatenated = concatenated;
+        if (!readStreamHeader(true))
+            throw new IOException("Not in bzip2 format");
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(singleByte, 0, 1) == -1 ? -1 : singleByte[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off)
+            throw new IndexOutOfBoundsException();
+
+        if (len == 0)
+            return 0;
+
+        int count = 0;
+        while (count < len) {
+            if (repeatsLeft > 0) {
+                int repeats = Math.min(repeatsLeft, len - count);
+                for (int i = 0; i < repeats; i++) {
+                    b[off + count++] = (byte) repeatByte;
+                    blockCrc = (blockCrc << 8) ^ CRC_TABLE[((blockCrc >>> 24) ^ repeatByte) & 0xFF];
+                }
+                repeatsLeft -= repeats;
+                continue;
+            }
+
+            if (produced == blockLength) {
+                if (endOfStream || !nextBlock())
+                    break;
+                continue;
+            }
+
+            int entry = tt[position];
+            int value = entry & 0xFF;
+            position = entry >>> 8;
+            produced++;
+            if (runLength == 4) {
+                repeatByte = lastByte;
+                repeatsLeft = value;
+                runLength = 0;
+                lastByte = -1;
+                continue;
+            }
+
+            if (value == lastByte) {
+                runLength++;
+            } else {
+                runLength = 1;
+                lastByte = value;
+            }
+            b[off + count++] = (byte) value;
+            blockCrc = (blockCrc << 8) ^ CRC_TABLE[((blockCrc >>> 24) ^ value) & 0xFF];
+        }
+        return count == 0 ? -1 : count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Finishes the current block and decodes the next one, moving on to the next stream when this one ends.
+     *
+     * @return false if there are no more blocks to read.
+     */
+    private boolean nextBlock() throws IOException {
+        if (inBlock) {
+            int finalCrc = ~blockCrc;
+            if (finalCrc != expectedBlockCrc)
+                throw new IOException("bzip2 block CRC mismatch");
+
+            streamCrc = ((streamCrc << 1) | (streamCrc >>> 31)) ^ finalCrc;
+            inBlock = false;
+        }
+
+        while (true) {
+            long magic = readBits(48);
+            if (magic == BLOCK_MAGIC) {
+                decodeBlock();
+                return true;
+            }
+
+            if (magic != END_MAGIC)
+                throw new IOException("Corrupt bzip2 stream: bad block magic");
+
+            int expectedStreamCrc = (int) readBits(32);
+            if (expectedStreamCrc != streamCrc)
+                throw new IOException("bzip2 stream CRC mismatch");
+
+            bitCount = 0; // streams are padded to a whole byte
+            if (!concatenated || !readStreamHeader(false)) {
+                endOfStream = true;
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Reads the "BZh" header of a stream and its block size.
+     *
+     * @param first whether this is the first stream, where a missing header is an error rather than the end.
+     * @return false if the input ended, or has something other than another stream after the previous one.
+     */
+    private boolean readStreamHeader(boolean first) throws IOException {
+        int b = in.read();
+        if (b == -1 && !first)
+            return false;
+
+        if (b != 'B' || in.read() != 'Z' || in.read() != 'h') {
+            if (first)
+                throw new IOException("Not in bzip2 format");
+            return false; // trailing data after the last stream is ignored, as bzip2 itself does
+        }
+
+        int level = in.read();
+        if (level < '1' || level > '9')
+            throw new IOException("Corrupt bzip2 stream: bad block size");
+
+        blockSize = (level - '0') * 100_000;
+        if (tt == null || tt.length < blockSize)
+            tt = new int[blockSize];
+        streamCrc = 0;
+        blockLength = 0;
+        resetBlockState();
+        return true;
+    }
+
+    private void resetBlockState() {
+        produced = 0;
+        blockCrc = -1;
+        lastByte = -1;
+        runLength = 0;
+        repeatsLeft = 0;
+    }
+
+    /**
+     * Decodes the Huffman and move-to-front coding of a block and prepares the inverse Burrows-Wheeler transform.
+     */
+    private void decodeBlock() throws IOException {
+        expectedBlockCrc = (int) readBits(32);
+        if (readBits(1) != 0)
+            throw new IOException("Randomised bzip2 blocks are not supported");
+
+        int origin = (int) readBits(24);
+
+        // the symbols in use, as a 16 x 16 bitmap
+        byte[] symbols = new byte[256];
+        int symbolCount = 0;
+        int used = (int) readBits(16);
+        for (int i = 0; i < 16; i++) {
+            if ((used & (0x8000 >>> i)) == 0)
+                continue;
+
+            int bits = (int) readBits(16);
+            for (int j = 0; j < 16; j++) {
+                if ((bits & (0x8000 >>> j)) != 0)
+                    symbols[symbolCount++] = (byte) (i * 16 + j);
+            }
+        }
+        if (symbolCount == 0)
+            throw new IOException("Corrupt bzip2 stream: no symbols in use");
+
+        int alphabetSize = symbolCount + 2;
+        int groups = (int) readBits(3);
+        int selectorCount = (int) readBits(15);
+        if (groups < 2 || groups > MAX_GROUPS || selectorCount == 0)
+            throw new IOException("Corrupt bzip2 stream: bad Huffman groups");
+
+        readSelectors(groups, selectorCount);
+        for (int group = 0; group < groups; group++) {
+            readCodeLengths(group, alphabetSize);
+            createDecodeTables(group, alphabetSize);
+        }
+
+        blockLength = readSymbols(symbols, alphabetSize, selectorCount);
+        if (origin >= blockLength && blockLength > 0)
+            throw new IOException("Corrupt bzip2 stream: bad origin pointer");
+
+        // the inverse Burrows-Wheeler transform, as a linked list through the upper 24 bits of tt
+        int[] cumulative = new int[256];
+        for (int i = 0; i < blockLength; i++) {
+            cumulative[tt[i] & 0xFF]++;
+        }
+        for (int i = 0, sum = 0; i < 256; i++) {
+            int count = cumulative[i];
+            cumulative[i] = sum;
+            sum += count;
+        }
+        for (int i = 0; i < blockLength; i++) {
+            int value = tt[i] & 0xFF;
+            tt[cumulative[value]++] |= i << 8;
+        }
+        position = blockLength == 0 ? 0 : tt[origin] >>> 8;
+        resetBlockState();
+        inBlock = true;
+    }
+
+    private void readSelectors(int groups, int selectorCount) throws IOException {
+        byte[] order = new byte[MAX_GROUPS];
+        for (int i = 0; i < groups; i++) {
+            order[i] = (byte) i;
+        }
+        for (int i = 0; i < selectorCount; i++) {
+            int index = 0;
+            while (readBits(1) == 1) {
+                if (++index >= groups)
+                    throw new IOException("Corrupt bzip2 stream: bad selector");
+            }
+            byte selector = order[index];
+            System.arraycopy(order, 0, order, 1, index);
+            order[0] = selector;
+            if (i < MAX_SELECTORS)
+                selectors[i] = selector;
+        }
+    }
+
+    private void readCodeLengths(int group, int alphabetSize) throws IOException {
+        byte[] lengths = codeLengths[group];
+        int length = (int) readBits(5);
+        for (int symbol = 0; symbol < alphabetSize; symbol++) {
+            while (true) {
+                if (length < 1 || length > MAX_CODE_LENGTH)
+                    throw new IOException("Corrupt bzip2 stream: bad code length");
+
+                if (readBits(1) == 0)
+                    break;
+                length += readBits(1) == 0 ? 1 : -1;
+            }
+            lengths[symbol] = (byte) length;
+        }
+    }
+
+    /**
+     * Builds the canonical Huffman decoding tables of a group: the largest code of every length, the offset of the
+     * first code of every length into the symbols sorted by code, and those sorted symbols.
+     */
+    private void createDecodeTables(int group, int alphabetSize) {
+        byte[] lengths = codeLengths[group];
+        int[] limit = limits[group];
+        int[] base = bases[group];
+        int[] perm = perms[group];
+
+        int minLength = MAX_CODE_LENGTH;
+        int maxLength = 0;
+        for (int i = 0; i < alphabetSize; i++) {
+            minLength = Math.min(minLength, lengths[i]);
+            maxLength = Math.max(maxLength, lengths[i]);
+        }
+
+        int next = 0;
+        for (int length = minLength; length <= maxLength; length++) {
+            for (int symbol = 0; symbol < alphabetSize; symbol++) {
+                if (lengths[symbol] == length)
+                    perm[next++] = symbol;
+            }
+        }
+
+        int[] counts = new int[MAX_CODE_LENGTH + 2];
+        for (int i = 0; i < alphabetSize; i++) {
+            counts[lengths[i]]++;
+        }
+
+        int code = 0;
+        int firstIndex = 0;
+        for (int length = 0; length <= MAX_CODE_LENGTH + 1; length++) {
+            limit[length] = -1;
+        }
+        for (int length = minLength; length <= maxLength; length++) {
+            // codes of this length run from code to code + counts[length] - 1
+            base[length] = code - firstIndex;
+            code += counts[length];
+            firstIndex += counts[length];
+            limit[length] = code - 1;
+            code <<= 1;
+        }
+        minLengths[group] = minLength;
+    }
+
+    /**
+     * Decodes the Huffman-coded move-to-front symbols of a block into tt, undoing the run-length coding of zeros.
+     *
+     * @return the number of bytes in the block.
+     */
+    private int readSymbols(byte[] symbols, int alphabetSize, int selectorCount) throws IOException {
+        int endOfBlock = alphabetSize - 1;
+        byte[] mtf = new byte[256];
+        System.arraycopy(symbols, 0, mtf, 0, 256);
+
+        int length = 0;
+        int run = 0;
+        int runWeight = 1;
+        int groupIndex = -1;
+        int groupLeft = 0;
+        int[] limit = null;
+        int[] base = null;
+        int[] perm = null;
+        int minLength = 0;
+        while (true) {
+            if (groupLeft == 0) {
+                if (++groupIndex >= selectorCount || groupIndex >= MAX_SELECTORS)
+                    throw new IOException("Corrupt bzip2 stream: too few selectors");
+
+                int group = selectors[groupIndex];
+                limit = limits[group];
+                base = bases[group];
+                perm = perms[group];
+                minLength = minLengths[group];
+                groupLeft = GROUP_SIZE;
+            }
+            groupLeft--;
+
+            int codeLength = minLength;
+            int code = (int) readBits(codeLength);
+            while (code > limit[codeLength]) {
+                if (++codeLength > MAX_CODE_LENGTH)
+                    throw new IOException("Corrupt bzip2 stream: bad Huffman code");
+                code = (code << 1) | (int) readBits(1);
+            }
+            int symbol = perm[code - base[codeLength]];
+
+            if (symbol == RUN_A || symbol == RUN_B) {
+                run += (symbol == RUN_A ? 1 : 2) * runWeight;
+                runWeight <<= 1;
+                if (run > blockSize)
+                    throw new IOException("Corrupt bzip2 stream: block too long");
+                continue;
+            }
+
+            if (run > 0) {
+                if (length + run > blockSize)
+                    throw new IOException("Corrupt bzip2 stream: block too long");
+
+                int value = mtf[0] & 0xFF;
+                for (int i = 0; i < run; i++) {
+                    tt[length++] = value;
+                }
+                run = 0;
+                runWeight = 1;
+            }
+
+            if (symbol == endOfBlock)
+                return length;
+
+            if (length >= blockSize)
+                throw new IOException("Corrupt bzip2 stream: block too long");
+
+            int index = symbol - 1;
+            byte value = mtf[index];
+            System.arraycopy(mtf, 0, mtf, 1, index);
+            mtf[0] = value;
+            tt[length++] = value & 0xFF;
+        }
+    }
+
+    private long readBits(int count) throws IOException {
+        while (bitCount < count) {
+            int b = in.read();
+            if (b == -1)
+                throw new EOFException("Unexpected end of bzip2 stream");
+
+            bitBuffer = (bitBuffer << 8) | b;
+            bitCount += 8;
+        }
+        bitCount -= count;
+        return (bitBuffer >>> bitCount) & ((1L << count) - 1);
+    }
+}
@@ -0,0 +1,114 @@
+package dev.neilthomson.stringcounter.compression;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A buffered stream over a file channel that knows the exact file position of the next byte it returns.
+ * <p>
+ * The buffer is exposed to the gzip member decoder, which hands it to an Inflater directly and gives back the bytes
+ * that the Inflater did not need. Closing the reader does not close the channel, so member streams can be closed
+ * without ending the reader.
+ */
+final class ChannelReader extends InputStream {
+
+    private final FileChannel channel;
+    private final byte[] buffer;
+    private long bufferStart;
+    private int index;
+    private int limit;
+
+    ChannelReader(FileChannel channel, long position, int bufferSize) {
+        this.channel = channel;
+        this.buffer = new byte[bufferSize];
+        this.bufferStart = position;
+    }
+
+    /**
+     * Returns the file position of the next byte to be read.
+     */
+    long position() {
+        return bufferStart + index;
+    }
+
+    /**
+     * Moves to a file position, keeping the buffer if the position is inside it.
+     */
+    void seek(long position) {
+        if (position >= bufferStart && position <= bufferStart + limit) {
+            index = (int) (position - bufferStart);
+            return;
+        }
+        bufferStart = position;
+        index = 0;
+        limit = 0;
+    }
+
+    /**
+     * Makes sure that there are buffered bytes to read, reading more from the channel if there are none.
+     *
+     * @return false at the end of the file.
+     */
+    boolean fill() throws IOException {
+        if (index < limit)
+            return true;
+
+        bufferStart += limit;
+        index = 0;
+        limit = 0;
+        int numRead = channel.read(ByteBuffer.wrap(buffer), bufferStart);
+        if (numRead <= 0)
+            return false;
+
+        limit = numRead;
+        return true;
+    }
+
+    byte[] buffer() {
+        return buffer;
+    }
+
+    int index() {
+        return index;
+    }
+
+    int remaining() {
+        return limit - index;
+    }
+
+    /**
+     * Marks {@code count} buffered bytes as read.
+     */
+    void consume(int count) {
+        index += count;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill())
+            return -1;
+
+        return buffer[index++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+
+        if (!fill())
+            return -1;
+
+        int count = Math.min(len, limit - index);
+        System.arraycopy(buffer, index, b, off, count);
+        index += count;
+        return count;
+    }
+
+    @Override
+    public void close() {
+        // the channel belongs to the MemberReader
+    }
+}
@@ -0,0 +1,73 @@
+package dev.neilthomson.stringcounter.compression;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Opens files and streams that may be compressed, decompressing them on the fly.
+ * <p>
+ * Gzip is decoded by the JDK, bzip2 by the embedded {@link BZip2InputStream} and Zstandard by the embedded
+ * {@link ZstdInputStream}, all including files made of several concatenated members, streams or frames.
+ */
+public final class CompressedInput {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private CompressedInput() {
+    }
+
+    /**
+     * Opens a file, decompressing it if it is compressed.
+     *
+     * @param path the file to open.
+     * @return a stream of the uncompressed contents of the file.
+     * @throws IOException If an error occurs while opening the file, or its format cannot be decoded.
+     */
+    public static InputStream open(Path path) throws IOException {
+        Compression compression = Compression.detect(path);
+        InputStream inputStream = Files.newInputStream(path);
+        try {
+            return decompress(new BufferedInputStream(inputStream, BUFFER_SIZE), compression);
+        } catch (IOException | RuntimeException e) {
+            inputStream.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Wraps a stream in a decompressing stream if its first bytes are the magic bytes of a compression format.
+     *
+     * @param inputStream the stream to inspect, it is closed when the returned stream is closed.
+     * @return a stream of the uncompressed contents, which is the given stream itself if it is not compressed.
+     * @throws IOException If an error occurs while reading from the stream, or its format cannot be decoded.
+     */
+    public static InputStream decompress(InputStream inputStream) throws IOException {
+        InputStream buffered = inputStream.markSupported() ? inputStream : new BufferedInputStream(inputStream, BUFFER_SIZE);
+        byte[] header = new byte[Compression.MAGIC_LENGTH];
+        buffered.mark(header.length);
+        int length = 0;
+        int numRead;
+        while (length < header.length && (numRead = buffered.read(header, length, header.length - length)) != -1) {
+            length += numRead;
+        }
+        buffered.reset();
+        return decompress(buffered, Compression.detect(header, length));
+    }
+
+    private static InputStream decompress(InputStream inputStream, Compression compression) throws IOException {
+        switch (compression) {
+            case GZIP:
+                return new GZIPInputStream(inputStream, BUFFER_SIZE);
+            case BZIP2:
+                return new BZip2InputStream(inputStream, true);
+            case ZSTD:
+                return new ZstdInputStream(inputStream, true);
+            default:
+                return inputStream;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package dev.neilthomson.stringcounter.compression;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * The compression formats that input files can be stored in.
+ * <p>
+ * A format is detected from the magic bytes at the start of the data, falling back to the file extension when there
+ * are too few bytes to tell. An empty file is always plain text.
+ */
+public enum Compression {
+    NONE,
+    GZIP,
+    BZIP2,
+    ZSTD;
+
+    /**
+     * The number of bytes needed to recognise every format.
+     */
+    static final int MAGIC_LENGTH = 4;
+
+    /**
+     * Detects the compression of a file from its first bytes or, if it is too short for them, from its extension.
+     *
+     * @param path the file to inspect.
+     * @return the compression of the file, or {@link #NONE} for plain text.
+     * @throws IOException If an error occurs while reading the file.
+     */
+    public static Compression detect(Path path) throws IOException {
+        byte[] header = new byte[MAGIC_LENGTH];
+        int length = 0;
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            int numRead;
+            while (length < header.length && (numRead = inputStream.read(header, length, header.length - length)) != -1) {
+                length += numRead;
+            }
+        }
+
+        Compression compression = detect(header, length);
+        if (compression != NONE || length >= MAGIC_LENGTH || length == 0)
+            return compression;
+
+        return fromExtension(path);
+    }
+
+    /**
+     * Detects the compression of data from its first bytes.
+     *
+     * @param header the first bytes of the data.
+     * @param length the number of bytes available in the header.
+     * @return the compression of the data, or {@link #NONE} if no magic bytes match.
+     */
+    public static Compression detect(byte[] header, int length) {
+        if (length >= 3 && (header[0] & 0xFF) == 0x1F && (header[1] & 0xFF) == 0x8B && header[2] == 8)
+            return GZIP;
+
+        if (length >= 4 && header[0] == 'B' && header[1] == 'Z' && header[2] == 'h' && header[3] >= '1' && header[3] <= '9')
+            return BZIP2;
+
+        if (length >= 4 && (header[0] & 0xFF) == 0x28 && (header[1] & 0xFF) == 0xB5 && (header[2] & 0xFF) == 0x2F && (header[3] & 0xFF) == 0xFD)
+            return ZSTD;
+
+        return NONE;
+    }
+
+    private static Compression fromExtension(Path path) {
+        Path fileName = path.getFileName();
+        String name = fileName == null ? "" : fileName.toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".gz") || name.endsWith(".gzip"))
+            return GZIP;
+
+        if (name.endsWith(".bz2"))
+            return BZIP2;
+
+        if (name.endsWith(".zst") || name.endsWith(".zstd"))
+            return ZSTD;
+
+        return NONE;
+    }
+}
@@ -0,0 +1,158 @@
+package dev.neilthomson.stringcounter.compression;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Decompresses exactly one gzip member, leaving the reader positioned on the first byte after its trailer.
+ * <p>
+ * {@link java.util.zip.GZIPInputStream} reads ahead of the member it is decoding and carries on into the next member
+ * by itself, so it cannot tell where each member ends. This stream feeds the Inflater from the buffer of the reader and
+ * gives back whatever the Inflater did not use.
+ */
+final class GzipMemberInputStream extends InputStream {
+
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+    private static final int RESERVED = 0xE0;
+
+    private final ChannelReader in;
+    private final Inflater inflater;
+    private final CRC32 crc = new CRC32();
+    private final byte[] singleByte = new byte[1];
+    private boolean finished;
+
+    /**
+     * Reads the header of a member.
+     *
+     * @param in       the reader, positioned on the first byte of the member.
+     * @param inflater a raw-deflate Inflater, which is reset before use.
+     * @throws IOException If the reader is not positioned on a valid gzip header.
+     */
+    GzipMemberInputStream(ChannelReader in, Inflater inflater) throws IOException {
+        this.in = in;
+        this.inflater = inflater;
+        inflater.reset();
+        readHeader();
+    }
+
+    /**
+     * Returns whether a gzip member header can start with these bytes: the magic bytes, the deflate method and no
+     * reserved flags.
+     */
+    static boolean isHeader(byte b0, byte b1, byte b2, byte b3) {
+        return (b0 & 0xFF) == 0x1F && (b1 & 0xFF) == 0x8B && b2 == 8 && (b3 & RESERVED) == 0;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(singleByte, 0, 1) == -1 ? -1 : singleByte[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (finished)
+            return -1;
+
+        if (len == 0)
+            return 0;
+
+        try {
+            while (true) {
+                int numInflated = inflater.inflate(b, off, len);
+                if (numInflated > 0) {
+                    crc.update(b, off, numInflated);
+                    return numInflated;
+                }
+
+                if (inflater.finished()) {
+                    in.consume(-inflater.getRemaining());
+                    readTrailer();
+                    finished = true;
+                    return -1;
+                }
+
+                if (inflater.needsDictionary())
+                    throw new ZipException("Corrupt gzip member: preset dictionary");
+
+                if (inflater.needsInput()) {
+                    if (!in.fill())
+                        throw new EOFException("Unexpected end of gzip member");
+
+                    int available = in.remaining();
+                    inflater.setInput(in.buffer(), in.index(), available);
+                    in.consume(available);
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException("Corrupt gzip member: " + e.getMessage());
+        }
+    }
+
+    private void readHeader() throws IOException {
+        byte[] fixed = new byte[10];
+        readFully(fixed);
+        if (!isHeader(fixed[0], fixed[1], fixed[2], fixed[3]))
+            throw new ZipException("Not in gzip format");
+
+        int flags = fixed[3];
+        if ((flags & FEXTRA) != 0) {
+            int length = readByte() | (readByte() << 8);
+            for (int i = 0; i < length; i++) {
+                readByte();
+            }
+        }
+        if ((flags & FNAME) != 0) {
+            while (readByte() != 0) {
+                // skip the file name
+            }
+        }
+        if ((flags & FCOMMENT) != 0) {
+            while (readByte() != 0) {
+                // skip the comment
+            }
+        }
+        if ((flags & FHCRC) != 0) {
+            readByte();
+            readByte();
+        }
+    }
+
+    private void readTrailer() throws IOException {
+        byte[] trailer = new byte[8];
+        readFully(trailer);
+        long expectedCrc = littleEndian(trailer, 0);
+        long expectedSize = littleEndian(trailer, 4);
+        if (expectedCrc != crc.getValue())
+            throw new ZipException("Corrupt gzip member: CRC mismatch");
+
+        if (expectedSize != (inflater.getBytesWritten() & 0xFFFFFFFFL))
+            throw new ZipException("Corrupt gzip member: size mismatch");
+    }
+
+    private static long littleEndian(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFFL) | (bytes[offset + 1] & 0xFFL) << 8 | (bytes[offset + 2] & 0xFFL) << 16
+                | (bytes[offset + 3] & 0xFFL) << 24;
+    }
+
+    private void readFully(byte[] bytes) throws IOException {
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) readByte();
+        }
+    }
+
+    private int readByte() throws IOException {
+        int b = in.read();
+        if (b == -1)
+            throw new EOFException("Unexpected end of gzip member");
+
+        return b;
+    }
+}
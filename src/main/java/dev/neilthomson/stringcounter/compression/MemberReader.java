@@ -0,0 +1,156 @@
+package dev.neilthomson.stringcounter.compression;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the members of a compressed file one at a time, starting from any offset.
+ * <p>
+ * Gzip files made by bgzip or by concatenating .gz files, and bzip2 files made by pbzip2 or by concatenating .bz2
+ * files, consist of several members that can each be decompressed on their own. {@link #findMembers} finds where the
+ * members may start, so that separate readers can decompress separate members at the same time. The search can only
+ * look for header bytes, which may also occur by chance inside compressed data, so its offsets are candidates that a
+ * caller has to confirm by checking that a previous member ended exactly there.
+ */
+public final class MemberReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int BZIP2_PROBE = 10;
+
+    private final FileChannel channel;
+    private final Compression compression;
+    private final ChannelReader reader;
+    private final Inflater inflater;
+
+    /**
+     * Opens a file to read members from the specified offset.
+     *
+     * @param path        the compressed file.
+     * @param compression the compression of the file, either {@link Compression#GZIP} or {@link Compression#BZIP2}.
+     * @param position    the offset of the first member to read.
+     * @throws IOException If the file cannot be opened.
+     */
+    public MemberReader(Path path, Compression compression, long position) throws IOException {
+        if (compression != Compression.GZIP && compression != Compression.BZIP2)
+            throw new IllegalArgumentException("Only gzip and bzip2 members can be read");
+
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.compression = compression;
+        this.reader = new ChannelReader(channel, position, BUFFER_SIZE);
+        this.inflater = compression == Compression.GZIP ? new Inflater(true) : null;
+    }
+
+    /**
+     * Returns the offset just after the last member that was read completely, or of the next member to read.
+     *
+     * @return the current offset in the file.
+     */
+    public long position() {
+        return reader.position();
+    }
+
+    /**
+     * Starts reading the member at the current offset. The returned stream must be read to its end before the next
+     * member is started, which leaves {@link #position()} on the byte just after the member.
+     *
+     * @return a stream of the uncompressed contents of the member, or null if the file ends, or has something other
+     *         than a member header, at the current offset.
+     * @throws IOException If an error occurs while reading the header of the member.
+     */
+    public InputStream next() throws IOException {
+        long start = reader.position();
+        byte[] header = new byte[4];
+        for (int i = 0; i < header.length; i++) {
+            int b = reader.read();
+            if (b == -1)
+                return null;
+            header[i] = (byte) b;
+        }
+        reader.seek(start);
+        if (Compression.detect(header, header.length) != compression)
+            return null;
+
+        if (compression == Compression.GZIP)
+            return new GzipMemberInputStream(reader, inflater);
+
+        return new BZip2InputStream(reader, false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (inflater != null)
+            inflater.end();
+        channel.close();
+    }
+
+    /**
+     * Finds the offsets in a file where a member header may start. The first offset is always 0.
+     *
+     * @param path        the compressed file.
+     * @param compression the compression of the file, either {@link Compression#GZIP} or {@link Compression#BZIP2}.
+     * @return the candidate offsets in ascending order.
+     * @throws IOException If an error occurs while reading the file.
+     */
+    public static long[] findMembers(Path path, Compression compression) throws IOException {
+        if (compression != Compression.GZIP && compression != Compression.BZIP2)
+            throw new IllegalArgumentException("Only gzip and bzip2 members can be found");
+
+        List<Long> offsets = new ArrayList<>();
+        offsets.add(0L);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            long bufferStart = 0;
+            while (channel.read(buffer) > 0 || buffer.position() > 0) {
+                buffer.flip();
+                boolean end = channel.position() >= channel.size();
+                int limit = end ? buffer.limit() : Math.max(buffer.limit() - BZIP2_PROBE, 0);
+                byte[] bytes = buffer.array();
+                for (int i = 0; i < limit; i++) {
+                    long offset = bufferStart + i;
+                    if (offset > 0 && isMemberStart(bytes, i, buffer.limit(), compression))
+                        offsets.add(offset);
+                }
+                if (end)
+                    break;
+
+                // keep the tail so that headers crossing the end of the buffer are seen whole
+                buffer.position(limit);
+                buffer.compact();
+                bufferStart += limit;
+            }
+        }
+
+        long[] result = new long[offsets.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = offsets.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Checks for the gzip magic bytes, deflate method and valid flags, or for the bzip2 stream header followed by the
+     * magic of a block or of the end of the stream.
+     */
+    private static boolean isMemberStart(byte[] bytes, int index, int limit, Compression compression) {
+        if (compression == Compression.GZIP)
+            return index + 4 <= limit && GzipMemberInputStream.isHeader(bytes[index], bytes[index + 1], bytes[index + 2], bytes[index + 3]);
+
+        if (bytes[index] != 'B' || index + BZIP2_PROBE > limit || bytes[index + 1] != 'Z' || bytes[index + 2] != 'h'
+                || bytes[index + 3] < '1' || bytes[index + 3] > '9')
+            return false;
+
+        long magic = 0;
+        for (int i = 4; i < BZIP2_PROBE; i++) {
+            magic = (magic << 8) | (bytes[index + i] & 0xFF);
+        }
+        return magic == 0x314159265359L || magic == 0x177245385090L;
+    }
+}
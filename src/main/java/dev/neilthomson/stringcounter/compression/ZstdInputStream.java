@@ -0,0 +1,1030 @@
+package dev.neilthomson.stringcounter.compression;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Decompresses Zstandard data as specified by RFC 8878, in pure Java as the JDK has no Zstandard decoder.
+ * <p>
+ * Every block is decoded in full into a buffer that also holds the window of earlier output its matches refer to:
+ * its literals are copied or decoded with their Huffman table, and its sequences are decoded with the FSE tables of
+ * the literal lengths, offsets and match lengths and then executed against the window. Tables that a block repeats
+ * are kept from the block before. Frames that carry a content checksum are checked against its XXH64, and skippable
+ * frames are skipped. Frames that need a dictionary are rejected.
+ * <p>
+ * The compressed stream is read in whole block and header sized pieces, never beyond the end of the last frame, so
+ * callers can give it a buffered stream and know exactly where the Zstandard data ended.
+ */
+public class ZstdInputStream extends InputStream {
+
+    private static final int MAGIC = 0xFD2FB528;
+    private static final int SKIPPABLE_MAGIC = 0x184D2A50;
+    private static final int SKIPPABLE_MAGIC_MASK = 0xFFFFFFF0;
+
+    private static final int MAX_BLOCK_SIZE = 128 * 1024;
+    private static final int MAX_WINDOW_SIZE = 1 << 27; // the limit the reference decoder applies by default
+    private static final int MAX_HUFFMAN_LOG = 11;
+    private static final int MAX_WEIGHTS_LOG = 6;
+
+    private static final int BLOCK_RAW = 0;
+    private static final int BLOCK_RLE = 1;
+    private static final int BLOCK_COMPRESSED = 2;
+
+    private static final int LITERALS_RAW = 0;
+    private static final int LITERALS_RLE = 1;
+    private static final int LITERALS_COMPRESSED = 2;
+
+    private static final int MODE_PREDEFINED = 0;
+    private static final int MODE_RLE = 1;
+    private static final int MODE_FSE = 2;
+
+    private static final int MAX_LITERAL_LENGTH_SYMBOL = 35;
+    private static final int MAX_MATCH_LENGTH_SYMBOL = 52;
+    private static final int MAX_OFFSET_SYMBOL = 31;
+    private static final int MAX_LITERAL_LENGTH_LOG = 9;
+    private static final int MAX_MATCH_LENGTH_LOG = 9;
+    private static final int MAX_OFFSET_LOG = 8;
+
+    private static final int[] LITERAL_LENGTH_BASE = {
+            0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 18, 20, 22, 24, 28, 32, 40, 48, 64, 128, 256, 512,
+            1024, 2048, 4096, 8192, 16384, 32768, 65536
+    };
+    private static final int[] LITERAL_LENGTH_BITS = {
+            0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 3, 3, 4, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15,
+            16
+    };
+    private static final int[] MATCH_LENGTH_BASE = {
+            3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31,
+            32, 33, 34, 35, 37, 39, 41, 43, 47, 51, 59, 67, 83, 99, 131, 259, 515, 1027, 2051, 4099, 8195, 16387, 32771,
+            65539
+    };
+    private static final int[] MATCH_LENGTH_BITS = {
+            0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2,
+            2, 3, 3, 4, 4, 5, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16
+    };
+
+    private static final FseTable PREDEFINED_LITERAL_LENGTHS = FseTable.predefined(6, new short[]{
+            4, 3, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 1, 1, 1, 2, 2, 2, 2, 2, 2, 2, 2, 2, 3, 2, 1, 1, 1, 1, 1, -1, -1, -1, -1
+    });
+    private static final FseTable PREDEFINED_MATCH_LENGTHS = FseTable.predefined(6, new short[]{
+            1, 4, 3, 2, 2, 2, 2, 2, 2, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+            1, 1, 1, 1, 1, 1, 1, 1, 1, -1, -1, -1, -1, -1, -1, -1
+    });
+    private static final FseTable PREDEFINED_OFFSETS = FseTable.predefined(5, new short[]{
+            1, 1, 1, 1, 1, 1, 2, 2, 2, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, -1, -1, -1, -1, -1
+    });
+
+    private final InputStream in;
+    private final boolean concatenated;
+
+    // output of the frame, the window that matches refer to followed by the block being read
+    private byte[] window = new byte[0];
+    private int windowSize;
+    private int position;
+    private int limit;
+    private boolean lastBlock;
+    private boolean checksumFlag;
+    private boolean endOfStream;
+    private final Xxh64 checksum = new Xxh64();
+
+    // tables and offsets that later blocks of the same frame may repeat
+    private final int[] repeatOffsets = new int[3];
+    private final FseTable literalLengths = new FseTable(MAX_LITERAL_LENGTH_LOG);
+    private final FseTable matchLengths = new FseTable(MAX_MATCH_LENGTH_LOG);
+    private final FseTable offsets = new FseTable(MAX_OFFSET_LOG);
+    private FseTable literalLengthTable;
+    private FseTable matchLengthTable;
+    private FseTable offsetTable;
+    private final byte[] huffmanSymbols = new byte[1 << MAX_HUFFMAN_LOG];
+    private final byte[] huffmanLengths = new byte[1 << MAX_HUFFMAN_LOG];
+    private int huffmanLog;
+
+    // scratch space for decoding one block, kept between blocks
+    private final byte[] block = new byte[MAX_BLOCK_SIZE];
+    private final byte[] literals = new byte[MAX_BLOCK_SIZE];
+    private final byte[] header = new byte[14];
+    private final byte[] weights = new byte[256];
+    private final short[] normalized = new short[256];
+    private final FseTable weightTable = new FseTable(MAX_WEIGHTS_LOG);
+    private final BackwardBits bits = new BackwardBits();
+    private int tableLength; // bytes taken by the last table description read
+    private int tableLog; // accuracy of the last FSE table description read
+    private final byte[] singleByte = new byte[1];
+
+    /**
+     * Constructs a ZstdInputStream that reads every concatenated Zstandard frame of the input.
+     *
+     * @param in the compressed input, which must start with a Zstandard frame.
+     * @throws IOException If the input does not start with a Zstandard frame.
+     */
+    public ZstdInputStream(InputStream in) throws IOException {
+        this(in, true);
+    }
+
+    /**
+     * Constructs a ZstdInputStream.
+     *
+     * @param in           the compressed input, which must start with a Zstandard or skippable frame.
+     * @param concatenated whether to carry on with the next frame of the input after the first one ends, or to stop
+     *                     reading right after the first one.
+     * @throws IOException If the input does not start with a Zstandard frame.
+     */
+    public ZstdInputStream(InputStream in, boolean concatenated) throws IOException {
+        if (in == null)
+            throw new IllegalArgumentException("InputStream cannot be null");
+
+        this.in = in;
+        this.concatenated = concatenated;
+        if (!readFrameHeader(true))
+            throw new IOException("Not in Zstandard format");
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(singleByte, 0, 1) == -1 ? -1 : singleByte[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off)
+            throw new IndexOutOfBoundsException();
+
+        if (len == 0)
+            return 0;
+
+        while (position == limit) {
+            if (endOfStream || !nextBlock())
+                return -1;
+        }
+        int count = Math.min(len, limit - position);
+        System.arraycopy(window, position, b, off, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return limit - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Reads the header of the next Zstandard frame, skipping any skippable frames before it.
+     *
+     * @return {@code false} if the input ended cleanly before another frame.
+     */
+    private boolean readFrameHeader(boolean first) throws IOException {
+        while (true) {
+            int b = in.read();
+            if (b == -1)
+                return false;
+
+            header[0] = (byte) b;
+            readFully(header, 1, 3);
+            int magic = readInt(header, 0, 4);
+            if ((magic & SKIPPABLE_MAGIC_MASK) == SKIPPABLE_MAGIC) {
+                readFully(header, 0, 4);
+                skipFully(readInt(header, 0, 4) & 0xFFFFFFFFL);
+                continue;
+            }
+            if (magic != MAGIC) {
+                if (first)
+                    return false;
+                throw new IOException("Not in Zstandard format");
+            }
+            break;
+        }
+
+        readFully(header, 0, 1);
+        int descriptor = header[0] & 0xFF;
+        int contentSizeFlag = descriptor >>> 6;
+        boolean singleSegment = (descriptor & 0x20) != 0;
+        if ((descriptor & 0x08) != 0)
+            throw new IOException("Corrupt Zstandard frame header");
+
+        checksumFlag = (descriptor & 0x04) != 0;
+        int dictionaryIdLength = (descriptor & 3) == 3 ? 4 : descriptor & 3;
+        int contentSizeLength = contentSizeFlag == 0 ? (singleSegment ? 1 : 0) : 1 << contentSizeFlag;
+        int headerLength = (singleSegment ? 0 : 1) + dictionaryIdLength + contentSizeLength;
+        readFully(header, 0, headerLength);
+
+        long window = 0;
+        int offset = 0;
+        if (!singleSegment) {
+            int exponent = (header[0] & 0xFF) >>> 3;
+            int mantissa = header[0] & 7;
+            long base = 1L << (10 + exponent);
+            window = base + (base >>> 3) * mantissa;
+            offset = 1;
+        }
+        if (dictionaryIdLength > 0 && readInt(header, offset, dictionaryIdLength) != 0)
+            throw new IOException("Zstandard dictionaries are not supported");
+
+        offset += dictionaryIdLength;
+        if (singleSegment) {
+            window = contentSizeLength == 8 ? readLong(header, offset) : readInt(header, offset, contentSizeLength) & 0xFFFFFFFFL;
+            if (contentSizeLength == 2)
+                window += 256;
+            if (window < 0)
+                window = Long.MAX_VALUE;
+        }
+        if (window > MAX_WINDOW_SIZE)
+            throw new IOException("Zstandard window of " + window + " bytes is larger than the supported 128 MB");
+
+        windowSize = (int) window;
+        int capacity = windowSize + Math.max(windowSize, 4 * MAX_BLOCK_SIZE);
+        if (this.window.length < capacity)
+            this.window = new byte[capacity];
+        position = 0;
+        limit = 0;
+        lastBlock = false;
+        checksum.reset();
+        repeatOffsets[0] = 1;
+        repeatOffsets[1] = 4;
+        repeatOffsets[2] = 8;
+        literalLengthTable = null;
+        matchLengthTable = null;
+        offsetTable = null;
+        huffmanLog = 0;
+        return true;
+    }
+
+    /**
+     * Decodes the next block of the frame, or moves on to the next frame once the last block has been read.
+     *
+     * @return {@code false} if there is no more data.
+     */
+    private boolean nextBlock() throws IOException {
+        if (lastBlock) {
+            if (checksumFlag) {
+                readFully(header, 0, 4);
+                if (readInt(header, 0, 4) != (int) checksum.digest())
+                    throw new IOException("Zstandard content checksum mismatch");
+            }
+            if (!concatenated || !readFrameHeader(false)) {
+                endOfStream = true;
+                return false;
+            }
+        }
+
+        readFully(header, 0, 3);
+        int blockHeader = readInt(header, 0, 3);
+        lastBlock = (blockHeader & 1) != 0;
+        int type = (blockHeader >>> 1) & 3;
+        int size = blockHeader >>> 3;
+        if (size > MAX_BLOCK_SIZE)
+            throw new IOException("Corrupt Zstandard block size: " + size);
+
+        if (limit + MAX_BLOCK_SIZE > window.length) {
+            int keep = Math.min(limit, windowSize);
+            System.arraycopy(window, limit - keep, window, 0, keep);
+            limit = keep;
+        }
+        int start = limit;
+        switch (type) {
+            case BLOCK_RAW:
+                readFully(window, limit, size);
+                limit += size;
+                break;
+            case BLOCK_RLE:
+                readFully(header, 0, 1);
+                Arrays.fill(window, limit, limit + size, header[0]);
+                limit += size;
+                break;
+            case BLOCK_COMPRESSED:
+                readFully(block, 0, size);
+                decodeCompressedBlock(size);
+                break;
+            default:
+                throw new IOException("Corrupt Zstandard block type");
+        }
+        position = start;
+        if (checksumFlag)
+            checksum.update(window, start, limit - start);
+        return true;
+    }
+
+    private void decodeCompressedBlock(int size) throws IOException {
+        int literalsType = block[0] & 3;
+        int sizeFormat = (block[0] >>> 2) & 3;
+        int literalsStart;
+        int literalsLength;
+        byte[] literalsSource;
+        int offset;
+        if (literalsType == LITERALS_RAW || literalsType == LITERALS_RLE) {
+            int headerLength = (sizeFormat & 1) == 0 ? 1 : sizeFormat == 1 ? 2 : 3;
+            checkAvailable(headerLength, size);
+            int value = readInt(block, 0, headerLength);
+            literalsLength = (sizeFormat & 1) == 0 ? (value & 0xFF) >>> 3 : value >>> 4;
+            if (literalsType == LITERALS_RAW) {
+                checkAvailable(headerLength + literalsLength, size);
+                literalsSource = block;
+                literalsStart = headerLength;
+                offset = headerLength + literalsLength;
+            } else {
+                checkAvailable(headerLength + 1, size);
+                if (literalsLength > MAX_BLOCK_SIZE)
+                    throw new IOException("Corrupt Zstandard literals size");
+                Arrays.fill(literals, 0, literalsLength, block[headerLength]);
+                literalsSource = literals;
+                literalsStart = 0;
+                offset = headerLength + 1;
+            }
+        } else {
+            int headerLength = sizeFormat < 2 ? 3 : sizeFormat + 2;
+            int sizeBits = sizeFormat < 2 ? 10 : sizeFormat == 2 ? 14 : 18;
+            checkAvailable(headerLength, size);
+            long value = readLong(block, 0, headerLength);
+            literalsLength = (int) (value >>> 4) & ((1 << sizeBits) - 1);
+            int compressedLength = (int) (value >>> (4 + sizeBits)) & ((1 << sizeBits) - 1);
+            if (literalsLength > MAX_BLOCK_SIZE)
+                throw new IOException("Corrupt Zstandard literals size");
+
+            checkAvailable(headerLength + compressedLength, size);
+            int from = headerLength;
+            if (literalsType == LITERALS_COMPRESSED) {
+                from += readHuffmanTable(from, headerLength + compressedLength);
+            } else if (huffmanLog == 0) {
+                throw new IOException("Corrupt Zstandard block repeats a missing Huffman table");
+            }
+            decodeHuffman(from, headerLength + compressedLength, literalsLength, sizeFormat == 0);
+            literalsSource = literals;
+            literalsStart = 0;
+            offset = headerLength + compressedLength;
+        }
+
+        executeSequences(offset, size, literalsSource, literalsStart, literalsLength);
+    }
+
+    /**
+     * Reads the Huffman table description of a block of literals.
+     *
+     * @return the number of bytes the description took.
+     */
+    private int readHuffmanTable(int from, int end) throws IOException {
+        checkAvailable(from + 1, end);
+        int headerByte = block[from] & 0xFF;
+        int count;
+        int length;
+        if (headerByte < 128) {
+            length = 1 + headerByte;
+            checkAvailable(from + length, end);
+            int tableLength = readFseTable(block, from + 1, from + length, normalized, 255, MAX_WEIGHTS_LOG);
+            weightTable.build(normalized, 255, tableLog);
+            count = decodeWeights(from + 1 + tableLength, from + length);
+        } else {
+            count = headerByte - 127;
+            length = 1 + (count + 1) / 2;
+            checkAvailable(from + length, end);
+            for (int i = 0; i < count; i++) {
+                int packed = block[from + 1 + i / 2] & 0xFF;
+                weights[i] = (byte) ((i & 1) == 0 ? packed >>> 4 : packed & 0xF);
+            }
+        }
+
+        int total = 0;
+        for (int i = 0; i < count; i++) {
+            if (weights[i] > MAX_HUFFMAN_LOG)
+                throw new IOException("Corrupt Zstandard Huffman weights");
+            if (weights[i] > 0)
+                total += 1 << (weights[i] - 1);
+        }
+        if (total == 0 || count >= 256)
+            throw new IOException("Corrupt Zstandard Huffman weights");
+
+        int log = 32 - Integer.numberOfLeadingZeros(total);
+        int left = (1 << log) - total;
+        if (log > MAX_HUFFMAN_LOG || Integer.bitCount(left) != 1)
+            throw new IOException("Corrupt Zstandard Huffman weights");
+
+        weights[count++] = (byte) (32 - Integer.numberOfLeadingZeros(left));
+        int[] rankStart = new int[MAX_HUFFMAN_LOG + 2];
+        for (int i = 0; i < count; i++) {
+            rankStart[weights[i]]++;
+        }
+        int next = 0;
+        for (int weight = 1; weight <= log; weight++) {
+            int symbols = rankStart[weight];
+            rankStart[weight] = next;
+            next += symbols << (weight - 1);
+        }
+        for (int symbol = 0; symbol < count; symbol++) {
+            int weight = weights[symbol];
+            if (weight == 0)
+                continue;
+            int entries = 1 << (weight - 1);
+            int start = rankStart[weight];
+            Arrays.fill(huffmanSymbols, start, start + entries, (byte) symbol);
+            Arrays.fill(huffmanLengths, start, start + entries, (byte) (log + 1 - weight));
+            rankStart[weight] = start + entries;
+        }
+        huffmanLog = log;
+        return length;
+    }
+
+    /**
+     * Decodes FSE compressed Huffman weights with two interleaved states.
+     *
+     * @return the number of weights decoded.
+     */
+    private int decodeWeights(int from, int end) throws IOException {
+        BackwardBits in = bits;
+        in.init(block, from, end);
+        int log = weightTable.log;
+        int state1 = (int) in.read(log);
+        int state2 = (int) in.read(log);
+        int count = 0;
+        while (true) {
+            if (count > 253)
+                throw new IOException("Corrupt Zstandard Huffman weights");
+            weights[count++] = weightTable.symbols[state1];
+            state1 = weightTable.base[state1] + (int) in.read(weightTable.bits[state1]);
+            if (in.reload()) {
+                weights[count++] = weightTable.symbols[state2];
+                return count;
+            }
+            weights[count++] = weightTable.symbols[state2];
+            state2 = weightTable.base[state2] + (int) in.read(weightTable.bits[state2]);
+            if (in.reload()) {
+                weights[count++] = weightTable.symbols[state1];
+                return count;
+            }
+        }
+    }
+
+    /**
+     * Decodes Huffman coded literals from one stream, or from four streams that follow a jump table.
+     */
+    private void decodeHuffman(int from, int end, int count, boolean singleStream) throws IOException {
+        if (singleStream) {
+            decodeHuffmanStream(from, end, 0, count);
+            return;
+        }
+
+        checkAvailable(from + 6, end);
+        int first = from + 6 + readInt(block, from, 2);
+        int second = first + readInt(block, from + 2, 2);
+        int third = second + readInt(block, from + 4, 2);
+        int segment = (count + 3) / 4;
+        if (third > end || segment * 3 > count)
+            throw new IOException("Corrupt Zstandard literals");
+
+        decodeHuffmanStream(from + 6, first, 0, segment);
+        decodeHuffmanStream(first, second, segment, segment);
+        decodeHuffmanStream(second, third, segment * 2, segment);
+        decodeHuffmanStream(third, end, segment * 3, count - segment * 3);
+    }
+
+    private void decodeHuffmanStream(int from, int end, int offset, int count) throws IOException {
+        BackwardBits in = bits;
+        in.init(block, from, end);
+        int log = huffmanLog;
+        byte[] symbols = huffmanSymbols;
+        byte[] lengths = huffmanLengths;
+        for (int i = offset; i < offset + count; i++) {
+            in.reload();
+            int index = (int) in.peek(log);
+            literals[i] = symbols[index];
+            in.consumed += lengths[index];
+        }
+        if (!in.finished())
+            throw new IOException("Corrupt Zstandard literals");
+    }
+
+    /**
+     * Decodes the sequences section of a block and executes every sequence into the window.
+     */
+    private void executeSequences(int from, int end, byte[] literalsSource, int literalsStart, int literalsLength)
+            throws IOException {
+        checkAvailable(from + 1, end);
+        int count = block[from] & 0xFF;
+        int offset = from + 1;
+        if (count >= 128) {
+            checkAvailable(offset + 1, end);
+            if (count == 255) {
+                checkAvailable(offset + 2, end);
+                count = readInt(block, offset, 2) + 0x7F00;
+                offset += 2;
+            } else {
+                count = ((count - 128) << 8) + (block[offset] & 0xFF);
+                offset++;
+            }
+        }
+
+        int blockStart = limit;
+        int literalsEnd = literalsStart + literalsLength;
+        int literal = literalsStart;
+        if (count > 0) {
+            checkAvailable(offset + 1, end);
+            int modes = block[offset++] & 0xFF;
+            if ((modes & 3) != 0)
+                throw new IOException("Corrupt Zstandard sequences header");
+
+            literalLengthTable = readSequenceTable(modes >>> 6, literalLengthTable, literalLengths,
+                    PREDEFINED_LITERAL_LENGTHS, MAX_LITERAL_LENGTH_SYMBOL, MAX_LITERAL_LENGTH_LOG, offset, end);
+            offset += tableLength;
+            offsetTable = readSequenceTable((modes >>> 4) & 3, offsetTable, offsets, PREDEFINED_OFFSETS,
+                    MAX_OFFSET_SYMBOL, MAX_OFFSET_LOG, offset, end);
+            offset += tableLength;
+            matchLengthTable = readSequenceTable((modes >>> 2) & 3, matchLengthTable, matchLengths,
+                    PREDEFINED_MATCH_LENGTHS, MAX_MATCH_LENGTH_SYMBOL, MAX_MATCH_LENGTH_LOG, offset, end);
+            offset += tableLength;
+
+            FseTable literalLengthCodes = literalLengthTable;
+            FseTable offsetCodes = offsetTable;
+            FseTable matchLengthCodes = matchLengthTable;
+            BackwardBits in = bits;
+            in.init(block, offset, end);
+            int literalLengthState = (int) in.read(literalLengthCodes.log);
+            int offsetState = (int) in.read(offsetCodes.log);
+            int matchLengthState = (int) in.read(matchLengthCodes.log);
+            in.reload();
+            byte[] output = window;
+            for (int i = 0; i < count; i++) {
+                int offsetCode = offsetCodes.symbols[offsetState];
+                int matchLengthCode = matchLengthCodes.symbols[matchLengthState];
+                int literalLengthCode = literalLengthCodes.symbols[literalLengthState];
+
+                long offsetValue = (1L << offsetCode) + in.read(offsetCode);
+                in.reload();
+                int matchLength = MATCH_LENGTH_BASE[matchLengthCode] + (int) in.read(MATCH_LENGTH_BITS[matchLengthCode]);
+                int literalLength = LITERAL_LENGTH_BASE[literalLengthCode]
+                        + (int) in.read(LITERAL_LENGTH_BITS[literalLengthCode]);
+                in.reload();
+                if (i < count - 1) {
+                    literalLengthState = literalLengthCodes.base[literalLengthState]
+                            + (int) in.read(literalLengthCodes.bits[literalLengthState]);
+                    matchLengthState = matchLengthCodes.base[matchLengthState]
+                            + (int) in.read(matchLengthCodes.bits[matchLengthState]);
+                    offsetState = offsetCodes.base[offsetState] + (int) in.read(offsetCodes.bits[offsetState]);
+                    in.reload();
+                }
+
+                int matchOffset = resolveOffset(offsetValue, literalLength);
+                if (literalLength > literalsEnd - literal || limit - blockStart + literalLength + matchLength > MAX_BLOCK_SIZE)
+                    throw new IOException("Corrupt Zstandard sequence");
+
+                System.arraycopy(literalsSource, literal, output, limit, literalLength);
+                literal += literalLength;
+                limit += literalLength;
+                if (matchOffset > limit)
+                    throw new IOException("Corrupt Zstandard match offset");
+
+                int source = limit - matchOffset;
+                if (matchOffset >= matchLength) {
+                    System.arraycopy(output, source, output, limit, matchLength);
+                } else {
+                    for (int j = 0; j < matchLength; j++) {
+                        output[limit + j] = output[source + j];
+                    }
+                }
+                limit += matchLength;
+            }
+            if (!in.finished())
+                throw new IOException("Corrupt Zstandard sequences");
+        } else if (offset != end) {
+            throw new IOException("Corrupt Zstandard sequences");
+        }
+
+        int remaining = literalsEnd - literal;
+        if (limit - blockStart + remaining > MAX_BLOCK_SIZE)
+            throw new IOException("Corrupt Zstandard block");
+
+        System.arraycopy(literalsSource, literal, window, limit, remaining);
+        limit += remaining;
+    }
+
+    /**
+     * Turns an offset value into the distance of a match and updates the repeated offsets.
+     */
+    private int resolveOffset(long offsetValue, int literalLength) throws IOException {
+        if (offsetValue > 3) {
+            if (offsetValue - 3 > MAX_WINDOW_SIZE)
+                throw new IOException("Corrupt Zstandard match offset");
+            int matchOffset = (int) (offsetValue - 3);
+            repeatOffsets[2] = repeatOffsets[1];
+            repeatOffsets[1] = repeatOffsets[0];
+            repeatOffsets[0] = matchOffset;
+            return matchOffset;
+        }
+
+        int repeat = (int) offsetValue - 1 + (literalLength == 0 ? 1 : 0);
+        if (repeat == 0)
+            return repeatOffsets[0];
+
+        int matchOffset = repeat == 3 ? repeatOffsets[0] - 1 : repeatOffsets[repeat];
+        if (matchOffset <= 0)
+            throw new IOException("Corrupt Zstandard match offset");
+
+        if (repeat != 1)
+            repeatOffsets[2] = repeatOffsets[1];
+        repeatOffsets[1] = repeatOffsets[0];
+        repeatOffsets[0] = matchOffset;
+        return matchOffset;
+    }
+
+    private FseTable readSequenceTable(int mode, FseTable previous, FseTable own, FseTable predefined, int maxSymbol,
+                                       int maxLog, int from, int end) throws IOException {
+        tableLength = 0;
+        switch (mode) {
+            case MODE_PREDEFINED:
+                return predefined;
+            case MODE_RLE:
+                checkAvailable(from + 1, end);
+                int symbol = block[from] & 0xFF;
+                if (symbol > maxSymbol)
+                    throw new IOException("Corrupt Zstandard sequences header");
+                own.single(symbol);
+                tableLength = 1;
+                return own;
+            case MODE_FSE:
+                int length = readFseTable(block, from, end, normalized, maxSymbol, maxLog);
+                own.build(normalized, maxSymbol, tableLog);
+                tableLength = length;
+                return own;
+            default:
+                if (previous == null)
+                    throw new IOException("Corrupt Zstandard block repeats a missing table");
+                return previous;
+        }
+    }
+
+    /**
+     * Reads the normalized probabilities of an FSE table description into {@code counts}, setting {@code tableLog}.
+     *
+     * @return the number of bytes the description took.
+     */
+    private int readFseTable(byte[] source, int from, int end, short[] counts, int maxSymbol, int maxLog)
+            throws IOException {
+        checkAvailable(from + 1, end);
+        long bitPosition = 0;
+        int log = (source[from] & 0xF) + 5;
+        if (log > maxLog)
+            throw new IOException("Corrupt Zstandard table description");
+
+        bitPosition += 4;
+        int remaining = (1 << log) + 1;
+        int threshold = 1 << log;
+        int width = log + 1;
+        int symbol = 0;
+        boolean previousZero = false;
+        while (remaining > 1 && symbol <= maxSymbol) {
+            if (previousZero) {
+                int repeat;
+                do {
+                    repeat = peekForward(source, from, end, bitPosition) & 3;
+                    bitPosition += 2;
+                    for (int i = 0; i < repeat; i++) {
+                        if (symbol > maxSymbol)
+                            throw new IOException("Corrupt Zstandard table description");
+                        counts[symbol++] = 0;
+                    }
+                } while (repeat == 3);
+                if (symbol > maxSymbol)
+                    break;
+            }
+
+            int value = peekForward(source, from, end, bitPosition);
+            int max = (2 * threshold - 1) - remaining;
+            int count;
+            if ((value & (threshold - 1)) < max) {
+                count = value & (threshold - 1);
+                bitPosition += width - 1;
+            } else {
+                count = value & (2 * threshold - 1);
+                if (count >= threshold)
+                    count -= max;
+                bitPosition += width;
+            }
+            count--;
+            remaining -= Math.abs(count);
+            counts[symbol++] = (short) count;
+            previousZero = count == 0;
+            while (remaining < threshold) {
+                width--;
+                threshold >>= 1;
+            }
+        }
+        int length = (int) ((bitPosition + 7) >>> 3);
+        if (remaining != 1 || from + length > end)
+            throw new IOException("Corrupt Zstandard table description");
+
+        for (int i = symbol; i <= maxSymbol; i++) {
+            counts[i] = 0;
+        }
+        tableLog = log;
+        return length;
+    }
+
+    /**
+     * Reads up to 32 bits of a forward bit stream, least significant bit first, with zeros after its end.
+     */
+    private static int peekForward(byte[] source, int from, int end, long bitPosition) {
+        int index = from + (int) (bitPosition >>> 3);
+        long value = 0;
+        for (int i = 0; i < 5 && index + i < end; i++) {
+            value |= (source[index + i] & 0xFFL) << (8 * i);
+        }
+        return (int) (value >>> (bitPosition & 7));
+    }
+
+    private static void checkAvailable(int needed, int end) throws IOException {
+        if (needed > end)
+            throw new IOException("Corrupt Zstandard block");
+    }
+
+    private void readFully(byte[] bytes, int offset, int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            int numRead = in.read(bytes, offset + read, length - read);
+            if (numRead == -1)
+                throw new EOFException("Zstandard stream ends within a frame");
+            read += numRead;
+        }
+    }
+
+    private void skipFully(long length) throws IOException {
+        long skipped = 0;
+        while (skipped < length) {
+            long numSkipped = in.skip(length - skipped);
+            if (numSkipped <= 0) {
+                if (in.read() == -1)
+                    throw new EOFException("Zstandard stream ends within a skippable frame");
+                numSkipped = 1;
+            }
+            skipped += numSkipped;
+        }
+    }
+
+    private static int readInt(byte[] bytes, int offset, int length) {
+        int value = 0;
+        for (int i = 0; i < length; i++) {
+            value |= (bytes[offset + i] & 0xFF) << (8 * i);
+        }
+        return value;
+    }
+
+    private static long readLong(byte[] bytes, int offset, int length) {
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            value |= (bytes[offset + i] & 0xFFL) << (8 * i);
+        }
+        return value;
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        return readLong(bytes, offset, 8);
+    }
+
+    /**
+     * A decoding table for a finite state entropy code: the symbol of every state, and the number of bits to read and
+     * the base to add them to for the next state.
+     */
+    private static final class FseTable {
+
+        private final byte[] symbols;
+        private final byte[] bits;
+        private final int[] base;
+        private final int[] next = new int[256];
+        private int log;
+
+        FseTable(int maxLog) {
+            symbols = new byte[1 << maxLog];
+            bits = new byte[1 << maxLog];
+            base = new int[1 << maxLog];
+        }
+
+        static FseTable predefined(int log, short[] counts) {
+            FseTable table = new FseTable(log);
+            table.build(counts, counts.length - 1, log);
+            return table;
+        }
+
+        /**
+         * Makes a table with a single state that always decodes the same symbol.
+         */
+        void single(int symbol) {
+            log = 0;
+            symbols[0] = (byte) symbol;
+            bits[0] = 0;
+            base[0] = 0;
+        }
+
+        /**
+         * Spreads the symbols over the states of the table in proportion to their normalized probabilities.
+         */
+        void build(short[] counts, int maxSymbol, int tableLog) {
+            int size = 1 << tableLog;
+            int high = size - 1;
+            for (int symbol = 0; symbol <= maxSymbol; symbol++) {
+                if (counts[symbol] == -1) {
+                    symbols[high--] = (byte) symbol;
+                    next[symbol] = 1;
+                } else {
+                    next[symbol] = counts[symbol];
+                }
+            }
+
+            int mask = size - 1;
+            int step = (size >>> 1) + (size >>> 3) + 3;
+            int position = 0;
+            for (int symbol = 0; symbol <= maxSymbol; symbol++) {
+                for (int i = 0; i < counts[symbol]; i++) {
+                    symbols[position] = (byte) symbol;
+                    do {
+                        position = (position + step) & mask;
+                    } while (position > high);
+                }
+            }
+
+            for (int state = 0; state < size; state++) {
+                int symbol = symbols[state] & 0xFF;
+                int nextState = next[symbol]++;
+                int width = tableLog - (31 - Integer.numberOfLeadingZeros(nextState));
+                bits[state] = (byte) width;
+                base[state] = (nextState << width) - size;
+            }
+            log = tableLog;
+        }
+    }
+
+    /**
+     * Reads a bit stream backwards from its last byte, whose highest set bit marks where the stream starts, as the
+     * Huffman and FSE coded parts of a block are written.
+     */
+    private static final class BackwardBits {
+
+        private byte[] source;
+        private int start;
+        private int pointer;
+        private long container;
+        private int consumed;
+
+        void init(byte[] bytes, int from, int end) throws IOException {
+            if (end <= from || bytes[end - 1] == 0)
+                throw new IOException("Corrupt Zstandard bit stream");
+
+            source = bytes;
+            start = from;
+            int marker = Integer.numberOfLeadingZeros(bytes[end - 1] & 0xFF) - 23;
+            if (end - from >= 8) {
+                pointer = end - 8;
+                container = readLong(bytes, pointer);
+                consumed = marker;
+            } else {
+                pointer = from;
+                container = readLong(bytes, from, end - from);
+                consumed = (8 - (end - from)) * 8 + marker;
+            }
+        }
+
+        long peek(int count) {
+            if (count == 0 || consumed >= 64)
+                return 0;
+            return (container << consumed) >>> (64 - count);
+        }
+
+        long read(int count) {
+            long value = peek(count);
+            consumed += count;
+            return value;
+        }
+
+        /**
+         * Refills the container from the bytes before it.
+         *
+         * @return {@code true} if more bits have been read than the stream holds.
+         */
+        boolean reload() {
+            if (consumed > 64)
+                return true;
+
+            if (pointer >= start + 8) {
+                pointer -= consumed >>> 3;
+                consumed &= 7;
+            } else if (pointer > start) {
+                int bytes = Math.min(consumed >>> 3, pointer - start);
+                pointer -= bytes;
+                consumed -= bytes * 8;
+            } else {
+                return false;
+            }
+            container = readLong(source, pointer);
+            return false;
+        }
+
+        boolean finished() {
+            return pointer == start && consumed == 64;
+        }
+    }
+
+    /**
+     * Computes the XXH64 hash of the decompressed bytes of a frame as they are produced.
+     */
+    private static final class Xxh64 {
+
+        private static final long PRIME1 = 0x9E3779B185EBCA87L;
+        private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+        private static final long PRIME3 = 0x165667B19E3779F9L;
+        private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+        private static final long PRIME5 = 0x27D4EB2F165667C5L;
+        private static final int STRIPE = 32;
+
+        private final byte[] pending = new byte[STRIPE];
+        private int pendingLength;
+        private long length;
+        private long v1;
+        private long v2;
+        private long v3;
+        private long v4;
+
+        void reset() {
+            v1 = PRIME1 + PRIME2;
+            v2 = PRIME2;
+            v3 = 0;
+            v4 = -PRIME1;
+            length = 0;
+            pendingLength = 0;
+        }
+
+        void update(byte[] bytes, int offset, int count) {
+            length += count;
+            int from = offset;
+            int end = offset + count;
+            if (pendingLength > 0) {
+                int copied = Math.min(STRIPE - pendingLength, count);
+                System.arraycopy(bytes, from, pending, pendingLength, copied);
+                pendingLength += copied;
+                from += copied;
+                if (pendingLength < STRIPE)
+                    return;
+                stripe(pending, 0);
+                pendingLength = 0;
+            }
+            for (; from + STRIPE <= end; from += STRIPE) {
+                stripe(bytes, from);
+            }
+            pendingLength = end - from;
+            System.arraycopy(bytes, from, pending, 0, pendingLength);
+        }
+
+        long digest() {
+            long hash;
+            if (length >= STRIPE) {
+                hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+                hash = merge(hash, v1);
+                hash = merge(hash, v2);
+                hash = merge(hash, v3);
+                hash = merge(hash, v4);
+            } else {
+                hash = PRIME5;
+            }
+            hash += length;
+
+            int i = 0;
+            for (; i + 8 <= pendingLength; i += 8) {
+                hash ^= round(0, readLong(pending, i));
+                hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+            }
+            if (i + 4 <= pendingLength) {
+                hash ^= (readInt(pending, i, 4) & 0xFFFFFFFFL) * PRIME1;
+                hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+                i += 4;
+            }
+            for (; i < pendingLength; i++) {
+                hash ^= (pending[i] & 0xFFL) * PRIME5;
+                hash = Long.rotateLeft(hash, 11) * PRIME1;
+            }
+            hash ^= hash >>> 33;
+            hash *= PRIME2;
+            hash ^= hash >>> 29;
+            hash *= PRIME3;
+            hash ^= hash >>> 32;
+            return hash;
+        }
+
+        private void stripe(byte[] bytes, int offset) {
+            v1 = round(v1, readLong(bytes, offset));
+            v2 = round(v2, readLong(bytes, offset + 8));
+            v3 = round(v3, readLong(bytes, offset + 16));
+            v4 = round(v4, readLong(bytes, offset + 24));
+        }
+
+        private static long round(long accumulator, long input) {
+            accumulator += input * PRIME2;
+            accumulator = Long.rotateLeft(accumulator, 31);
+            return accumulator * PRIME1;
+        }
+
+        private static long merge(long hash, long lane) {
+            hash ^= round(0, lane);
+            return hash * PRIME1 + PRIME4;
+        }
+    }
+}
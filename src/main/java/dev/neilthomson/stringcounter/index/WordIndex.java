@@ -0,0 +1,380 @@
+package dev.neilthomson.stringcounter.index;
+
+import dev.neilthomson.stringcounter.tables.WordTable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Queries an index file written by {@link WordIndexWriter} through a read-only memory mapping.
+ * <p>
+ * Opening an index only maps the file and reads its header, so it takes the same time whatever the size of the index,
+ * and the pages of the file are shared through the page cache by every process that has it open. A point lookup binary
+ * searches the first words of the blocks and then decodes a single block, so it reads O(log n) pages. A prefix scan
+ * starts at the first word of the prefix and decodes words in order, and a top-N query decodes the block of each of the
+ * N most frequent words.
+ * <p>
+ * A mapping can be at most 2GB, so larger files are mapped as several segments. The JDK unmaps a file once its mapping
+ * is garbage collected, which also means that {@link #close()} only stops further queries.
+ */
+public final class WordIndex implements Closeable {
+
+    static final int MAGIC = 0x53434958; // "SCIX"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int RESTART_INTERVAL = 16;
+
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    private volatile MappedByteBuffer[] segments;
+    private final long vocabularySize;
+    private final long totalCount;
+    private final int blockCount;
+    private final long blockIndexOffset;
+    private final long rankOffset;
+    private final long length;
+    private final long checksum;
+
+    private WordIndex(MappedByteBuffer[] segments, ByteBuffer header) {
+        this.segments = segments;
+        this.vocabularySize = header.getLong(8);
+        this.totalCount = header.getLong(16);
+        this.blockIndexOffset = header.getLong(32);
+        this.rankOffset = header.getLong(40);
+        this.length = header.getLong(48);
+        this.checksum = header.getLong(56);
+        this.blockCount = (int) ((vocabularySize + RESTART_INTERVAL - 1) / RESTART_INTERVAL);
+    }
+
+    /**
+     * Maps an index file into memory.
+     *
+     * @param path the index file.
+     * @return the opened index.
+     * @throws IOException If the file cannot be read or is not a complete index file.
+     */
+    public static WordIndex open(Path path) throws IOException {
+        if (path == null)
+            throw new IllegalArgumentException("Path cannot be null");
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE)
+                throw new IOException("Not a word index: " + path);
+
+            MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((size + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = (long) i << SEGMENT_SHIFT;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size - start, 1L << SEGMENT_SHIFT));
+            }
+
+            ByteBuffer header = segments[0].duplicate();
+            header.limit(HEADER_SIZE);
+            if (header.getInt(0) != MAGIC)
+                throw new IOException("Not a word index: " + path);
+
+            if (header.getInt(4) != VERSION)
+                throw new IOException("Unsupported word index version " + header.getInt(4) + ": " + path);
+
+            WordIndex index = new WordIndex(segments, header);
+            if (index.length != size || index.blockIndexOffset > index.rankOffset || index.rankOffset + 4 * index.vocabularySize != size
+                    || index.blockIndexOffset + 8L * index.blockCount != index.rankOffset)
+                throw new IOException("Truncated word index: " + path);
+
+            return index;
+        }
+    }
+
+    /**
+     * Returns the number of distinct words in the index.
+     *
+     * @return the vocabulary size.
+     */
+    public long vocabularySize() {
+        return vocabularySize;
+    }
+
+    /**
+     * Returns the sum of the counts of every word in the index.
+     *
+     * @return the total number of words that were counted.
+     */
+    public long totalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Looks up the count of a word.
+     *
+     * @param word the word, which must match the stored word exactly.
+     * @return the count of the word, or 0 if it is not in the index.
+     */
+    public long count(String word) {
+        if (word == null)
+            throw new IllegalArgumentException("Word cannot be null");
+
+        byte[] target = word.getBytes(StandardCharsets.UTF_8);
+        int block = findBlock(target);
+        if (block < 0)
+            return 0;
+
+        Cursor cursor = new Cursor(block);
+        for (int i = 0; i < RESTART_INTERVAL && cursor.next(); i++) {
+            int comparison = compare(cursor.word, 0, cursor.wordLength, target);
+            if (comparison == 0)
+                return cursor.count;
+
+            if (comparison > 0)
+                break;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the words that start with a prefix, in the order of their UTF-8 bytes.
+     *
+     * @param prefix the prefix, the empty string returns every word.
+     * @param limit  the maximum number of entries to return.
+     * @return a list of at most {@code limit} word-count entries.
+     */
+    public List<Map.Entry<String, Long>> prefix(String prefix, int limit) {
+        if (prefix == null)
+            throw new IllegalArgumentException("Prefix cannot be null");
+
+        if (limit < 0)
+            throw new IllegalArgumentException("Limit cannot be negative");
+
+        byte[] target = prefix.getBytes(StandardCharsets.UTF_8);
+        List<Map.Entry<String, Long>> entries = new ArrayList<>();
+        Cursor cursor = new Cursor(Math.max(findBlock(target), 0));
+        while (entries.size() < limit && cursor.next()) {
+            if (startsWith(cursor.word, cursor.wordLength, target)) {
+                entries.add(cursor.entry());
+            } else if (compare(cursor.word, 0, cursor.wordLength, target) > 0) {
+                break;
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Returns the most frequent words, in descending order of count and then alphabetically like
+     * {@link dev.neilthomson.stringcounter.comparators.CountAndAlphaComparator}.
+     *
+     * @param limit the maximum number of entries to return.
+     * @return a list of at most {@code limit} word-count entries.
+     */
+    public List<Map.Entry<String, Long>> top(int limit) {
+        if (limit < 0)
+            throw new IllegalArgumentException("Limit cannot be negative");
+
+        int size = (int) Math.min(limit, vocabularySize);
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(size);
+        for (int rank = 0; rank < size; rank++) {
+            int ordinal = intAt(rankOffset + 4L * rank);
+            Cursor cursor = new Cursor(ordinal / RESTART_INTERVAL);
+            for (int i = ordinal % RESTART_INTERVAL; i >= 0; i--) {
+                cursor.next();
+            }
+            entries.add(cursor.entry());
+        }
+        return entries;
+    }
+
+    /**
+     * Passes every word in the index and its count to the consumer, in the order of their UTF-8 bytes, without creating
+     * a String for any of them.
+     *
+     * @param consumer the consumer of the words.
+     */
+    public void forEach(WordTable.WordCountConsumer consumer) {
+        if (consumer == null)
+            throw new IllegalArgumentException("Consumer cannot be null");
+
+        Cursor cursor = new Cursor(0);
+        while (cursor.next()) {
+            consumer.accept(cursor.word, 0, cursor.wordLength, cursor.count);
+        }
+    }
+
+    /**
+     * Checks the contents of the index against the checksum in its header. This reads the whole file.
+     *
+     * @return true if the contents match the checksum.
+     */
+    public boolean verify() {
+        CRC32 crc = new CRC32();
+        MappedByteBuffer[] mapped = segments();
+        for (int i = 0; i < mapped.length; i++) {
+            ByteBuffer segment = mapped[i].duplicate();
+            if (i == 0)
+                segment.position(HEADER_SIZE);
+            byte[] chunk = new byte[64 * 1024];
+            while (segment.hasRemaining()) {
+                int count = Math.min(chunk.length, segment.remaining());
+                segment.get(chunk, 0, count);
+                crc.update(chunk, 0, count);
+            }
+        }
+        return crc.getValue() == checksum;
+    }
+
+    @Override
+    public void close() {
+        segments = null;
+    }
+
+    /**
+     * Finds the last block whose first word is not after the target.
+     *
+     * @return the block, or -1 if the target comes before every word.
+     */
+    private int findBlock(byte[] target) {
+        int low = 0;
+        int high = blockCount - 1;
+        int found = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            Cursor cursor = new Cursor(middle);
+            cursor.next();
+            if (compare(cursor.word, 0, cursor.wordLength, target) <= 0) {
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Compares part of an array with a whole array as unsigned bytes, which is the order of UTF-8 strings by code
+     * point.
+     */
+    static int compare(byte[] bytes, int offset, int length, byte[] other) {
+        int common = Math.min(length, other.length);
+        for (int i = 0; i < common; i++) {
+            int comparison = (bytes[offset + i] & 0xFF) - (other[i] & 0xFF);
+            if (comparison != 0)
+                return comparison;
+        }
+        return length - other.length;
+    }
+
+    private static boolean startsWith(byte[] bytes, int length, byte[] prefix) {
+        if (length < prefix.length)
+            return false;
+
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i])
+                return false;
+        }
+        return true;
+    }
+
+    private MappedByteBuffer[] segments() {
+        MappedByteBuffer[] mapped = segments;
+        if (mapped == null)
+            throw new IllegalStateException("Word index is closed");
+
+        return mapped;
+    }
+
+    private byte byteAt(long position) {
+        return segments()[(int) (position >>> SEGMENT_SHIFT)].get((int) (position & SEGMENT_MASK));
+    }
+
+    private void readBytes(long position, byte[] bytes, int offset, int count) {
+        MappedByteBuffer[] mapped = segments();
+        while (count > 0) {
+            ByteBuffer segment = mapped[(int) (position >>> SEGMENT_SHIFT)].duplicate();
+            segment.position((int) (position & SEGMENT_MASK));
+            int chunk = Math.min(count, segment.remaining());
+            segment.get(bytes, offset, chunk);
+            position += chunk;
+            offset += chunk;
+            count -= chunk;
+        }
+    }
+
+    private long longAt(long position) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (byteAt(position + i) & 0xFF);
+        }
+        return value;
+    }
+
+    private int intAt(long position) {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            value = (value << 8) | (byteAt(position + i) & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * Reads an unsigned LEB128 varint and advances the position held in {@code position[0]} past it.
+     */
+    private long readVarint(long[] position) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = byteAt(position[0]++);
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * Decodes dictionary entries in order from the start of a block, rebuilding every word from the shared prefix of
+     * the previous one.
+     */
+    private final class Cursor {
+        private final long[] position = new long[1];
+        private long ordinal;
+        private byte[] word = new byte[64];
+        private int wordLength;
+        private long count;
+
+        private Cursor(int block) {
+            this.ordinal = (long) block * RESTART_INTERVAL;
+            this.position[0] = blockCount == 0 ? HEADER_SIZE : longAt(blockIndexOffset + 8L * block);
+        }
+
+        private boolean next() {
+            if (ordinal >= vocabularySize)
+                return false;
+
+            int shared = (int) readVarint(position);
+            int suffix = (int) readVarint(position);
+            if (word.length < shared + suffix)
+                word = Arrays.copyOf(word, Math.max(shared + suffix, word.length * 2));
+            readBytes(position[0], word, shared, suffix);
+            position[0] += suffix;
+            wordLength = shared + suffix;
+            count = readVarint(position);
+            ordinal++;
+            return true;
+        }
+
+        private Map.Entry<String, Long> entry() {
+            return new AbstractMap.SimpleImmutableEntry<>(new String(word, 0, wordLength, StandardCharsets.UTF_8), count);
+        }
+    }
+}
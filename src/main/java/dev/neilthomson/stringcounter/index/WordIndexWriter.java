@@ -0,0 +1,191 @@
+package dev.neilthomson.stringcounter.index;
+
+import dev.neilthomson.stringcounter.comparators.CountAndAlphaComparator;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32;
+
+/**
+ * Saves word counts to an index file that a {@link WordIndex} can query without reading it into the heap.
+ * <p>
+ * The file starts with a fixed header holding the vocabulary size, the total count, the offsets of its sections and a
+ * CRC32 of everything after the header. The dictionary follows, with the words sorted by their UTF-8 bytes and split
+ * into blocks of {@link WordIndex#RESTART_INTERVAL} entries. Every entry stores the length of the prefix it shares with
+ * the previous word, the remaining bytes and the count, with all numbers as unsigned LEB128 varints; the first entry
+ * of a block shares nothing, so that a block can be decoded on its own. Then come the offset of every block, for
+ * binary search, and the ordinal of every word in descending order of count, for top-N queries.
+ * <p>
+ * The index is written to a temporary file that is moved into place once it is complete, so processes that open the
+ * index at the same time never see it half written.
+ */
+public final class WordIndexWriter {
+
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+
+    private WordIndexWriter() {
+    }
+
+    /**
+     * Writes the counts to an index file, replacing any existing file.
+     *
+     * @param path   the index file to write.
+     * @param counts the word counts, in any order, with every word at most once.
+     * @throws IOException If an error occurs while writing the file.
+     */
+    public static void write(Path path, Collection<Map.Entry<String, Long>> counts) throws IOException {
+        if (path == null)
+            throw new IllegalArgumentException("Path cannot be null");
+
+        if (counts == null)
+            throw new IllegalArgumentException("Counts cannot be null");
+
+        // rank order is the order that top-N queries return, dictionary order is by UTF-8 bytes
+        List<Map.Entry<String, Long>> ranked = new ArrayList<>(counts);
+        ranked.sort(new CountAndAlphaComparator(false));
+        int size = ranked.size();
+        byte[][] words = new byte[size][];
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            words[i] = ranked.get(i).getKey().getBytes(StandardCharsets.UTF_8);
+            total += ranked.get(i).getValue();
+        }
+        Integer[] dictionary = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            dictionary[i] = i;
+        }
+        Arrays.sort(dictionary, (a, b) -> WordIndex.compare(words[a], 0, words[a].length, words[b]));
+        int[] ordinals = new int[size];
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            if (ordinal > 0 && WordIndex.compare(words[dictionary[ordinal]], 0, words[dictionary[ordinal]].length, words[dictionary[ordinal - 1]]) == 0)
+                throw new IllegalArgumentException("Duplicate word: " + ranked.get(dictionary[ordinal]).getKey());
+            ordinals[dictionary[ordinal]] = ordinal;
+        }
+
+        // a sibling of the index, so that it can be moved into place, created with the default file permissions
+        Path temp = path.resolveSibling(path.getFileName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                channel.position(WordIndex.HEADER_SIZE);
+                Body body = new Body(new BufferedOutputStream(Channels.newOutputStream(channel), IO_BUFFER_SIZE));
+                long[] blocks = new long[(size + WordIndex.RESTART_INTERVAL - 1) / WordIndex.RESTART_INTERVAL];
+                byte[] previous = new byte[0];
+                for (int ordinal = 0; ordinal < size; ordinal++) {
+                    int rank = dictionary[ordinal];
+                    byte[] word = words[rank];
+                    int shared = 0;
+                    if (ordinal % WordIndex.RESTART_INTERVAL == 0) {
+                        blocks[ordinal / WordIndex.RESTART_INTERVAL] = body.position;
+                    } else {
+                        int max = Math.min(previous.length, word.length);
+                        while (shared < max && previous[shared] == word[shared]) {
+                            shared++;
+                        }
+                    }
+                    body.writeVarint(shared);
+                    body.writeVarint(word.length - shared);
+                    body.write(word, shared, word.length - shared);
+                    body.writeVarint(ranked.get(rank).getValue());
+                    previous = word;
+                }
+
+                long blockIndexOffset = body.position;
+                for (long block : blocks) {
+                    body.writeLong(block);
+                }
+                long rankOffset = body.position;
+                for (int ordinal : ordinals) {
+                    body.writeInt(ordinal);
+                }
+                body.out.flush();
+
+                ByteBuffer header = ByteBuffer.allocate(WordIndex.HEADER_SIZE);
+                header.putInt(WordIndex.MAGIC)
+                        .putInt(WordIndex.VERSION)
+                        .putLong(size)
+                        .putLong(total)
+                        .putInt(WordIndex.RESTART_INTERVAL)
+                        .putInt(0)
+                        .putLong(blockIndexOffset)
+                        .putLong(rankOffset)
+                        .putLong(body.position)
+                        .putLong(body.crc.getValue());
+                header.flip();
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+            }
+            move(temp, path);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * The stream of everything after the header, keeping track of its file position and checksum.
+     */
+    private static final class Body {
+        private final OutputStream out;
+        private final CRC32 crc = new CRC32();
+        private final byte[] scratch = new byte[10];
+        private long position = WordIndex.HEADER_SIZE;
+
+        private Body(OutputStream out) {
+            this.out = out;
+        }
+
+        private void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+            crc.update(bytes, offset, length);
+            position += length;
+        }
+
+        private void writeVarint(long value) throws IOException {
+            int length = 0;
+            while ((value & ~0x7FL) != 0) {
+                scratch[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            scratch[length++] = (byte) value;
+            write(scratch, 0, length);
+        }
+
+        private void writeLong(long value) throws IOException {
+            for (int i = 0; i < 8; i++) {
+                scratch[i] = (byte) (value >>> (56 - i * 8));
+            }
+            write(scratch, 0, 8);
+        }
+
+        private void writeInt(int value) throws IOException {
+            for (int i = 0; i < 4; i++) {
+                scratch[i] = (byte) (value >>> (24 - i * 8));
+            }
+            write(scratch, 0, 4);
+        }
+    }
+}
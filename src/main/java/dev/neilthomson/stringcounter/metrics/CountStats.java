@@ -0,0 +1,308 @@
+package dev.neilthomson.stringcounter.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Collects statistics about the counters while they run: the bytes read, the words counted, how the vocabulary
+ * grew, the load and resizes of the hash tables, the time spent in each phase and the balance of work between
+ * parallel workers.
+ * <p>
+ * There is one global instance, which the counters record into only while collection is {@link #enabled()}. Every
+ * recording site checks that flag first, so when collection is off the counters do not take any timestamps or
+ * allocate anything, and the instrumentation can stay in production builds. Recording is coarse grained, once per
+ * buffer, range or run rather than once per word, and uses striped adders so that workers do not contend.
+ * <p>
+ * The statistics are published as a JMX MXBean by {@link #register()} and summarised by {@link #report()}.
+ */
+public final class CountStats implements CountStatsMXBean {
+
+    /**
+     * The phases of counting that time is recorded for.
+     */
+    public enum Phase {
+        READ, TOKENIZE, MERGE, SORT
+    }
+
+    /**
+     * The name the MXBean is registered under.
+     */
+    public static final String OBJECT_NAME = "dev.neilthomson.stringcounter:type=CountStats";
+
+    private static final CountStats GLOBAL = new CountStats();
+    private static final int GROWTH_SAMPLES = 64;
+
+    private static volatile boolean enabled;
+
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder tokens = new LongAdder();
+    private final LongAdder countNanos = new LongAdder();
+    private final LongAdder tableResizes = new LongAdder();
+    private final LongAdder[] phaseNanos = new LongAdder[Phase.values().length];
+    private final AtomicLong distinctWords = new AtomicLong();
+    private final AtomicLong loadFactorBits = new AtomicLong();
+    private final AtomicLong imbalanceBits = new AtomicLong();
+    private final AtomicLong workers = new AtomicLong();
+    private final AtomicLong growthCount = new AtomicLong();
+    private final AtomicLongArray growthTokens = new AtomicLongArray(GROWTH_SAMPLES);
+    private final AtomicLongArray growthDistinct = new AtomicLongArray(GROWTH_SAMPLES);
+
+    private CountStats() {
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Returns whether statistics are being collected. Counters check this before recording anything.
+     *
+     * @return true if statistics are being collected.
+     */
+    public static boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the global statistics.
+     *
+     * @return the instance every counter records into.
+     */
+    public static CountStats global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Registers the global statistics with the platform MBean server, unless they already are.
+     */
+    public static void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(GLOBAL, new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // registered before
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register " + OBJECT_NAME, e);
+        }
+    }
+
+    /**
+     * Records a completed counting run.
+     *
+     * @param nanos    the time the run took.
+     * @param tokens   the number of words counted.
+     * @param distinct the number of distinct words found.
+     */
+    public void recordRun(long nanos, long tokens, long distinct) {
+        runs.increment();
+        countNanos.add(nanos);
+        this.tokens.add(tokens);
+        distinctWords.set(distinct);
+    }
+
+    /**
+     * Records bytes of input that have been read.
+     *
+     * @param bytes the number of bytes.
+     */
+    public void recordBytes(long bytes) {
+        bytesRead.add(bytes);
+    }
+
+    /**
+     * Records time spent in a phase of counting.
+     *
+     * @param phase the phase.
+     * @param nanos the time spent.
+     */
+    public void recordPhase(Phase phase, long nanos) {
+        phaseNanos[phase.ordinal()].add(nanos);
+    }
+
+    /**
+     * Records that a hash table grew, as a sample of the growth of the vocabulary.
+     *
+     * @param tokens   the number of words added to the table so far.
+     * @param distinct the number of distinct words in the table.
+     */
+    public void recordResize(long tokens, long distinct) {
+        tableResizes.increment();
+        int sample = (int) (growthCount.getAndIncrement() % GROWTH_SAMPLES);
+        growthTokens.set(sample, tokens);
+        growthDistinct.set(sample, distinct);
+    }
+
+    /**
+     * Records the load factor of the final table of a run.
+     *
+     * @param loadFactor the fraction of slots in use.
+     */
+    public void recordLoadFactor(double loadFactor) {
+        loadFactorBits.set(Double.doubleToLongBits(loadFactor));
+    }
+
+    /**
+     * Records the balance of the workers of a parallel run.
+     *
+     * @param busiestNanos the busy time of the busiest worker.
+     * @param totalNanos   the busy time of every worker together.
+     * @param count        the number of workers.
+     */
+    public void recordWorkers(long busiestNanos, long totalNanos, int count) {
+        workers.set(count);
+        imbalanceBits.set(Double.doubleToLongBits(totalNanos == 0 ? 1 : busiestNanos * (double) count / totalNanos));
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        CountStats.enabled = enabled;
+    }
+
+    @Override
+    public long getRuns() {
+        return runs.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getTokens() {
+        return tokens.sum();
+    }
+
+    @Override
+    public double getTokensPerSecond() {
+        long nanos = countNanos.sum();
+        return nanos == 0 ? 0 : tokens.sum() * 1e9 / nanos;
+    }
+
+    @Override
+    public long getDistinctWords() {
+        return distinctWords.get();
+    }
+
+    @Override
+    public String getDistinctGrowth() {
+        StringBuilder text = new StringBuilder();
+        for (long[] sample : growthSamples()) {
+            text.append(text.length() == 0 ? "" : " ").append(sample[1]).append('@').append(sample[0]);
+        }
+        return text.toString();
+    }
+
+    @Override
+    public double getTableLoadFactor() {
+        return Double.longBitsToDouble(loadFactorBits.get());
+    }
+
+    @Override
+    public long getTableResizes() {
+        return tableResizes.sum();
+    }
+
+    @Override
+    public long getReadMillis() {
+        return millis(Phase.READ);
+    }
+
+    @Override
+    public long getTokenizeMillis() {
+        return millis(Phase.TOKENIZE);
+    }
+
+    @Override
+    public long getMergeMillis() {
+        return millis(Phase.MERGE);
+    }
+
+    @Override
+    public long getSortMillis() {
+        return millis(Phase.SORT);
+    }
+
+    @Override
+    public double getWorkerImbalance() {
+        return workers.get() == 0 ? 0 : Double.longBitsToDouble(imbalanceBits.get());
+    }
+
+    @Override
+    public void reset() {
+        runs.reset();
+        bytesRead.reset();
+        tokens.reset();
+        countNanos.reset();
+        tableResizes.reset();
+        for (LongAdder phase : phaseNanos) {
+            phase.reset();
+        }
+        distinctWords.set(0);
+        loadFactorBits.set(0);
+        imbalanceBits.set(0);
+        workers.set(0);
+        growthCount.set(0);
+    }
+
+    /**
+     * Summarises the statistics for people, one statistic per line.
+     *
+     * @return the summary.
+     */
+    public String report() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format(Locale.ROOT, "bytes read: %d\n", getBytesRead()));
+        text.append(String.format(Locale.ROOT, "tokens: %d (%.0f tokens/s over %d runs)\n", getTokens(), getTokensPerSecond(), getRuns()));
+        text.append(String.format(Locale.ROOT, "distinct words: %d\n", getDistinctWords()));
+        List<long[]> growth = growthSamples();
+        if (growth.size() > 1) {
+            long[] first = growth.get(0);
+            long[] last = growth.get(growth.size() - 1);
+            double exponent = Math.log((double) last[1] / first[1]) / Math.log((double) last[0] / first[0]);
+            text.append(String.format(Locale.ROOT, "distinct growth: %s (Heaps exponent %.2f)\n", getDistinctGrowth(), exponent));
+        }
+        if (getTableLoadFactor() > 0) {
+            text.append(String.format(Locale.ROOT, "table load factor: %.2f, resizes: %d\n", getTableLoadFactor(), getTableResizes()));
+        } else {
+            text.append(String.format(Locale.ROOT, "table resizes: %d\n", getTableResizes()));
+        }
+        text.append(String.format(Locale.ROOT, "phases: read %dms, tokenize %dms, merge %dms, sort %dms\n",
+                getReadMillis(), getTokenizeMillis(), getMergeMillis(), getSortMillis()));
+        if (workers.get() > 0)
+            text.append(String.format(Locale.ROOT, "worker imbalance: %.2f over %d workers\n", getWorkerImbalance(), workers.get()));
+        return text.toString();
+    }
+
+    /**
+     * Returns the retained growth samples as {@code {tokens, distinct}} pairs in order of tokens.
+     */
+    private List<long[]> growthSamples() {
+        int count = (int) Math.min(growthCount.get(), GROWTH_SAMPLES);
+        List<long[]> samples = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long sampleTokens = growthTokens.get(i);
+            if (sampleTokens > 0)
+                samples.add(new long[]{sampleTokens, growthDistinct.get(i)});
+        }
+        samples.sort((a, b) -> Long.compare(a[0], b[0]));
+        return samples;
+    }
+
+    private long millis(Phase phase) {
+        return TimeUnit.NANOSECONDS.toMillis(phaseNanos[phase.ordinal()].sum());
+    }
+}
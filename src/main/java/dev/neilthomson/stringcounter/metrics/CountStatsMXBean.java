@@ -0,0 +1,118 @@
+package dev.neilthomson.stringcounter.metrics;
+
+/**
+ * The management interface of {@link CountStats}, through which JMX clients such as JConsole read the statistics of
+ * the counters and switch their collection on and off.
+ */
+public interface CountStatsMXBean {
+
+    /**
+     * Returns whether the counters are collecting statistics.
+     *
+     * @return true if statistics are being collected.
+     */
+    boolean isEnabled();
+
+    /**
+     * Switches the collection of statistics on or off.
+     *
+     * @param enabled true to collect statistics.
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * Returns the number of counting runs.
+     *
+     * @return the number of runs since the statistics were reset.
+     */
+    long getRuns();
+
+    /**
+     * Returns the number of bytes the counters have read.
+     *
+     * @return the bytes read since the statistics were reset, after decompression.
+     */
+    long getBytesRead();
+
+    /**
+     * Returns the number of words the counters have counted.
+     *
+     * @return the tokens counted since the statistics were reset.
+     */
+    long getTokens();
+
+    /**
+     * Returns the rate at which words were counted.
+     *
+     * @return the tokens counted per second of counting.
+     */
+    double getTokensPerSecond();
+
+    /**
+     * Returns the number of distinct words found by the last run.
+     *
+     * @return the vocabulary size of the last run.
+     */
+    long getDistinctWords();
+
+    /**
+     * Returns how the number of distinct words of a table grew with the number of words added to it.
+     *
+     * @return the recent samples as {@code distinct@tokens} pairs taken whenever a table grew.
+     */
+    String getDistinctGrowth();
+
+    /**
+     * Returns the fraction of slots in use in the final hash table of the last run.
+     *
+     * @return the load factor, or 0 if the last run did not use a {@link dev.neilthomson.stringcounter.tables.ByteWordTable}.
+     */
+    double getTableLoadFactor();
+
+    /**
+     * Returns the number of times a hash table had to grow.
+     *
+     * @return the resizes since the statistics were reset.
+     */
+    long getTableResizes();
+
+    /**
+     * Returns the time spent reading input.
+     *
+     * @return the milliseconds spent reading, summed over every thread.
+     */
+    long getReadMillis();
+
+    /**
+     * Returns the time spent splitting input into words and counting them.
+     *
+     * @return the milliseconds spent tokenizing, summed over every thread.
+     */
+    long getTokenizeMillis();
+
+    /**
+     * Returns the time spent merging the counts of workers.
+     *
+     * @return the milliseconds spent merging, summed over every thread.
+     */
+    long getMergeMillis();
+
+    /**
+     * Returns the time spent sorting the results.
+     *
+     * @return the milliseconds spent sorting.
+     */
+    long getSortMillis();
+
+    /**
+     * Returns how unevenly the work of the last parallel run was spread over its workers.
+     *
+     * @return the busy time of the busiest worker divided by the mean busy time, 1 for a perfect balance.
+     */
+    double getWorkerImbalance();
+
+    /**
+     * Clears every statistic.
+     */
+    void reset();
+}
@@ -0,0 +1,80 @@
+package dev.neilthomson.stringcounter.metrics;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the bytes read through a stream and the time spent waiting for them, so that a counter that reads from a
+ * stream can tell reading apart from tokenizing. Counters only wrap their stream in one while {@link CountStats} are
+ * enabled.
+ */
+public final class MeteredInputStream extends FilterInputStream {
+
+    private long bytes;
+    private long nanos;
+
+    /**
+     * Constructs a MeteredInputStream that reads from the given stream.
+     *
+     * @param in the stream to read from, it is closed when this stream is closed.
+     */
+    public MeteredInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        long started = System.nanoTime();
+        int b = super.read();
+        nanos += System.nanoTime() - started;
+        if (b != -1)
+            bytes++;
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        long started = System.nanoTime();
+        int numRead = super.read(b, off, len);
+        nanos += System.nanoTime() - started;
+        if (numRead > 0)
+            bytes += numRead;
+        return numRead;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        bytes += skipped;
+        return skipped;
+    }
+
+    /**
+     * Marks are not supported, as bytes read again after a reset would be counted twice.
+     *
+     * @return false.
+     */
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * Returns the number of bytes read so far.
+     *
+     * @return the bytes read or skipped.
+     */
+    public long bytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the time spent in the reads of the underlying stream so far.
+     *
+     * @return the time in nanoseconds.
+     */
+    public long nanos() {
+        return nanos;
+    }
+}
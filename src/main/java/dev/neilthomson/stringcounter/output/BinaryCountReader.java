@@ -0,0 +1,119 @@
+package dev.neilthomson.stringcounter.output;
+
+import dev.neilthomson.stringcounter.ranking.WordCountList;
+import dev.neilthomson.stringcounter.tables.ByteWordTable;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads word counts that a {@link CountWriter} wrote in the {@link OutputFormat#BINARY} format, either as Strings or
+ * straight into a {@link ByteWordTable} without decoding the words.
+ */
+public final class BinaryCountReader {
+
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+
+    private BinaryCountReader() {
+    }
+
+    /**
+     * Reads every word and count from a stream in the order they were written.
+     *
+     * @param inputStream the stream to read, which is read to its end but not closed.
+     * @param consumer    the consumer the words are passed to.
+     * @return the number of words read.
+     * @throws IOException If the stream cannot be read, does not start with the header of the format or ends within a
+     *                     word.
+     */
+    public static long read(InputStream inputStream, WordCountList.EntryConsumer consumer) throws IOException {
+        if (consumer == null)
+            throw new IllegalArgumentException("Consumer cannot be null");
+
+        return read(inputStream, consumer, null);
+    }
+
+    /**
+     * Adds every word and count from a stream to a table, so a word that occurs more than once is summed.
+     *
+     * @param inputStream the stream to read, which is read to its end but not closed.
+     * @param table       the table the counts are added to.
+     * @return the number of words read.
+     * @throws IOException If the stream cannot be read, does not start with the header of the format or ends within a
+     *                     word.
+     */
+    public static long readInto(InputStream inputStream, ByteWordTable table) throws IOException {
+        if (table == null)
+            throw new IllegalArgumentException("Table cannot be null");
+
+        return read(inputStream, null, table);
+    }
+
+    private static long read(InputStream inputStream, WordCountList.EntryConsumer consumer, ByteWordTable table) throws IOException {
+        if (inputStream == null)
+            throw new IllegalArgumentException("Input stream cannot be null");
+
+        InputStream in = new BufferedInputStream(inputStream, IO_BUFFER_SIZE);
+        for (byte expected : CountWriter.MAGIC) {
+            if (in.read() != expected)
+                throw new IOException("Not a binary count file");
+        }
+        int version = in.read();
+        if (version != CountWriter.VERSION)
+            throw new IOException("Unsupported binary count version: " + version);
+
+        long words = 0;
+        byte[] word = new byte[64];
+        int first;
+        while ((first = in.read()) != -1) {
+            long length = readVarint(in, first);
+            if (length > Integer.MAX_VALUE)
+                throw new IOException("Word too long: " + length);
+
+            if (word.length < length)
+                word = new byte[(int) Math.max(length, word.length * 2L)];
+            readFully(in, word, (int) length);
+            long count = readVarint(in, in.read());
+            if (table != null) {
+                table.add(word, 0, (int) length, count);
+            } else {
+                consumer.accept(new String(word, 0, (int) length, StandardCharsets.UTF_8), count);
+            }
+            words++;
+        }
+        return words;
+    }
+
+    private static long readVarint(InputStream in, int first) throws IOException {
+        long value = 0;
+        int shift = 0;
+        int b = first;
+        while (true) {
+            if (b == -1)
+                throw new EOFException("Binary count file ends within a word");
+
+            if (shift > 63)
+                throw new IOException("Varint too long");
+
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+
+            shift += 7;
+            b = in.read();
+        }
+    }
+
+    private static void readFully(InputStream in, byte[] bytes, int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            int numRead = in.read(bytes, read, length - read);
+            if (numRead == -1)
+                throw new EOFException("Binary count file ends within a word");
+            read += numRead;
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package dev.neilthomson.stringcounter.output;
+
+import dev.neilthomson.stringcounter.ranking.WordCountList;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes word counts to a channel in an {@link OutputFormat}.
+ * <p>
+ * Words are encoded to UTF-8 and counts to digits or varints by hand, straight into a large byte buffer that is only
+ * written to the channel when it is full, so no String, formatter or encoder is involved per word. As it accepts
+ * words one at a time it can be handed to {@code WordCountList.forEachSorted} to write the highest ranked words while
+ * the rest are still being sorted.
+ * <p>
+ * Like a String encoded with {@link StandardCharsets#UTF_8}, a surrogate without its pair is written
+ * as {@code ?}. A writer is not thread-safe.
+ */
+public final class CountWriter implements WordCountList.EntryConsumer, Flushable, Closeable {
+
+    /**
+     * The bytes that a file in the binary format starts with, followed by {@link #VERSION}.
+     */
+    public static final byte[] MAGIC = {'W', 'C', 'N', 'T'};
+    public static final byte VERSION = 1;
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+    private static final int MAX_BYTES_PER_CHAR = 6; // a control character escaped for JSON
+    private static final int MAX_RECORD_OVERHEAD = 48; // separators and the digits of a count
+    private static final byte[] HEX = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+    private static final byte[] JSON_WORD = {'{', '"', 'w', 'o', 'r', 'd', '"', ':', '"'};
+    private static final byte[] JSON_COUNT = {'"', ',', '"', 'c', 'o', 'u', 'n', 't', '"', ':'};
+
+    private final WritableByteChannel channel;
+    private final OutputFormat format;
+    private byte[] buffer;
+    private int position;
+
+    /**
+     * Constructs a CountWriter with a buffer of {@link #DEFAULT_BUFFER_SIZE} bytes.
+     *
+     * @param channel the channel to write to.
+     * @param format  the format to write in.
+     */
+    public CountWriter(WritableByteChannel channel, OutputFormat format) {
+        this(channel, format, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructs a CountWriter with the given buffer size. The header of the binary format is written with the first
+     * flush.
+     *
+     * @param channel    the channel to write to.
+     * @param format     the format to write in.
+     * @param bufferSize the number of bytes that are collected before they are written to the channel.
+     */
+    public CountWriter(WritableByteChannel channel, OutputFormat format, int bufferSize) {
+        if (channel == null)
+            throw new IllegalArgumentException("Channel cannot be null");
+
+        if (format == null)
+            throw new IllegalArgumentException("Format cannot be null");
+
+        if (bufferSize < MAX_RECORD_OVERHEAD)
+            throw new IllegalArgumentException("Buffer size must be at least " + MAX_RECORD_OVERHEAD);
+
+        this.channel = channel;
+        this.format = format;
+        this.buffer = new byte[bufferSize];
+        if (format == OutputFormat.BINARY) {
+            System.arraycopy(MAGIC, 0, buffer, 0, MAGIC.length);
+            buffer[MAGIC.length] = VERSION;
+            position = MAGIC.length + 1;
+        }
+    }
+
+    /**
+     * Writes a single word and its count.
+     */
+    @Override
+    public void accept(String word, long count) throws IOException {
+        reserve(word.length() * MAX_BYTES_PER_CHAR + MAX_RECORD_OVERHEAD);
+        switch (format) {
+            case TEXT:
+                putText(word, false);
+                buffer[position++] = ':';
+                buffer[position++] = ' ';
+                putDigits(count);
+                break;
+            case TSV:
+                putText(word, false);
+                buffer[position++] = '\t';
+                putDigits(count);
+                break;
+            case JSONL:
+                put(JSON_WORD);
+                putText(word, true);
+                put(JSON_COUNT);
+                putDigits(count);
+                buffer[position++] = '}';
+                break;
+            default:
+                putVarint(utf8Length(word));
+                putText(word, false);
+                putVarint(count);
+                return;
+        }
+        buffer[position++] = '\n';
+    }
+
+    /**
+     * Writes a single word given as UTF-8 bytes and its count. In the binary format the bytes are copied as they are,
+     * so a word straight from a {@link dev.neilthomson.stringcounter.tables.ByteWordTable} is never decoded; the other
+     * formats decode it first to escape it.
+     *
+     * @param bytes  the array holding the word.
+     * @param offset the index of the first byte of the word.
+     * @param length the number of bytes in the word.
+     * @param count  the count of the word.
+     * @throws IOException If the channel cannot be written to.
+     */
+    public void accept(byte[] bytes, int offset, int length, long count) throws IOException {
+        if (format != OutputFormat.BINARY) {
+            accept(new String(bytes, offset, length, StandardCharsets.UTF_8), count);
+            return;
+        }
+
+        reserve(length + MAX_RECORD_OVERHEAD);
+        putVarint(length);
+        System.arraycopy(bytes, offset, buffer, position, length);
+        position += length;
+        putVarint(count);
+    }
+
+    /**
+     * Writes every entry of a list in order, reading a {@link WordCountList} without boxing its counts.
+     *
+     * @param counts the word counts to write.
+     * @throws IOException If the channel cannot be written to.
+     */
+    public void writeAll(List<Map.Entry<String, Long>> counts) throws IOException {
+        if (counts == null)
+            throw new IllegalArgumentException("Counts cannot be null");
+
+        if (counts instanceof WordCountList) {
+            WordCountList list = (WordCountList) counts;
+            for (int i = 0; i < list.size(); i++) {
+                accept(list.word(i), list.count(i));
+            }
+            return;
+        }
+
+        for (Map.Entry<String, Long> entry : counts) {
+            accept(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Writes a line of text as it is, such as a header between the counts of different files.
+     *
+     * @param line the line, without its line break.
+     * @throws IOException If the channel cannot be written to.
+     */
+    public void writeLine(String line) throws IOException {
+        if (format == OutputFormat.BINARY)
+            throw new IllegalStateException("Lines cannot be written in the binary format");
+
+        reserve(line.length() * MAX_BYTES_PER_CHAR + 1);
+        putText(line, false);
+        buffer[position++] = '\n';
+    }
+
+    /**
+     * Writes the buffered bytes to the channel.
+     */
+    @Override
+    public void flush() throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, position);
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        position = 0;
+    }
+
+    /**
+     * Writes the buffered bytes and closes the channel.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Makes room for at least the given number of bytes, flushing the buffer and growing it for a very long word.
+     */
+    private void reserve(int bytes) throws IOException {
+        if (buffer.length - position >= bytes)
+            return;
+
+        flush();
+        if (buffer.length < bytes)
+            buffer = Arrays.copyOf(buffer, bytes);
+    }
+
+    private void put(byte[] bytes) {
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    /**
+     * Encodes text into the buffer as UTF-8, escaping it for TSV or JSON.
+     */
+    private void putText(String text, boolean json) {
+        byte[] out = buffer;
+        int at = position;
+        boolean tsv = format == OutputFormat.TSV;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                if (c >= 0x20 && c != '\\' && (c != '"' || !json)) {
+                    out[at++] = (byte) c;
+                } else if (json) {
+                    at = putJsonEscape(c, at);
+                } else if (tsv && (c == '\t' || c == '\n' || c == '\r' || c == '\\')) {
+                    out[at++] = '\\';
+                    out[at++] = (byte) (c == '\t' ? 't' : c == '\n' ? 'n' : c == '\r' ? 'r' : '\\');
+                } else {
+                    out[at++] = (byte) c;
+                }
+            } else if (c < 0x800) {
+                out[at++] = (byte) (0xC0 | c >> 6);
+                out[at++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                out[at++] = (byte) (0xF0 | codePoint >> 18);
+                out[at++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                out[at++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                out[at++] = (byte) (0x80 | codePoint & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                out[at++] = '?';
+            } else {
+                out[at++] = (byte) (0xE0 | c >> 12);
+                out[at++] = (byte) (0x80 | c >> 6 & 0x3F);
+                out[at++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        position = at;
+    }
+
+    private int putJsonEscape(char c, int at) {
+        byte[] out = buffer;
+        out[at++] = '\\';
+        switch (c) {
+            case '"':
+            case '\\':
+                out[at++] = (byte) c;
+                break;
+            case '\n':
+                out[at++] = 'n';
+                break;
+            case '\r':
+                out[at++] = 'r';
+                break;
+            case '\t':
+                out[at++] = 't';
+                break;
+            default:
+                out[at++] = 'u';
+                out[at++] = '0';
+                out[at++] = '0';
+                out[at++] = HEX[c >> 4];
+                out[at++] = HEX[c & 0xF];
+        }
+        return at;
+    }
+
+    /**
+     * Returns the number of bytes that {@link #putText(String, boolean)} writes for a word without escaping.
+     */
+    private static int utf8Length(String text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private void putDigits(long value) {
+        if (value < 0) {
+            put(Long.toString(value).getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+
+        int digits = 1;
+        for (long rest = value / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        int at = position + digits;
+        position = at;
+        do {
+            buffer[--at] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+    }
+
+    private void putVarint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+}
@@ -0,0 +1,43 @@
+package dev.neilthomson.stringcounter.output;
+
+import java.util.Locale;
+
+/**
+ * The formats that a {@link CountWriter} can write word counts in.
+ * <p>
+ * Every text format writes one word per line in UTF-8. The binary format starts with the {@link CountWriter#MAGIC}
+ * bytes and a version byte, followed by every word as an unsigned LEB128 varint of its UTF-8 length, its UTF-8 bytes
+ * and an unsigned LEB128 varint of its count. {@link BinaryCountReader} reads it back.
+ */
+public enum OutputFormat {
+    /**
+     * {@code word: count}, as the application has always printed.
+     */
+    TEXT,
+    /**
+     * {@code word<TAB>count}, with tabs, line breaks and backslashes in words escaped by a backslash.
+     */
+    TSV,
+    /**
+     * {@code {"word":"...","count":N}}, one JSON object per line.
+     */
+    JSONL,
+    /**
+     * Length-prefixed words and varint counts.
+     */
+    BINARY;
+
+    /**
+     * Finds a format by its name, ignoring case.
+     *
+     * @param name the name of the format, such as {@code tsv}.
+     * @return the format.
+     * @throws IllegalArgumentException If no format has the name.
+     */
+    public static OutputFormat of(String name) {
+        if (name == null)
+            throw new IllegalArgumentException("Name cannot be null");
+
+        return valueOf(name.toUpperCase(Locale.ROOT));
+    }
+}
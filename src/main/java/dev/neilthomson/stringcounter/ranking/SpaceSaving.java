@@ -0,0 +1,133 @@
+package dev.neilthomson.stringcounter.ranking;
+
+import dev.neilthomson.stringcounter.tables.ByteWordTable;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks the most frequent words of a stream in a fixed number of counters using the Space-Saving algorithm.
+ * <p>
+ * Every word that is already monitored has its counter incremented. When an unmonitored word arrives and every
+ * counter is in use, the counter with the smallest count is taken over by the new word, which inherits that count
+ * plus one. The inherited amount is remembered as the error of the counter.
+ * <p>
+ * With {@code m} counters and {@code N} words offered in total:
+ * <ul>
+ *     <li>the estimated count of a monitored word is never lower than its true count, and exceeds it by at most
+ *     its recorded error, which is itself at most {@code N / m};</li>
+ *     <li>every word whose true count is greater than {@code N / m} is guaranteed to be monitored.</li>
+ * </ul>
+ * Words are offered as slices of UTF-8 bytes and counted in a {@link WordHeap}, so offering a word only allocates
+ * when a longer word than any seen before takes over a counter.
+ * <p>
+ * This class is not thread-safe.
+ */
+public final class SpaceSaving {
+
+    private final WordHeap counters;
+    private final long[] errors;
+    private long total;
+
+    /**
+     * Constructs a SpaceSaving summary with the given number of counters.
+     *
+     * @param capacity the number of counters, which bounds the error of every estimate to {@code N / capacity}.
+     */
+    public SpaceSaving(int capacity) {
+        this.counters = new WordHeap(capacity);
+        this.errors = new long[capacity];
+    }
+
+    /**
+     * Offers a single occurrence of a word.
+     *
+     * @param bytes  the array holding the word.
+     * @param offset the index of the first byte of the word.
+     * @param length the number of bytes in the word.
+     */
+    public void add(byte[] bytes, int offset, int length) {
+        total++;
+        int hash = ByteWordTable.hash(bytes, offset, length);
+        int counter = counters.find(hash, bytes, offset, length);
+        if (counter >= 0) {
+            counters.increase(counter, counters.count(counter) + 1);
+        } else if (!counters.isFull()) {
+            counter = counters.insert(hash, bytes, offset, length, 1L);
+            errors[counter] = 0L;
+        } else {
+            long minimum = counters.count(counters.minimum());
+            counter = counters.replaceMinimum(hash, bytes, offset, length, minimum + 1);
+            errors[counter] = minimum;
+        }
+    }
+
+    /**
+     * Returns the total number of words offered so far.
+     *
+     * @return the number of words offered.
+     */
+    public long totalCount() {
+        return total;
+    }
+
+    /**
+     * Returns the number of counters.
+     *
+     * @return the capacity of the summary.
+     */
+    public int capacity() {
+        return counters.capacity();
+    }
+
+    /**
+     * Returns the largest amount by which any estimated count can exceed the true count, {@code N / m} rounded down.
+     *
+     * @return the error bound of every estimate.
+     */
+    public long errorBound() {
+        return total / counters.capacity();
+    }
+
+    /**
+     * Returns the largest error recorded by a counter in use.
+     *
+     * @return the maximum error of the current estimates, which is never larger than {@link #errorBound()}.
+     */
+    public long maximumError() {
+        long maximum = 0;
+        for (int i = 0; i < counters.size(); i++) {
+            maximum = Math.max(maximum, errors[i]);
+        }
+        return maximum;
+    }
+
+    /**
+     * Creates a word-count entry for every monitored word, holding its estimated count.
+     *
+     * @return an unsorted list with one entry for every counter in use.
+     */
+    public List<Map.Entry<String, Long>> entries() {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(counters.size());
+        for (int i = 0; i < counters.size(); i++) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(counters.word(i), counters.count(i)));
+        }
+        return entries;
+    }
+
+    /**
+     * Creates a word-count entry for every monitored word whose count is guaranteed to be at least its estimated
+     * count minus its error, holding that guaranteed count.
+     *
+     * @return an unsorted list with one entry for every counter in use.
+     */
+    public List<Map.Entry<String, Long>> guaranteedEntries() {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(counters.size());
+        for (int i = 0; i < counters.size(); i++) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(counters.word(i), counters.count(i) - errors[i]));
+        }
+        return entries;
+    }
+}
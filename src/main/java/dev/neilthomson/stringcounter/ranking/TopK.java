@@ -0,0 +1,76 @@
+package dev.neilthomson.stringcounter.ranking;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Selects the first entries of a collection in comparator order without sorting the whole collection.
+ * <p>
+ * A bounded heap holding the best {@code k} entries seen so far is kept, with the worst of them at its head, so
+ * selecting from {@code n} entries takes {@code O(n log k)} time and {@code O(k)} memory instead of the
+ * {@code O(n log n)} time of a full sort.
+ */
+public final class TopK {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private TopK() {
+    }
+
+    /**
+     * Returns the first {@code k} entries in comparator order.
+     *
+     * @param entries    the entries to select from.
+     * @param comparator the order of the entries, the first entries in this order are selected.
+     * @param k          the maximum number of entries to select.
+     * @return a list of at most {@code k} entries sorted by the comparator.
+     */
+    public static List<Map.Entry<String, Long>> select(Iterable<? extends Map.Entry<String, Long>> entries,
+                                                       Comparator<Map.Entry<String, Long>> comparator, int k) {
+        if (entries == null)
+            throw new IllegalArgumentException("Entries cannot be null");
+
+        if (comparator == null)
+            throw new IllegalArgumentException("Comparator cannot be null");
+
+        if (k < 0)
+            throw new IllegalArgumentException("K cannot be negative");
+
+        if (k == 0)
+            return new ArrayList<>();
+
+        PriorityQueue<Map.Entry<String, Long>> heap = new PriorityQueue<>(Math.min(k, INITIAL_CAPACITY), comparator.reversed());
+        for (Map.Entry<String, Long> entry : entries) {
+            if (heap.size() < k) {
+                heap.add(entry);
+            } else if (comparator.compare(entry, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(entry);
+            }
+        }
+
+        List<Map.Entry<String, Long>> selected = new ArrayList<>(heap);
+        selected.sort(comparator);
+        return selected;
+    }
+
+    /**
+     * Returns the first {@code k} entries of a list that is already sorted.
+     *
+     * @param sorted the sorted entries.
+     * @param k      the maximum number of entries to return.
+     * @return a list of at most {@code k} entries.
+     */
+    public static List<Map.Entry<String, Long>> truncate(List<Map.Entry<String, Long>> sorted, int k) {
+        if (k < 0)
+            throw new IllegalArgumentException("K cannot be negative");
+
+        if (sorted.size() <= k)
+            return sorted;
+
+        return new ArrayList<>(sorted.subList(0, k));
+    }
+}
@@ -0,0 +1,466 @@
+package dev.neilthomson.stringcounter.ranking;
+
+import dev.neilthomson.stringcounter.comparators.CountAndAlphaComparator;
+import dev.neilthomson.stringcounter.tables.ByteWordTable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A list of word counts held in an array of words and an array of primitive counts, instead of one entry object and
+ * one boxed count for every word.
+ * <p>
+ * An entry is only created when it is read with {@link #get(int)} or an iterator, and {@link #word(int)} and
+ * {@link #count(int)} read a word and its count without creating one. Entries can be replaced with
+ * {@link #set(int, Map.Entry)}, so the list can be sorted again, but its size is fixed.
+ * <p>
+ * {@link #sorted(ByteWordTable[], Comparator, ForkJoinPool)} builds a list from the partitions of a
+ * {@link dev.neilthomson.stringcounter.tables.PartitionedMerge} and sorts it on a pool. When the comparator is a
+ * {@link CountAndAlphaComparator} the arrays are sorted with a parallel merge sort that compares the counts as
+ * primitives, and the words of equal counts by a key that packs their first four characters, folded the way
+ * {@link String#compareToIgnoreCase(String)} folds them. The words themselves are only compared when their keys are
+ * equal. Any other comparator is applied to boxed entries with {@link Arrays#parallelSort(Object[], Comparator)}.
+ * <p>
+ * {@link #forEachSorted(ByteWordTable[], Comparator, ForkJoinPool, EntryConsumer)} passes the sorted words to a
+ * consumer instead of building a list, starting before the sort has finished. The words are first split into bands of
+ * counts, which follow each other in the sorted order, and every band is sorted by a task of its own. The bands are
+ * passed on in order as soon as they are sorted, so the few words with the highest counts are written out while the
+ * many words with the lowest counts are still being sorted.
+ */
+public final class WordCountList extends AbstractList<Map.Entry<String, Long>> implements RandomAccess {
+
+    private static final int SEQUENTIAL_THRESHOLD = 8192;
+    private static final int INSERTION_THRESHOLD = 16;
+    private static final int KEY_CHARACTERS = 4;
+
+    /**
+     * The key of a word that starts with a surrogate, which {@link String#compareToIgnoreCase(String)} may fold as
+     * part of a code point, so it is always compared by the word itself.
+     */
+    private static final long UNKNOWN_KEY = -1L;
+
+    private static final int BANDS_PER_THREAD = 4;
+    private static final int MINIMUM_BANDS = 16;
+    private static final int SAMPLE_SIZE = 4096;
+
+    private final String[] words;
+    private final long[] counts;
+
+    private WordCountList(String[] words, long[] counts) {
+        this.words = words;
+        this.counts = counts;
+    }
+
+    /**
+     * Creates an unsorted list of the words in the given tables, decoding the words of every table in parallel.
+     *
+     * @param tables the tables, which must not hold the same word twice, such as the partitions of a merge.
+     * @param pool   the pool the words are decoded on.
+     * @return the words and counts of every table, table after table.
+     */
+    public static WordCountList of(ByteWordTable[] tables, ForkJoinPool pool) {
+        return decode(tables, pool, null);
+    }
+
+    /**
+     * Creates a list of the words in the given tables sorted by a comparator, decoding and sorting in parallel.
+     *
+     * @param tables     the tables, which must not hold the same word twice, such as the partitions of a merge.
+     * @param comparator the order of the list.
+     * @param pool       the pool the words are decoded and sorted on.
+     * @return the words and counts of every table, sorted by the comparator.
+     */
+    public static WordCountList sorted(ByteWordTable[] tables, Comparator<Map.Entry<String, Long>> comparator, ForkJoinPool pool) {
+        if (comparator == null)
+            throw new IllegalArgumentException("Comparator cannot be null");
+
+        if (!(comparator instanceof CountAndAlphaComparator)) {
+            WordCountList list = of(tables, pool);
+            Map.Entry<String, Long>[] entries = list.toArray(newEntryArray(list.size()));
+            Arrays.parallelSort(entries, comparator);
+            for (int i = 0; i < entries.length; i++) {
+                list.words[i] = entries[i].getKey();
+                list.counts[i] = entries[i].getValue();
+            }
+            return list;
+        }
+
+        int size = 0;
+        for (ByteWordTable table : tables) {
+            size = Math.addExact(size, table.size());
+        }
+        long[] keys = new long[size];
+        WordCountList list = decode(tables, pool, keys);
+        pool.invoke(new SortTask(list.words, list.counts, keys, new String[size], new long[size], new long[size],
+                ((CountAndAlphaComparator) comparator).isAscending(), 0, size));
+        return list;
+    }
+
+    /**
+     * Creates an array of entries, which cannot be created with its type arguments.
+     */
+    @SuppressWarnings("unchecked")
+    private static Map.Entry<String, Long>[] newEntryArray(int size) {
+        return (Map.Entry<String, Long>[]) new Map.Entry<?, ?>[size];
+    }
+
+    /**
+     * Sorts the words in the given tables by a comparator and passes them to a consumer in order, starting while the
+     * words with lower ranks are still being sorted.
+     *
+     * @param tables     the tables, which must not hold the same word twice, such as the partitions of a merge.
+     * @param comparator the order the words are passed on in.
+     * @param pool       the pool the words are decoded and sorted on, the consumer is called on the calling thread.
+     * @param consumer   the consumer of the sorted words.
+     * @throws IOException If the consumer cannot accept a word, the remaining words are then left unsorted.
+     */
+    public static void forEachSorted(ByteWordTable[] tables, Comparator<Map.Entry<String, Long>> comparator, ForkJoinPool pool,
+                                     EntryConsumer consumer) throws IOException {
+        if (comparator == null)
+            throw new IllegalArgumentException("Comparator cannot be null");
+
+        if (consumer == null)
+            throw new IllegalArgumentException("Consumer cannot be null");
+
+        if (!(comparator instanceof CountAndAlphaComparator)) {
+            WordCountList list = sorted(tables, comparator, pool);
+            for (int i = 0; i < list.size(); i++) {
+                consumer.accept(list.words[i], list.counts[i]);
+            }
+            return;
+        }
+
+        int size = 0;
+        for (ByteWordTable table : tables) {
+            size = Math.addExact(size, table.size());
+        }
+        long[] keys = new long[size];
+        WordCountList list = decode(tables, pool, keys);
+        boolean ascending = ((CountAndAlphaComparator) comparator).isAscending();
+
+        long[] splits = splits(list.counts, Math.max(MINIMUM_BANDS, pool.getParallelism() * BANDS_PER_THREAD));
+        int[] starts = new int[splits.length + 2];
+        for (long count : list.counts) {
+            starts[band(splits, count, ascending) + 1]++;
+        }
+        for (int band = 0; band <= splits.length; band++) {
+            starts[band + 1] += starts[band];
+        }
+
+        String[] words = new String[size];
+        long[] counts = new long[size];
+        long[] bandKeys = new long[size];
+        int[] next = Arrays.copyOf(starts, splits.length + 1);
+        for (int i = 0; i < size; i++) {
+            int target = next[band(splits, list.counts[i], ascending)]++;
+            words[target] = list.words[i];
+            counts[target] = list.counts[i];
+            bandKeys[target] = keys[i];
+        }
+
+        ForkJoinTask<?>[] bands = new ForkJoinTask<?>[splits.length + 1];
+        for (int band = 0; band < bands.length; band++) {
+            bands[band] = pool.submit(new SortTask(words, counts, bandKeys, list.words, list.counts, keys, ascending,
+                    starts[band], starts[band + 1]));
+        }
+        try {
+            for (int band = 0; band < bands.length; band++) {
+                bands[band].join();
+                for (int i = starts[band]; i < starts[band + 1]; i++) {
+                    consumer.accept(words[i], counts[i]);
+                }
+            }
+        } finally {
+            for (ForkJoinTask<?> band : bands) {
+                band.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Picks counts that split the given counts into bands of roughly equal size from a sample of them. A band can
+     * still be much larger than the others when many words have the same count.
+     *
+     * @return the distinct counts that start a new band, in ascending order.
+     */
+    private static long[] splits(long[] counts, int bands) {
+        if (counts.length == 0)
+            return new long[0];
+
+        long[] sample = new long[Math.min(counts.length, SAMPLE_SIZE)];
+        for (int i = 0; i < sample.length; i++) {
+            sample[i] = counts[(int) ((long) i * counts.length / sample.length)];
+        }
+        Arrays.sort(sample);
+
+        long[] splits = new long[bands - 1];
+        int distinct = 0;
+        for (int band = 1; band < bands; band++) {
+            long split = sample[band * sample.length / bands];
+            if (split > sample[0] && (distinct == 0 || split > splits[distinct - 1]))
+                splits[distinct++] = split;
+        }
+        return Arrays.copyOf(splits, distinct);
+    }
+
+    /**
+     * Returns the band of a count, numbered in the order the bands are passed on.
+     */
+    private static int band(long[] splits, long count, boolean ascending) {
+        int index = Arrays.binarySearch(splits, count);
+        int band = index >= 0 ? index + 1 : -index - 1; // the number of splits at or below the count
+        return ascending ? band : splits.length - band;
+    }
+
+    /**
+     * Returns the word at a position of the list without creating an entry.
+     *
+     * @param index the position in the list.
+     * @return the word.
+     */
+    public String word(int index) {
+        return words[index];
+    }
+
+    /**
+     * Returns the count at a position of the list without creating an entry.
+     *
+     * @param index the position in the list.
+     * @return the count of the word at that position.
+     */
+    public long count(int index) {
+        return counts[index];
+    }
+
+    @Override
+    public Map.Entry<String, Long> get(int index) {
+        return new AbstractMap.SimpleImmutableEntry<>(words[index], counts[index]);
+    }
+
+    @Override
+    public Map.Entry<String, Long> set(int index, Map.Entry<String, Long> entry) {
+        Map.Entry<String, Long> previous = get(index);
+        words[index] = entry.getKey();
+        counts[index] = entry.getValue();
+        return previous;
+    }
+
+    @Override
+    public int size() {
+        return words.length;
+    }
+
+    /**
+     * Decodes the words of the tables into a new list, and their sort keys into the given array unless it is null.
+     */
+    private static WordCountList decode(ByteWordTable[] tables, ForkJoinPool pool, long[] keys) {
+        if (tables == null)
+            throw new IllegalArgumentException("Tables cannot be null");
+
+        if (pool == null)
+            throw new IllegalArgumentException("Pool cannot be null");
+
+        int[] offsets = new int[tables.length + 1];
+        for (int i = 0; i < tables.length; i++) {
+            offsets[i + 1] = Math.addExact(offsets[i], tables[i].size());
+        }
+        WordCountList list = new WordCountList(new String[offsets[tables.length]], new long[offsets[tables.length]]);
+        if (tables.length > 0)
+            pool.invoke(new DecodeTask(list, keys, tables, offsets, 0, tables.length));
+        return list;
+    }
+
+    /**
+     * Packs the first characters of a word into a key whose unsigned order is the order of
+     * {@link String#compareToIgnoreCase(String)}, with words shorter than the key padded with zeros. Words with
+     * different keys are ordered by their keys, words with the same key must still be compared.
+     */
+    static long key(String word) {
+        long key = 0;
+        for (int i = 0; i < KEY_CHARACTERS; i++) {
+            char c = i < word.length() ? word.charAt(i) : 0;
+            if (Character.isSurrogate(c))
+                return UNKNOWN_KEY;
+
+            key = key << Character.SIZE | Character.toLowerCase(Character.toUpperCase(c));
+        }
+        return key;
+    }
+
+    /**
+     * Receives the words of a sorted list together with their counts.
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+
+        /**
+         * Accepts a single word and its count.
+         *
+         * @param word  the word.
+         * @param count the count of the word.
+         * @throws IOException If the word cannot be written out.
+         */
+        void accept(String word, long count) throws IOException;
+    }
+
+    /**
+     * Decodes the words of a run of tables into their part of the arrays, splitting the run in half until a single
+     * table remains.
+     */
+    private static final class DecodeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient WordCountList list;
+        private final long[] keys;
+        private final transient ByteWordTable[] tables;
+        private final int[] offsets;
+        private final int from;
+        private final int to;
+
+        DecodeTask(WordCountList list, long[] keys, ByteWordTable[] tables, int[] offsets, int from, int to) {
+            this.list = list;
+            this.keys = keys;
+            this.tables = tables;
+            this.offsets = offsets;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                int[] next = {offsets[from]};
+                tables[from].forEach((bytes, offset, length, count) -> {
+                    String word = new String(bytes, offset, length, StandardCharsets.UTF_8);
+                    list.words[next[0]] = word;
+                    if (keys != null)
+                        keys[next[0]] = key(word);
+                    list.counts[next[0]++] = count;
+                });
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new DecodeTask(list, keys, tables, offsets, from, middle),
+                    new DecodeTask(list, keys, tables, offsets, middle, to));
+        }
+    }
+
+    /**
+     * Sorts a range of the words, counts and keys by count, then by word ignoring case, like
+     * {@link CountAndAlphaComparator}. The halves of large ranges are sorted in parallel and merged through the
+     * scratch arrays, and small ranges are sorted sequentially with the same stable merge sort.
+     */
+    private static final class SortTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient String[] words;
+        private final long[] counts;
+        private final long[] keys;
+        private final transient String[] scratchWords;
+        private final long[] scratchCounts;
+        private final long[] scratchKeys;
+        private final boolean ascending;
+        private final int from;
+        private final int to;
+
+        SortTask(String[] words, long[] counts, long[] keys, String[] scratchWords, long[] scratchCounts, long[] scratchKeys,
+                 boolean ascending, int from, int to) {
+            this.words = words;
+            this.counts = counts;
+            this.keys = keys;
+            this.scratchWords = scratchWords;
+            this.scratchCounts = scratchCounts;
+            this.scratchKeys = scratchKeys;
+            this.ascending = ascending;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                sort(from, to);
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new SortTask(words, counts, keys, scratchWords, scratchCounts, scratchKeys, ascending, from, middle),
+                    new SortTask(words, counts, keys, scratchWords, scratchCounts, scratchKeys, ascending, middle, to));
+            merge(from, middle, to);
+        }
+
+        private void sort(int start, int end) {
+            if (end - start < INSERTION_THRESHOLD) {
+                for (int i = start + 1; i < end; i++) {
+                    String word = words[i];
+                    long count = counts[i];
+                    long key = keys[i];
+                    int j = i;
+                    while (j > start && compare(counts[j - 1], keys[j - 1], words[j - 1], count, key, word) > 0) {
+                        words[j] = words[j - 1];
+                        counts[j] = counts[j - 1];
+                        keys[j] = keys[j - 1];
+                        j--;
+                    }
+                    words[j] = word;
+                    counts[j] = count;
+                    keys[j] = key;
+                }
+                return;
+            }
+
+            int middle = (start + end) >>> 1;
+            sort(start, middle);
+            sort(middle, end);
+            merge(start, middle, end);
+        }
+
+        /**
+         * Merges two sorted neighbouring ranges. Only the left range needs to be copied back once the right range runs
+         * out, as the rest of the right range is already in place.
+         */
+        private void merge(int start, int middle, int end) {
+            if (compare(counts[middle - 1], keys[middle - 1], words[middle - 1], counts[middle], keys[middle], words[middle]) <= 0)
+                return;
+
+            System.arraycopy(words, start, scratchWords, start, end - start);
+            System.arraycopy(counts, start, scratchCounts, start, end - start);
+            System.arraycopy(keys, start, scratchKeys, start, end - start);
+            int left = start;
+            int right = middle;
+            int target = start;
+            while (left < middle && right < end) {
+                int next = compare(scratchCounts[left], scratchKeys[left], scratchWords[left],
+                        scratchCounts[right], scratchKeys[right], scratchWords[right]) <= 0 ? left++ : right++;
+                words[target] = scratchWords[next];
+                counts[target] = scratchCounts[next];
+                keys[target++] = scratchKeys[next];
+            }
+            System.arraycopy(scratchWords, left, words, target, middle - left);
+            System.arraycopy(scratchCounts, left, counts, target, middle - left);
+            System.arraycopy(scratchKeys, left, keys, target, middle - left);
+        }
+
+        private int compare(long firstCount, long firstKey, String firstWord, long secondCount, long secondKey, String secondWord) {
+            if (firstCount != secondCount)
+                return (firstCount < secondCount) == ascending ? -1 : 1;
+
+            if (firstKey != secondKey && firstKey != UNKNOWN_KEY && secondKey != UNKNOWN_KEY)
+                return Long.compareUnsigned(firstKey, secondKey);
+
+            return firstWord.compareToIgnoreCase(secondWord);
+        }
+    }
+}
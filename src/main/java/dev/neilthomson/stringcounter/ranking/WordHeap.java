@@ -0,0 +1,290 @@
+package dev.neilthomson.stringcounter.ranking;
+
+import dev.neilthomson.stringcounter.tables.WordTable;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A fixed number of word counters ordered as a min-heap on their counts, with an index to find the counter of a word.
+ * <p>
+ * Words are given as slices of UTF-8 bytes and are copied into the counter that holds them. Every counter is
+ * identified by a number from {@code 0} to {@code size() - 1} which stays the same for as long as the counter is in
+ * use, so callers can keep extra information about a counter in their own arrays. The counters, the index and the heap
+ * are all held in preallocated arrays, so only taking over a counter for a longer word than it has held before
+ * allocates.
+ * <p>
+ * This class is not thread-safe.
+ */
+public final class WordHeap {
+
+    private final int capacity;
+
+    private final byte[][] words;
+    private final int[] lengths;
+    private final int[] hashes;
+    private final long[] counts;
+    private int size;
+
+    private final int[] slots; // counter + 1 for every slot of the index, 0 for empty slots
+    private final int mask;
+
+    private final int[] heap;
+    private final int[] heapPositions;
+
+    /**
+     * Constructs an empty WordHeap with the given number of counters.
+     *
+     * @param capacity the number of counters.
+     */
+    public WordHeap(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be positive");
+
+        this.capacity = capacity;
+        this.words = new byte[capacity][];
+        this.lengths = new int[capacity];
+        this.hashes = new int[capacity];
+        this.counts = new long[capacity];
+
+        int slotCount = Integer.highestOneBit(Math.max(capacity, 4) * 2 - 1) << 1;
+        this.slots = new int[slotCount];
+        this.mask = slotCount - 1;
+
+        this.heap = new int[capacity];
+        this.heapPositions = new int[capacity];
+    }
+
+    /**
+     * Returns the number of counters.
+     *
+     * @return the capacity of the heap.
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of counters in use.
+     *
+     * @return the number of words held.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true when every counter is in use, after which new words can only take over the minimum counter.
+     *
+     * @return whether the heap is full.
+     */
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    /**
+     * Finds the counter holding a word.
+     *
+     * @param hash   the hash of the word, the same hash must always be given for the same word.
+     * @param bytes  the array holding the word.
+     * @param offset the index of the first byte of the word.
+     * @param length the number of bytes in the word.
+     * @return the counter holding the word, or -1 if it is not held.
+     */
+    public int find(int hash, byte[] bytes, int offset, int length) {
+        return slots[slot(hash, bytes, offset, length)] - 1;
+    }
+
+    /**
+     * Returns the counter with the smallest count.
+     *
+     * @return the minimum counter, or -1 if no counter is in use.
+     */
+    public int minimum() {
+        return size == 0 ? -1 : heap[0];
+    }
+
+    /**
+     * Returns the count held by a counter.
+     *
+     * @param counter a counter in use.
+     * @return the count of the counter.
+     */
+    public long count(int counter) {
+        return counts[counter];
+    }
+
+    /**
+     * Creates a String holding the word of a counter.
+     *
+     * @param counter a counter in use.
+     * @return the word of the counter.
+     */
+    public String word(int counter) {
+        return new String(words[counter], 0, lengths[counter], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Raises the count of a counter.
+     *
+     * @param counter a counter in use.
+     * @param count   the new count, which must not be lower than the current count.
+     */
+    public void increase(int counter, long count) {
+        counts[counter] = count;
+        siftDown(heapPositions[counter]);
+    }
+
+    /**
+     * Places a word that is not held yet into a free counter.
+     *
+     * @param hash   the hash of the word.
+     * @param bytes  the array holding the word.
+     * @param offset the index of the first byte of the word.
+     * @param length the number of bytes in the word.
+     * @param count  the initial count of the word.
+     * @return the counter now holding the word.
+     * @throws IllegalStateException if every counter is in use.
+     */
+    public int insert(int hash, byte[] bytes, int offset, int length, long count) {
+        if (isFull())
+            throw new IllegalStateException("Every counter is in use");
+
+        int counter = size++;
+        assign(counter, hash, bytes, offset, length, count);
+        slots[slot(hash, bytes, offset, length)] = counter + 1;
+        heap[counter] = counter;
+        heapPositions[counter] = counter;
+        siftUp(counter);
+        return counter;
+    }
+
+    /**
+     * Hands the minimum counter over to a word that is not held yet.
+     *
+     * @param hash   the hash of the word.
+     * @param bytes  the array holding the word.
+     * @param offset the index of the first byte of the word.
+     * @param length the number of bytes in the word.
+     * @param count  the count of the word, which must not be lower than the current minimum count.
+     * @return the counter now holding the word.
+     * @throws IllegalStateException if no counter is in use.
+     */
+    public int replaceMinimum(int hash, byte[] bytes, int offset, int length, long count) {
+        if (size == 0)
+            throw new IllegalStateException("No counter is in use");
+
+        int counter = heap[0];
+        removeFromIndex(counter);
+        assign(counter, hash, bytes, offset, length, count);
+        slots[slot(hash, bytes, offset, length)] = counter + 1;
+        siftDown(0);
+        return counter;
+    }
+
+    /**
+     * Passes the word and count of every counter in use to the consumer, in counter order.
+     *
+     * @param consumer receives every word and its count, the bytes must not be modified or kept.
+     */
+    public void forEach(WordTable.WordCountConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            consumer.accept(words[i], 0, lengths[i], counts[i]);
+        }
+    }
+
+    /**
+     * Finds the slot of the index holding the word, or the empty slot where it would be inserted.
+     */
+    private int slot(int hash, byte[] bytes, int offset, int length) {
+        int slot = hash & mask;
+        int entry;
+        while ((entry = slots[slot]) != 0) {
+            int counter = entry - 1;
+            if (hashes[counter] == hash && equals(counter, bytes, offset, length))
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private boolean equals(int counter, byte[] bytes, int offset, int length) {
+        if (lengths[counter] != length)
+            return false;
+
+        byte[] word = words[counter];
+        for (int i = 0; i < length; i++) {
+            if (word[i] != bytes[offset + i])
+                return false;
+        }
+        return true;
+    }
+
+    private void assign(int counter, int hash, byte[] bytes, int offset, int length, long count) {
+        byte[] word = words[counter];
+        if (word == null || word.length < length) {
+            word = new byte[Math.max(length, 16)];
+            words[counter] = word;
+        }
+        System.arraycopy(bytes, offset, word, 0, length);
+        lengths[counter] = length;
+        hashes[counter] = hash;
+        counts[counter] = count;
+    }
+
+    /**
+     * Removes a counter from the index, shifting back any entries after it in the same probe sequence so that
+     * linear probing never has to skip over a deleted slot.
+     */
+    private void removeFromIndex(int counter) {
+        int hole = hashes[counter] & mask;
+        while (slots[hole] != counter + 1) {
+            hole = (hole + 1) & mask;
+        }
+
+        int next = (hole + 1) & mask;
+        while (slots[next] != 0) {
+            int ideal = hashes[slots[next] - 1] & mask;
+            if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+                slots[hole] = slots[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        slots[hole] = 0;
+    }
+
+    private void siftUp(int position) {
+        int current = position;
+        int counter = heap[current];
+        while (current > 0) {
+            int parent = (current - 1) >>> 1;
+            if (counts[heap[parent]] <= counts[counter])
+                break;
+            move(heap[parent], current);
+            current = parent;
+        }
+        move(counter, current);
+    }
+
+    private void siftDown(int position) {
+        int current = position;
+        int counter = heap[current];
+        while (true) {
+            int child = current * 2 + 1;
+            if (child >= size)
+                break;
+            if (child + 1 < size && counts[heap[child + 1]] < counts[heap[child]])
+                child++;
+            if (counts[heap[child]] >= counts[counter])
+                break;
+            move(heap[child], current);
+            current = child;
+        }
+        move(counter, current);
+    }
+
+    private void move(int counter, int position) {
+        heap[position] = counter;
+        heapPositions[counter] = position;
+    }
+}
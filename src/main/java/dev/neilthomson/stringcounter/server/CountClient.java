@@ -0,0 +1,177 @@
+package dev.neilthomson.stringcounter.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Sends requests to a {@link CountServer} and returns its responses as text, or copies them as the UTF-8 bytes the
+ * server sent to a stream, which keeps words intact whatever the default charset of the client is.
+ * <p>
+ * File paths are made absolute before they are sent, as the server resolves them from its own working directory.
+ */
+public final class CountClient {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String server;
+
+    /**
+     * Constructs a client of the server at the given host and port.
+     *
+     * @param hostAndPort the address of the server, such as {@code localhost:8080}.
+     */
+    public CountClient(String hostAndPort) {
+        if (hostAndPort == null)
+            throw new IllegalArgumentException("Host and port cannot be null");
+
+        this.server = "http://" + hostAndPort;
+    }
+
+    /**
+     * Asks the server to count files, directories and globs on its file system.
+     *
+     * @param inputs the files, directories and globs to count together.
+     * @param limit  the maximum number of words to return, or -1 for every word.
+     * @return the {@code word: count} lines of the merged counts.
+     * @throws IOException If the server cannot be reached or cannot count the files.
+     */
+    public String count(List<String> inputs, int limit) throws IOException {
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        count(inputs, limit, response);
+        return new String(response.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Asks the server to count files, directories and globs on its file system and copies the response to a stream.
+     *
+     * @param inputs       the files, directories and globs to count together.
+     * @param limit        the maximum number of words to return, or -1 for every word.
+     * @param outputStream the stream the UTF-8 encoded {@code word: count} lines are copied to, it is not closed.
+     * @throws IOException If the server cannot be reached or cannot count the files.
+     */
+    public void count(List<String> inputs, int limit, OutputStream outputStream) throws IOException {
+        StringBuilder query = new StringBuilder();
+        for (String input : inputs) {
+            query.append(query.length() == 0 ? "?" : "&").append("path=").append(encode(absolute(input)));
+        }
+        send(open("/count" + query + top(limit, '&')), null, outputStream);
+    }
+
+    /**
+     * Sends text to the server to be counted.
+     *
+     * @param inputStream the text, which may be compressed, it is closed once it has been sent.
+     * @param limit       the maximum number of words to return, or -1 for every word.
+     * @return the {@code word: count} lines of the counts.
+     * @throws IOException If the server cannot be reached or an error occurs while reading the text.
+     */
+    public String count(InputStream inputStream, int limit) throws IOException {
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        count(inputStream, limit, response);
+        return new String(response.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Sends text to the server to be counted and copies the response to a stream.
+     *
+     * @param inputStream  the text, which may be compressed, it is closed once it has been sent.
+     * @param limit        the maximum number of words to return, or -1 for every word.
+     * @param outputStream the stream the UTF-8 encoded {@code word: count} lines are copied to, it is not closed.
+     * @throws IOException If the server cannot be reached or an error occurs while reading the text.
+     */
+    public void count(InputStream inputStream, int limit, OutputStream outputStream) throws IOException {
+        HttpURLConnection connection = open("/count" + top(limit, '?'));
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setChunkedStreamingMode(BUFFER_SIZE);
+        send(connection, inputStream, outputStream);
+    }
+
+    /**
+     * Returns the request latencies and pool state of the server.
+     *
+     * @return the text of the stats endpoint.
+     * @throws IOException If the server cannot be reached.
+     */
+    public String stats() throws IOException {
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        stats(response);
+        return new String(response.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Asks the server for the statistics of the runs it has counted and copies them to a stream.
+     *
+     * @param outputStream the stream the statistics are copied to, it is not closed.
+     * @throws IOException If the server cannot be reached.
+     */
+    public void stats(OutputStream outputStream) throws IOException {
+        send(open("/stats"), null, outputStream);
+    }
+
+    private HttpURLConnection open(String path) throws IOException {
+        return (HttpURLConnection) new URL(server + path).openConnection();
+    }
+
+    /**
+     * Sends the body, if any, and copies the whole response to a stream, which lets the connection be reused by the
+     * next request. The body of an error is only read to be reported.
+     */
+    private static void send(HttpURLConnection connection, InputStream body, OutputStream outputStream) throws IOException {
+        if (body != null) {
+            try (InputStream in = body; OutputStream out = connection.getOutputStream()) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int numRead;
+                while ((numRead = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, numRead);
+                }
+            }
+        }
+
+        int status = connection.getResponseCode();
+        if (status != HttpURLConnection.HTTP_OK) {
+            ByteArrayOutputStream error = new ByteArrayOutputStream();
+            InputStream response = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            if (response != null)
+                copy(response, error);
+            String text = new String(error.toByteArray(), StandardCharsets.UTF_8);
+            throw new IOException("Server returned " + status + ": " + text.trim());
+        }
+
+        copy(connection.getInputStream(), outputStream);
+    }
+
+    private static void copy(InputStream inputStream, OutputStream outputStream) throws IOException {
+        try (InputStream in = inputStream) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int numRead;
+            while ((numRead = in.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, numRead);
+            }
+        }
+    }
+
+    private static String top(int limit, char separator) {
+        return limit < 0 ? "" : separator + "top=" + limit;
+    }
+
+    /**
+     * Resolves a path against the working directory of the client, without checking it, so that globs still work.
+     */
+    private static String absolute(String input) {
+        return new File(input).getAbsolutePath();
+    }
+
+    private static String encode(String value) throws UnsupportedEncodingException {
+        return URLEncoder.encode(value, "UTF-8");
+    }
+}
@@ -0,0 +1,241 @@
+package dev.neilthomson.stringcounter.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import dev.neilthomson.stringcounter.cache.CountCache;
+import dev.neilthomson.stringcounter.comparators.CountAndAlphaComparator;
+import dev.neilthomson.stringcounter.compression.CompressedInput;
+import dev.neilthomson.stringcounter.metrics.CountStats;
+import dev.neilthomson.stringcounter.ranking.TopK;
+import dev.neilthomson.stringcounter.services.BatchWordCounter;
+import dev.neilthomson.stringcounter.services.BufferedWordCounter;
+import dev.neilthomson.stringcounter.services.InputFiles;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts words for clients over HTTP, so that a resident JVM with warm JIT-compiled counting loops and a shared
+ * {@link CountCache} serves many small requests instead of every request starting a new JVM.
+ * <p>
+ * The server has two endpoints:
+ * <ul>
+ * <li>{@code /count} counts the files, directories and globs given as {@code path} query parameters for a GET, or the
+ * request body for a POST, which may be compressed like a file. An optional {@code top} parameter limits the result to
+ * the most frequent words. The counts are returned as {@code word: count} lines, like the command line prints them.</li>
+ * <li>{@code /stats} returns a latency histogram for each kind of request and the state of the worker pool, followed
+ * by the {@link CountStats} of the counters while they are enabled.</li>
+ * </ul>
+ * Requests are read and answered by a small pool of exchange threads, which hand every count to a fixed number of
+ * counting threads with a bounded queue. When the queue is full the request is answered with 503 Service Unavailable
+ * straight away, so a saturated server still accepts connections and answers {@code /stats}. The files of every
+ * request are counted by one {@link BatchWordCounter} on a single pool with a thread per processor, so concurrent
+ * requests share those threads instead of each starting a pool of its own.
+ * <p>
+ * The server reads any file the process can read, so it should only be bound to the loopback address.
+ */
+public final class CountServer implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int QUEUE_PER_THREAD = 16;
+    private static final int EXCHANGE_THREADS = 2;
+
+    private final HttpServer server;
+    private final ThreadPoolExecutor executor;
+    private final ExecutorService exchanges;
+    private final ForkJoinPool fileWorkers;
+    private final BatchWordCounter fileCounter;
+    private final LongAdder rejected = new LongAdder();
+    private final CountCache cache;
+    private final LatencyHistogram pathLatency = new LatencyHistogram();
+    private final LatencyHistogram bodyLatency = new LatencyHistogram();
+
+    /**
+     * Binds a server to an address and starts serving requests.
+     *
+     * @param address the address to listen on, a port of 0 picks a free port.
+     * @param threads the number of requests that are counted at the same time.
+     * @param cache   the cache of per-file counts shared by every request, or null to count every file.
+     * @throws IOException If the address cannot be bound.
+     */
+    public CountServer(InetSocketAddress address, int threads, CountCache cache) throws IOException {
+        if (address == null)
+            throw new IllegalArgumentException("Address cannot be null");
+
+        if (threads <= 0)
+            throw new IllegalArgumentException("Threads must be positive");
+
+        this.cache = cache;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * QUEUE_PER_THREAD), new ThreadPoolExecutor.AbortPolicy());
+        this.exchanges = Executors.newFixedThreadPool(EXCHANGE_THREADS);
+        this.fileWorkers = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        this.fileCounter = new BatchWordCounter(BUFFER_SIZE, fileWorkers);
+        this.server = HttpServer.create(address, 0);
+        server.createContext("/count", this::count);
+        server.createContext("/stats", this::stats);
+        server.setExecutor(exchanges);
+        server.start();
+    }
+
+    /**
+     * Returns the address the server listens on.
+     *
+     * @return the bound address, with the port that was picked if the port was 0.
+     */
+    public InetSocketAddress address() {
+        return server.getAddress();
+    }
+
+    /**
+     * Stops accepting requests and waits for the requests that are being counted to finish.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdown();
+        exchanges.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+            exchanges.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // only once no request is left that could still hand files to it
+            fileWorkers.shutdown();
+        }
+    }
+
+    private void count(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                try {
+                    count(exchange, start);
+                } catch (IOException e) {
+                    // the client has gone away, so there is nobody to report the error to
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            try {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                respond(exchange, 503, "Server busy, try again later\n");
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+
+    /**
+     * Counts a request on a counting thread and answers it.
+     */
+    private void count(HttpExchange exchange, long start) throws IOException {
+        try {
+            Map<String, List<String>> parameters = parameters(exchange.getRequestURI().getRawQuery());
+            int limit = -1;
+            if (parameters.containsKey("top")) {
+                limit = Integer.parseInt(parameters.get("top").get(0));
+                if (limit < 0)
+                    throw new NumberFormatException("Negative top: " + limit);
+            }
+            if ("GET".equals(exchange.getRequestMethod())) {
+                List<String> paths = parameters.get("path");
+                if (paths == null) {
+                    respond(exchange, 400, "Missing path parameter\n");
+                    return;
+                }
+                List<Map.Entry<String, Long>> counts = fileCounter.count(InputFiles.resolve(paths), new CountAndAlphaComparator(false), null, cache);
+                respond(exchange, 200, format(limit < 0 ? counts : TopK.truncate(counts, limit)));
+                pathLatency.record(System.nanoTime() - start);
+            } else if ("POST".equals(exchange.getRequestMethod())) {
+                InputStream body = CompressedInput.decompress(exchange.getRequestBody());
+                BufferedWordCounter counter = new BufferedWordCounter(BUFFER_SIZE, true);
+                respond(exchange, 200, format(limit < 0 ? counter.count(body, new CountAndAlphaComparator(false))
+                        : counter.countTop(body, new CountAndAlphaComparator(false), limit)));
+                bodyLatency.record(System.nanoTime() - start);
+            } else {
+                respond(exchange, 405, "Use GET with a path or POST with a body\n");
+            }
+        } catch (NumberFormatException e) {
+            respond(exchange, 400, "Invalid top parameter\n");
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, e.getMessage() + "\n");
+        } catch (NoSuchFileException e) {
+            respond(exchange, 404, (e.getReason() != null ? e.getReason() : "No such file") + ": " + e.getFile() + "\n");
+        } catch (IOException e) {
+            respond(exchange, 500, "Error reading input: " + e.getMessage() + "\n");
+        } catch (RuntimeException e) {
+            respond(exchange, 500, "Encountered an error: " + e + "\n");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void stats(HttpExchange exchange) throws IOException {
+        try {
+            respond(exchange, 200, "path: " + pathLatency + "\n"
+                    + "body: " + bodyLatency + "\n"
+                    + "pool: threads=" + executor.getMaximumPoolSize() + " active=" + executor.getActiveCount()
+                    + " queued=" + executor.getQueue().size() + " rejected=" + rejected.sum() + "\n"
+                    + (CountStats.enabled() ? CountStats.global().report() : ""));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    static String format(List<Map.Entry<String, Long>> counts) {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, Long> entry : counts) {
+            text.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static Map<String, List<String>> parameters(String query) throws UnsupportedEncodingException {
+        Map<String, List<String>> parameters = new HashMap<>();
+        if (query == null)
+            return parameters;
+
+        for (String pair : query.split("&")) {
+            if (pair.isEmpty())
+                continue;
+
+            int equals = pair.indexOf('=');
+            String name = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), "UTF-8");
+            String value = equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), "UTF-8");
+            parameters.computeIfAbsent(name, key -> new ArrayList<>()).add(value);
+        }
+        return parameters;
+    }
+}
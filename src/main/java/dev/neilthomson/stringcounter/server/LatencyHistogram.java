@@ -0,0 +1,112 @@
+package dev.neilthomson.stringcounter.server;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records request latencies in logarithmic buckets so that percentiles can be reported without keeping every sample.
+ * <p>
+ * Latencies are recorded in microseconds. Values below 16 microseconds have a bucket each, and every power of two
+ * above that is split into 8 buckets, so a reported percentile is at most 12.5% above the true value whatever its
+ * magnitude.
+ * Recording only increments atomic counters, so it never blocks and never allocates.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+    private static final int MAX_EXPONENT = 40; // about 12 days in microseconds
+    private static final int BUCKETS = LINEAR_LIMIT + (MAX_EXPONENT - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records one latency.
+     *
+     * @param nanos the latency in nanoseconds.
+     */
+    public void record(long nanos) {
+        long micros = Math.max(TimeUnit.NANOSECONDS.toMicros(nanos), 0);
+        buckets.incrementAndGet(bucket(micros));
+        count.incrementAndGet();
+        max.accumulateAndGet(micros, Math::max);
+    }
+
+    /**
+     * Returns the number of recorded latencies.
+     *
+     * @return the count of every call of {@link #record(long)}.
+     */
+    public long count() {
+        return count.get();
+    }
+
+    /**
+     * Returns the largest recorded latency.
+     *
+     * @return the exact maximum in microseconds, or 0 if nothing has been recorded.
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * Returns a percentile of the recorded latencies.
+     *
+     * @param percentile the percentile, between 0 and 100.
+     * @return the upper bound of the bucket holding the percentile in microseconds, never more than the maximum, or 0
+     *         if nothing has been recorded.
+     */
+    public long percentile(double percentile) {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("Percentile must be between 0 and 100");
+
+        long total = count.get();
+        long rank = Math.max((long) Math.ceil(total * percentile / 100), 1);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank)
+                return Math.min(upperBound(i), max.get());
+        }
+        return max.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("requests=%d p50=%s p90=%s p99=%s max=%s", count(),
+                format(percentile(50)), format(percentile(90)), format(percentile(99)), format(max()));
+    }
+
+    static int bucket(long micros) {
+        if (micros < LINEAR_LIMIT)
+            return (int) micros;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent >= MAX_EXPONENT)
+            return BUCKETS - 1;
+
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_LIMIT + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < LINEAR_LIMIT)
+            return bucket;
+
+        int exponent = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+        int subBucket = (bucket - LINEAR_LIMIT) % SUB_BUCKETS;
+        return (1L << exponent) + ((long) (subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    private static String format(long micros) {
+        if (micros < 1000)
+            return micros + "us";
+
+        return String.format("%.1fms", micros / 1000.0);
+    }
+}
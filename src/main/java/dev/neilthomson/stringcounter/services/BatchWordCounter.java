@@ -0,0 +1,500 @@
+package dev.neilthomson.stringcounter.services;
+
+import dev.neilthomson.stringcounter.cache.CountCache;
+import dev.neilthomson.stringcounter.compression.CompressedInput;
+import dev.neilthomson.stringcounter.compression.Compression;
+import dev.neilthomson.stringcounter.metrics.CountStats;
+import dev.neilthomson.stringcounter.ranking.WordCountList;
+import dev.neilthomson.stringcounter.tables.ByteWordTable;
+import dev.neilthomson.stringcounter.tables.PartitionedMerge;
+import dev.neilthomson.stringcounter.tokenizers.Utf8Tokenizer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+
+/**
+ * Counts many files in one run on a bounded pool of worker threads and merges them into a single global count.
+ * <p>
+ * The files are planned into units of work of roughly {@code splitSize} bytes: a file larger than that is split into
+ * ranges that end on a word boundary, while smaller files are batched together until the batch reaches that size. A
+ * compressed file cannot be split, so it is decompressed as a unit of its own. A worker only has one file open at a
+ * time, so the number of open file handles never exceeds the number of threads. The units run on a pool of their own
+ * for every call, or on an executor given to the constructor, which lets many calls share one bounded pool.
+ * <p>
+ * Every worker counts into a {@link ByteWordTable} of its own. Once all units are done the tables are merged by a
+ * {@link PartitionedMerge} and sorted into a {@link WordCountList}, both in parallel on the pool of the call, or on
+ * the common pool when the executor given to the constructor is not a ForkJoinPool.
+ * When per-file results are requested, each file is also counted into its own table, which is handed to the
+ * per-file action once every range of the file has been counted. The results are passed on in the order of the files,
+ * so the counts of a file that finishes early wait for those of the files before it.
+ * <p>
+ * With a {@link CountCache}, a file that has not changed since it was last counted is loaded from the cache instead
+ * of being read, and every other file is added to the cache once it has been counted.
+ * <p>
+ * While {@link CountStats} are enabled, every worker times its reads and tokenizing and its busy time, and the totals
+ * are recorded once the run is done.
+ */
+public class BatchWordCounter {
+
+    /**
+     * The version of the counting rules, which a {@link CountCache} must have been made with to be used.
+     */
+    public static final String VERSION = "batch/1 utf8-tokenizer/" + Utf8Tokenizer.VERSION;
+
+    private static final long DEFAULT_SPLIT_SIZE = 8L * 1024 * 1024;
+    private static final int MAX_FILES_PER_BATCH = 256;
+
+    private final int bufferSize;
+    private final int threads;
+    private final long splitSize;
+    private final ExecutorService executor;
+
+    /**
+     * Constructs a BatchWordCounter that uses a thread for every available processor.
+     *
+     * @param bufferSize the size of the buffer every worker reads files into.
+     */
+    public BatchWordCounter(int bufferSize) {
+        this(bufferSize, Runtime.getRuntime().availableProcessors(), DEFAULT_SPLIT_SIZE);
+    }
+
+    /**
+     * Constructs a BatchWordCounter with the specified buffer size, number of threads and unit size.
+     *
+     * @param bufferSize the size of the buffer every worker reads files into.
+     * @param threads    the number of worker threads, which is also the largest number of files open at once.
+     * @param splitSize  the number of bytes in a unit of work, larger files are split and smaller files are batched.
+     */
+    public BatchWordCounter(int bufferSize, int threads, long splitSize) {
+        if (bufferSize <= 0)
+            throw new IllegalArgumentException("Buffer size must be positive");
+
+        if (threads <= 0)
+            throw new IllegalArgumentException("Threads must be positive");
+
+        if (splitSize <= 0)
+            throw new IllegalArgumentException("Split size must be positive");
+
+        this.bufferSize = bufferSize;
+        this.threads = threads;
+        this.splitSize = splitSize;
+        this.executor = null;
+    }
+
+    /**
+     * Constructs a BatchWordCounter that counts on an executor shared with other counters, such as the requests of a
+     * server, instead of starting a pool for every call. The executor is not shut down by the counter. A ForkJoinPool
+     * also merges and sorts the counts, any other executor leaves that to the common pool.
+     *
+     * @param bufferSize the size of the buffer every worker reads files into.
+     * @param executor   the executor that runs the units of work, its threads bound the number of files open at once.
+     */
+    public BatchWordCounter(int bufferSize, ExecutorService executor) {
+        if (bufferSize <= 0)
+            throw new IllegalArgumentException("Buffer size must be positive");
+
+        if (executor == null)
+            throw new IllegalArgumentException("Executor cannot be null");
+
+        this.bufferSize = bufferSize;
+        this.threads = 0;
+        this.splitSize = DEFAULT_SPLIT_SIZE;
+        this.executor = executor;
+    }
+
+    /**
+     * Counts the words of every file and returns the merged counts.
+     *
+     * @param files      The files to count, in UTF-8 character encoding.
+     * @param comparator A comparator used to sort the word-count entries. If null is provided, an
+     *                   IllegalArgumentException will be thrown.
+     * @return A sorted list of the word-count entries of all files together.
+     * @throws IOException If an error occurs while reading any of the files.
+     */
+    public List<Map.Entry<String, Long>> count(List<Path> files, Comparator<Map.Entry<String, Long>> comparator) throws IOException {
+        return count(files, comparator, null);
+    }
+
+    /**
+     * Counts the words of every file, passing the sorted counts of each file to the per-file action once it has been
+     * counted, and returns the merged counts.
+     *
+     * @param files         The files to count, in UTF-8 character encoding.
+     * @param comparator    A comparator used to sort the word-count entries. If null is provided, an
+     *                      IllegalArgumentException will be thrown.
+     * @param perFileAction Receives every file with its own sorted counts in the order of the files, or null to skip
+     *                      per-file counts. It is called from the worker threads, but never by two threads at the
+     *                      same time.
+     * @return A sorted list of the word-count entries of all files together.
+     * @throws IOException If an error occurs while reading any of the files.
+     */
+    public List<Map.Entry<String, Long>> count(List<Path> files, Comparator<Map.Entry<String, Long>> comparator,
+                                               BiConsumer<Path, List<Map.Entry<String, Long>>> perFileAction) throws IOException {
+        return count(files, comparator, perFileAction, null);
+    }
+
+    /**
+     * Counts the words of every file like {@link #count(List, Comparator, BiConsumer)}, loading the counts of files
+     * that have not changed from the cache and caching the counts of the others.
+     *
+     * @param files         The files to count, in UTF-8 character encoding.
+     * @param comparator    A comparator used to sort the word-count entries. If null is provided, an
+     *                      IllegalArgumentException will be thrown.
+     * @param perFileAction Receives every file with its own sorted counts, or null to skip per-file counts.
+     * @param cache         The cache of per-file counts, opened with {@link #VERSION}, or null to count every file.
+     * @return A sorted list of the word-count entries of all files together.
+     * @throws IOException If an error occurs while reading any of the files or writing the cache.
+     */
+    public List<Map.Entry<String, Long>> count(List<Path> files, Comparator<Map.Entry<String, Long>> comparator,
+                                               BiConsumer<Path, List<Map.Entry<String, Long>>> perFileAction,
+                                               CountCache cache) throws IOException {
+        if (files == null)
+            throw new IllegalArgumentException("Files cannot be null");
+
+        if (comparator == null)
+            throw new IllegalArgumentException("Comparator cannot be null");
+
+        Run run = new Run(comparator, perFileAction, cache);
+        long started = run.timed ? System.nanoTime() : 0;
+        ExecutorService pool = executor != null ? executor : new ForkJoinPool(threads);
+        List<Future<?>> units = new ArrayList<>();
+        try {
+            for (List<Range> unit : plan(files, run)) {
+                units.add(pool.submit(() -> run.count(unit)));
+            }
+            for (Future<?> unit : units) {
+                unit.get();
+            }
+            return mergeAndSort(run, pool instanceof ForkJoinPool ? (ForkJoinPool) pool : ForkJoinPool.commonPool(), started);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while counting files");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException)
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            throw new IllegalStateException("Counting a file failed", e.getCause());
+        } finally {
+            if (executor == null) {
+                pool.shutdownNow();
+            } else {
+                // a shared executor keeps running, so the units of a failed call must not be left in its queue
+                for (Future<?> unit : units) {
+                    unit.cancel(true);
+                }
+            }
+        }
+    }
+
+    /**
+     * Merges the tables of the workers into partitions and sorts them into a compact list, both in parallel on the
+     * given pool like {@link MappedParallelWordCounter} does.
+     */
+    private static WordCountList mergeAndSort(Run run, ForkJoinPool pool, long started) {
+        long merging = run.timed ? System.nanoTime() : 0;
+        List<ByteWordTable> tables = new ArrayList<>(run.workers.size());
+        for (Worker worker : run.workers) {
+            tables.add(worker.table);
+        }
+        ByteWordTable[] partitions = PartitionedMerge.merge(tables, pool);
+        long sorting = run.timed ? System.nanoTime() : 0;
+        WordCountList entries = WordCountList.sorted(partitions, run.comparator, pool);
+        if (run.timed) {
+            record(run, sorting - merging);
+            BufferedWordCounter.record(started, sorting, partitions);
+        }
+        return entries;
+    }
+
+    private static void record(Run run, long mergeNanos) {
+        CountStats stats = CountStats.global();
+        long busiest = 0;
+        long busy = 0;
+        for (Worker worker : run.workers) {
+            stats.recordBytes(worker.bytes);
+            stats.recordPhase(CountStats.Phase.READ, worker.readNanos);
+            stats.recordPhase(CountStats.Phase.TOKENIZE, worker.tokenizeNanos);
+            busiest = Math.max(busiest, worker.busyNanos);
+            busy += worker.busyNanos;
+        }
+        stats.recordWorkers(busiest, busy, run.workers.size());
+        stats.recordPhase(CountStats.Phase.MERGE, mergeNanos);
+    }
+
+    /**
+     * Groups the files into units of work, splitting large files into ranges and batching small ones.
+     */
+    private List<List<Range>> plan(List<Path> files, Run run) throws IOException {
+        List<List<Range>> units = new ArrayList<>();
+        List<Range> batch = new ArrayList<>();
+        long batchSize = 0;
+        for (Path file : new LinkedHashSet<>(files)) {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            long size = attributes.size();
+            CountCache.Entry cached = run.cache == null ? null : run.cache.find(file, attributes);
+            boolean compressed = Compression.detect(file) != Compression.NONE;
+            if (cached != null || compressed) {
+                List<Range> unit = new ArrayList<>(1);
+                unit.add(new Range(file, 0, size, compressed, run.newFileCounts(1, attributes), cached));
+                units.add(unit);
+                continue;
+            }
+
+            if (size <= splitSize) {
+                batch.add(new Range(file, 0, size, false, run.newFileCounts(1, attributes), null));
+                batchSize += size;
+                if (batchSize >= splitSize || batch.size() == MAX_FILES_PER_BATCH) {
+                    units.add(batch);
+                    batch = new ArrayList<>();
+                    batchSize = 0;
+                }
+                continue;
+            }
+
+            long[] boundaries;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                boundaries = MappedParallelWordCounter.splitAtWordBoundaries(channel, splitSize);
+            }
+            FileCounts counts = run.newFileCounts(boundaries.length - 1, attributes);
+            for (int i = 0; i + 1 < boundaries.length; i++) {
+                List<Range> unit = new ArrayList<>(1);
+                unit.add(new Range(file, boundaries[i], boundaries[i + 1], false, counts, null));
+                units.add(unit);
+            }
+        }
+        if (!batch.isEmpty())
+            units.add(batch);
+        return units;
+    }
+
+    /**
+     * A range of bytes of a file that ends on a word boundary, or the whole of a compressed or cached file.
+     */
+    private static final class Range {
+        private final Path file;
+        private final long start;
+        private final long end;
+        private final boolean compressed;
+        private final FileCounts counts;
+        private final CountCache.Entry cached;
+
+        private Range(Path file, long start, long end, boolean compressed, FileCounts counts, CountCache.Entry cached) {
+            this.file = file;
+            this.start = start;
+            this.end = end;
+            this.compressed = compressed;
+            this.counts = counts;
+            this.cached = cached;
+        }
+    }
+
+    /**
+     * Collects the counts of the ranges of one file until every range has been counted.
+     */
+    private static final class FileCounts {
+        private final ByteWordTable table = new ByteWordTable();
+        private final int index;
+        private final BasicFileAttributes attributes;
+        private int remainingRanges;
+
+        private FileCounts(int index, int ranges, BasicFileAttributes attributes) {
+            this.index = index;
+            this.remainingRanges = ranges;
+            this.attributes = attributes;
+        }
+    }
+
+    /**
+     * The state shared by the workers during one call of count.
+     */
+    private final class Run {
+        private final Comparator<Map.Entry<String, Long>> comparator;
+        private final BiConsumer<Path, List<Map.Entry<String, Long>>> perFileAction;
+        private final CountCache cache;
+        private final boolean timed = CountStats.enabled();
+        private final List<Worker> workers = new CopyOnWriteArrayList<>();
+        // idle workers rather than one per thread, so that the threads of a shared executor keep no tables after a call
+        private final Queue<Worker> idle = new ConcurrentLinkedQueue<>();
+        // per-file counts that wait for a file before them, guarded by the per-file action
+        private final Map<Integer, Map.Entry<Path, List<Map.Entry<String, Long>>>> waiting = new HashMap<>();
+        private int planned;
+        private int nextFile;
+
+        private Run(Comparator<Map.Entry<String, Long>> comparator, BiConsumer<Path, List<Map.Entry<String, Long>>> perFileAction,
+                    CountCache cache) {
+            this.comparator = comparator;
+            this.perFileAction = perFileAction;
+            this.cache = cache;
+        }
+
+        private FileCounts newFileCounts(int ranges, BasicFileAttributes attributes) {
+            if (perFileAction == null && cache == null)
+                return null;
+
+            return new FileCounts(planned++, ranges, attributes);
+        }
+
+        private void count(List<Range> unit) {
+            Worker current = idle.poll();
+            if (current == null)
+                current = newWorker();
+            long started = timed ? System.nanoTime() : 0;
+            try {
+                for (Range range : unit) {
+                    if (range.counts == null) {
+                        current.count(range, current.table);
+                        continue;
+                    }
+
+                    ByteWordTable table = new ByteWordTable();
+                    boolean loaded = range.cached != null && cache.load(range.cached, table);
+                    if (range.cached != null && !loaded) {
+                        // the cached counts have gone, some of them may have been added before that was noticed
+                        table = new ByteWordTable();
+                    }
+                    if (!loaded)
+                        current.count(range, table);
+                    current.table.addAll(table);
+                    completeRange(range, table, loaded);
+                }
+            } finally {
+                if (timed)
+                    current.busyNanos += System.nanoTime() - started;
+                idle.offer(current);
+            }
+        }
+
+        private void completeRange(Range range, ByteWordTable table, boolean loaded) {
+            FileCounts counts = range.counts;
+            synchronized (counts) {
+                counts.table.addAll(table);
+                if (--counts.remainingRanges > 0)
+                    return;
+            }
+
+            if (cache != null && !loaded) {
+                try {
+                    cache.put(range.file, counts.attributes, counts.table);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            if (perFileAction == null)
+                return;
+
+            List<Map.Entry<String, Long>> entries = counts.table.entries();
+            entries.sort(comparator);
+            synchronized (perFileAction) {
+                waiting.put(counts.index, new AbstractMap.SimpleImmutableEntry<>(range.file, entries));
+                Map.Entry<Path, List<Map.Entry<String, Long>>> next;
+                while ((next = waiting.remove(nextFile)) != null) {
+                    perFileAction.accept(next.getKey(), next.getValue());
+                    nextFile++;
+                }
+            }
+        }
+
+        private Worker newWorker() {
+            Worker created = new Worker(bufferSize, timed);
+            workers.add(created);
+            return created;
+        }
+    }
+
+    /**
+     * The buffer and global table of one worker, which counts one unit at a time, and its statistics if they are being
+     * collected.
+     */
+    private static final class Worker {
+        private final ByteWordTable table = new ByteWordTable();
+        private final ByteBuffer buffer;
+        private final boolean timed;
+        private ByteWordTable target;
+        private final Utf8Tokenizer tokenizer = new Utf8Tokenizer((bytes, offset, length) -> target.add(bytes, offset, length));
+        private long bytes;
+        private long readNanos;
+        private long tokenizeNanos;
+        private long busyNanos;
+
+        private Worker(int bufferSize, boolean timed) {
+            this.buffer = ByteBuffer.allocate(bufferSize);
+            this.timed = timed;
+        }
+
+        private void count(Range range, ByteWordTable into) {
+            target = into;
+            if (range.compressed) {
+                decompress(range);
+                return;
+            }
+
+            try (FileChannel channel = FileChannel.open(range.file, StandardOpenOption.READ)) {
+                long position = range.start;
+                while (position < range.end) {
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity(), range.end - position));
+                    long reading = timed ? System.nanoTime() : 0;
+                    int numRead = channel.read(buffer, position);
+                    if (numRead < 0)
+                        break;
+                    long tokenizing = timed ? System.nanoTime() : 0;
+                    tokenizer.feed(buffer.array(), 0, numRead);
+                    if (timed)
+                        record(reading, tokenizing, numRead);
+                    position += numRead;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                tokenizer.finish();
+            }
+        }
+
+        private void decompress(Range range) {
+            try (InputStream inputStream = CompressedInput.open(range.file)) {
+                long reading = timed ? System.nanoTime() : 0;
+                int numRead;
+                while ((numRead = inputStream.read(buffer.array())) != -1) {
+                    long tokenizing = timed ? System.nanoTime() : 0;
+                    tokenizer.feed(buffer.array(), 0, numRead);
+                    if (timed) {
+                        record(reading, tokenizing, numRead);
+                        reading = System.nanoTime();
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                tokenizer.finish();
+            }
+        }
+
+        private void record(long reading, long tokenizing, int numRead) {
+            readNanos += tokenizing - reading;
+            tokenizeNanos += System.nanoTime() - tokenizing;
+            bytes += numRead;
+        }
+    }
+}
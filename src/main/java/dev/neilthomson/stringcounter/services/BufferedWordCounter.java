@@ -1,26 +1,44 @@
 package dev.neilthomson.stringcounter.services;
 
-import java.io.BufferedReader;
+import dev.neilthomson.stringcounter.metrics.CountStats;
+import dev.neilthomson.stringcounter.metrics.MeteredInputStream;
+import dev.neilthomson.stringcounter.ranking.TopK;
+import dev.neilthomson.stringcounter.tables.ByteWordTable;
+import dev.neilthomson.stringcounter.tokenizers.CharTokenizer;
+import dev.neilthomson.stringcounter.tokenizers.TokenPipeline;
+import dev.neilthomson.stringcounter.tokenizers.TokenSink;
+import dev.neilthomson.stringcounter.tokenizers.Utf8Tokenizer;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
  * Implements the {@link WordCounter} interface to provide parallel word counting functionality.
  * <p>
  * A WordCounter implementation that counts words from an InputStream using a buffered approach.
- * This implementation reads characters from the input stream in a buffered manner, counts words,
- * and returns a list of word counts sorted according to a provided comparator.
+ * This implementation reads characters from the input stream in a buffered manner, splits them into words with a
+ * {@link CharTokenizer}, counts the words in a {@link ByteWordTable} and returns a list of word counts sorted
+ * according to a provided comparator. No objects are allocated per word.
+ * <p>
+ * It can optionally read raw bytes and split them with a {@link Utf8Tokenizer} instead of decoding the stream into
+ * characters, which produces the same words while avoiding most of the decoding work. Either way the words can be
+ * passed through a {@link TokenPipeline} of rules, such as stop-word filtering, stemming or n-grams, before they are
+ * counted.
+ * <p>
+ * While {@link CountStats} are enabled, the stream is read through a {@link MeteredInputStream} so that the time spent
+ * reading is recorded apart from the time spent tokenizing.
  */
 public class BufferedWordCounter implements WordCounter {
 
     private final int bufferSize;
+    private final boolean byteTokenizer;
+    private final TokenPipeline pipeline;
 
     /**
      * Constructs a BufferedWordCounter with the specified buffer size.
@@ -28,45 +46,129 @@ public class BufferedWordCounter implements WordCounter {
      * @param bufferSize the size of the buffer to use for reading characters from the input stream.
      */
     public BufferedWordCounter(int bufferSize) {
+        this(bufferSize, false);
+    }
+
+    /**
+     * Constructs a BufferedWordCounter with the specified buffer size and tokenizer.
+     *
+     * @param bufferSize    the size of the buffer to use for reading from the input stream.
+     * @param byteTokenizer {@code true} to split the raw bytes with a {@link Utf8Tokenizer}, {@code false} to decode
+     *                      the stream into characters first.
+     */
+    public BufferedWordCounter(int bufferSize, boolean byteTokenizer) {
+        this(bufferSize, byteTokenizer, TokenPipeline.NONE);
+    }
+
+    /**
+     * Constructs a BufferedWordCounter with the specified buffer size and tokenizer that applies rules to the words
+     * before they are counted.
+     *
+     * @param bufferSize    the size of the buffer to use for reading from the input stream.
+     * @param byteTokenizer {@code true} to split the raw bytes with a {@link Utf8Tokenizer}, {@code false} to decode
+     *                      the stream into characters first.
+     * @param pipeline      the rules applied to the words.
+     */
+    public BufferedWordCounter(int bufferSize, boolean byteTokenizer, TokenPipeline pipeline) {
+        if (pipeline == null)
+            throw new IllegalArgumentException("Pipeline cannot be null");
+
         this.bufferSize = bufferSize;
+        this.byteTokenizer = byteTokenizer;
+        this.pipeline = pipeline;
     }
 
     @Override
     public List<Map.Entry<String, Long>> count(InputStream inputStream, Comparator<Map.Entry<String, Long>> comparator) throws IOException {
-        if (inputStream == null)
-            throw new IllegalArgumentException("InputStream cannot be null");
+        if (comparator == null)
+            throw new IllegalArgumentException("Comparator cannot be null");
+
+        long started = CountStats.enabled() ? System.nanoTime() : 0;
+        ByteWordTable table = tally(inputStream);
+        long sorting = started != 0 ? System.nanoTime() : 0;
+        List<Map.Entry<String, Long>> entries = table.entries();
+        entries.sort(comparator);
+        if (started != 0)
+            record(started, sorting, table);
+        return entries;
+    }
 
+    @Override
+    public List<Map.Entry<String, Long>> countTop(InputStream inputStream, Comparator<Map.Entry<String, Long>> comparator, int limit) throws IOException {
         if (comparator == null)
             throw new IllegalArgumentException("Comparator cannot be null");
 
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
-            char[] buffer = new char[bufferSize];
-            Map<String, Long> wordCounts = new HashMap<>();
-            int numRead;
-            StringBuilder currentWord = new StringBuilder();
-            boolean buildingWord = false; // Track if currently building a word
-
-            while ((numRead = reader.read(buffer)) != -1) {
-                for (int i = 0; i < numRead; i++) {
-                    char c = buffer[i];
-                    if (Character.isAlphabetic(c) || c == '\'' || c == '-') { // Character is part of a word
-                        currentWord.append(Character.toLowerCase(c));
-                        buildingWord = true;
-                    } else if (buildingWord) { // End of word encountered
-                        String word = currentWord.toString();
-                        currentWord.setLength(0); // Reset for next word
-                        buildingWord = false;
-                        wordCounts.merge(word, 1L, Long::sum); // Update word count in the map
-                    }
-                }
-            }
+        if (limit < 0)
+            throw new IllegalArgumentException("Limit cannot be negative");
+
+        long started = CountStats.enabled() ? System.nanoTime() : 0;
+        ByteWordTable table = tally(inputStream);
+        long sorting = started != 0 ? System.nanoTime() : 0;
+        List<Map.Entry<String, Long>> top = TopK.select(table.entries(), comparator, limit);
+        if (started != 0)
+            record(started, sorting, table);
+        return top;
+    }
+
+    /**
+     * Records a run that counted into tables in the global {@link CountStats}.
+     *
+     * @param started the time the run started.
+     * @param sorting the time the counts started to be sorted.
+     * @param tables  the table of the run, or the disjoint partitions of its counts.
+     */
+    static void record(long started, long sorting, ByteWordTable... tables) {
+        long finished = System.nanoTime();
+        long tokens = 0;
+        int distinct = 0;
+        double slots = 0;
+        for (ByteWordTable table : tables) {
+            tokens += table.total();
+            distinct += table.size();
+            if (table.size() > 0)
+                slots += table.size() / table.loadFactor();
+        }
+        CountStats.global().recordPhase(CountStats.Phase.SORT, finished - sorting);
+        CountStats.global().recordLoadFactor(distinct == 0 ? 0 : distinct / slots);
+        CountStats.global().recordRun(finished - started, tokens, distinct);
+    }
 
-            if (buildingWord) // flush currentWord if stream end reached
-                wordCounts.merge(currentWord.toString(), 1L, Long::sum);
+    /**
+     * Counts the words in the input stream without sorting them.
+     *
+     * @param inputStream the stream of UTF-8 encoded text, it is closed once it has been read.
+     * @return the table holding the count of every distinct word.
+     * @throws IOException If an error occurs while reading from the input stream.
+     */
+    private ByteWordTable tally(InputStream inputStream) throws IOException {
+        if (inputStream == null)
+            throw new IllegalArgumentException("InputStream cannot be null");
 
-            return wordCounts.entrySet().stream()
-                    .sorted(comparator)
-                    .collect(Collectors.toList());
+        if (!CountStats.enabled())
+            return read(inputStream);
+
+        MeteredInputStream metered = new MeteredInputStream(inputStream);
+        long started = System.nanoTime();
+        ByteWordTable table = read(metered);
+        long nanos = System.nanoTime() - started;
+        CountStats.global().recordBytes(metered.bytes());
+        CountStats.global().recordPhase(CountStats.Phase.READ, metered.nanos());
+        CountStats.global().recordPhase(CountStats.Phase.TOKENIZE, nanos - metered.nanos());
+        return table;
+    }
+
+    private ByteWordTable read(InputStream inputStream) throws IOException {
+        ByteWordTable table = new ByteWordTable();
+        TokenSink sink = pipeline.sink(table::add);
+        if (byteTokenizer) {
+            try (InputStream stream = inputStream) {
+                new Utf8Tokenizer(sink).tokenize(stream, new byte[bufferSize]);
+            }
+        } else {
+            try (Reader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8)) {
+                new CharTokenizer(sink).tokenize(reader, new char[bufferSize]);
+            }
         }
+        return table;
     }
 }
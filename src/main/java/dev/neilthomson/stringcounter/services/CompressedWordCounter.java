@@ -0,0 +1,334 @@
+package dev.neilthomson.stringcounter.services;
+
+import dev.neilthomson.stringcounter.compression.CompressedInput;
+import dev.neilthomson.stringcounter.compression.Compression;
+import dev.neilthomson.stringcounter.compression.MemberReader;
+import dev.neilthomson.stringcounter.metrics.CountStats;
+import dev.neilthomson.stringcounter.tables.ByteWordTable;
+import dev.neilthomson.stringcounter.tokenizers.Utf8Tokenizer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Implements the {@link FileWordCounter} interface for files that may be compressed with gzip, bzip2 or Zstandard.
+ * <p>
+ * A file made of several gzip members or bzip2 streams, such as the output of bgzip, pbzip2 or of concatenating
+ * compressed files, is decompressed on several threads. The offsets where a member may start are grouped into runs
+ * of about {@code groupSize} compressed bytes, and every group is decompressed and counted on its own. A group only
+ * counts if the group before it ended exactly where it starts, because header bytes can also occur by chance inside
+ * compressed data; any gap left by such a false start is decompressed again on the calling thread. Words cut in two
+ * between groups are put back together from the bytes before the first and after the last delimiter of each group.
+ * <p>
+ * Any other input, including a single-member gzip file, is decompressed and counted on one thread.
+ */
+public class CompressedWordCounter implements FileWordCounter {
+
+    private static final long DEFAULT_GROUP_SIZE = 4L * 1024 * 1024;
+
+    private final int bufferSize;
+    private final int threads;
+    private final long groupSize;
+
+    /**
+     * Constructs a CompressedWordCounter that uses a thread for every available processor.
+     *
+     * @param bufferSize the size of the buffer that decompressed bytes are read into.
+     */
+    public CompressedWordCounter(int bufferSize) {
+        this(bufferSize, Runtime.getRuntime().availableProcessors(), DEFAULT_GROUP_SIZE);
+    }
+
+    /**
+     * Constructs a CompressedWordCounter with the specified buffer size, number of threads and group size.
+     *
+     * @param bufferSize the size of the buffer that decompressed bytes are read into.
+     * @param threads    the number of threads that decompress members at the same time.
+     * @param groupSize  the number of compressed bytes of members that a thread decompresses in one go.
+     */
+    public CompressedWordCounter(int bufferSize, int threads, long groupSize) {
+        if (bufferSize <= 0)
+            throw new IllegalArgumentException("Buffer size must be positive");
+
+        if (threads <= 0)
+            throw new IllegalArgumentException("Threads must be positive");
+
+        if (groupSize <= 0)
+            throw new IllegalArgumentException("Group size must be positive");
+
+        this.bufferSize = bufferSize;
+        this.threads = threads;
+        this.groupSize = groupSize;
+    }
+
+    @Override
+    public List<Map.Entry<String, Long>> count(InputStream inputStream, Comparator<Map.Entry<String, Long>> comparator) throws IOException {
+        if (inputStream == null)
+            throw new IllegalArgumentException("InputStream cannot be null");
+
+        if (comparator == null)
+            throw new IllegalArgumentException("Comparator cannot be null");
+
+        long started = CountStats.enabled() ? System.nanoTime() : 0;
+        Segment segment = new Segment(bufferSize);
+        try (InputStream stream = CompressedInput.decompress(inputStream)) {
+            segment.add(stream);
+        }
+        return sorted(new Stitcher().add(segment), comparator, started);
+    }
+
+    @Override
+    public List<Map.Entry<String, Long>> count(Path path, Comparator<Map.Entry<String, Long>> comparator) throws IOException {
+        if (path == null)
+            throw new IllegalArgumentException("Path cannot be null");
+
+        if (comparator == null)
+            throw new IllegalArgumentException("Comparator cannot be null");
+
+        long started = CountStats.enabled() ? System.nanoTime() : 0;
+        Compression compression = Compression.detect(path);
+        if (threads > 1 && (compression == Compression.GZIP || compression == Compression.BZIP2)) {
+            long[] starts = group(MemberReader.findMembers(path, compression));
+            if (starts.length > 1)
+                return sorted(countMembers(path, compression, starts), comparator, started);
+        }
+
+        Segment segment = new Segment(bufferSize);
+        try (InputStream stream = CompressedInput.open(path)) {
+            segment.add(stream);
+        }
+        return sorted(new Stitcher().add(segment), comparator, started);
+    }
+
+    /**
+     * Drops candidate member offsets until consecutive ones are at least {@code groupSize} bytes apart.
+     */
+    private long[] group(long[] candidates) {
+        long[] starts = new long[candidates.length];
+        int count = 0;
+        for (long candidate : candidates) {
+            if (count == 0 || candidate - starts[count - 1] >= groupSize)
+                starts[count++] = candidate;
+        }
+        return Arrays.copyOf(starts, count);
+    }
+
+    /**
+     * Counts every group on the pool, then walks the chain of groups from the start of the file, using the result of
+     * a group only where the chain reaches its start and decompressing anything in between on this thread.
+     */
+    private Stitcher countMembers(Path path, Compression compression, long[] starts) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, starts.length));
+        try {
+            Map<Long, Future<Segment>> groups = new HashMap<>();
+            for (int i = 0; i < starts.length; i++) {
+                long start = starts[i];
+                long stop = i + 1 < starts.length ? starts[i + 1] : Long.MAX_VALUE;
+                groups.put(start, executor.submit(() -> countGroup(path, compression, start, stop)));
+            }
+
+            Stitcher stitcher = new Stitcher();
+            long position = 0;
+            while (true) {
+                Segment segment = completed(groups.get(position));
+                if (segment == null)
+                    segment = countGap(path, compression, position, groups);
+                stitcher.add(segment);
+                if (segment.ended || segment.end == position)
+                    return stitcher;
+                position = segment.end;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the segment of a group, or null if there is no group here or it failed, which happens when it started
+     * at a false member offset.
+     */
+    private static Segment completed(Future<Segment> group) throws InterruptedIOException {
+        if (group == null)
+            return null;
+
+        try {
+            return group.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while counting words");
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Decompresses members from {@code start} until one ends at or after {@code stop}, or the members run out.
+     */
+    private Segment countGroup(Path path, Compression compression, long start, long stop) throws IOException {
+        Segment segment = new Segment(bufferSize);
+        try (MemberReader reader = new MemberReader(path, compression, start)) {
+            while (reader.position() < stop) {
+                InputStream member = reader.next();
+                if (member == null) {
+                    segment.ended = true;
+                    break;
+                }
+                segment.add(member);
+            }
+            segment.end = reader.position();
+        }
+        return segment;
+    }
+
+    /**
+     * Decompresses members from {@code start} until one ends where a group starts, or the members run out.
+     */
+    private Segment countGap(Path path, Compression compression, long start, Map<Long, Future<Segment>> groups) throws IOException {
+        Segment segment = new Segment(bufferSize);
+        try (MemberReader reader = new MemberReader(path, compression, start)) {
+            do {
+                InputStream member = reader.next();
+                if (member == null) {
+                    segment.ended = true;
+                    break;
+                }
+                segment.add(member);
+            } while (!groups.containsKey(reader.position()));
+            segment.end = reader.position();
+        }
+        return segment;
+    }
+
+    /**
+     * Counts the words cut in two at the end of the last segment and sorts the counts of every segment, recording
+     * the run in {@link CountStats} if it was started with a timestamp.
+     */
+    private static List<Map.Entry<String, Long>> sorted(Stitcher stitcher, Comparator<Map.Entry<String, Long>> comparator, long started) {
+        ByteWordTable table = stitcher.finish();
+        long sorting = started != 0 ? System.nanoTime() : 0;
+        List<Map.Entry<String, Long>> entries = table.entries();
+        entries.sort(comparator);
+        if (started != 0) {
+            long finished = System.nanoTime();
+            CountStats.global().recordBytes(stitcher.bytes);
+            CountStats.global().recordPhase(CountStats.Phase.SORT, finished - sorting);
+            CountStats.global().recordLoadFactor(table.loadFactor());
+            CountStats.global().recordRun(finished - started, table.total(), table.size());
+        }
+        return entries;
+    }
+
+    /**
+     * The counts of a run of decompressed bytes, except for the bytes before its first ASCII delimiter and after its
+     * last one, which may be parts of words that continue in the neighbouring runs.
+     */
+    private static final class Segment {
+        private final ByteWordTable table = new ByteWordTable();
+        private final Utf8Tokenizer tokenizer = new Utf8Tokenizer(table::add);
+        private byte[] pending;
+        private int length;
+        private byte[] head;
+        private long end;
+        private boolean ended;
+        private long bytes;
+
+        private Segment(int bufferSize) {
+            this.pending = new byte[bufferSize];
+        }
+
+        /**
+         * Counts every complete word of the stream, carrying an incomplete word at the end over to the next stream.
+         */
+        private void add(InputStream stream) throws IOException {
+            int numRead;
+            while (true) {
+                if (length == pending.length)
+                    pending = Arrays.copyOf(pending, pending.length * 2); // a single word fills the whole buffer
+
+                if ((numRead = stream.read(pending, length, pending.length - length)) == -1)
+                    break;
+
+                int start = length;
+                length += numRead;
+                bytes += numRead;
+                if (head == null) {
+                    int delimiter = firstBoundary(pending, start, length);
+                    if (delimiter < 0)
+                        continue;
+
+                    head = Arrays.copyOf(pending, delimiter);
+                    System.arraycopy(pending, delimiter, pending, 0, length - delimiter);
+                    length -= delimiter;
+                }
+
+                int boundary = MappedParallelWordCounter.lastBoundary(pending, length);
+                if (boundary == 0)
+                    continue;
+
+                tokenizer.feed(pending, 0, boundary);
+                tokenizer.finish();
+                System.arraycopy(pending, boundary, pending, 0, length - boundary);
+                length -= boundary;
+            }
+        }
+
+        private static int firstBoundary(byte[] buffer, int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (MappedParallelWordCounter.isAsciiDelimiter(buffer[i]))
+                    return i;
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Joins segments in file order, counting the words that were cut in two between them.
+     */
+    private static final class Stitcher {
+        private final ByteWordTable total = new ByteWordTable();
+        private final Utf8Tokenizer tokenizer = new Utf8Tokenizer(total::add);
+        private byte[] carry = new byte[64];
+        private int length;
+        private long bytes;
+
+        private Stitcher add(Segment segment) {
+            bytes += segment.bytes;
+            if (segment.head == null) {
+                append(segment.pending, segment.length);
+                return this;
+            }
+
+            append(segment.head, segment.head.length);
+            tokenizer.feed(carry, 0, length);
+            tokenizer.finish();
+            length = 0;
+            append(segment.pending, segment.length);
+            total.addAll(segment.table);
+            return this;
+        }
+
+        private ByteWordTable finish() {
+            tokenizer.feed(carry, 0, length);
+            tokenizer.finish();
+            return total;
+        }
+
+        private void append(byte[] bytes, int count) {
+            if (length + count > carry.length)
+                carry = Arrays.copyOf(carry, Math.max(carry.length * 2, length + count));
+            System.arraycopy(bytes, 0, carry, length, count);
+            length += count;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package dev.neilthomson.stringcounter.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Implements the {@link WordCounter} interface by counting blocks of one input stream on several threads that all
+ * append to a shared {@link ConcurrentWordCounts}.
+ * <p>
+ * The calling thread reads the stream into blocks that end on a word boundary and hands each block to a worker. The
+ * workers count into their own stripe of the shared counts, so hot words such as "the" never make them wait for each
+ * other, as they would on a single shared ConcurrentHashMap. Blocks are recycled through a bounded pool, which also
+ * stops the reader from getting further ahead of the workers than the pool allows. Blocks in flight are tracked by a
+ * {@link Phaser} rather than a list of futures, so the memory used for bookkeeping does not grow with the input.
+ */
+public class ConcurrentWordCounter implements WordCounter {
+
+    private final int bufferSize;
+    private final int threads;
+
+    /**
+     * Constructs a ConcurrentWordCounter that uses a thread for every available processor.
+     *
+     * @param bufferSize the size of the blocks that the input stream is read into.
+     */
+    public ConcurrentWordCounter(int bufferSize) {
+        this(bufferSize, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a ConcurrentWordCounter with the specified block size and number of threads.
+     *
+     * @param bufferSize the size of the blocks that the input stream is read into.
+     * @param threads    the number of threads that count blocks.
+     */
+    public ConcurrentWordCounter(int bufferSize, int threads) {
+        if (bufferSize <= 0)
+            throw new IllegalArgumentException("Buffer size must be positive");
+
+        if (threads <= 0)
+            throw new IllegalArgumentException("Threads must be positive");
+
+        this.bufferSize = bufferSize;
+        this.threads = threads;
+    }
+
+    @Override
+    public List<Map.Entry<String, Long>> count(InputStream inputStream, Comparator<Map.Entry<String, Long>> comparator) throws IOException {
+        if (inputStream == null)
+            throw new IllegalArgumentException("InputStream cannot be null");
+
+        if (comparator == null)
+            throw new IllegalArgumentException("Comparator cannot be null");
+
+        ConcurrentWordCounts counts = new ConcurrentWordCounts();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        // The reader is a party until it has submitted the last block, every block in flight is another one
+        Phaser blocks = new Phaser(1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        try (InputStream stream = inputStream) {
+            countBlocks(stream, counts, executor, blocks, failure);
+            blocks.awaitAdvanceInterruptibly(blocks.arrive());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while counting words");
+        } finally {
+            executor.shutdownNow();
+        }
+        if (failure.get() != null)
+            throw new IllegalStateException("Counting a block failed", failure.get());
+
+        return counts.snapshot(comparator);
+    }
+
+    /**
+     * Reads the stream into blocks that end just after an ASCII delimiter and submits every block to the executor.
+     * The bytes after the last delimiter of a block are carried over to the start of the next one. Reading stops early
+     * once a block has failed.
+     */
+    private void countBlocks(InputStream stream, ConcurrentWordCounts counts, ExecutorService executor, Phaser blocks,
+                             AtomicReference<Throwable> failure) throws IOException, InterruptedException {
+        BlockingQueue<byte[]> pool = new ArrayBlockingQueue<>(threads * 2);
+        for (int i = 0; i < threads * 2; i++) {
+            pool.add(new byte[bufferSize]);
+        }
+
+        byte[] block = pool.take();
+        int length = 0;
+        int numRead;
+        while (failure.get() == null) {
+            if (length == block.length)
+                block = Arrays.copyOf(block, block.length * 2); // a single word fills the whole block
+
+            if ((numRead = stream.read(block, length, block.length - length)) == -1)
+                break;
+
+            length += numRead;
+            int boundary = MappedParallelWordCounter.lastBoundary(block, length);
+            if (boundary == 0)
+                continue;
+
+            byte[] next = pool.take();
+            if (next.length < length - boundary)
+                next = new byte[block.length];
+            System.arraycopy(block, boundary, next, 0, length - boundary);
+            submit(executor, counts, pool, blocks, failure, block, boundary);
+            block = next;
+            length -= boundary;
+        }
+        submit(executor, counts, pool, blocks, failure, block, length);
+    }
+
+    private static void submit(ExecutorService executor, ConcurrentWordCounts counts, BlockingQueue<byte[]> pool,
+                               Phaser blocks, AtomicReference<Throwable> failure, byte[] block, int length) {
+        blocks.register();
+        executor.execute(() -> {
+            try {
+                counts.append(block, 0, length);
+                counts.finish();
+            } catch (RuntimeException | Error e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                pool.offer(block);
+                blocks.arriveAndDeregister();
+            }
+        });
+    }
+}
@@ -0,0 +1,148 @@
+package dev.neilthomson.stringcounter.services;
+
+import dev.neilthomson.stringcounter.ranking.TopK;
+import dev.neilthomson.stringcounter.tables.ByteWordTable;
+import dev.neilthomson.stringcounter.tokenizers.Utf8Tokenizer;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Counts words appended by many threads at the same time.
+ * <p>
+ * Every thread that appends input gets its own stripe, holding its own {@link Utf8Tokenizer} and {@link ByteWordTable},
+ * so threads never update the same counter, however hot a word is. A stripe is only locked by its own thread and by
+ * snapshots, so appending is uncontended while no snapshot is being taken. Snapshots merge every stripe into one
+ * table, so their cost depends on the number of distinct words in each stripe rather than on the amount of input.
+ * <p>
+ * Each thread appends its own stream of chunks: a word left open at the end of a chunk is continued by the next chunk
+ * appended by the same thread, and {@link #finish()} ends it. A snapshot holds whole chunks of every thread.
+ */
+public class ConcurrentWordCounts {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final int bufferSize;
+    private final List<Stripe> stripes = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<Stripe> localStripe = ThreadLocal.withInitial(this::newStripe);
+
+    /**
+     * Constructs an empty ConcurrentWordCounts with a default buffer size.
+     */
+    public ConcurrentWordCounts() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructs an empty ConcurrentWordCounts with the specified buffer size.
+     *
+     * @param bufferSize the size of the buffer of every stripe, that appended chunks are copied into before they are
+     *                   tokenized.
+     */
+    public ConcurrentWordCounts(int bufferSize) {
+        if (bufferSize <= 0)
+            throw new IllegalArgumentException("Buffer size must be positive");
+
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Appends a chunk of UTF-8 encoded text to the stream of the calling thread. The chunk is not modified.
+     *
+     * @param bytes  the array holding the chunk.
+     * @param offset the index of the first byte of the chunk.
+     * @param length the number of bytes in the chunk.
+     */
+    public void append(byte[] bytes, int offset, int length) {
+        if (bytes == null)
+            throw new IllegalArgumentException("Bytes cannot be null");
+
+        if (offset < 0 || length < 0 || offset > bytes.length - length)
+            throw new IndexOutOfBoundsException("Chunk is outside of the array");
+
+        Stripe stripe = localStripe.get();
+        synchronized (stripe) {
+            for (int position = offset, end = offset + length; position < end; ) {
+                int step = Math.min(stripe.buffer.length, end - position);
+                System.arraycopy(bytes, position, stripe.buffer, 0, step); // the tokenizer lowercases in place
+                stripe.tokenizer.feed(stripe.buffer, 0, step);
+                position += step;
+            }
+        }
+    }
+
+    /**
+     * Ends the stream of the calling thread, counting the word that is still open at the end of its last chunk.
+     */
+    public void finish() {
+        Stripe stripe = localStripe.get();
+        synchronized (stripe) {
+            stripe.tokenizer.finish();
+        }
+    }
+
+    /**
+     * Takes a snapshot of the counts of every word completed so far by any thread.
+     *
+     * @param comparator A comparator used to sort the word-count entries. If null is provided, an
+     *                   IllegalArgumentException will be thrown.
+     * @return A sorted list of {@link java.util.Map.Entry} objects, where each entry has a key of type
+     *         {@link String} (word) and a value of type {@link Long} (count).
+     */
+    public List<Map.Entry<String, Long>> snapshot(Comparator<Map.Entry<String, Long>> comparator) {
+        if (comparator == null)
+            throw new IllegalArgumentException("Comparator cannot be null");
+
+        List<Map.Entry<String, Long>> entries = merge().entries();
+        entries.sort(comparator);
+        return entries;
+    }
+
+    /**
+     * Takes a snapshot of the counts of every word completed so far by any thread and returns only the first
+     * {@code limit} entries in comparator order.
+     *
+     * @param comparator A comparator used to order the word-count entries. If null is provided, an
+     *                   IllegalArgumentException will be thrown.
+     * @param limit      The maximum number of entries to return. If negative, an IllegalArgumentException will be
+     *                   thrown.
+     * @return A list of at most {@code limit} entries, sorted according to the provided comparator.
+     */
+    public List<Map.Entry<String, Long>> snapshotTop(Comparator<Map.Entry<String, Long>> comparator, int limit) {
+        if (comparator == null)
+            throw new IllegalArgumentException("Comparator cannot be null");
+
+        if (limit < 0)
+            throw new IllegalArgumentException("Limit cannot be negative");
+
+        return TopK.select(merge().entries(), comparator, limit);
+    }
+
+    private ByteWordTable merge() {
+        ByteWordTable merged = new ByteWordTable();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                merged.addAll(stripe.table);
+            }
+        }
+        return merged;
+    }
+
+    private Stripe newStripe() {
+        Stripe stripe = new Stripe(bufferSize);
+        stripes.add(stripe);
+        return stripe;
+    }
+
+    private static final class Stripe {
+        private final ByteWordTable table = new ByteWordTable();
+        private final Utf8Tokenizer tokenizer = new Utf8Tokenizer(table::add);
+        private final byte[] buffer;
+
+        private Stripe(int bufferSize) {
+            this.buffer = new byte[bufferSize];
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package dev.neilthomson.stringcounter.services;
+
+import dev.neilthomson.stringcounter.compression.Compression;
+import dev.neilthomson.stringcounter.metrics.CountStats;
+import dev.neilthomson.stringcounter.output.BinaryCountReader;
+import dev.neilthomson.stringcounter.ranking.WordCountList;
+import dev.neilthomson.stringcounter.tables.ByteWordTable;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts files across several worker JVMs, for inputs that are too large for one process.
+ * <p>
+ * The files are planned into shards of roughly {@code splitSize} bytes, like {@link BatchWordCounter} plans its units:
+ * a larger file is split into ranges that end on a word boundary, smaller files are batched together and a compressed
+ * file is a shard of its own. Every shard is counted by a child process running {@link ShardWorker}, with at most
+ * {@code workers} processes at a time. A worker writes its partial counts in the binary format of
+ * {@link dev.neilthomson.stringcounter.output.CountWriter}, either through its standard output or over a loopback
+ * socket, and they are read into a {@link ByteWordTable} without decoding the words.
+ * <p>
+ * A shard fails when its worker exits with anything but 0, its counts end within a word, or it takes longer than the
+ * timeout, in which case the worker is killed. The partial counts of a failed attempt are thrown away and the shard is
+ * started again in a new process, up to {@code attempts} times in all.
+ * <p>
+ * Once every shard has been counted, the partial tables are merged by a tree reduction on the common ForkJoinPool,
+ * where every task merges the two halves of its run of tables, and the result is sorted into a
+ * {@link WordCountList}.
+ * <p>
+ * Workers are started with the command that starts a JVM, by default the {@code java} of the running JVM, followed by
+ * the classpath of the running JVM. A different command can wrap it, such as {@code taskset} or {@code nice}, or run
+ * a different JVM with its own options.
+ */
+public class DistributedWordCounter implements FileWordCounter {
+
+    /**
+     * How the partial counts of a worker are sent back.
+     */
+    public enum Transport {
+        /**
+         * Through the standard output of the worker process.
+         */
+        PIPE,
+        /**
+         * Over a connection to a loopback port that the coordinator listens on for the shard.
+         */
+        SOCKET
+    }
+
+    private static final long DEFAULT_SPLIT_SIZE = 64L * 1024 * 1024;
+    private static final int DEFAULT_ATTEMPTS = 3;
+    private static final long DEFAULT_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    private static final int MAX_FILES_PER_SHARD = 256;
+    private static final int MAX_ERROR_LENGTH = 2048;
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    private static final int ACCEPT_POLL_MILLIS = 100;
+
+    private final int workers;
+    private final long splitSize;
+    private final int attempts;
+    private final long timeoutMillis;
+    private final Transport transport;
+    private final List<String> command;
+    private final SecureRandom random = new SecureRandom();
+    private final BufferedWordCounter streamCounter = new BufferedWordCounter(STREAM_BUFFER_SIZE, true);
+
+    /**
+     * Constructs a DistributedWordCounter that starts up to the given number of workers with the java of the running
+     * JVM and reads their counts through pipes.
+     *
+     * @param workers the number of worker processes that run at the same time.
+     */
+    public DistributedWordCounter(int workers) {
+        this(workers, DEFAULT_SPLIT_SIZE, DEFAULT_ATTEMPTS, DEFAULT_TIMEOUT_MILLIS, Transport.PIPE,
+                Collections.singletonList(Paths.get(System.getProperty("java.home"), "bin", "java").toString()));
+    }
+
+    /**
+     * Constructs a DistributedWordCounter with the specified shard size, retries, transport and worker command.
+     *
+     * @param workers       the number of worker processes that run at the same time.
+     * @param splitSize     the number of bytes in a shard, larger files are split and smaller files are batched.
+     * @param attempts      the number of times a shard is started before the count fails.
+     * @param timeoutMillis the time after which a worker is killed and its shard counts as failed.
+     * @param transport     how workers send their counts back.
+     * @param command       the command that starts a JVM, the classpath, main class and ranges are appended to it.
+     */
+    public DistributedWordCounter(int workers, long splitSize, int attempts, long timeoutMillis, Transport transport, List<String> command) {
+        if (workers <= 0)
+            throw new IllegalArgumentException("Workers must be positive");
+
+        if (splitSize <= 0)
+            throw new IllegalArgumentException("Split size must be positive");
+
+        if (attempts <= 0)
+            throw new IllegalArgumentException("Attempts must be positive");
+
+        if (timeoutMillis <= 0)
+            throw new IllegalArgumentException("Timeout must be positive");
+
+        if (transport == null)
+            throw new IllegalArgumentException("Transport cannot be null");
+
+        if (command == null || command.isEmpty())
+            throw new IllegalArgumentException("Command cannot be empty");
+
+        this.workers = workers;
+        this.splitSize = splitSize;
+        this.attempts = attempts;
+        this.timeoutMillis = timeoutMillis;
+        this.transport = transport;
+        this.command = new ArrayList<>(command);
+    }
+
+    /**
+     * Counts the input stream in this process, as a stream cannot be split between workers.
+     */
+    @Override
+    public List<Map.Entry<String, Long>> count(InputStream inputStream, Comparator<Map.Entry<String, Long>> comparator) throws IOException {
+        return streamCounter.count(inputStream, comparator);
+    }
+
+    @Override
+    public List<Map.Entry<String, Long>> count(Path path, Comparator<Map.Entry<String, Long>> comparator) throws IOException {
+        if (path == null)
+            throw new IllegalArgumentException("Path cannot be null");
+
+        return count(Collections.singletonList(path), comparator);
+    }
+
+    /**
+     * Counts the words of every file across the workers and returns the merged counts.
+     *
+     * @param files      The files to count, in UTF-8 character encoding.
+     * @param comparator A comparator used to sort the word-count entries. If null is provided, an
+     *                   IllegalArgumentException will be thrown.
+     * @return A sorted list of the word-count entries of all files together.
+     * @throws IOException If a file cannot be read or a shard still fails after every attempt.
+     */
+    public List<Map.Entry<String, Long>> count(List<Path> files, Comparator<Map.Entry<String, Long>> comparator) throws IOException {
+        if (files == null)
+            throw new IllegalArgumentException("Files cannot be null");
+
+        if (comparator == null)
+            throw new IllegalArgumentException("Comparator cannot be null");
+
+        long started = CountStats.enabled() ? System.nanoTime() : 0;
+        List<List<String>> shards = plan(files);
+        ByteWordTable[] partials = new ByteWordTable[shards.size()];
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        try {
+            List<Future<ByteWordTable>> futures = new ArrayList<>();
+            for (List<String> shard : shards) {
+                futures.add(executor.submit(() -> countShard(shard, timer)));
+            }
+            for (int i = 0; i < partials.length; i++) {
+                partials[i] = futures.get(i).get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for workers");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IllegalStateException("Counting a shard failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+            timer.shutdownNow();
+        }
+
+        long merging = started != 0 ? System.nanoTime() : 0;
+        ByteWordTable total = partials.length == 0 ? new ByteWordTable()
+                : ForkJoinPool.commonPool().invoke(new MergeTask(partials, 0, partials.length));
+        long sorting = started != 0 ? System.nanoTime() : 0;
+        List<Map.Entry<String, Long>> sorted = WordCountList.sorted(new ByteWordTable[]{total}, comparator, ForkJoinPool.commonPool());
+        if (started != 0) {
+            CountStats.global().recordPhase(CountStats.Phase.MERGE, sorting - merging);
+            BufferedWordCounter.record(started, sorting, total);
+        }
+        return sorted;
+    }
+
+    /**
+     * Groups the files into shards, given as the arguments of a worker, splitting large files into ranges and
+     * batching small ones.
+     */
+    private List<List<String>> plan(List<Path> files) throws IOException {
+        List<List<String>> shards = new ArrayList<>();
+        List<String> batch = new ArrayList<>();
+        long batchSize = 0;
+        for (Path file : new LinkedHashSet<>(files)) {
+            long size = Files.size(file);
+            String name = file.toAbsolutePath().toString();
+            if (Compression.detect(file) != Compression.NONE) {
+                shards.add(range(new ArrayList<>(), name, 0, size));
+                continue;
+            }
+
+            if (size <= splitSize) {
+                range(batch, name, 0, size);
+                batchSize += size;
+                if (batchSize >= splitSize || batch.size() / 3 == MAX_FILES_PER_SHARD) {
+                    shards.add(batch);
+                    batch = new ArrayList<>();
+                    batchSize = 0;
+                }
+                continue;
+            }
+
+            long[] boundaries;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                boundaries = MappedParallelWordCounter.splitAtWordBoundaries(channel, splitSize);
+            }
+            for (int i = 0; i + 1 < boundaries.length; i++) {
+                shards.add(range(new ArrayList<>(), name, boundaries[i], boundaries[i + 1]));
+            }
+        }
+        if (!batch.isEmpty())
+            shards.add(batch);
+        return shards;
+    }
+
+    private static List<String> range(List<String> shard, String file, long start, long end) {
+        shard.add(file);
+        shard.add(Long.toString(start));
+        shard.add(Long.toString(end));
+        return shard;
+    }
+
+    /**
+     * Counts a shard in a worker process, starting it again until it succeeds or runs out of attempts.
+     */
+    private ByteWordTable countShard(List<String> ranges, ScheduledExecutorService timer) throws IOException, InterruptedException {
+        IOException failure = null;
+        for (int attempt = 1; attempt <= attempts; attempt++) {
+            try {
+                return attempt(ranges, timer);
+            } catch (IOException e) {
+                if (failure != null)
+                    e.addSuppressed(failure);
+                failure = e;
+            }
+        }
+        throw new IOException("Shard of " + ranges.get(0) + " failed after " + attempts + " attempts", failure);
+    }
+
+    /**
+     * Runs one worker process for a shard and reads its counts, killing it once the timeout has passed.
+     */
+    private ByteWordTable attempt(List<String> ranges, ScheduledExecutorService timer) throws IOException, InterruptedException {
+        Path errors = Files.createTempFile("stringcounter-shard", ".err");
+        ServerSocket server = transport == Transport.SOCKET ? new ServerSocket(0, 1, InetAddress.getLoopbackAddress()) : null;
+        Process process = null;
+        try {
+            List<String> arguments = new ArrayList<>(command);
+            arguments.add("-cp");
+            arguments.add(System.getProperty("java.class.path"));
+            arguments.add(ShardWorker.class.getName());
+            long token = random.nextLong();
+            if (server != null) {
+                arguments.add("--connect");
+                arguments.add(Integer.toString(server.getLocalPort()));
+                arguments.add(Long.toHexString(token));
+            }
+            arguments.addAll(ranges);
+            process = new ProcessBuilder(arguments).redirectError(errors.toFile()).start();
+            process.getOutputStream().close();
+            Process started = process;
+            ScheduledFuture<?> kill = timer.schedule(started::destroyForcibly, timeoutMillis, TimeUnit.MILLISECONDS);
+            try {
+                ByteWordTable table = new ByteWordTable();
+                if (server == null) {
+                    BinaryCountReader.readInto(process.getInputStream(), table);
+                } else {
+                    try (Socket socket = accept(server, process)) {
+                        DataInputStream inputStream = new DataInputStream(socket.getInputStream());
+                        if (inputStream.readLong() != token)
+                            throw new IOException("Unexpected connection to the port of a shard");
+                        BinaryCountReader.readInto(inputStream, table);
+                    }
+                }
+                int exitCode = process.waitFor();
+                if (exitCode != 0)
+                    throw new IOException("Worker exited with " + exitCode + ": " + errorOutput(errors));
+                return table;
+            } catch (IOException e) {
+                if (process.isAlive() || process.waitFor() == 0)
+                    throw e;
+                throw new IOException("Worker exited with " + process.exitValue() + ": " + errorOutput(errors), e);
+            } finally {
+                kill.cancel(false);
+            }
+        } finally {
+            if (process != null)
+                process.destroyForcibly();
+            if (server != null)
+                server.close();
+            Files.deleteIfExists(errors);
+        }
+    }
+
+    /**
+     * Waits for the worker to connect, giving up once it has exited, which it also does when it is killed.
+     */
+    private static Socket accept(ServerSocket server, Process process) throws IOException {
+        server.setSoTimeout(ACCEPT_POLL_MILLIS);
+        while (true) {
+            try {
+                return server.accept();
+            } catch (SocketTimeoutException e) {
+                if (!process.isAlive())
+                    throw new IOException("Worker exited before connecting", e);
+            }
+        }
+    }
+
+    private static String errorOutput(Path errors) throws IOException {
+        String output = new String(Files.readAllBytes(errors), StandardCharsets.UTF_8).trim();
+        return output.length() <= MAX_ERROR_LENGTH ? output : output.substring(output.length() - MAX_ERROR_LENGTH);
+    }
+
+    /**
+     * Merges a run of partial tables by merging its two halves and adding the right one to the left one, so that
+     * merges at the same depth of the tree run in parallel.
+     */
+    private static final class MergeTask extends RecursiveTask<ByteWordTable> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient ByteWordTable[] tables;
+        private final int from;
+        private final int to;
+
+        MergeTask(ByteWordTable[] tables, int from, int to) {
+            this.tables = tables;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected ByteWordTable compute() {
+            if (to - from == 1)
+                return tables[from];
+
+            int middle = (from + to) >>> 1;
+            MergeTask right = new MergeTask(tables, middle, to);
+            right.fork();
+            ByteWordTable merged = new MergeTask(tables, from, middle).compute();
+            merged.addAll(right.join());
+            return merged;
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package dev.neilthomson.stringcounter.services;
+
+import dev.neilthomson.stringcounter.compression.CompressedInput;
+import dev.neilthomson.stringcounter.tables.ByteWordTable;
+import dev.neilthomson.stringcounter.tokenizers.Utf8Tokenizer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Chooses the counter for a single file from its size, the processors and heap of the JVM and a sample of its start.
+ * <p>
+ * The first {@link #SAMPLE_SIZE} bytes of the file, decompressed if need be, are tokenized into a table. The number
+ * of distinct words in the whole file is extrapolated from the sample with Heaps' law, using the exponent measured
+ * between the first half of the sample and all of it, and the heap the counts will take is estimated from the average
+ * length of the sampled words and the share of them that are not ASCII, which Strings store in two bytes per
+ * character. Then:
+ * <ul>
+ * <li>a file too small to split, or any file on a single processor, is counted by a sequential
+ * {@link BufferedWordCounter};</li>
+ * <li>a larger file is counted by a {@link MappedParallelWordCounter}, with ranges small enough to give every thread
+ * several of them;</li>
+ * <li>when the estimated counts do not fit in {@link #HEAP_SHARE} of the maximum heap, the parallel counter is
+ * replaced by the sequential one, which keeps a single table, and if that does not fit either by a
+ * {@link SpillingWordCounter} with a quarter of the heap as its budget.</li>
+ * </ul>
+ * A {@link PipelinedWordCounter} is never chosen, as a sample cannot tell whether reads are slow enough for it to help,
+ * but it can be asked for, for example for a file on a network filesystem.
+ * The estimate only has to be right to within a factor of two or so, as the thresholds are far apart in practice. A
+ * compressed file is sampled decompressed but extrapolated from its size on disk, so its vocabulary is underestimated.
+ */
+public final class EngineSelector {
+
+    /**
+     * The counters that can be chosen.
+     */
+    public enum Engine {
+        AUTO,
+        BUFFERED,
+        PARALLEL,
+        SPILLING,
+        PIPELINED;
+
+        /**
+         * Finds an engine by its name, ignoring case.
+         *
+         * @param name the name of the engine, such as {@code parallel}.
+         * @return the engine.
+         * @throws IllegalArgumentException If no engine has the name.
+         */
+        public static Engine of(String name) {
+            if (name == null)
+                throw new IllegalArgumentException("Name cannot be null");
+
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * The number of bytes sampled from the start of a file.
+     */
+    public static final int SAMPLE_SIZE = 1024 * 1024;
+
+    /**
+     * The share of the maximum heap that the estimated counts may take for a counter that keeps them in memory.
+     */
+    public static final double HEAP_SHARE = 0.5;
+
+    private static final int MIN_BUFFER_SIZE = 4 * 1024;
+    private static final int MAX_BUFFER_SIZE = 64 * 1024;
+    private static final long MIN_CHUNK_SIZE = 1024 * 1024;
+    private static final long MAX_CHUNK_SIZE = 8L * 1024 * 1024;
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final double MIN_HEAPS_EXPONENT = 0.4;
+    private static final int TABLE_BYTES_PER_WORD = 40; // hash, offset, length, count and two slots of the index
+    private static final int STRING_BYTES_PER_WORD = 48; // String, its array and the reference to it
+    private static final int ENTRY_BYTES_PER_WORD = 40; // boxed entry and Long of a sorted list
+
+    private EngineSelector() {
+    }
+
+    /**
+     * Chooses the counter for a file, or describes the given engine when it is not {@link Engine#AUTO}.
+     *
+     * @param path   the file to count.
+     * @param engine the engine to use, or {@link Engine#AUTO} to choose one.
+     * @return the choice, with the reasons for it.
+     * @throws IOException If the file cannot be read.
+     */
+    public static Choice choose(Path path, Engine engine) throws IOException {
+        if (path == null)
+            throw new IllegalArgumentException("Path cannot be null");
+
+        if (engine == null)
+            throw new IllegalArgumentException("Engine cannot be null");
+
+        Sample sample;
+        try (InputStream inputStream = CompressedInput.open(path)) {
+            sample = Sample.of(inputStream, SAMPLE_SIZE);
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return choose(engine, Files.size(path), runtime.availableProcessors(), runtime.maxMemory(), sample);
+    }
+
+    /**
+     * Chooses the counter for a file from its size, the hardware and a sample of it.
+     */
+    static Choice choose(Engine engine, long fileSize, int processors, long maxHeap, Sample sample) {
+        long vocabulary = sample.estimateVocabulary(fileSize);
+        double bytesPerWord = sample.averageWordBytes();
+        double stringBytes = STRING_BYTES_PER_WORD + bytesPerWord * (1 + sample.nonAsciiWordRatio());
+        long chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, fileSize / ((long) processors * CHUNKS_PER_THREAD)));
+        int threads = (int) Math.min(processors, (fileSize + chunkSize - 1) / chunkSize);
+        // every thread may see most of the vocabulary, the partitions and the sorted list hold it once more
+        long parallelBytes = (long) (vocabulary * ((threads + 1) * (TABLE_BYTES_PER_WORD + bytesPerWord) + stringBytes + Long.BYTES * 2));
+        long sequentialBytes = (long) (vocabulary * (TABLE_BYTES_PER_WORD + bytesPerWord + stringBytes + ENTRY_BYTES_PER_WORD));
+        long heapLimit = (long) (maxHeap * HEAP_SHARE);
+
+        Engine chosen = engine;
+        String reason = "chosen with --engine";
+        if (engine == Engine.AUTO) {
+            if (processors > 1 && fileSize >= 2 * MIN_CHUNK_SIZE && parallelBytes <= heapLimit) {
+                chosen = Engine.PARALLEL;
+                reason = "large file on " + processors + " processors";
+            } else if (sequentialBytes <= heapLimit) {
+                chosen = Engine.BUFFERED;
+                reason = processors == 1 ? "single processor" : fileSize < 2 * MIN_CHUNK_SIZE ? "small file"
+                        : "parallel tables would not fit in the heap";
+            } else {
+                chosen = Engine.SPILLING;
+                reason = "counts would not fit in the heap";
+            }
+        }
+        int bufferSize = (int) Math.max(MIN_BUFFER_SIZE, Math.min(MAX_BUFFER_SIZE, fileSize));
+        return new Choice(chosen, reason, bufferSize, chunkSize, maxHeap / 4, fileSize, processors, maxHeap, vocabulary,
+                chosen == Engine.PARALLEL ? parallelBytes : sequentialBytes, sample);
+    }
+
+    /**
+     * A counter chosen for a file and the measurements that it was chosen by.
+     */
+    public static final class Choice {
+
+        private final Engine engine;
+        private final String reason;
+        private final int bufferSize;
+        private final long chunkSize;
+        private final long memoryBudget;
+        private final long fileSize;
+        private final int processors;
+        private final long maxHeap;
+        private final long vocabulary;
+        private final long heapBytes;
+        private final Sample sample;
+
+        private Choice(Engine engine, String reason, int bufferSize, long chunkSize, long memoryBudget, long fileSize,
+                       int processors, long maxHeap, long vocabulary, long heapBytes, Sample sample) {
+            this.engine = engine;
+            this.reason = reason;
+            this.bufferSize = bufferSize;
+            this.chunkSize = chunkSize;
+            this.memoryBudget = memoryBudget;
+            this.fileSize = fileSize;
+            this.processors = processors;
+            this.maxHeap = maxHeap;
+            this.vocabulary = vocabulary;
+            this.heapBytes = heapBytes;
+            this.sample = sample;
+        }
+
+        /**
+         * Returns the chosen engine, which is never {@link Engine#AUTO}.
+         */
+        public Engine engine() {
+            return engine;
+        }
+
+        /**
+         * Returns the size of the buffer that the counter reads with.
+         */
+        public int bufferSize() {
+            return bufferSize;
+        }
+
+        /**
+         * Returns the estimated number of distinct words in the file.
+         */
+        public long vocabulary() {
+            return vocabulary;
+        }
+
+        /**
+         * Creates the chosen counter. Every counter splits the bytes with a Utf8Tokenizer.
+         *
+         * @return a new counter.
+         */
+        public WordCounter counter() {
+            switch (engine) {
+                case PARALLEL:
+                    return new MappedParallelWordCounter(bufferSize, (int) chunkSize, ForkJoinPool.commonPool(), true);
+                case SPILLING:
+                    return new SpillingWordCounter(bufferSize, memoryBudget, null);
+                case PIPELINED:
+                    return new PipelinedWordCounter(bufferSize);
+                default:
+                    return new BufferedWordCounter(bufferSize, true);
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            text.append(String.format(Locale.ROOT, "engine %s (%s), buffer %d bytes", engine.name().toLowerCase(Locale.ROOT),
+                    reason, bufferSize));
+            if (engine == Engine.PARALLEL)
+                text.append(String.format(Locale.ROOT, ", ranges of %d bytes", chunkSize));
+            if (engine == Engine.SPILLING)
+                text.append(String.format(Locale.ROOT, ", memory budget %d MB", memoryBudget >> 20));
+            text.append(String.format(Locale.ROOT, "\nfile %d bytes, %d processors, max heap %d MB, vector tokenizer %s\n",
+                    fileSize, processors, maxHeap >> 20, Utf8Tokenizer.isVectorized() ? "on" : "off"));
+            text.append(String.format(Locale.ROOT, "sample %d bytes, %d words, %d distinct, %.1f%% non-ASCII bytes\n",
+                    sample.bytes, sample.tokens, sample.distinct, sample.nonAsciiByteRatio() * 100));
+            text.append(String.format(Locale.ROOT, "estimated %d distinct words taking %d MB of heap",
+                    vocabulary, heapBytes >> 20));
+            return text.toString();
+        }
+    }
+
+    /**
+     * The words counted in the start of a file.
+     */
+    static final class Sample {
+
+        private final long bytes;
+        private final long tokens;
+        private final long distinct;
+        private final long halfTokens;
+        private final long halfDistinct;
+        private final long wordBytes;
+        private final long nonAsciiWords;
+        private final long nonAsciiBytes;
+        private final boolean complete;
+
+        Sample(long bytes, long tokens, long distinct, long halfTokens, long halfDistinct, long wordBytes,
+               long nonAsciiWords, long nonAsciiBytes, boolean complete) {
+            this.bytes = bytes;
+            this.tokens = tokens;
+            this.distinct = distinct;
+            this.halfTokens = halfTokens;
+            this.halfDistinct = halfDistinct;
+            this.wordBytes = wordBytes;
+            this.nonAsciiWords = nonAsciiWords;
+            this.nonAsciiBytes = nonAsciiBytes;
+            this.complete = complete;
+        }
+
+        /**
+         * Tokenizes up to {@code limit} bytes from the start of a stream, cut after the last delimiter so that no word is
+         * counted in part.
+         */
+        static Sample of(InputStream inputStream, int limit) throws IOException {
+            byte[] buffer = new byte[limit];
+            int length = 0;
+            int numRead;
+            while (length < limit && (numRead = inputStream.read(buffer, length, limit - length)) != -1) {
+                length += numRead;
+            }
+            boolean complete = length < limit || inputStream.read() == -1;
+            if (!complete)
+                length = MappedParallelWordCounter.lastBoundary(buffer, length);
+
+            long nonAsciiBytes = 0;
+            for (int i = 0; i < length; i++) {
+                if (buffer[i] < 0)
+                    nonAsciiBytes++;
+            }
+
+            ByteWordTable table = new ByteWordTable();
+            Utf8Tokenizer tokenizer = new Utf8Tokenizer(table::add);
+            int half = MappedParallelWordCounter.lastBoundary(buffer, length / 2);
+            tokenizer.feed(buffer, 0, half); // ends after a delimiter, so no word is left pending
+            long halfTokens = table.total();
+            long halfDistinct = table.size();
+            tokenizer.feed(buffer, half, length - half);
+            tokenizer.finish();
+
+            long[] words = new long[2];
+            table.forEach((bytes, offset, wordLength, count) -> {
+                words[0] += wordLength;
+                for (int i = offset; i < offset + wordLength; i++) {
+                    if (bytes[i] < 0) {
+                        words[1]++;
+                        break;
+                    }
+                }
+            });
+            return new Sample(length, table.total(), table.size(), halfTokens, halfDistinct, words[0], words[1],
+                    nonAsciiBytes, complete);
+        }
+
+        /**
+         * Extrapolates the number of distinct words in a file of the given size with Heaps' law, {@code V = K * n^b}.
+         */
+        long estimateVocabulary(long fileSize) {
+            if (complete || bytes == 0 || distinct == 0)
+                return distinct;
+
+            double exponent = 1;
+            if (halfDistinct > 0 && halfTokens > 0 && tokens > halfTokens && distinct >= halfDistinct)
+                exponent = Math.log((double) distinct / halfDistinct) / Math.log((double) tokens / halfTokens);
+            exponent = Math.max(MIN_HEAPS_EXPONENT, Math.min(1, exponent));
+            double scale = Math.max(1, (double) fileSize / bytes);
+            return (long) Math.min(distinct * Math.pow(scale, exponent), tokens * scale);
+        }
+
+        double averageWordBytes() {
+            return distinct == 0 ? 0 : (double) wordBytes / distinct;
+        }
+
+        double nonAsciiWordRatio() {
+            return distinct == 0 ? 0 : (double) nonAsciiWords / distinct;
+        }
+
+        double nonAsciiByteRatio() {
+            return bytes == 0 ? 0 : (double) nonAsciiBytes / bytes;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package dev.neilthomson.stringcounter.services;
+
+import dev.neilthomson.stringcounter.ranking.TopK;
+import dev.neilthomson.stringcounter.ranking.WordCountList;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Defines a {@link WordCounter} that can also count words directly from a file on disk.
+ * <p>
+ * Implementations are able to take advantage of random access to the file, for example by mapping it into memory
+ * and processing separate regions of it in parallel, which is not possible when only an InputStream is available.
+ */
+public interface FileWordCounter extends WordCounter {
+
+    /**
+     * Counts the occurrences of words in the provided file and returns a sorted list of word-count entries.
+     *
+     * @param path       The path of the file containing the text to be analyzed in UTF-8 character encoding.
+     * @param comparator A comparator used to sort the word-count entries. If null is provided, an
+     *                   IllegalArgumentException will be thrown.
+     * @return A sorted list of {@link java.util.Map.Entry} objects, where each entry has a key of type
+     *         {@link String} (word) and a value of type {@link Long} (count).
+     * @throws IOException If an error occurs while reading from the file.
+     */
+    List<Map.Entry<String, Long>> count(Path path, Comparator<Map.Entry<String, Long>> comparator) throws IOException, IllegalArgumentException;
+
+    /**
+     * Counts the occurrences of words in the provided file and returns only the first {@code limit} word-count
+     * entries in comparator order.
+     *
+     * @param path       The path of the file containing the text to be analyzed in UTF-8 character encoding.
+     * @param comparator A comparator used to order the word-count entries. If null is provided, an
+     *                   IllegalArgumentException will be thrown.
+     * @param limit      The maximum number of entries to return. If negative, an IllegalArgumentException will be
+     *                   thrown.
+     * @return A list of at most {@code limit} entries, sorted according to the provided comparator.
+     * @throws IOException If an error occurs while reading from the file.
+     */
+    default List<Map.Entry<String, Long>> countTop(Path path, Comparator<Map.Entry<String, Long>> comparator, int limit) throws IOException, IllegalArgumentException {
+        if (limit < 0)
+            throw new IllegalArgumentException("Limit cannot be negative");
+
+        return TopK.truncate(count(path, comparator), limit);
+    }
+
+    /**
+     * Counts the occurrences of words in the provided file and passes every word-count entry to a consumer in
+     * comparator order, so that they can be written out without keeping a sorted list of them.
+     * <p>
+     * By default the entries are counted and sorted with {@link #count(Path, Comparator)} before the first one is
+     * passed on. Implementations may start passing entries on before the rest of them are sorted.
+     *
+     * @param path       The path of the file containing the text to be analyzed in UTF-8 character encoding.
+     * @param comparator A comparator used to order the word-count entries. If null is provided, an
+     *                   IllegalArgumentException will be thrown.
+     * @param consumer   The consumer the entries are passed to, on the calling thread. If null is provided, an
+     *                   IllegalArgumentException will be thrown.
+     * @throws IOException If an error occurs while reading from the file or the consumer cannot accept an entry.
+     */
+    default void countTo(Path path, Comparator<Map.Entry<String, Long>> comparator, WordCountList.EntryConsumer consumer) throws IOException, IllegalArgumentException {
+        if (consumer == null)
+            throw new IllegalArgumentException("Consumer cannot be null");
+
+        for (Map.Entry<String, Long> entry : count(path, comparator)) {
+            consumer.accept(entry.getKey(), entry.getValue());
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package dev.neilthomson.stringcounter.services;
+
+import dev.neilthomson.stringcounter.ranking.TopK;
+import dev.neilthomson.stringcounter.tables.ByteWordTable;
+import dev.neilthomson.stringcounter.tables.OffHeapWordTable;
+import dev.neilthomson.stringcounter.tables.WordTable;
+import dev.neilthomson.stringcounter.tokenizers.Utf8Tokenizer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Implements the {@link WordCounter} interface to provide allocation-free word counting functionality.
+ * <p>
+ * The input stream is split by a {@link Utf8Tokenizer} and each word is counted in a {@link ByteWordTable} straight
+ * from the read buffer. No String or Long is created per word, so the amount of garbage produced does not grow with
+ * the size of the input, only with the number of distinct words.
+ * <p>
+ * The table can be supplied, for example an {@link OffHeapWordTable} keeps the vocabulary outside the Java heap so that
+ * it can grow beyond the heap limit.
+ */
+public class HashedWordCounter implements WordCounter {
+
+    private final int bufferSize;
+    private final Supplier<WordTable> tableFactory;
+
+    /**
+     * Constructs a HashedWordCounter with the specified buffer size that counts on the Java heap.
+     *
+     * @param bufferSize the size of the buffer to use for reading bytes from the input stream.
+     */
+    public HashedWordCounter(int bufferSize) {
+        this(bufferSize, ByteWordTable::new);
+    }
+
+    /**
+     * Constructs a HashedWordCounter with the specified buffer size and table.
+     *
+     * @param bufferSize   the size of the buffer to use for reading bytes from the input stream.
+     * @param tableFactory creates a new, empty, table for every input stream that is counted.
+     */
+    public HashedWordCounter(int bufferSize, Supplier<WordTable> tableFactory) {
+        if (tableFactory == null)
+            throw new IllegalArgumentException("Table factory cannot be null");
+
+        this.bufferSize = bufferSize;
+        this.tableFactory = tableFactory;
+    }
+
+    /**
+     * Creates a HashedWordCounter that keeps the vocabulary in an {@link OffHeapWordTable}.
+     *
+     * @param bufferSize    the size of the buffer to use for reading bytes from the input stream.
+     * @param expectedWords the number of distinct words the table can hold before its index has to be rehashed.
+     * @param segmentSize   the size in bytes of each off-heap data segment.
+     * @return a HashedWordCounter that counts off the Java heap.
+     */
+    public static HashedWordCounter offHeap(int bufferSize, int expectedWords, int segmentSize) {
+        return new HashedWordCounter(bufferSize, () -> new OffHeapWordTable(expectedWords, segmentSize));
+    }
+
+    @Override
+    public List<Map.Entry<String, Long>> count(InputStream inputStream, Comparator<Map.Entry<String, Long>> comparator) throws IOException {
+        if (comparator == null)
+            throw new IllegalArgumentException("Comparator cannot be null");
+
+        List<Map.Entry<String, Long>> entries = tally(inputStream).entries();
+        entries.sort(comparator);
+        return entries;
+    }
+
+    @Override
+    public List<Map.Entry<String, Long>> countTop(InputStream inputStream, Comparator<Map.Entry<String, Long>> comparator, int limit) throws IOException {
+        if (comparator == null)
+            throw new IllegalArgumentException("Comparator cannot be null");
+
+        if (limit < 0)
+            throw new IllegalArgumentException("Limit cannot be negative");
+
+        return TopK.select(tally(inputStream).entries(), comparator, limit);
+    }
+
+    /**
+     * Counts the words in the input stream into a new table.
+     *
+     * @param inputStream the stream of UTF-8 encoded text, it is closed once it has been read.
+     * @return the table holding the count of every distinct word.
+     * @throws IOException If an error occurs while reading from the input stream.
+     */
+    private WordTable tally(InputStream inputStream) throws IOException {
+        if (inputStream == null)
+            throw new IllegalArgumentException("InputStream cannot be null");
+
+        try (InputStream stream = inputStream) {
+            WordTable table = tableFactory.get();
+            new Utf8Tokenizer(table::add).tokenize(stream, new byte[bufferSize]);
+            return table;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package dev.neilthomson.stringcounter.services;
+
+import dev.neilthomson.stringcounter.ranking.TopK;
+import dev.neilthomson.stringcounter.tables.ByteWordTable;
+import dev.neilthomson.stringcounter.tokenizers.Utf8Tokenizer;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts words from input that arrives in chunks and may never end, such as the tail of a log file.
+ * <p>
+ * Chunks of UTF-8 bytes or of characters are appended as they arrive. A word, a multi-byte sequence or a surrogate
+ * pair that is cut by the end of a chunk is carried over and completed by the next one, so the counts do not depend
+ * on where the input is split. The word that is still open at the end of the last chunk is only counted once the next
+ * chunk ends it or {@link #finish()} is called.
+ * <p>
+ * A snapshot of the counts can be taken at any time, from any thread, while chunks are still being appended. Every
+ * snapshot is consistent: it holds exactly the words completed by the chunks appended before it. Taking a snapshot only
+ * blocks ingestion while the count table is copied, and both the copy and the sorting that follows it depend on the
+ * number of distinct words rather than on the amount of input seen.
+ * <p>
+ * Chunks must be appended by a single producer, or by producers that agree on their order, since a chunk continues
+ * the word left open by the one before it.
+ */
+public class IncrementalWordCounter {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final Object lock = new Object();
+    private final ByteWordTable table = new ByteWordTable();
+    private final Utf8Tokenizer tokenizer = new Utf8Tokenizer(table::add);
+    private final byte[] buffer;
+    private char highSurrogate;
+
+    /**
+     * Constructs an empty IncrementalWordCounter with a default buffer size.
+     */
+    public IncrementalWordCounter() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructs an empty IncrementalWordCounter with the specified buffer size.
+     *
+     * @param bufferSize the size of the buffer that appended chunks are copied or encoded into before they are
+     *                   tokenized, larger chunks are processed in several steps.
+     */
+    public IncrementalWordCounter(int bufferSize) {
+        if (bufferSize < 8)
+            throw new IllegalArgumentException("Buffer size must be at least 8");
+
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Appends a chunk of UTF-8 encoded text. The chunk is not modified.
+     *
+     * @param bytes  the array holding the chunk.
+     * @param offset the index of the first byte of the chunk.
+     * @param length the number of bytes in the chunk.
+     */
+    public void append(byte[] bytes, int offset, int length) {
+        if (bytes == null)
+            throw new IllegalArgumentException("Bytes cannot be null");
+
+        if (offset < 0 || length < 0 || offset > bytes.length - length)
+            throw new IndexOutOfBoundsException("Chunk is outside of the array");
+
+        synchronized (lock) {
+            flushHighSurrogate();
+            for (int position = offset, end = offset + length; position < end; ) {
+                int step = Math.min(buffer.length, end - position);
+                System.arraycopy(bytes, position, buffer, 0, step); // the tokenizer lowercases in place
+                tokenizer.feed(buffer, 0, step);
+                position += step;
+            }
+        }
+    }
+
+    /**
+     * Appends a chunk of text.
+     *
+     * @param text the chunk, which may end in the middle of a surrogate pair.
+     */
+    public void append(CharSequence text) {
+        if (text == null)
+            throw new IllegalArgumentException("Text cannot be null");
+
+        synchronized (lock) {
+            int length = 0;
+            for (int i = 0; i < text.length(); i++) {
+                if (length > buffer.length - 6) { // room for U+FFFD and a three byte character
+                    tokenizer.feed(buffer, 0, length);
+                    length = 0;
+                }
+                length = encode(text.charAt(i), length);
+            }
+            tokenizer.feed(buffer, 0, length);
+        }
+    }
+
+    /**
+     * Ends the input, counting the word that is still open at the end of the last chunk. Chunks appended afterwards
+     * start a new word.
+     */
+    public void finish() {
+        synchronized (lock) {
+            flushHighSurrogate();
+            tokenizer.finish();
+        }
+    }
+
+    /**
+     * Takes a consistent snapshot of the counts of every word completed so far.
+     *
+     * @param comparator A comparator used to sort the word-count entries. If null is provided, an
+     *                   IllegalArgumentException will be thrown.
+     * @return A sorted list of {@link java.util.Map.Entry} objects, where each entry has a key of type
+     *         {@link String} (word) and a value of type {@link Long} (count).
+     */
+    public List<Map.Entry<String, Long>> snapshot(Comparator<Map.Entry<String, Long>> comparator) {
+        if (comparator == null)
+            throw new IllegalArgumentException("Comparator cannot be null");
+
+        List<Map.Entry<String, Long>> entries = copy().entries();
+        entries.sort(comparator);
+        return entries;
+    }
+
+    /**
+     * Takes a consistent snapshot of the counts of every word completed so far and returns only the first
+     * {@code limit} entries in comparator order.
+     *
+     * @param comparator A comparator used to order the word-count entries. If null is provided, an
+     *                   IllegalArgumentException will be thrown.
+     * @param limit      The maximum number of entries to return. If negative, an IllegalArgumentException will be
+     *                   thrown.
+     * @return A list of at most {@code limit} entries, sorted according to the provided comparator.
+     */
+    public List<Map.Entry<String, Long>> snapshotTop(Comparator<Map.Entry<String, Long>> comparator, int limit) {
+        if (comparator == null)
+            throw new IllegalArgumentException("Comparator cannot be null");
+
+        if (limit < 0)
+            throw new IllegalArgumentException("Limit cannot be negative");
+
+        return TopK.select(copy().entries(), comparator, limit);
+    }
+
+    /**
+     * Returns the number of distinct words completed so far.
+     *
+     * @return the number of distinct words.
+     */
+    public int distinctWords() {
+        synchronized (lock) {
+            return table.size();
+        }
+    }
+
+    private ByteWordTable copy() {
+        synchronized (lock) {
+            return table.copy();
+        }
+    }
+
+    /**
+     * Encodes a character into the buffer as UTF-8, pairing it with a high surrogate left by the previous character
+     * or chunk. Unpaired surrogates are encoded as U+FFFD, which ends a word like any other malformed input.
+     *
+     * @return the new length of the buffer.
+     */
+    private int encode(char c, int length) {
+        int position = length;
+        if (highSurrogate != 0) {
+            char high = highSurrogate;
+            highSurrogate = 0;
+            if (Character.isLowSurrogate(c))
+                return encodeCodePoint(Character.toCodePoint(high, c), position);
+            position = encodeCodePoint(0xFFFD, position);
+        }
+
+        if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+            return position;
+        }
+        return encodeCodePoint(Character.isLowSurrogate(c) ? 0xFFFD : c, position);
+    }
+
+    private int encodeCodePoint(int codePoint, int position) {
+        int i = position;
+        if (codePoint < 0x80) {
+            buffer[i++] = (byte) codePoint;
+        } else if (codePoint < 0x800) {
+            buffer[i++] = (byte) (0xC0 | codePoint >>> 6);
+            buffer[i++] = (byte) (0x80 | codePoint & 0x3F);
+        } else if (codePoint < 0x10000) {
+            buffer[i++] = (byte) (0xE0 | codePoint >>> 12);
+            buffer[i++] = (byte) (0x80 | codePoint >>> 6 & 0x3F);
+            buffer[i++] = (byte) (0x80 | codePoint & 0x3F);
+        } else {
+            buffer[i++] = (byte) (0xF0 | codePoint >>> 18);
+            buffer[i++] = (byte) (0x80 | codePoint >>> 12 & 0x3F);
+            buffer[i++] = (byte) (0x80 | codePoint >>> 6 & 0x3F);
+            buffer[i++] = (byte) (0x80 | codePoint & 0x3F);
+        }
+        return i;
+    }
+
+    /**
+     * Ends a surrogate pair that was left open by a chunk of characters when bytes or the end of input follow it.
+     */
+    private void flushHighSurrogate() {
+        if (highSurrogate != 0) {
+            highSurrogate = 0;
+            tokenizer.feed(buffer, 0, encodeCodePoint(0xFFFD, 0));
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package dev.neilthomson.stringcounter.services;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Expands the inputs given on the command line into the list of regular files to count.
+ * <p>
+ * Every input is either a file, a directory, whose regular files are all counted recursively, or a glob such as
+ * {@code logs/**}{@code /*.txt}. A glob is matched against the files under the longest leading part of it that
+ * contains no glob characters. Symbolic links to directories are followed, so a directory given through a link is
+ * counted like the directory itself.
+ */
+public final class InputFiles {
+
+    private static final String GLOB_CHARACTERS = "*?[{";
+
+    private InputFiles() {
+    }
+
+    /**
+     * Resolves the inputs into regular files.
+     *
+     * @param inputs the files, directories and globs to resolve.
+     * @return the regular files, without duplicates, in the order of the inputs and sorted within a directory or glob.
+     * @throws NoSuchFileException If an input that is not a glob does not exist, or an input resolves to no files.
+     * @throws IOException         If an error occurs while listing a directory.
+     */
+    public static List<Path> resolve(List<String> inputs) throws IOException {
+        if (inputs == null)
+            throw new IllegalArgumentException("Inputs cannot be null");
+
+        Set<Path> files = new LinkedHashSet<>();
+        for (String input : inputs) {
+            List<Path> resolved;
+            if (isGlob(input)) {
+                resolved = glob(input);
+            } else {
+                Path path = Paths.get(input);
+                if (Files.isDirectory(path)) {
+                    resolved = walk(path, file -> true);
+                } else if (Files.exists(path)) {
+                    resolved = Collections.singletonList(path);
+                } else {
+                    throw new NoSuchFileException(input);
+                }
+            }
+            // an empty directory or a glob that matches nothing is more likely a mistake than a request for no counts
+            if (resolved.isEmpty())
+                throw new NoSuchFileException(input, null, "No files to count");
+
+            files.addAll(resolved);
+        }
+        return new ArrayList<>(files);
+    }
+
+    private static boolean isGlob(String input) {
+        for (int i = 0; i < input.length(); i++) {
+            if (GLOB_CHARACTERS.indexOf(input.charAt(i)) >= 0)
+                return true;
+        }
+        return false;
+    }
+
+    private static List<Path> glob(String pattern) throws IOException {
+        String normalized = pattern.replace('\\', '/');
+        int firstGlob = 0;
+        while (GLOB_CHARACTERS.indexOf(normalized.charAt(firstGlob)) < 0) {
+            firstGlob++;
+        }
+        int baseEnd = normalized.lastIndexOf('/', firstGlob);
+        Path base = Paths.get(baseEnd < 0 ? "" : normalized.substring(0, Math.max(baseEnd, 1)));
+        if (!Files.isDirectory(base))
+            return new ArrayList<>();
+
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + normalized);
+        return walk(base, matcher::matches);
+    }
+
+    private static List<Path> walk(Path directory, PathMatcher filter) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory, FileVisitOption.FOLLOW_LINKS)) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(filter::matches)
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package dev.neilthomson.stringcounter.services;
+
+import dev.neilthomson.stringcounter.tables.ByteWordTable;
+import dev.neilthomson.stringcounter.tokenizers.CharTokenizer;
+import dev.neilthomson.stringcounter.tokenizers.TokenPipeline;
+
+import java.util.stream.Collector;
+
+/**
+ * Counts the words of lines of text into a {@link ByteWordTable}, as the mutable container of a stream of lines.
+ * <p>
+ * Every line is tokenized as an input of its own, so the rules of the pipeline start afresh on every line and the
+ * lines can be counted in any order, on any number of threads. A tally can also be kept for every thread of a
+ * parallel stream, with the tables of the threads merged at the end.
+ */
+final class LineTally {
+
+    private final ByteWordTable table = new ByteWordTable();
+    private final CharTokenizer tokenizer;
+
+    LineTally(TokenPipeline pipeline) {
+        this.tokenizer = new CharTokenizer(pipeline.sink(table::add));
+    }
+
+    /**
+     * Creates a collector that counts the words of a stream of lines, sequential or parallel, into a table.
+     *
+     * @param pipeline the rules applied to the words of every line.
+     * @return the collector.
+     */
+    static Collector<String, LineTally, ByteWordTable> collector(TokenPipeline pipeline) {
+        return Collector.of(() -> new LineTally(pipeline), LineTally::add, LineTally::merge, tally -> tally.table);
+    }
+
+    void add(String line) {
+        tokenizer.feed(line);
+        tokenizer.finish();
+    }
+
+    ByteWordTable table() {
+        return table;
+    }
+
+    private LineTally merge(LineTally other) {
+        table.addAll(other.table);
+        return this;
+    }
+}
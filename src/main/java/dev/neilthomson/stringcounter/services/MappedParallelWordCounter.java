@@ -0,0 +1,375 @@
+package dev.neilthomson.stringcounter.services;
+
+import dev.neilthomson.stringcounter.metrics.CountStats;
+import dev.neilthomson.stringcounter.ranking.TopK;
+import dev.neilthomson.stringcounter.ranking.WordCountList;
+import dev.neilthomson.stringcounter.tables.ByteWordTable;
+import dev.neilthomson.stringcounter.tables.PartitionedMerge;
+import dev.neilthomson.stringcounter.tokenizers.CharTokenizer;
+import dev.neilthomson.stringcounter.tokenizers.Utf8Tokenizer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Implements the {@link FileWordCounter} interface to provide parallel word counting over memory-mapped files.
+ * <p>
+ * The file is split into byte ranges that always end on a word boundary, each range is mapped into memory and
+ * decoded and counted with a {@link CharTokenizer}, like {@link BufferedWordCounter} does, into a
+ * {@link ByteWordTable} of the pool thread that counts it. Because the file contents are never copied onto the heap,
+ * memory usage is bounded by the size of the vocabulary, times the number of threads, rather than the size of the
+ * file.
+ * <p>
+ * Once every range has been counted the tables of the threads are merged by hash partition with a
+ * {@link PartitionedMerge} and sorted into a {@link WordCountList}, both in parallel on the same pool, so no step
+ * after counting runs on a single thread. {@link #countTo(Path, Comparator, WordCountList.EntryConsumer)} passes the
+ * highest ranked words on while the rest are still being sorted.
+ * <p>
+ * The ranges can optionally be split with a {@link Utf8Tokenizer} directly from the mapped bytes instead of being
+ * decoded into characters.
+ * <p>
+ * When only an InputStream is available the words are counted sequentially by a {@link BufferedWordCounter}.
+ * <p>
+ * While {@link CountStats} are enabled, the time every pool thread spends counting ranges and the time spent merging
+ * their tables are recorded. Reading and tokenizing cannot be told apart, as the pages of a range are only read when
+ * the tokenizer first touches them.
+ */
+public class MappedParallelWordCounter implements FileWordCounter {
+
+    private static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+    private static final int PROBE_SIZE = 256;
+
+    private final int bufferSize;
+    private final int chunkSize;
+    private final ForkJoinPool pool;
+    private final boolean byteTokenizer;
+    private final BufferedWordCounter streamCounter;
+
+    /**
+     * Constructs a MappedParallelWordCounter that counts on the common ForkJoinPool.
+     *
+     * @param bufferSize the number of characters decoded at a time from each mapped range.
+     */
+    public MappedParallelWordCounter(int bufferSize) {
+        this(bufferSize, DEFAULT_CHUNK_SIZE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs a MappedParallelWordCounter with the specified range size and pool.
+     *
+     * @param bufferSize the number of characters decoded at a time from each mapped range.
+     * @param chunkSize  the target size in bytes of each range, ranges are extended up to the next word boundary.
+     * @param pool       the pool the ranges are counted on.
+     */
+    public MappedParallelWordCounter(int bufferSize, int chunkSize, ForkJoinPool pool) {
+        this(bufferSize, chunkSize, pool, false);
+    }
+
+    /**
+     * Constructs a MappedParallelWordCounter with the specified range size, pool and tokenizer.
+     *
+     * @param bufferSize    the number of characters, or bytes, processed at a time from each mapped range.
+     * @param chunkSize     the target size in bytes of each range, ranges are extended up to the next word boundary.
+     * @param pool          the pool the ranges are counted on.
+     * @param byteTokenizer {@code true} to split the mapped bytes with a {@link Utf8Tokenizer}, {@code false} to decode
+     *                      them into characters first.
+     */
+    public MappedParallelWordCounter(int bufferSize, int chunkSize, ForkJoinPool pool, boolean byteTokenizer) {
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("Chunk size must be positive");
+
+        if (pool == null)
+            throw new IllegalArgumentException("Pool cannot be null");
+
+        this.bufferSize = Math.max(bufferSize, 2); // a surrogate pair must fit in the decode buffer
+        this.chunkSize = chunkSize;
+        this.pool = pool;
+        this.byteTokenizer = byteTokenizer;
+        this.streamCounter = new BufferedWordCounter(bufferSize, byteTokenizer);
+    }
+
+    @Override
+    public List<Map.Entry<String, Long>> count(InputStream inputStream, Comparator<Map.Entry<String, Long>> comparator) throws IOException {
+        return streamCounter.count(inputStream, comparator);
+    }
+
+    @Override
+    public List<Map.Entry<String, Long>> countTop(InputStream inputStream, Comparator<Map.Entry<String, Long>> comparator, int limit) throws IOException {
+        return streamCounter.countTop(inputStream, comparator, limit);
+    }
+
+    @Override
+    public List<Map.Entry<String, Long>> count(Path path, Comparator<Map.Entry<String, Long>> comparator) throws IOException {
+        if (comparator == null)
+            throw new IllegalArgumentException("Comparator cannot be null");
+
+        long started = CountStats.enabled() ? System.nanoTime() : 0;
+        ByteWordTable[] partitions = tally(path, started != 0);
+        long sorting = started != 0 ? System.nanoTime() : 0;
+        List<Map.Entry<String, Long>> sorted = WordCountList.sorted(partitions, comparator, pool);
+        if (started != 0)
+            BufferedWordCounter.record(started, sorting, partitions);
+        return sorted;
+    }
+
+    @Override
+    public void countTo(Path path, Comparator<Map.Entry<String, Long>> comparator, WordCountList.EntryConsumer consumer) throws IOException {
+        if (comparator == null)
+            throw new IllegalArgumentException("Comparator cannot be null");
+
+        if (consumer == null)
+            throw new IllegalArgumentException("Consumer cannot be null");
+
+        long started = CountStats.enabled() ? System.nanoTime() : 0;
+        ByteWordTable[] partitions = tally(path, started != 0);
+        long sorting = started != 0 ? System.nanoTime() : 0;
+        WordCountList.forEachSorted(partitions, comparator, pool, consumer);
+        if (started != 0)
+            BufferedWordCounter.record(started, sorting, partitions);
+    }
+
+    @Override
+    public List<Map.Entry<String, Long>> countTop(Path path, Comparator<Map.Entry<String, Long>> comparator, int limit) throws IOException {
+        if (comparator == null)
+            throw new IllegalArgumentException("Comparator cannot be null");
+
+        if (limit < 0)
+            throw new IllegalArgumentException("Limit cannot be negative");
+
+        long started = CountStats.enabled() ? System.nanoTime() : 0;
+        ByteWordTable[] partitions = tally(path, started != 0);
+        long sorting = started != 0 ? System.nanoTime() : 0;
+        List<Map.Entry<String, Long>> top = TopK.select(WordCountList.of(partitions, pool), comparator, limit);
+        if (started != 0)
+            BufferedWordCounter.record(started, sorting, partitions);
+        return top;
+    }
+
+    /**
+     * Counts the words in every range of the file in parallel and merges the results without sorting them.
+     *
+     * @param path  the file to count.
+     * @param timed whether to record the bytes, the time of every range and the busy time of every thread.
+     * @return disjoint partitions that together hold the count of every distinct word.
+     * @throws IOException If an error occurs while reading from the file.
+     */
+    private ByteWordTable[] tally(Path path, boolean timed) throws IOException {
+        if (path == null)
+            throw new IllegalArgumentException("Path cannot be null");
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long[] boundaries = splitAtWordBoundaries(channel, chunkSize);
+            if (boundaries.length < 2)
+                return new ByteWordTable[0];
+
+            Map<Thread, AtomicLong> busy = timed ? new ConcurrentHashMap<>() : null;
+            Map<Thread, ByteWordTable> tables = new ConcurrentHashMap<>();
+            pool.invoke(new ChunkTask(channel, boundaries, 0, boundaries.length - 1, tables, busy));
+            if (timed)
+                record(channel.size(), busy);
+
+            long merging = timed ? System.nanoTime() : 0;
+            ByteWordTable[] partitions = PartitionedMerge.merge(new ArrayList<>(tables.values()), pool);
+            if (timed)
+                CountStats.global().recordPhase(CountStats.Phase.MERGE, System.nanoTime() - merging);
+            return partitions;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Records the bytes of the file and the time the threads spent counting ranges, which includes reading the
+     * mapped pages, and how evenly the ranges were spread over the threads.
+     */
+    private static void record(long bytes, Map<Thread, AtomicLong> busy) {
+        long busiest = 0;
+        long total = 0;
+        for (AtomicLong nanos : busy.values()) {
+            busiest = Math.max(busiest, nanos.get());
+            total += nanos.get();
+        }
+        CountStats.global().recordBytes(bytes);
+        CountStats.global().recordPhase(CountStats.Phase.TOKENIZE, total);
+        CountStats.global().recordWorkers(busiest, total, busy.size());
+    }
+
+    /**
+     * Splits the channel into ranges of roughly {@code chunkSize} bytes, moving each split forward until it lands
+     * just after a byte that ends a word.
+     *
+     * @param channel   the channel to split.
+     * @param chunkSize the size that every range is grown from.
+     * @return the offsets of the ranges, range {@code i} covers {@code [boundaries[i], boundaries[i + 1])}.
+     * @throws IOException If an error occurs while reading from the channel.
+     */
+    static long[] splitAtWordBoundaries(FileChannel channel, long chunkSize) throws IOException {
+        long size = channel.size();
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+
+        ByteBuffer probe = ByteBuffer.allocate(PROBE_SIZE);
+        long position = 0;
+        while (position < size) {
+            long next = position + chunkSize;
+            if (next >= size) {
+                next = size;
+            } else {
+                next = nextBoundary(channel, next, size, probe);
+            }
+            boundaries.add(next);
+            position = next;
+        }
+
+        return boundaries.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Finds the first offset at or after {@code from} that directly follows a word delimiter.
+     * <p>
+     * Only ASCII delimiters are used to split. ASCII bytes never occur inside a multi-byte UTF-8 sequence, which
+     * always consists of a lead byte followed by continuation bytes with the high bit set, so a split made after an
+     * ASCII delimiter can never cut a character or a word in two.
+     */
+    private static long nextBoundary(FileChannel channel, long from, long size, ByteBuffer probe) throws IOException {
+        long position = from;
+        while (position < size) {
+            probe.clear();
+            int numRead = channel.read(probe, position);
+            if (numRead <= 0)
+                break;
+
+            for (int i = 0; i < numRead; i++) {
+                if (isAsciiDelimiter(probe.get(i)))
+                    return position + i + 1;
+            }
+            position += numRead;
+        }
+        return size;
+    }
+
+    static boolean isAsciiDelimiter(byte b) {
+        return b >= 0 && !CharTokenizer.isWordCharacter(b);
+    }
+
+    /**
+     * Finds the offset just after the last ASCII delimiter in the first {@code length} bytes of the buffer, which
+     * is where a buffer that is read sequentially can be cut without splitting a word.
+     *
+     * @return the offset, or 0 if there is no delimiter.
+     */
+    static int lastBoundary(byte[] buffer, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (isAsciiDelimiter(buffer[i]))
+                return i + 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Counts a single mapped range into a table with a {@link CharTokenizer}, or the {@link Utf8Tokenizer} when
+     * tokenizing bytes.
+     */
+    private void countRange(FileChannel channel, long start, long end, ByteWordTable table) throws IOException {
+        MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        if (byteTokenizer) {
+            tokenizeRange(bytes, table);
+            return;
+        }
+
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer chars = CharBuffer.allocate(bufferSize);
+        CharTokenizer tokenizer = new CharTokenizer(table::add);
+
+        CoderResult result;
+        do {
+            result = decoder.decode(bytes, chars, true);
+            chars.flip();
+            tokenizer.feed(chars.array(), 0, chars.limit());
+            chars.clear();
+        } while (result.isOverflow());
+
+        decoder.flush(chars);
+        chars.flip();
+        tokenizer.feed(chars.array(), 0, chars.limit());
+        tokenizer.finish();
+    }
+
+    private void tokenizeRange(MappedByteBuffer bytes, ByteWordTable table) {
+        Utf8Tokenizer tokenizer = new Utf8Tokenizer(table::add);
+        byte[] buffer = new byte[bufferSize];
+        while (bytes.hasRemaining()) {
+            int length = Math.min(buffer.length, bytes.remaining());
+            bytes.get(buffer, 0, length);
+            tokenizer.feed(buffer, 0, length);
+        }
+        tokenizer.finish();
+    }
+
+    /**
+     * Counts a run of ranges by splitting it in half until a single range remains, which is counted into the table of
+     * the thread that runs it. A thread only counts one range at a time, so its table is never shared.
+     */
+    private final class ChunkTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient FileChannel channel;
+        private final long[] boundaries;
+        private final int from;
+        private final int to;
+        private final transient Map<Thread, ByteWordTable> tables;
+        private final transient Map<Thread, AtomicLong> busy;
+
+        ChunkTask(FileChannel channel, long[] boundaries, int from, int to, Map<Thread, ByteWordTable> tables, Map<Thread, AtomicLong> busy) {
+            this.channel = channel;
+            this.boundaries = boundaries;
+            this.from = from;
+            this.to = to;
+            this.tables = tables;
+            this.busy = busy;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                long started = busy != null ? System.nanoTime() : 0;
+                try {
+                    countRange(channel, boundaries[from], boundaries[to],
+                            tables.computeIfAbsent(Thread.currentThread(), thread -> new ByteWordTable()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    if (busy != null)
+                        busy.computeIfAbsent(Thread.currentThread(), thread -> new AtomicLong()).addAndGet(System.nanoTime() - started);
+                }
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new ChunkTask(channel, boundaries, from, middle, tables, busy),
+                    new ChunkTask(channel, boundaries, middle, to, tables, busy));
+        }
+    }
+}
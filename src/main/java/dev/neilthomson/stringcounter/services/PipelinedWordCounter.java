@@ -0,0 +1,278 @@
+package dev.neilthomson.stringcounter.services;
+
+import dev.neilthomson.stringcounter.compression.CompressedInput;
+import dev.neilthomson.stringcounter.compression.Compression;
+import dev.neilthomson.stringcounter.tables.ByteWordTable;
+import dev.neilthomson.stringcounter.tokenizers.Utf8Tokenizer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Implements the {@link FileWordCounter} interface with separate stages for reading and counting, so that waiting
+ * for slow reads, such as from a network filesystem, overlaps with tokenizing what has already been read.
+ * <p>
+ * Reader tasks fill buffers taken from a fixed pool and put them on a queue, carrying the bytes after the last word
+ * boundary of a buffer over to the next one. A fixed set of counting workers, one per core by default, take buffers
+ * from the queue, count them into a {@link ByteWordTable} of their own and give them back to the pool. When the
+ * workers fall behind, readers wait for a free buffer, so memory is capped at the size of the pool.
+ * <p>
+ * On Java 21 and later every reader runs on a virtual thread, which costs next to nothing while it is blocked on I/O.
+ * Earlier versions, down to the Java 8 target of the build, run the readers on a pool of platform threads instead.
+ * Either way at most {@code readers} files are open at once.
+ */
+public class PipelinedWordCounter implements FileWordCounter {
+
+    private static final int DEFAULT_READERS = 16;
+
+    private final int bufferSize;
+    private final int readers;
+    private final int workers;
+
+    /**
+     * Constructs a PipelinedWordCounter with a counting worker for every available processor.
+     *
+     * @param bufferSize the size of every pooled buffer.
+     */
+    public PipelinedWordCounter(int bufferSize) {
+        this(bufferSize, DEFAULT_READERS, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a PipelinedWordCounter with the specified buffer size and number of readers and workers.
+     *
+     * @param bufferSize the size of every pooled buffer.
+     * @param readers    the largest number of inputs that are read at the same time.
+     * @param workers    the number of threads that count buffers.
+     */
+    public PipelinedWordCounter(int bufferSize, int readers, int workers) {
+        if (bufferSize <= 0)
+            throw new IllegalArgumentException("Buffer size must be positive");
+
+        if (readers <= 0 || workers <= 0)
+            throw new IllegalArgumentException("Readers and workers must be positive");
+
+        this.bufferSize = bufferSize;
+        this.readers = readers;
+        this.workers = workers;
+    }
+
+    @Override
+    public List<Map.Entry<String, Long>> count(InputStream inputStream, Comparator<Map.Entry<String, Long>> comparator) throws IOException {
+        if (inputStream == null)
+            throw new IllegalArgumentException("InputStream cannot be null");
+
+        return run(Collections.singletonList(() -> inputStream), comparator);
+    }
+
+    @Override
+    public List<Map.Entry<String, Long>> count(Path path, Comparator<Map.Entry<String, Long>> comparator) throws IOException {
+        if (path == null)
+            throw new IllegalArgumentException("Path cannot be null");
+
+        return count(Collections.singletonList(path), comparator);
+    }
+
+    /**
+     * Counts the words of every file and returns the merged counts.
+     *
+     * @param files      The files to count, in UTF-8 character encoding, decompressed if they are compressed.
+     * @param comparator A comparator used to sort the word-count entries. If null is provided, an
+     *                   IllegalArgumentException will be thrown.
+     * @return A sorted list of the word-count entries of all files together.
+     * @throws IOException If an error occurs while reading any of the files.
+     */
+    public List<Map.Entry<String, Long>> count(List<Path> files, Comparator<Map.Entry<String, Long>> comparator) throws IOException {
+        if (files == null)
+            throw new IllegalArgumentException("Files cannot be null");
+
+        List<Source> sources = new ArrayList<>(files.size());
+        for (Path file : files) {
+            // detecting the compression reads the file, so it happens on the reader like the rest of the reads
+            sources.add(() -> Compression.detect(file) == Compression.NONE ? Files.newInputStream(file) : CompressedInput.open(file));
+        }
+        return run(sources, comparator);
+    }
+
+    /**
+     * Returns whether readers run on virtual threads in this JVM.
+     *
+     * @return true on Java 21 and later.
+     */
+    public static boolean usesVirtualThreads() {
+        ExecutorService executor = newVirtualThreadExecutor();
+        if (executor == null)
+            return false;
+
+        executor.shutdown();
+        return true;
+    }
+
+    private List<Map.Entry<String, Long>> run(List<Source> sources, Comparator<Map.Entry<String, Long>> comparator) throws IOException {
+        if (comparator == null)
+            throw new IllegalArgumentException("Comparator cannot be null");
+
+        Pipeline pipeline = new Pipeline(readers + workers * 2);
+        ExecutorService workerExecutor = Executors.newFixedThreadPool(workers);
+        ExecutorService readerExecutor = newVirtualThreadExecutor();
+        if (readerExecutor == null)
+            readerExecutor = Executors.newFixedThreadPool(Math.min(readers, Math.max(sources.size(), 1)));
+
+        try {
+            List<Future<ByteWordTable>> counts = new ArrayList<>(workers);
+            for (int i = 0; i < workers; i++) {
+                counts.add(workerExecutor.submit(pipeline::count));
+            }
+
+            Semaphore openInputs = new Semaphore(readers);
+            List<Future<Void>> reads = new ArrayList<>(sources.size());
+            for (Source source : sources) {
+                reads.add(readerExecutor.submit(() -> pipeline.read(source, openInputs)));
+            }
+            for (Future<Void> read : reads) {
+                read.get();
+            }
+            for (int i = 0; i < workers; i++) {
+                pipeline.queue.put(Block.END);
+            }
+
+            ByteWordTable total = new ByteWordTable();
+            for (Future<ByteWordTable> count : counts) {
+                total.addAll(count.get());
+            }
+            List<Map.Entry<String, Long>> entries = total.entries();
+            entries.sort(comparator);
+            return entries;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while counting words");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IllegalStateException("Counting failed", e.getCause());
+        } finally {
+            readerExecutor.shutdownNow();
+            workerExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Creates an executor that starts a virtual thread for every task, which is only available from Java 21. It is
+     * looked up reflectively so that the class still compiles for and runs on Java 8.
+     *
+     * @return the executor, or null if virtual threads are not available.
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Opens one input to be read.
+     */
+    private interface Source {
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * A pooled buffer holding {@code length} bytes that end on a word boundary or at the end of an input.
+     */
+    private static final class Block {
+        private static final Block END = new Block(new byte[0], -1);
+
+        private final byte[] buffer;
+        private final int length;
+
+        private Block(byte[] buffer, int length) {
+            this.buffer = buffer;
+            this.length = length;
+        }
+    }
+
+    /**
+     * The buffer pool and the queue between the stages of one call of count.
+     */
+    private final class Pipeline {
+        private final BlockingQueue<byte[]> pool;
+        private final BlockingQueue<Block> queue;
+
+        private Pipeline(int buffers) {
+            this.pool = new ArrayBlockingQueue<>(buffers);
+            this.queue = new ArrayBlockingQueue<>(buffers + workers);
+            for (int i = 0; i < buffers; i++) {
+                pool.add(new byte[bufferSize]);
+            }
+        }
+
+        /**
+         * Reads one input into pooled buffers that each end just after an ASCII delimiter, and queues them.
+         */
+        private Void read(Source source, Semaphore openInputs) throws IOException, InterruptedException {
+            openInputs.acquire();
+            try (InputStream stream = source.open()) {
+                byte[] buffer = pool.take();
+                int length = 0;
+                int numRead;
+                while (true) {
+                    if (length == buffer.length)
+                        buffer = Arrays.copyOf(buffer, buffer.length * 2); // a single word fills the whole buffer
+
+                    if ((numRead = stream.read(buffer, length, buffer.length - length)) == -1)
+                        break;
+
+                    length += numRead;
+                    int boundary = MappedParallelWordCounter.lastBoundary(buffer, length);
+                    if (boundary == 0)
+                        continue;
+
+                    byte[] next = pool.take();
+                    if (next.length < length - boundary)
+                        next = new byte[buffer.length];
+                    System.arraycopy(buffer, boundary, next, 0, length - boundary);
+                    queue.put(new Block(buffer, boundary));
+                    buffer = next;
+                    length -= boundary;
+                }
+                queue.put(new Block(buffer, length));
+            } finally {
+                openInputs.release();
+            }
+            return null;
+        }
+
+        /**
+         * Counts queued buffers until the end marker is taken, and returns the counts of this worker.
+         */
+        private ByteWordTable count() throws InterruptedException {
+            ByteWordTable table = new ByteWordTable();
+            Utf8Tokenizer tokenizer = new Utf8Tokenizer(table::add);
+            Block block;
+            while ((block = queue.take()) != Block.END) {
+                tokenizer.feed(block.buffer, 0, block.length);
+                tokenizer.finish();
+                pool.offer(block.buffer);
+            }
+            return table;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package dev.neilthomson.stringcounter.services;
+
+import dev.neilthomson.stringcounter.comparators.CountAndAlphaComparator;
+import dev.neilthomson.stringcounter.compression.Compression;
+import dev.neilthomson.stringcounter.output.CountWriter;
+import dev.neilthomson.stringcounter.output.OutputFormat;
+import dev.neilthomson.stringcounter.tables.ByteWordTable;
+import dev.neilthomson.stringcounter.tokenizers.Utf8Tokenizer;
+
+import java.io.DataOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The main class of the worker processes that a {@link DistributedWordCounter} starts, each of which counts one shard
+ * of the input and writes its partial counts back.
+ * <p>
+ * The arguments are the ranges of the shard as triples of a file, the offset of the first byte and the offset after the
+ * last byte, optionally preceded by {@code --connect PORT TOKEN}. The ranges are counted one after the other with the
+ * existing counters: a compressed file with a {@link CompressedWordCounter} and a range of a plain file with a
+ * Utf8Tokenizer into a {@link ByteWordTable}, like {@link BatchWordCounter} does. The words of a plain range are
+ * written as the bytes the table holds, in table order, since the coordinator neither needs them decoded nor sorted.
+ * <p>
+ * The counts of every range are written in the {@link OutputFormat#BINARY} format as they are produced, so a word
+ * appears once for every range of the shard that contains it and the coordinator sums them. They are written to the
+ * standard output, or with {@code --connect} to the loopback port of the coordinator after the token, which tells the
+ * coordinator the connection comes from the process it started. The process exits with 0 only once every count has
+ * been written, and with 1 after printing the error to the standard error otherwise.
+ */
+public final class ShardWorker {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private ShardWorker() {
+    }
+
+    public static void main(String[] args) {
+        try {
+            run(args);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Shard failed: " + e);
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    private static void run(String[] args) throws IOException {
+        int first = 0;
+        if (args.length >= 3 && "--connect".equals(args[0])) {
+            first = 3;
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(args[1]))) {
+                DataOutputStream outputStream = new DataOutputStream(socket.getOutputStream());
+                outputStream.writeLong(Long.parseUnsignedLong(args[2], 16));
+                outputStream.flush();
+                count(args, first, Channels.newChannel(socket.getOutputStream()));
+                socket.shutdownOutput();
+            }
+            return;
+        }
+
+        count(args, first, new FileOutputStream(FileDescriptor.out).getChannel());
+    }
+
+    private static void count(String[] args, int first, WritableByteChannel channel) throws IOException {
+        if ((args.length - first) % 3 != 0)
+            throw new IllegalArgumentException("Ranges must be given as FILE START END");
+
+        CountWriter writer = new CountWriter(channel, OutputFormat.BINARY);
+        for (int i = first; i < args.length; i += 3) {
+            countRange(Paths.get(args[i]), Long.parseLong(args[i + 1]), Long.parseLong(args[i + 2]), writer);
+        }
+        writer.flush();
+    }
+
+    private static void countRange(Path file, long start, long end, CountWriter writer) throws IOException {
+        if (Compression.detect(file) != Compression.NONE) {
+            new CompressedWordCounter(BUFFER_SIZE).countTo(file, new CountAndAlphaComparator(false), writer);
+            return;
+        }
+
+        ByteWordTable table = new ByteWordTable();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel.position(start);
+            InputStream range = new RangeInputStream(Channels.newInputStream(channel), end - start);
+            new Utf8Tokenizer(table::add).tokenize(range, new byte[BUFFER_SIZE]);
+        }
+        try {
+            table.forEach((bytes, offset, length, count) -> {
+                try {
+                    writer.accept(bytes, offset, length, count);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Ends a stream after a number of bytes.
+     */
+    private static final class RangeInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        private RangeInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0)
+                return -1;
+
+            int b = in.read();
+            if (b != -1)
+                remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0)
+                return -1;
+
+            int numRead = in.read(b, off, (int) Math.min(len, remaining));
+            if (numRead > 0)
+                remaining -= numRead;
+            return numRead;
+        }
+    }
+}
@@ -1,27 +1,55 @@
 package dev.neilthomson.stringcounter.services;
 
+import dev.neilthomson.stringcounter.ranking.WordCountList;
+import dev.neilthomson.stringcounter.tables.ByteWordTable;
+import dev.neilthomson.stringcounter.tables.PartitionedMerge;
+import dev.neilthomson.stringcounter.tokenizers.CharTokenizer;
+import dev.neilthomson.stringcounter.tokenizers.TokenPipeline;
+
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.function.Function;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Implements the {@link WordCounter} interface to provide parallel word counting functionality.
  * <p>
  * This class efficiently counts word occurrences within a text stream, utilizing parallel
- * streams for improved performance. It leverages regular expressions for word splitting and
- * punctuation removal, and performs case-insensitive counting. Additionally, it allows customizing
- * the sorting of results based on different criteria.
+ * streams for improved performance. Every line is split into lowercased words with a {@link CharTokenizer}, passed
+ * through a {@link TokenPipeline} and counted in a {@link ByteWordTable} of the thread that handles it, so no objects
+ * are allocated per word and the threads do not contend. Every line is tokenized on its own, so n-grams do not span
+ * lines. Additionally, it allows customizing the sorting of results based on different criteria.
+ * <p>
+ * Once the stream is exhausted the tables of the threads are merged by hash partition with a
+ * {@link PartitionedMerge}, and the partitions are sorted in parallel into a {@link WordCountList}, all on the common
+ * ForkJoinPool that runs the stream.
  */
 public class SimpleParallelWordCounter implements WordCounter {
 
-    private static final Pattern WORD_PATTERN = Pattern.compile("\\s+");
-    private static final Pattern PUNCTUATION_PATTERN = Pattern.compile("[\\p{Punct}&&[^'-]]+");
+    private final TokenPipeline pipeline;
+
+    /**
+     * Constructs a SimpleParallelWordCounter that counts the words as they are split.
+     */
+    public SimpleParallelWordCounter() {
+        this(TokenPipeline.NONE);
+    }
+
+    /**
+     * Constructs a SimpleParallelWordCounter that applies rules to the words before they are counted.
+     *
+     * @param pipeline the rules applied to the words of every line.
+     */
+    public SimpleParallelWordCounter(TokenPipeline pipeline) {
+        if (pipeline == null)
+            throw new IllegalArgumentException("Pipeline cannot be null");
+
+        this.pipeline = pipeline;
+    }
 
     @Override
     public List<Map.Entry<String, Long>> count(InputStream inputStream, Comparator<Map.Entry<String, Long>> comparator) throws IOException {
@@ -34,15 +62,25 @@ public class SimpleParallelWordCounter implements WordCounter {
         }
 
         try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
-            return reader.lines()
+            Map<Thread, LineTally> tallies = new ConcurrentHashMap<>();
+            reader.lines()
                     .parallel()
-                    .flatMap(WORD_PATTERN::splitAsStream) // Split directly using regex
-                    .map(word -> PUNCTUATION_PATTERN.matcher(word).replaceAll("").toLowerCase(Locale.ENGLISH))
-                    .filter(word -> !word.isEmpty())
-                    .collect(Collectors.groupingByConcurrent(Function.identity(), Collectors.counting()))
-                    .entrySet().stream()
-                    .sorted(comparator)
-                    .collect(Collectors.toList());
+                    .forEach(line -> tally(tallies).add(line));
+
+            List<ByteWordTable> tables = new ArrayList<>(tallies.size());
+            for (LineTally tally : tallies.values()) {
+                tables.add(tally.table());
+            }
+            ForkJoinPool pool = ForkJoinPool.commonPool();
+            return WordCountList.sorted(PartitionedMerge.merge(tables, pool), comparator, pool);
         }
     }
+
+    /**
+     * Returns the tally of the current thread, looking it up before creating it as most lines find it already there.
+     */
+    private LineTally tally(Map<Thread, LineTally> tallies) {
+        LineTally tally = tallies.get(Thread.currentThread());
+        return tally != null ? tally : tallies.computeIfAbsent(Thread.currentThread(), thread -> new LineTally(pipeline));
+    }
 }
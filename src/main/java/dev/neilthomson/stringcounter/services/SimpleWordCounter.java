@@ -1,26 +1,47 @@
 package dev.neilthomson.stringcounter.services;
 
+import dev.neilthomson.stringcounter.tables.ByteWordTable;
+import dev.neilthomson.stringcounter.tokenizers.CharTokenizer;
+import dev.neilthomson.stringcounter.tokenizers.TokenPipeline;
+
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.function.Function;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 /**
  * Implements the {@link WordCounter} interface to provide word counting functionality.
  * <p>
- * This class counts word occurrences within a text stream in a sequential manner. It leverages
- * regular expressions for word splitting and punctuation removal, and performs case-insensitive
- * counting. Additionally, it allows customizing the sorting of results based on different criteria.
+ * This class counts word occurrences within a text stream in a sequential manner. It reads the stream line by line,
+ * splits every line into lowercased words with a {@link CharTokenizer}, passes them through a {@link TokenPipeline}
+ * and counts them in a {@link ByteWordTable}, so no objects are allocated per word. Every line is tokenized on its
+ * own, so n-grams do not span lines. Additionally, it allows customizing the sorting of results based on different
+ * criteria.
  */
 public class SimpleWordCounter implements WordCounter {
 
-    private static final Pattern WORD_PATTERN = Pattern.compile("\\s+");
-    private static final Pattern PUNCTUATION_PATTERN = Pattern.compile("[\\p{Punct}&&[^'-]]+");
+    private final TokenPipeline pipeline;
+
+    /**
+     * Constructs a SimpleWordCounter that counts the words as they are split.
+     */
+    public SimpleWordCounter() {
+        this(TokenPipeline.NONE);
+    }
+
+    /**
+     * Constructs a SimpleWordCounter that applies rules to the words before they are counted.
+     *
+     * @param pipeline the rules applied to the words of every line.
+     */
+    public SimpleWordCounter(TokenPipeline pipeline) {
+        if (pipeline == null)
+            throw new IllegalArgumentException("Pipeline cannot be null");
+
+        this.pipeline = pipeline;
+    }
 
     @Override
     public List<Map.Entry<String, Long>> count(InputStream inputStream, Comparator<Map.Entry<String, Long>> comparator) throws IOException {
@@ -33,14 +54,11 @@ public class SimpleWordCounter implements WordCounter {
         }
 
         try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
-            return reader.lines()
-                    .flatMap(WORD_PATTERN::splitAsStream) // Split directly using regex
-                    .map(word -> PUNCTUATION_PATTERN.matcher(word).replaceAll("").toLowerCase(Locale.ENGLISH))
-                    .filter(word -> !word.isEmpty())
-                    .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()))
-                    .entrySet().stream()
-                    .sorted(comparator)
-                    .collect(Collectors.toList());
+            List<Map.Entry<String, Long>> entries = reader.lines()
+                    .collect(LineTally.collector(pipeline))
+                    .entries();
+            entries.sort(comparator);
+            return entries;
         }
     }
 }
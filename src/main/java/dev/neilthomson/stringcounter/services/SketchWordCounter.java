@@ -0,0 +1,116 @@
+package dev.neilthomson.stringcounter.services;
+
+import dev.neilthomson.stringcounter.ranking.TopK;
+import dev.neilthomson.stringcounter.sketches.EstimatedCounts;
+import dev.neilthomson.stringcounter.sketches.WordSketch;
+import dev.neilthomson.stringcounter.tokenizers.Utf8Tokenizer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Implements the {@link WordCounter} interface to provide approximate counting in a fixed amount of memory for inputs
+ * far larger than any exact table could hold.
+ * <p>
+ * Words are summarized in a {@link WordSketch}: a Count-Min Sketch estimates their frequencies, a HyperLogLog
+ * estimates how many distinct words there are and a heap keeps the words with the highest estimates. Only those
+ * candidates are returned, each with an estimated count that is never lower than its true count, as
+ * {@link EstimatedCounts} that also report the error bounds of both estimates. The sketch returned by
+ * {@link #sketch(InputStream)} can be merged with the sketches of other inputs counted with the same settings.
+ */
+public class SketchWordCounter implements WordCounter {
+
+    private static final int DEFAULT_WIDTH = 1 << 20;
+    private static final int DEFAULT_DEPTH = 5;
+    private static final int DEFAULT_PRECISION = 14;
+    private static final int DEFAULT_CANDIDATES = 1024;
+
+    private final int bufferSize;
+    private final int width;
+    private final int depth;
+    private final int precision;
+    private final int candidates;
+
+    /**
+     * Constructs a SketchWordCounter with the specified buffer size and default sketch settings, which use about 40MB
+     * and keep 1024 candidates.
+     *
+     * @param bufferSize the size of the buffer to use for reading bytes from the input stream.
+     */
+    public SketchWordCounter(int bufferSize) {
+        this(bufferSize, DEFAULT_WIDTH, DEFAULT_DEPTH, DEFAULT_PRECISION, DEFAULT_CANDIDATES);
+    }
+
+    /**
+     * Constructs a SketchWordCounter with the specified buffer size and sketch settings.
+     *
+     * @param bufferSize the size of the buffer to use for reading bytes from the input stream.
+     * @param width      the number of counters in every row of the Count-Min Sketch, the error bound of a frequency
+     *                   is {@code e / width} of the number of words.
+     * @param depth      the number of rows of the Count-Min Sketch, the error bound holds with a probability of
+     *                   {@code 1 - e^-depth}.
+     * @param precision  the precision of the HyperLogLog, from 4 to 18, its standard error is
+     *                   {@code 1.04 / sqrt(2^precision)}.
+     * @param candidates the number of most frequent words to return.
+     */
+    public SketchWordCounter(int bufferSize, int width, int depth, int precision, int candidates) {
+        if (width <= 0 || depth <= 0)
+            throw new IllegalArgumentException("Width and depth must be positive");
+
+        if (precision < 4 || precision > 18)
+            throw new IllegalArgumentException("Precision must be between 4 and 18");
+
+        if (candidates <= 0)
+            throw new IllegalArgumentException("Candidates must be positive");
+
+        this.bufferSize = bufferSize;
+        this.width = width;
+        this.depth = depth;
+        this.precision = precision;
+        this.candidates = candidates;
+    }
+
+    @Override
+    public EstimatedCounts count(InputStream inputStream, Comparator<Map.Entry<String, Long>> comparator) throws IOException {
+        if (comparator == null)
+            throw new IllegalArgumentException("Comparator cannot be null");
+
+        WordSketch sketch = sketch(inputStream);
+        List<Map.Entry<String, Long>> entries = sketch.entries();
+        entries.sort(comparator);
+        return new EstimatedCounts(entries, sketch);
+    }
+
+    @Override
+    public EstimatedCounts countTop(InputStream inputStream, Comparator<Map.Entry<String, Long>> comparator, int limit) throws IOException {
+        if (comparator == null)
+            throw new IllegalArgumentException("Comparator cannot be null");
+
+        if (limit < 0)
+            throw new IllegalArgumentException("Limit cannot be negative");
+
+        WordSketch sketch = sketch(inputStream);
+        return new EstimatedCounts(TopK.select(sketch.entries(), comparator, limit), sketch);
+    }
+
+    /**
+     * Reads the input stream into a new sketch, which also reports the error bounds of its estimates.
+     *
+     * @param inputStream the stream of UTF-8 encoded text, it is closed once it has been read.
+     * @return the sketch of the input.
+     * @throws IOException If an error occurs while reading from the input stream.
+     */
+    public WordSketch sketch(InputStream inputStream) throws IOException {
+        if (inputStream == null)
+            throw new IllegalArgumentException("InputStream cannot be null");
+
+        try (InputStream stream = inputStream) {
+            WordSketch sketch = new WordSketch(width, depth, precision, candidates);
+            new Utf8Tokenizer(sketch::add).tokenize(stream, new byte[bufferSize]);
+            return sketch;
+        }
+    }
+}
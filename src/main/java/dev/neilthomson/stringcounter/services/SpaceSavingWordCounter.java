@@ -0,0 +1,82 @@
+package dev.neilthomson.stringcounter.services;
+
+import dev.neilthomson.stringcounter.ranking.SpaceSaving;
+import dev.neilthomson.stringcounter.ranking.TopK;
+import dev.neilthomson.stringcounter.tokenizers.Utf8Tokenizer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Implements the {@link WordCounter} interface to provide approximate counting of the most frequent words.
+ * <p>
+ * Words are tracked in a {@link SpaceSaving} summary with a fixed number of counters, so memory usage does not depend
+ * on the size of the input or of its vocabulary. Only the monitored words are returned, each with an estimated count
+ * that is never lower than its true count and exceeds it by at most {@code N / capacity}, where {@code N} is the
+ * total number of words in the input. Every word that occurs more than {@code N / capacity} times is guaranteed to be
+ * returned.
+ * <p>
+ * This is intended for inputs where even the exact map of distinct words is too expensive to keep. When the
+ * vocabulary fits in memory, {@link HashedWordCounter#countTop(InputStream, Comparator, int)} gives exact results.
+ */
+public class SpaceSavingWordCounter implements WordCounter {
+
+    private final int bufferSize;
+    private final int capacity;
+
+    /**
+     * Constructs a SpaceSavingWordCounter with the specified buffer size and number of counters.
+     *
+     * @param bufferSize the size of the buffer to use for reading bytes from the input stream.
+     * @param capacity   the number of counters, a larger capacity gives a smaller error bound.
+     */
+    public SpaceSavingWordCounter(int bufferSize, int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be positive");
+
+        this.bufferSize = bufferSize;
+        this.capacity = capacity;
+    }
+
+    @Override
+    public List<Map.Entry<String, Long>> count(InputStream inputStream, Comparator<Map.Entry<String, Long>> comparator) throws IOException {
+        if (comparator == null)
+            throw new IllegalArgumentException("Comparator cannot be null");
+
+        List<Map.Entry<String, Long>> entries = summarize(inputStream).entries();
+        entries.sort(comparator);
+        return entries;
+    }
+
+    @Override
+    public List<Map.Entry<String, Long>> countTop(InputStream inputStream, Comparator<Map.Entry<String, Long>> comparator, int limit) throws IOException {
+        if (comparator == null)
+            throw new IllegalArgumentException("Comparator cannot be null");
+
+        if (limit < 0)
+            throw new IllegalArgumentException("Limit cannot be negative");
+
+        return TopK.select(summarize(inputStream).entries(), comparator, limit);
+    }
+
+    /**
+     * Reads the input stream into a new summary, which also reports the error bound of its estimates.
+     *
+     * @param inputStream the stream of UTF-8 encoded text, it is closed once it has been read.
+     * @return the summary of the most frequent words.
+     * @throws IOException If an error occurs while reading from the input stream.
+     */
+    public SpaceSaving summarize(InputStream inputStream) throws IOException {
+        if (inputStream == null)
+            throw new IllegalArgumentException("InputStream cannot be null");
+
+        try (InputStream stream = inputStream) {
+            SpaceSaving summary = new SpaceSaving(capacity);
+            new Utf8Tokenizer(summary::add).tokenize(stream, new byte[bufferSize]);
+            return summary;
+        }
+    }
+}
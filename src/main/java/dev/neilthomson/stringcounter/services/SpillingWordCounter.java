@@ -0,0 +1,381 @@
+package dev.neilthomson.stringcounter.services;
+
+import dev.neilthomson.stringcounter.tables.ByteWordTable;
+import dev.neilthomson.stringcounter.tokenizers.Utf8Tokenizer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Implements the {@link StreamingWordCounter} interface to count inputs of any size within a fixed memory budget.
+ * <p>
+ * Words are counted in a {@link ByteWordTable} until it reaches the memory budget, at which point its contents are
+ * written to a temporary file as a run sorted by word and the table is cleared. Once the input is exhausted the runs
+ * are merged, summing the counts of words that appear in more than one run. The merged counts are then sorted by the
+ * requested comparator in budget sized chunks, which are written out as a second set of runs and merged again as the
+ * results are passed on.
+ * <p>
+ * If the input fits within the budget nothing is written to disk and the counts are sorted in memory.
+ */
+public class SpillingWordCounter implements StreamingWordCounter {
+
+    /**
+     * The default number of bytes of heap the counter aims to stay within.
+     */
+    public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+
+    private static final int INITIAL_WORDS = 1024;
+    private static final int MERGE_FAN_IN = 64;
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+    private static final int ENTRY_OVERHEAD = 96; // estimated heap used by an entry, its String and its Long
+
+    private final int bufferSize;
+    private final long memoryBudget;
+    private final Path tempDirectory;
+
+    /**
+     * Constructs a SpillingWordCounter with the default memory budget that spills to the default temporary directory.
+     *
+     * @param bufferSize the size of the buffer to use for reading bytes from the input stream.
+     */
+    public SpillingWordCounter(int bufferSize) {
+        this(bufferSize, DEFAULT_MEMORY_BUDGET, null);
+    }
+
+    /**
+     * Constructs a SpillingWordCounter with the specified memory budget and temporary directory.
+     *
+     * @param bufferSize    the size of the buffer to use for reading bytes from the input stream.
+     * @param memoryBudget  the approximate number of bytes of heap to hold counts in before spilling them to disk.
+     * @param tempDirectory the directory to write runs to, or null to use the default temporary directory.
+     */
+    public SpillingWordCounter(int bufferSize, long memoryBudget, Path tempDirectory) {
+        if (memoryBudget <= 0)
+            throw new IllegalArgumentException("Memory budget must be positive");
+
+        this.bufferSize = bufferSize;
+        this.memoryBudget = memoryBudget;
+        this.tempDirectory = tempDirectory;
+    }
+
+    @Override
+    public void count(InputStream inputStream, Comparator<Map.Entry<String, Long>> comparator,
+                      Consumer<? super Map.Entry<String, Long>> action) throws IOException {
+        if (inputStream == null)
+            throw new IllegalArgumentException("InputStream cannot be null");
+
+        if (comparator == null)
+            throw new IllegalArgumentException("Comparator cannot be null");
+
+        if (action == null)
+            throw new IllegalArgumentException("Action cannot be null");
+
+        List<Path> temporaryFiles = new ArrayList<>();
+        try {
+            List<Path> wordRuns = new ArrayList<>();
+            List<Map.Entry<String, Long>> inMemory = countIntoRuns(inputStream, wordRuns, temporaryFiles);
+            if (inMemory != null) {
+                inMemory.sort(comparator);
+                inMemory.forEach(action);
+                return;
+            }
+
+            SortedChunks chunks = new SortedChunks(comparator, temporaryFiles);
+            merge(reduce(wordRuns, Map.Entry.comparingByKey(), true, temporaryFiles), Map.Entry.comparingByKey(), true, chunks);
+            chunks.finish(action);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            for (Path file : temporaryFiles) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Counts the input stream, spilling the table to a run every time it exceeds the memory budget.
+     *
+     * @return the unsorted counts if the whole input fitted within the budget, otherwise null and every count has
+     *         been written to one of the runs.
+     */
+    private List<Map.Entry<String, Long>> countIntoRuns(InputStream inputStream, List<Path> runs,
+                                                       List<Path> temporaryFiles) throws IOException {
+        try (InputStream stream = inputStream) {
+            ByteWordTable table = new ByteWordTable((int) Math.min(memoryBudget / 64, INITIAL_WORDS));
+            new Utf8Tokenizer((bytes, offset, length) -> {
+                table.add(bytes, offset, length);
+                if (table.usedMemory() > memoryBudget) {
+                    runs.add(spill(table, temporaryFiles));
+                    table.clear();
+                }
+            }).tokenize(stream, new byte[bufferSize]);
+
+            if (runs.isEmpty())
+                return table.entries();
+
+            if (table.size() > 0)
+                runs.add(spill(table, temporaryFiles));
+            return null;
+        }
+    }
+
+    /**
+     * Writes the contents of the table to a new run in byte order, which is the same as the order of the words.
+     */
+    private Path spill(ByteWordTable table, List<Path> temporaryFiles) {
+        try {
+            Path run = createRun(temporaryFiles);
+            try (RunWriter writer = new RunWriter(run)) {
+                table.forEachInByteOrder((bytes, offset, length, count) -> writer.write(bytes, offset, length, count));
+            }
+            return run;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Merges groups of runs into new runs until few enough remain to be merged in a single pass.
+     */
+    private List<Path> reduce(List<Path> runs, Comparator<Map.Entry<String, Long>> order, boolean combine,
+                              List<Path> temporaryFiles) throws IOException {
+        List<Path> remaining = runs;
+        while (remaining.size() > MERGE_FAN_IN) {
+            List<Path> merged = new ArrayList<>();
+            for (int from = 0; from < remaining.size(); from += MERGE_FAN_IN) {
+                List<Path> group = remaining.subList(from, Math.min(from + MERGE_FAN_IN, remaining.size()));
+                Path run = createRun(temporaryFiles);
+                try (RunWriter writer = new RunWriter(run)) {
+                    merge(group, order, combine, writer::write);
+                }
+                merged.add(run);
+                for (Path mergedRun : group) {
+                    Files.deleteIfExists(mergedRun);
+                }
+            }
+            remaining = merged;
+        }
+        return remaining;
+    }
+
+    /**
+     * Merges sorted runs into a single sorted sequence of entries.
+     *
+     * @param runs    the runs to merge, each sorted by {@code order}.
+     * @param order   the order of the entries in every run.
+     * @param combine {@code true} to sum the counts of adjacent entries for the same word.
+     * @param action  the action that receives the merged entries.
+     */
+    private static void merge(List<Path> runs, Comparator<Map.Entry<String, Long>> order, boolean combine,
+                              Consumer<? super Map.Entry<String, Long>> action) throws IOException {
+        List<RunReader> readers = new ArrayList<>(runs.size());
+        try {
+            PriorityQueue<RunReader> queue = new PriorityQueue<>(Math.max(runs.size(), 1),
+                    (first, second) -> order.compare(first.current, second.current));
+            for (Path run : runs) {
+                RunReader reader = new RunReader(run);
+                readers.add(reader);
+                if (reader.next())
+                    queue.add(reader);
+            }
+
+            Map.Entry<String, Long> pending = null;
+            while (!queue.isEmpty()) {
+                RunReader reader = queue.poll();
+                Map.Entry<String, Long> entry = reader.current;
+                if (reader.next())
+                    queue.add(reader);
+
+                if (!combine) {
+                    action.accept(entry);
+                } else if (pending != null && pending.getKey().equals(entry.getKey())) {
+                    pending = new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), pending.getValue() + entry.getValue());
+                } else {
+                    if (pending != null)
+                        action.accept(pending);
+                    pending = entry;
+                }
+            }
+
+            if (pending != null)
+                action.accept(pending);
+        } finally {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    private Path createRun(List<Path> temporaryFiles) throws IOException {
+        Path run = tempDirectory == null
+                ? Files.createTempFile("stringcounter-", ".run")
+                : Files.createTempFile(tempDirectory, "stringcounter-", ".run");
+        temporaryFiles.add(run);
+        return run;
+    }
+
+    /**
+     * Sorts the merged counts by the requested comparator in chunks that fit within the memory budget.
+     */
+    private final class SortedChunks implements Consumer<Map.Entry<String, Long>> {
+
+        private final Comparator<Map.Entry<String, Long>> comparator;
+        private final List<Path> temporaryFiles;
+        private final List<Path> runs = new ArrayList<>();
+        private final List<Map.Entry<String, Long>> chunk = new ArrayList<>();
+        private long chunkBytes;
+
+        SortedChunks(Comparator<Map.Entry<String, Long>> comparator, List<Path> temporaryFiles) {
+            this.comparator = comparator;
+            this.temporaryFiles = temporaryFiles;
+        }
+
+        @Override
+        public void accept(Map.Entry<String, Long> entry) {
+            chunk.add(entry);
+            chunkBytes += ENTRY_OVERHEAD + 2L * entry.getKey().length();
+            if (chunkBytes > memoryBudget) {
+                try {
+                    runs.add(writeChunk());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        /**
+         * Passes every entry to the action in order, merging the chunks that were written to disk.
+         */
+        void finish(Consumer<? super Map.Entry<String, Long>> action) throws IOException {
+            if (runs.isEmpty()) {
+                chunk.sort(comparator);
+                chunk.forEach(action);
+                return;
+            }
+
+            if (!chunk.isEmpty())
+                runs.add(writeChunk());
+            merge(reduce(runs, comparator, false, temporaryFiles), comparator, false, action);
+        }
+
+        private Path writeChunk() throws IOException {
+            chunk.sort(comparator);
+            Path run = createRun(temporaryFiles);
+            try (RunWriter writer = new RunWriter(run)) {
+                chunk.forEach(writer::write);
+            }
+            chunk.clear();
+            chunkBytes = 0;
+            return run;
+        }
+    }
+
+    /**
+     * Writes word-count records to a run, each as the length of the word, its UTF-8 bytes and its count.
+     */
+    private static final class RunWriter implements Closeable {
+
+        private final DataOutputStream out;
+
+        RunWriter(Path run) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), IO_BUFFER_SIZE));
+        }
+
+        void write(Map.Entry<String, Long> entry) {
+            byte[] bytes = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            write(bytes, 0, bytes.length, entry.getValue());
+        }
+
+        void write(byte[] bytes, int offset, int length, long count) {
+            try {
+                writeVarLong(length);
+                out.write(bytes, offset, length);
+                writeVarLong(count);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void writeVarLong(long value) throws IOException {
+            long remaining = value;
+            while ((remaining & ~0x7FL) != 0) {
+                out.writeByte((int) ((remaining & 0x7F) | 0x80));
+                remaining >>>= 7;
+            }
+            out.writeByte((int) remaining);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads the records written by a {@link RunWriter} back one at a time.
+     */
+    private static final class RunReader implements Closeable {
+
+        private final DataInputStream in;
+        private byte[] word = new byte[64];
+        private Map.Entry<String, Long> current;
+
+        RunReader(Path run) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), IO_BUFFER_SIZE));
+        }
+
+        /**
+         * Reads the next record into {@code current}.
+         *
+         * @return {@code false} if the end of the run has been reached.
+         */
+        boolean next() throws IOException {
+            int first = in.read();
+            if (first == -1) {
+                current = null;
+                return false;
+            }
+
+            int length = (int) readVarLong(first);
+            if (length > word.length)
+                word = new byte[Math.max(length, word.length * 2)];
+            in.readFully(word, 0, length);
+            long count = readVarLong(in.readUnsignedByte());
+            current = new AbstractMap.SimpleImmutableEntry<>(new String(word, 0, length, StandardCharsets.UTF_8), count);
+            return true;
+        }
+
+        private long readVarLong(int first) throws IOException {
+            long value = first & 0x7F;
+            int b = first;
+            for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+                if (shift > 63)
+                    throw new IOException("Malformed run");
+                b = in.readUnsignedByte();
+                value |= (long) (b & 0x7F) << shift;
+            }
+            return value;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
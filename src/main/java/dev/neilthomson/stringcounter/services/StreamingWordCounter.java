@@ -0,0 +1,40 @@
+package dev.neilthomson.stringcounter.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Defines a {@link WordCounter} that can pass the sorted word-count entries to a consumer one at a time instead of
+ * returning them as a list.
+ * <p>
+ * Implementations do not need to hold every entry in memory at once, so this is the only way to consume the results
+ * of an input whose vocabulary does not fit in memory.
+ */
+public interface StreamingWordCounter extends WordCounter {
+
+    /**
+     * Counts the occurrences of words in the provided input stream and passes the word-count entries to the given
+     * action in the order defined by the comparator.
+     *
+     * @param inputStream The input stream containing the text to be analyzed in UTF-8 character encoding.
+     * @param comparator  A comparator used to order the word-count entries. If null is provided, an
+     *                    IllegalArgumentException will be thrown.
+     * @param action      The action that receives every entry. If null is provided, an IllegalArgumentException will
+     *                    be thrown.
+     * @throws IOException If an error occurs while reading from the input stream or from temporary storage.
+     */
+    void count(InputStream inputStream, Comparator<Map.Entry<String, Long>> comparator,
+               Consumer<? super Map.Entry<String, Long>> action) throws IOException, IllegalArgumentException;
+
+    @Override
+    default List<Map.Entry<String, Long>> count(InputStream inputStream, Comparator<Map.Entry<String, Long>> comparator) throws IOException {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>();
+        count(inputStream, comparator, entries::add);
+        return entries;
+    }
+}
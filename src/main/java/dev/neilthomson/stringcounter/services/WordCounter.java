@@ -1,5 +1,7 @@
 package dev.neilthomson.stringcounter.services;
 
+import dev.neilthomson.stringcounter.ranking.TopK;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Comparator;
@@ -26,4 +28,26 @@ public interface WordCounter {
      * @throws IOException If an error occurs while reading from the input stream.
      */
     List<Map.Entry<String, Long>> count(InputStream inputStream, Comparator<Map.Entry<String, Long>> comparator) throws IOException, IllegalArgumentException;
+
+    /**
+     * Counts the occurrences of words in the provided input stream and returns only the first {@code limit}
+     * word-count entries in comparator order.
+     * <p>
+     * The default implementation sorts every entry and truncates the result. Implementations should override it to
+     * select the entries with {@link TopK} instead, which avoids sorting entries that are never returned.
+     *
+     * @param inputStream The input stream containing the text to be analyzed in UTF-8 character encoding.
+     * @param comparator  A comparator used to order the word-count entries. If null is provided, an
+     *                    IllegalArgumentException will be thrown.
+     * @param limit       The maximum number of entries to return. If negative, an IllegalArgumentException will be
+     *                    thrown.
+     * @return A list of at most {@code limit} entries, sorted according to the provided comparator.
+     * @throws IOException If an error occurs while reading from the input stream.
+     */
+    default List<Map.Entry<String, Long>> countTop(InputStream inputStream, Comparator<Map.Entry<String, Long>> comparator, int limit) throws IOException, IllegalArgumentException {
+        if (limit < 0)
+            throw new IllegalArgumentException("Limit cannot be negative");
+
+        return TopK.truncate(count(inputStream, comparator), limit);
+    }
 }
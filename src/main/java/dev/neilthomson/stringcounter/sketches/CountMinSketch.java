@@ -0,0 +1,164 @@
+package dev.neilthomson.stringcounter.sketches;
+
+import dev.neilthomson.stringcounter.tables.ByteWordTable;
+
+/**
+ * Estimates the frequency of every word of a stream in a fixed amount of memory using a Count-Min Sketch.
+ * <p>
+ * The sketch is a table of {@code depth} rows of {@code width} counters. Every word increments one counter in each row,
+ * chosen by a different hash of the word, and its frequency is estimated as the smallest of those counters. Other words
+ * can only add to a counter, so the estimate is never lower than the true count. With {@code N} words offered, it
+ * exceeds the true count by more than {@code e / width * N} with a probability of at most {@code e^-depth}.
+ * <p>
+ * Two sketches with the same width and depth can be merged by adding their counters, which gives the same sketch as
+ * offering both streams to one of them. This class is not thread-safe.
+ */
+public final class CountMinSketch {
+
+    private final int width;
+    private final int depth;
+    private final long[] counters;
+    private long total;
+
+    /**
+     * Constructs an empty CountMinSketch.
+     *
+     * @param width the number of counters in every row, a larger width gives a smaller error.
+     * @param depth the number of rows, a larger depth makes exceeding the error less likely.
+     */
+    public CountMinSketch(int width, int depth) {
+        if (width <= 0)
+            throw new IllegalArgumentException("Width must be positive");
+
+        if (depth <= 0)
+            throw new IllegalArgumentException("Depth must be positive");
+
+        if ((long) width * depth > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Width multiplied by depth is too large");
+
+        this.width = width;
+        this.depth = depth;
+        this.counters = new long[width * depth];
+    }
+
+    /**
+     * Offers a single occurrence of a word.
+     *
+     * @param bytes  the array holding the word.
+     * @param offset the index of the first byte of the word.
+     * @param length the number of bytes in the word.
+     */
+    public void add(byte[] bytes, int offset, int length) {
+        add(ByteWordTable.hash64(bytes, offset, length), 1L);
+    }
+
+    /**
+     * Offers a word by its 64-bit hash.
+     *
+     * @param hash  the hash of the word from {@link ByteWordTable#hash64(byte[], int, int)}.
+     * @param count the number of occurrences to add.
+     */
+    public void add(long hash, long count) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int row = 0; row < depth; row++) {
+            counters[row * width + column(h1 + row * h2)] += count;
+        }
+        total += count;
+    }
+
+    /**
+     * Estimates the count of a word.
+     *
+     * @param bytes  the array holding the word.
+     * @param offset the index of the first byte of the word.
+     * @param length the number of bytes in the word.
+     * @return an estimate that is never lower than the true count.
+     */
+    public long estimate(byte[] bytes, int offset, int length) {
+        return estimate(ByteWordTable.hash64(bytes, offset, length));
+    }
+
+    /**
+     * Estimates the count of a word by its 64-bit hash.
+     *
+     * @param hash the hash of the word from {@link ByteWordTable#hash64(byte[], int, int)}.
+     * @return an estimate that is never lower than the true count.
+     */
+    public long estimate(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long minimum = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            minimum = Math.min(minimum, counters[row * width + column(h1 + row * h2)]);
+        }
+        return minimum;
+    }
+
+    /**
+     * Adds the counters of another sketch to this one.
+     *
+     * @param other a sketch with the same width and depth.
+     */
+    public void merge(CountMinSketch other) {
+        if (other == null)
+            throw new IllegalArgumentException("Sketch cannot be null");
+
+        if (other.width != width || other.depth != depth)
+            throw new IllegalArgumentException("Sketches must have the same width and depth to be merged");
+
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] += other.counters[i];
+        }
+        total += other.total;
+    }
+
+    /**
+     * Returns the total number of words offered so far, including those of merged sketches.
+     *
+     * @return the number of words offered.
+     */
+    public long totalCount() {
+        return total;
+    }
+
+    /**
+     * Returns the number of counters in every row.
+     *
+     * @return the width of the sketch.
+     */
+    public int width() {
+        return width;
+    }
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return the depth of the sketch.
+     */
+    public int depth() {
+        return depth;
+    }
+
+    /**
+     * Returns the amount by which an estimate may exceed the true count, {@code e / width * N} rounded up.
+     *
+     * @return the error bound of the estimates, which holds with a probability of {@link #confidence()}.
+     */
+    public long errorBound() {
+        return (long) Math.ceil(Math.E / width * total);
+    }
+
+    /**
+     * Returns the probability that an estimate is within {@link #errorBound()} of the true count.
+     *
+     * @return {@code 1 - e^-depth}.
+     */
+    public double confidence() {
+        return 1.0 - Math.exp(-depth);
+    }
+
+    private int column(int hash) {
+        return (hash & Integer.MAX_VALUE) % width;
+    }
+}
@@ -0,0 +1,100 @@
+package dev.neilthomson.stringcounter.sketches;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * An unmodifiable list of word-count entries whose counts are estimates, together with the error bounds of the
+ * {@link WordSketch} they were taken from, so the bounds travel with the results they describe.
+ * <p>
+ * Every count is at least the true count of its word and exceeds it by at most {@link #errorBound()} with a
+ * probability of {@link #confidence()}. The bounds are copied when the list is created and do not change if the
+ * sketch is merged with others afterwards.
+ */
+public final class EstimatedCounts extends AbstractList<Map.Entry<String, Long>> implements RandomAccess {
+
+    private final List<Map.Entry<String, Long>> entries;
+    private final long totalCount;
+    private final long errorBound;
+    private final double confidence;
+    private final long distinctCount;
+    private final double standardError;
+
+    /**
+     * Constructs an EstimatedCounts holding the given entries and the current error bounds of a sketch.
+     *
+     * @param entries the entries estimated by the sketch, in the order they should be listed.
+     * @param sketch  the sketch the entries were estimated by.
+     */
+    public EstimatedCounts(List<Map.Entry<String, Long>> entries, WordSketch sketch) {
+        if (entries == null)
+            throw new IllegalArgumentException("Entries cannot be null");
+
+        if (sketch == null)
+            throw new IllegalArgumentException("Sketch cannot be null");
+
+        this.entries = entries;
+        this.totalCount = sketch.totalCount();
+        this.errorBound = sketch.errorBound();
+        this.confidence = sketch.confidence();
+        this.distinctCount = sketch.distinctCount();
+        this.standardError = sketch.distinctStandardError();
+    }
+
+    @Override
+    public Map.Entry<String, Long> get(int index) {
+        return entries.get(index);
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of words in the input the counts were estimated from.
+     *
+     * @return the total number of words.
+     */
+    public long totalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Returns the amount by which an estimated count may exceed the true count.
+     *
+     * @return the error bound of the counts, which holds with a probability of {@link #confidence()}.
+     */
+    public long errorBound() {
+        return errorBound;
+    }
+
+    /**
+     * Returns the probability that an estimated count is within {@link #errorBound()} of the true count.
+     *
+     * @return the confidence of the counts.
+     */
+    public double confidence() {
+        return confidence;
+    }
+
+    /**
+     * Returns the estimated number of distinct words in the input, of which only the listed ones are counted.
+     *
+     * @return the estimated number of distinct words.
+     */
+    public long distinctCount() {
+        return distinctCount;
+    }
+
+    /**
+     * Returns the relative standard error of {@link #distinctCount()}.
+     *
+     * @return the standard error of the distinct estimate.
+     */
+    public double standardError() {
+        return standardError;
+    }
+}
@@ -0,0 +1,131 @@
+package dev.neilthomson.stringcounter.sketches;
+
+import dev.neilthomson.stringcounter.tables.ByteWordTable;
+
+/**
+ * Estimates the number of distinct words of a stream in a fixed amount of memory using HyperLogLog.
+ * <p>
+ * The first {@code precision} bits of the hash of every word select one of {@code 2^precision} registers, which keeps
+ * the longest run of leading zeros seen in the remaining bits. The harmonic mean of the registers estimates the number
+ * of distinct hashes, with a relative standard error of {@code 1.04 / sqrt(2^precision)}. Small cardinalities, where
+ * many registers are still empty, are estimated by linear counting instead.
+ * <p>
+ * Two sketches with the same precision can be merged by keeping the larger of every pair of registers, which gives the
+ * same sketch as offering both streams to one of them. This class is not thread-safe.
+ */
+public final class HyperLogLog {
+
+    private static final int MIN_PRECISION = 4;
+    private static final int MAX_PRECISION = 18;
+
+    private final int precision;
+    private final byte[] registers;
+
+    /**
+     * Constructs an empty HyperLogLog.
+     *
+     * @param precision the number of hash bits used to select a register, from 4 to 18. Every extra bit halves the
+     *                  variance of the estimate and doubles the memory used.
+     */
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION)
+            throw new IllegalArgumentException("Precision must be between " + MIN_PRECISION + " and " + MAX_PRECISION);
+
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * Offers a word.
+     *
+     * @param bytes  the array holding the word.
+     * @param offset the index of the first byte of the word.
+     * @param length the number of bytes in the word.
+     */
+    public void add(byte[] bytes, int offset, int length) {
+        add(ByteWordTable.hash64(bytes, offset, length));
+    }
+
+    /**
+     * Offers a word by its 64-bit hash.
+     *
+     * @param hash the hash of the word from {@link ByteWordTable#hash64(byte[], int, int)}.
+     */
+    public void add(long hash) {
+        int register = (int) (hash >>> (64 - precision));
+        // the marker bit caps the rank when every remaining bit is zero
+        byte rank = (byte) (Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1);
+        if (rank > registers[register])
+            registers[register] = rank;
+    }
+
+    /**
+     * Estimates the number of distinct words offered so far, including those of merged sketches.
+     *
+     * @return the estimated cardinality.
+     */
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int empty = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0)
+                empty++;
+        }
+
+        double estimate = alpha(m) * m * m / sum;
+        if (estimate <= 2.5 * m && empty > 0)
+            estimate = m * Math.log((double) m / empty);
+        return Math.round(estimate);
+    }
+
+    /**
+     * Keeps the larger of every pair of registers of this sketch and another.
+     *
+     * @param other a sketch with the same precision.
+     */
+    public void merge(HyperLogLog other) {
+        if (other == null)
+            throw new IllegalArgumentException("Sketch cannot be null");
+
+        if (other.precision != precision)
+            throw new IllegalArgumentException("Sketches must have the same precision to be merged");
+
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i])
+                registers[i] = other.registers[i];
+        }
+    }
+
+    /**
+     * Returns the number of hash bits used to select a register.
+     *
+     * @return the precision of the sketch.
+     */
+    public int precision() {
+        return precision;
+    }
+
+    /**
+     * Returns the relative standard error of {@link #estimate()}.
+     *
+     * @return {@code 1.04 / sqrt(2^precision)}.
+     */
+    public double standardError() {
+        return 1.04 / Math.sqrt(registers.length);
+    }
+
+    private static double alpha(int m) {
+        switch (m) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package dev.neilthomson.stringcounter.sketches;
+
+import dev.neilthomson.stringcounter.ranking.WordHeap;
+import dev.neilthomson.stringcounter.tables.ByteWordTable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Summarizes a stream of words in a fixed amount of memory with a {@link CountMinSketch} for word frequencies, a
+ * {@link HyperLogLog} for the number of distinct words and a {@link WordHeap} of the candidates with the highest
+ * estimated frequencies, since neither sketch can list the words it has seen.
+ * <p>
+ * Each word is hashed once and the same 64-bit hash feeds both sketches. A word becomes a candidate when its
+ * estimated count is higher than that of the weakest candidate, so every word whose estimate is among the
+ * {@code candidates} highest ends up in the heap.
+ * <p>
+ * Sketches built with the same settings, for example one per file or per thread, can be merged. This class is not
+ * thread-safe.
+ */
+public final class WordSketch {
+
+    private final CountMinSketch frequencies;
+    private final HyperLogLog distinct;
+    private WordHeap candidates;
+
+    /**
+     * Constructs an empty WordSketch.
+     *
+     * @param width      the width of the {@link CountMinSketch}.
+     * @param depth      the depth of the {@link CountMinSketch}.
+     * @param precision  the precision of the {@link HyperLogLog}.
+     * @param candidates the number of most frequent words to keep.
+     */
+    public WordSketch(int width, int depth, int precision, int candidates) {
+        this.frequencies = new CountMinSketch(width, depth);
+        this.distinct = new HyperLogLog(precision);
+        this.candidates = new WordHeap(candidates);
+    }
+
+    /**
+     * Offers a single occurrence of a word.
+     *
+     * @param bytes  the array holding the word.
+     * @param offset the index of the first byte of the word.
+     * @param length the number of bytes in the word.
+     */
+    public void add(byte[] bytes, int offset, int length) {
+        long hash = ByteWordTable.hash64(bytes, offset, length);
+        frequencies.add(hash, 1L);
+        distinct.add(hash);
+        offer(candidates, hash, bytes, offset, length, frequencies.estimate(hash));
+    }
+
+    /**
+     * Estimates the count of a word, which need not be one of the candidates.
+     *
+     * @param word the word to look up.
+     * @return an estimate that is never lower than the true count.
+     */
+    public long estimate(String word) {
+        byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+        return frequencies.estimate(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Merges another sketch into this one. Both sketches and the candidates of both are combined, and every candidate
+     * is estimated again against the merged frequencies.
+     *
+     * @param other a sketch built with the same width, depth, precision and number of candidates.
+     */
+    public void merge(WordSketch other) {
+        if (other == null)
+            throw new IllegalArgumentException("Sketch cannot be null");
+
+        // Checked before either sketch is merged so a mismatch leaves this sketch unchanged
+        if (other.frequencies.width() != frequencies.width() || other.frequencies.depth() != frequencies.depth()
+                || other.distinct.precision() != distinct.precision()
+                || other.candidates.capacity() != candidates.capacity())
+            throw new IllegalArgumentException("Sketches must be built with the same settings to be merged");
+
+        frequencies.merge(other.frequencies);
+        distinct.merge(other.distinct);
+
+        WordHeap merged = new WordHeap(candidates.capacity());
+        candidates.forEach((bytes, offset, length, count) -> reoffer(merged, bytes, offset, length));
+        other.candidates.forEach((bytes, offset, length, count) -> reoffer(merged, bytes, offset, length));
+        candidates = merged;
+    }
+
+    /**
+     * Creates a word-count entry for every candidate, holding its estimated count.
+     *
+     * @return an unsorted list with one entry for every candidate.
+     */
+    public List<Map.Entry<String, Long>> entries() {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(candidates.word(i), candidates.count(i)));
+        }
+        return entries;
+    }
+
+    /**
+     * Returns the total number of words offered so far, including those of merged sketches.
+     *
+     * @return the number of words offered.
+     */
+    public long totalCount() {
+        return frequencies.totalCount();
+    }
+
+    /**
+     * Estimates the number of distinct words offered so far.
+     *
+     * @return the estimated number of distinct words.
+     */
+    public long distinctCount() {
+        return distinct.estimate();
+    }
+
+    /**
+     * Returns the amount by which an estimated count may exceed the true count.
+     *
+     * @return the error bound of the frequency estimates, which holds with a probability of {@link #confidence()}.
+     */
+    public long errorBound() {
+        return frequencies.errorBound();
+    }
+
+    /**
+     * Returns the probability that an estimated count is within {@link #errorBound()} of the true count.
+     *
+     * @return the confidence of the frequency estimates.
+     */
+    public double confidence() {
+        return frequencies.confidence();
+    }
+
+    /**
+     * Returns the relative standard error of {@link #distinctCount()}.
+     *
+     * @return the standard error of the distinct estimate.
+     */
+    public double distinctStandardError() {
+        return distinct.standardError();
+    }
+
+    private void reoffer(WordHeap heap, byte[] bytes, int offset, int length) {
+        long hash = ByteWordTable.hash64(bytes, offset, length);
+        offer(heap, hash, bytes, offset, length, frequencies.estimate(hash));
+    }
+
+    private static void offer(WordHeap heap, long hash, byte[] bytes, int offset, int length, long estimate) {
+        int key = (int) (hash ^ (hash >>> 32));
+        int counter = heap.find(key, bytes, offset, length);
+        if (counter >= 0) {
+            if (estimate > heap.count(counter))
+                heap.increase(counter, estimate);
+        } else if (!heap.isFull()) {
+            heap.insert(key, bytes, offset, length, estimate);
+        } else if (estimate > heap.count(heap.minimum())) {
+            heap.replaceMinimum(key, bytes, offset, length, estimate);
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package dev.neilthomson.stringcounter.tables;
+
+import dev.neilthomson.stringcounter.metrics.CountStats;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing {@link WordTable} that counts words given as slices of UTF-8 bytes on the Java heap.
+ * <p>
+ * The bytes of every distinct word are appended to a single growable byte arena and the counts are kept in a
+ * primitive {@code long[]}, so counting a word that is already in the table does not allocate. Words are looked up
+ * directly from the slice they are given, which is typically the read buffer of a tokenizer. Strings are only created
+ * when the contents of the table are read back, once for every distinct word.
+ * <p>
+ * Every time the table grows it records the number of words added so far and its size in {@link CountStats}, if
+ * collection is enabled, which samples how the vocabulary grows with the input.
+ * <p>
+ * This class is not thread-safe.
+ */
+public final class ByteWordTable implements WordTable {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private int[] slots; // entry index + 1 for every slot, 0 for empty slots
+    private int mask;
+
+    private int[] hashes;
+    private int[] offsets;
+    private int[] lengths;
+    private long[] counts;
+    private int size;
+    private long total;
+
+    private byte[] arena;
+    private int arenaLength;
+
+    /**
+     * Constructs an empty ByteWordTable with a default capacity.
+     */
+    public ByteWordTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty ByteWordTable sized for the given number of distinct words.
+     *
+     * @param expectedWords the number of distinct words the table can hold before it has to grow.
+     */
+    public ByteWordTable(int expectedWords) {
+        if (expectedWords < 0)
+            throw new IllegalArgumentException("Expected words cannot be negative");
+
+        int capacity = Integer.highestOneBit(Math.max(expectedWords, 8) * 2 - 1) << 1;
+        slots = new int[capacity];
+        mask = capacity - 1;
+
+        int entries = Math.max(expectedWords, 8);
+        hashes = new int[entries];
+        offsets = new int[entries];
+        lengths = new int[entries];
+        counts = new long[entries];
+        arena = new byte[entries * 8];
+    }
+
+    @Override
+    public void add(byte[] bytes, int offset, int length, long count) {
+        add(hash(bytes, offset, length), bytes, offset, length, count);
+    }
+
+    private void add(int hash, byte[] bytes, int offset, int length, long count) {
+        int slot = hash & mask;
+        int entry;
+        while ((entry = slots[slot]) != 0) {
+            int index = entry - 1;
+            if (hashes[index] == hash && equals(index, bytes, offset, length)) {
+                counts[index] += count;
+                total += count;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        int index = insert(hash, bytes, offset, length, count);
+        slots[slot] = index + 1;
+        total += count;
+        if (size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+    }
+
+    @Override
+    public long get(byte[] bytes, int offset, int length) {
+        int hash = hash(bytes, offset, length);
+        int slot = hash & mask;
+        int entry;
+        while ((entry = slots[slot]) != 0) {
+            int index = entry - 1;
+            if (hashes[index] == hash && equals(index, bytes, offset, length))
+                return counts[index];
+            slot = (slot + 1) & mask;
+        }
+        return 0L;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the sum of the counts of every word, which is the number of words that were added.
+     *
+     * @return the total count.
+     */
+    public long total() {
+        return total;
+    }
+
+    /**
+     * Returns the fraction of the slots of the hash index that are in use, which is kept at most one half.
+     *
+     * @return the load factor.
+     */
+    public double loadFactor() {
+        return (double) size / slots.length;
+    }
+
+    @Override
+    public void addAll(WordTable other) {
+        if (!(other instanceof ByteWordTable)) {
+            WordTable.super.addAll(other);
+            return;
+        }
+
+        ByteWordTable table = (ByteWordTable) other;
+        for (int i = 0; i < table.size; i++) {
+            add(table.hashes[i], table.arena, table.offsets[i], table.lengths[i], table.counts[i]);
+        }
+    }
+
+    /**
+     * Adds the words of another table that fall into one of a number of hash partitions.
+     * <p>
+     * Every word falls into exactly one partition, so tables that are filled from the same sources with different
+     * partitions hold disjoint sets of words. They can therefore be filled on different threads without sharing
+     * anything, and together hold the same counts as a single table that every source was added to. The partition is
+     * taken from the high bits of the hash, which leaves the low bits that pick slots evenly spread.
+     *
+     * @param other      the table to take words from.
+     * @param partition  the partition to add, from 0 to {@code partitions - 1}.
+     * @param partitions the number of partitions the words are split into.
+     */
+    public void addPartition(ByteWordTable other, int partition, int partitions) {
+        if (other == null)
+            throw new IllegalArgumentException("Other table cannot be null");
+
+        if (partition < 0 || partition >= partitions)
+            throw new IllegalArgumentException("Partition must be between 0 and " + (partitions - 1));
+
+        for (int i = 0; i < other.size; i++) {
+            int hash = other.hashes[i];
+            if ((int) (((hash & 0xFFFFFFFFL) * partitions) >>> 32) == partition)
+                add(hash, other.arena, other.offsets[i], other.lengths[i], other.counts[i]);
+        }
+    }
+
+    @Override
+    public void forEach(WordCountConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            consumer.accept(arena, offsets[i], lengths[i], counts[i]);
+        }
+    }
+
+    /**
+     * Passes every word in the table and its count to the given consumer in unsigned lexicographic order of the word
+     * bytes.
+     * <p>
+     * Words produced by a {@link dev.neilthomson.stringcounter.tokenizers.Utf8Tokenizer} only contain characters from
+     * the Basic Multilingual Plane, for which this order is the same as {@link String#compareTo(String)}.
+     *
+     * @param consumer the consumer of the words.
+     */
+    public void forEachInByteOrder(WordCountConsumer consumer) {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        sort(order, new int[size], 0, size);
+        for (int index : order) {
+            consumer.accept(arena, offsets[index], lengths[index], counts[index]);
+        }
+    }
+
+    /**
+     * Creates an independent copy of the table. The cost of the copy depends only on the number of distinct words and
+     * their length, as the backing arrays are copied without rehashing.
+     *
+     * @return a new table holding the same words and counts.
+     */
+    public ByteWordTable copy() {
+        ByteWordTable copy = new ByteWordTable(0);
+        copy.slots = slots.clone();
+        copy.mask = mask;
+        copy.hashes = hashes.clone();
+        copy.offsets = offsets.clone();
+        copy.lengths = lengths.clone();
+        copy.counts = counts.clone();
+        copy.size = size;
+        copy.total = total;
+        copy.arena = Arrays.copyOf(arena, Math.max(arenaLength, 8));
+        copy.arenaLength = arenaLength;
+        return copy;
+    }
+
+    /**
+     * Removes every word from the table while keeping the memory it has already allocated.
+     */
+    public void clear() {
+        Arrays.fill(slots, 0);
+        size = 0;
+        total = 0;
+        arenaLength = 0;
+    }
+
+    /**
+     * Returns an estimate of the heap memory held by the table.
+     *
+     * @return the size of the arrays backing the table in bytes.
+     */
+    public long memoryUsage() {
+        return slots.length * 4L + counts.length * 20L + arena.length;
+    }
+
+    /**
+     * Returns an estimate of the heap memory taken by the words currently in the table, which unlike
+     * {@link #memoryUsage()} falls back after the table is cleared.
+     *
+     * @return the size of the index and of the entries and bytes of the words held in bytes.
+     */
+    public long usedMemory() {
+        return slots.length * 4L + size * 20L + arenaLength;
+    }
+
+    /**
+     * Hashes a slice of bytes with FNV-1a followed by the MurmurHash3 finalizer.
+     *
+     * @param bytes  the array holding the slice.
+     * @param offset the index of the first byte of the slice.
+     * @param length the number of bytes in the slice.
+     * @return the hash of the slice.
+     */
+    public static int hash(byte[] bytes, int offset, int length) {
+        int h = 0x811C9DC5;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            h = (h ^ bytes[i]) * 0x01000193;
+        }
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * Hashes a slice of bytes to 64 bits with FNV-1a followed by the MurmurHash3 finalizer, for sketches that need
+     * more independent hash bits than {@link #hash(byte[], int, int)} provides.
+     *
+     * @param bytes  the array holding the slice.
+     * @param offset the index of the first byte of the slice.
+     * @param length the number of bytes in the slice.
+     * @return the 64-bit hash of the slice.
+     */
+    public static long hash64(byte[] bytes, int offset, int length) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            h = (h ^ bytes[i]) * 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private boolean equals(int index, byte[] bytes, int offset, int length) {
+        if (lengths[index] != length)
+            return false;
+
+        int start = offsets[index];
+        for (int i = 0; i < length; i++) {
+            if (arena[start + i] != bytes[offset + i])
+                return false;
+        }
+        return true;
+    }
+
+    private int insert(int hash, byte[] bytes, int offset, int length, long count) {
+        if (size == counts.length) {
+            int entries = size * 2;
+            hashes = Arrays.copyOf(hashes, entries);
+            offsets = Arrays.copyOf(offsets, entries);
+            lengths = Arrays.copyOf(lengths, entries);
+            counts = Arrays.copyOf(counts, entries);
+        }
+
+        if (arenaLength + length > arena.length) {
+            arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaLength + length));
+        }
+        System.arraycopy(bytes, offset, arena, arenaLength, length);
+
+        int index = size++;
+        hashes[index] = hash;
+        offsets[index] = arenaLength;
+        lengths[index] = length;
+        counts[index] = count;
+        arenaLength += length;
+        return index;
+    }
+
+    /**
+     * Sorts the entry indices between {@code from} and {@code to} by their word bytes with a top-down merge sort.
+     */
+    private void sort(int[] order, int[] scratch, int from, int to) {
+        if (to - from < 2)
+            return;
+
+        int middle = (from + to) >>> 1;
+        sort(order, scratch, from, middle);
+        sort(order, scratch, middle, to);
+        if (compare(order[middle - 1], order[middle]) <= 0)
+            return;
+
+        System.arraycopy(order, from, scratch, from, to - from);
+        int left = from;
+        int right = middle;
+        int target = from;
+        while (left < middle && right < to) {
+            order[target++] = compare(scratch[left], scratch[right]) <= 0 ? scratch[left++] : scratch[right++];
+        }
+        while (left < middle) {
+            order[target++] = scratch[left++];
+        }
+        while (right < to) {
+            order[target++] = scratch[right++];
+        }
+    }
+
+    private int compare(int first, int second) {
+        int firstOffset = offsets[first];
+        int secondOffset = offsets[second];
+        int length = Math.min(lengths[first], lengths[second]);
+        for (int i = 0; i < length; i++) {
+            int comparison = (arena[firstOffset + i] & 0xFF) - (arena[secondOffset + i] & 0xFF);
+            if (comparison != 0)
+                return comparison;
+        }
+        return lengths[first] - lengths[second];
+    }
+
+    private void rehash(int capacity) {
+        if (CountStats.enabled())
+            CountStats.global().recordResize(total, size);
+
+        slots = new int[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = hashes[i] & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = i + 1;
+        }
+    }
+}
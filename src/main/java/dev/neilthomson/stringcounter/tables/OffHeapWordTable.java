@@ -0,0 +1,242 @@
+package dev.neilthomson.stringcounter.tables;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An open-addressing {@link WordTable} that keeps its slots, word bytes and counts in direct ByteBuffers outside the
+ * Java heap.
+ * <p>
+ * Words are appended, together with their count, to fixed size data segments. When a segment is full a new one is
+ * allocated, so existing words are never copied. The slot index is itself split into segments and, when it becomes
+ * half full, is rehashed into a new set of segments twice the size. Because the hash of every word is stored in its
+ * slot, rehashing only reads the index and never the word bytes.
+ * <p>
+ * The heap footprint of the table is a handful of references per segment regardless of how many words it holds, so
+ * garbage collection pauses do not grow with the vocabulary. Direct memory is limited separately from the heap by
+ * {@code -XX:MaxDirectMemorySize}, which defaults to the maximum heap size and has to be raised for vocabularies that
+ * are larger than the heap.
+ * <p>
+ * This class is not thread-safe.
+ */
+public final class OffHeapWordTable implements WordTable {
+
+    /**
+     * The default number of distinct words the table is sized for.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    /**
+     * The default size in bytes of each data segment.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    private static final int SLOT_BYTES = 12; // reference to the entry (8) + hash of the word (4)
+    private static final int SLOT_SEGMENT_SHIFT = 24;
+    private static final int SLOTS_PER_SEGMENT = 1 << SLOT_SEGMENT_SHIFT;
+    private static final int ENTRY_HEADER = 12; // count (8) + length (4)
+
+    private final int segmentSize;
+
+    private ByteBuffer[] index;
+    private long mask;
+    private int size;
+
+    private final List<ByteBuffer> segments = new ArrayList<>();
+    private ByteBuffer current;
+
+    private byte[] scratch = new byte[64];
+
+    /**
+     * Constructs an empty OffHeapWordTable with the default capacity and segment size.
+     */
+    public OffHeapWordTable() {
+        this(DEFAULT_CAPACITY, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Constructs an empty OffHeapWordTable with the given capacity and segment size.
+     *
+     * @param expectedWords the number of distinct words the table can hold before the index has to be rehashed.
+     * @param segmentSize   the size in bytes of each data segment. Words that do not fit in a segment of this size
+     *                      are given a segment of their own.
+     */
+    public OffHeapWordTable(int expectedWords, int segmentSize) {
+        if (expectedWords < 0)
+            throw new IllegalArgumentException("Expected words cannot be negative");
+
+        if (segmentSize <= 0)
+            throw new IllegalArgumentException("Segment size must be positive");
+
+        this.segmentSize = segmentSize;
+        long capacity = Long.highestOneBit(Math.max(expectedWords, 8) * 2L - 1) << 1;
+        this.index = allocateIndex(capacity);
+        this.mask = capacity - 1;
+    }
+
+    @Override
+    public void add(byte[] bytes, int offset, int length, long count) {
+        int hash = ByteWordTable.hash(bytes, offset, length);
+        long slot = hash & mask;
+        while (true) {
+            ByteBuffer segment = index[(int) (slot >>> SLOT_SEGMENT_SHIFT)];
+            int position = (int) (slot & (SLOTS_PER_SEGMENT - 1)) * SLOT_BYTES;
+            long reference = segment.getLong(position);
+            if (reference == 0) {
+                segment.putLong(position, insert(bytes, offset, length, count) + 1);
+                segment.putInt(position + 8, hash);
+                if (++size * 2L > mask + 1) {
+                    rehash((mask + 1) * 2);
+                }
+                return;
+            }
+
+            if (segment.getInt(position + 8) == hash && equals(reference - 1, bytes, offset, length)) {
+                ByteBuffer data = segments.get((int) ((reference - 1) >>> 32));
+                int entry = (int) (reference - 1);
+                data.putLong(entry, data.getLong(entry) + count);
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    @Override
+    public long get(byte[] bytes, int offset, int length) {
+        int hash = ByteWordTable.hash(bytes, offset, length);
+        long slot = hash & mask;
+        while (true) {
+            ByteBuffer segment = index[(int) (slot >>> SLOT_SEGMENT_SHIFT)];
+            int position = (int) (slot & (SLOTS_PER_SEGMENT - 1)) * SLOT_BYTES;
+            long reference = segment.getLong(position);
+            if (reference == 0)
+                return 0L;
+
+            if (segment.getInt(position + 8) == hash && equals(reference - 1, bytes, offset, length)) {
+                return segments.get((int) ((reference - 1) >>> 32)).getLong((int) (reference - 1));
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Passes every word in the table and its count to the given consumer, in insertion order. Each word is copied
+     * into a reusable array before it is passed on.
+     *
+     * @param consumer the consumer of the words.
+     */
+    @Override
+    public void forEach(WordCountConsumer consumer) {
+        for (ByteBuffer segment : segments) {
+            int position = 0;
+            int end = segment.position();
+            while (position < end) {
+                long count = segment.getLong(position);
+                int length = segment.getInt(position + 8);
+                if (length > scratch.length) {
+                    scratch = new byte[Math.max(length, scratch.length * 2)];
+                }
+                for (int i = 0; i < length; i++) {
+                    scratch[i] = segment.get(position + ENTRY_HEADER + i);
+                }
+                consumer.accept(scratch, 0, length, count);
+                position += ENTRY_HEADER + length;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bytes of direct memory held by the table.
+     *
+     * @return the size of the index and data segments in bytes.
+     */
+    public long offHeapBytes() {
+        long bytes = 0;
+        for (ByteBuffer segment : index) {
+            bytes += segment.capacity();
+        }
+        for (ByteBuffer segment : segments) {
+            bytes += segment.capacity();
+        }
+        return bytes;
+    }
+
+    private boolean equals(long reference, byte[] bytes, int offset, int length) {
+        ByteBuffer data = segments.get((int) (reference >>> 32));
+        int entry = (int) reference;
+        if (data.getInt(entry + 8) != length)
+            return false;
+
+        int start = entry + ENTRY_HEADER;
+        for (int i = 0; i < length; i++) {
+            if (data.get(start + i) != bytes[offset + i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Appends a new entry to the current data segment, starting a new segment if it does not fit.
+     *
+     * @return the reference to the entry, the index of its segment in the upper 32 bits and its offset in the lower.
+     */
+    private long insert(byte[] bytes, int offset, int length, long count) {
+        int required = ENTRY_HEADER + length;
+        if (current == null || current.remaining() < required) {
+            current = allocate(Math.max(segmentSize, required));
+            segments.add(current);
+        }
+
+        long reference = ((long) (segments.size() - 1) << 32) | current.position();
+        current.putLong(count).putInt(length).put(bytes, offset, length);
+        return reference;
+    }
+
+    private void rehash(long capacity) {
+        ByteBuffer[] oldIndex = index;
+        ByteBuffer[] newIndex = allocateIndex(capacity);
+        long newMask = capacity - 1;
+        for (ByteBuffer oldSegment : oldIndex) {
+            for (int position = 0; position < oldSegment.capacity(); position += SLOT_BYTES) {
+                long reference = oldSegment.getLong(position);
+                if (reference == 0)
+                    continue;
+
+                int hash = oldSegment.getInt(position + 8);
+                long slot = hash & newMask;
+                while (true) {
+                    ByteBuffer segment = newIndex[(int) (slot >>> SLOT_SEGMENT_SHIFT)];
+                    int newPosition = (int) (slot & (SLOTS_PER_SEGMENT - 1)) * SLOT_BYTES;
+                    if (segment.getLong(newPosition) == 0) {
+                        segment.putLong(newPosition, reference);
+                        segment.putInt(newPosition + 8, hash);
+                        break;
+                    }
+                    slot = (slot + 1) & newMask;
+                }
+            }
+        }
+        index = newIndex;
+        mask = newMask;
+    }
+
+    private static ByteBuffer[] allocateIndex(long capacity) {
+        int slotsPerSegment = (int) Math.min(capacity, SLOTS_PER_SEGMENT);
+        ByteBuffer[] index = new ByteBuffer[(int) (capacity / slotsPerSegment)];
+        for (int i = 0; i < index.length; i++) {
+            index[i] = allocate(slotsPerSegment * SLOT_BYTES);
+        }
+        return index;
+    }
+
+    private static ByteBuffer allocate(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+}
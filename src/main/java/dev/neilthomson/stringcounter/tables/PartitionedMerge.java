@@ -0,0 +1,87 @@
+package dev.neilthomson.stringcounter.tables;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Merges the tables that parallel workers counted into, in parallel and without a table that is shared between
+ * threads.
+ * <p>
+ * The words are split into hash partitions, a few for every thread of the pool. Every partition is built by a task of
+ * its own, which scans every worker table for the words that fall into it with
+ * {@link ByteWordTable#addPartition(ByteWordTable, int, int)}. As no word falls into two partitions, the partitions
+ * are returned as they are instead of being merged again: together they hold the count of every word once, and a
+ * caller that needs every word reads all of them.
+ */
+public final class PartitionedMerge {
+
+    private static final int PARTITIONS_PER_THREAD = 2;
+
+    private PartitionedMerge() {
+    }
+
+    /**
+     * Merges tables into disjoint partitions on the given pool.
+     *
+     * @param tables the tables to merge, which are only read.
+     * @param pool   the pool the partitions are built on.
+     * @return tables that hold every word of the given tables exactly once, with the sum of its counts.
+     */
+    public static ByteWordTable[] merge(List<ByteWordTable> tables, ForkJoinPool pool) {
+        if (tables == null)
+            throw new IllegalArgumentException("Tables cannot be null");
+
+        if (pool == null)
+            throw new IllegalArgumentException("Pool cannot be null");
+
+        if (tables.size() < 2)
+            return tables.toArray(new ByteWordTable[0]);
+
+        int largest = 0;
+        for (ByteWordTable table : tables) {
+            largest = Math.max(largest, table.size());
+        }
+        ByteWordTable[] partitions = new ByteWordTable[pool.getParallelism() * PARTITIONS_PER_THREAD];
+        pool.invoke(new PartitionTask(tables, partitions, largest / partitions.length, 0, partitions.length));
+        return partitions;
+    }
+
+    /**
+     * Builds a run of partitions by splitting it in half until a single partition remains.
+     */
+    private static final class PartitionTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<ByteWordTable> tables;
+        private final transient ByteWordTable[] partitions;
+        private final int expectedWords;
+        private final int from;
+        private final int to;
+
+        PartitionTask(List<ByteWordTable> tables, ByteWordTable[] partitions, int expectedWords, int from, int to) {
+            this.tables = tables;
+            this.partitions = partitions;
+            this.expectedWords = expectedWords;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                ByteWordTable partition = new ByteWordTable(expectedWords);
+                for (ByteWordTable table : tables) {
+                    partition.addPartition(table, from, partitions.length);
+                }
+                partitions[from] = partition;
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new PartitionTask(tables, partitions, expectedWords, from, middle),
+                    new PartitionTask(tables, partitions, expectedWords, middle, to));
+        }
+    }
+}
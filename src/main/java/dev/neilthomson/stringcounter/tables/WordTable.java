@@ -0,0 +1,100 @@
+package dev.neilthomson.stringcounter.tables;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Defines a table that counts words given as slices of UTF-8 bytes.
+ * <p>
+ * Implementations only create objects when a new distinct word is added, never when the count of an existing word is
+ * incremented. Implementations are not required to be thread-safe.
+ */
+public interface WordTable {
+
+    /**
+     * Increments the count of the given word by one.
+     *
+     * @param bytes  the array holding the word.
+     * @param offset the index of the first byte of the word.
+     * @param length the number of bytes in the word.
+     */
+    default void add(byte[] bytes, int offset, int length) {
+        add(bytes, offset, length, 1L);
+    }
+
+    /**
+     * Increments the count of the given word.
+     *
+     * @param bytes  the array holding the word.
+     * @param offset the index of the first byte of the word.
+     * @param length the number of bytes in the word.
+     * @param count  the amount to add to the count of the word.
+     */
+    void add(byte[] bytes, int offset, int length, long count);
+
+    /**
+     * Returns the count of the given word, or zero if it is not in the table.
+     *
+     * @param bytes  the array holding the word.
+     * @param offset the index of the first byte of the word.
+     * @param length the number of bytes in the word.
+     * @return the count of the word.
+     */
+    long get(byte[] bytes, int offset, int length);
+
+    /**
+     * Returns the number of distinct words in the table.
+     *
+     * @return the number of distinct words.
+     */
+    int size();
+
+    /**
+     * Passes every word in the table and its count to the given consumer.
+     *
+     * @param consumer the consumer of the words.
+     */
+    void forEach(WordCountConsumer consumer);
+
+    /**
+     * Adds every word in the given table to this table.
+     *
+     * @param other the table to merge into this table.
+     */
+    default void addAll(WordTable other) {
+        other.forEach(this::add);
+    }
+
+    /**
+     * Creates a word-count entry for every word in the table.
+     *
+     * @return an unsorted list with one entry for every distinct word.
+     */
+    default List<Map.Entry<String, Long>> entries() {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(size());
+        forEach((bytes, offset, length, count) -> entries.add(
+                new AbstractMap.SimpleImmutableEntry<>(new String(bytes, offset, length, StandardCharsets.UTF_8), count)));
+        return entries;
+    }
+
+    /**
+     * Receives the words of a {@link WordTable} together with their counts.
+     */
+    @FunctionalInterface
+    interface WordCountConsumer {
+
+        /**
+         * Accepts a single word and its count. The bytes are owned by the table and must not be modified or kept
+         * after the call returns.
+         *
+         * @param bytes  the array holding the word.
+         * @param offset the index of the first byte of the word.
+         * @param length the number of bytes in the word.
+         * @param count  the count of the word.
+         */
+        void accept(byte[] bytes, int offset, int length, long count);
+    }
+}
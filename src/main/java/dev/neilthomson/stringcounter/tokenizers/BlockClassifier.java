@@ -0,0 +1,59 @@
+package dev.neilthomson.stringcounter.tokenizers;
+
+/**
+ * Classifies blocks of {@link #BLOCK_SIZE} bytes at a time, so that the {@link Utf8Tokenizer} can find the boundaries
+ * of the words in a block of ASCII text from a bit mask instead of looking at every byte.
+ * <p>
+ * The implementation uses the Vector API, which is only available from JDK 17 and only when the
+ * {@code jdk.incubator.vector} module has been added, so it is compiled separately and loaded by {@link #load()}. On
+ * any other JVM there is no classifier and the tokenizer classifies every byte on its own.
+ */
+interface BlockClassifier {
+
+    /**
+     * The number of bytes in a block, one for every bit of a long.
+     */
+    int BLOCK_SIZE = 64;
+
+    /**
+     * The system property that disables the classifier when it is set to {@code false}.
+     */
+    String PROPERTY = "stringcounter.vector";
+
+    /**
+     * Returns whether every byte of a block is ASCII.
+     *
+     * @param bytes  the array holding the block.
+     * @param offset the index of the first byte of the block.
+     * @return true if none of the bytes has its high bit set.
+     */
+    boolean isAscii(byte[] bytes, int offset);
+
+    /**
+     * Lowercases the ASCII letters of a block in place and returns which of its bytes are part of a word, which for
+     * ASCII is a letter, an apostrophe or a hyphen like {@link CharTokenizer#isWordCharacter(int)}.
+     *
+     * @param bytes  the array holding the block, which must be all ASCII.
+     * @param offset the index of the first byte of the block.
+     * @return a mask with bit {@code n} set if the byte at {@code offset + n} is part of a word.
+     */
+    long wordBits(byte[] bytes, int offset);
+
+    /**
+     * Loads the vectorized classifier.
+     *
+     * @return the classifier, or null if the JVM is older than JDK 17, the {@code jdk.incubator.vector} module has not
+     * been added, the CPU has no 256-bit vector instructions or the classifier has been disabled.
+     */
+    static BlockClassifier load() {
+        if (!Boolean.parseBoolean(System.getProperty(PROPERTY, "true")))
+            return null;
+
+        try {
+            return (BlockClassifier) Class.forName(BlockClassifier.class.getPackage().getName() + ".VectorBlockClassifier")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package dev.neilthomson.stringcounter.tokenizers;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Splits decoded characters into lowercased words and passes them to a {@link TokenSink} encoded in UTF-8, so that
+ * words read as characters go through the same {@link TokenPipeline} and tables as words read as bytes.
+ * <p>
+ * A word is a run of characters accepted by {@link #isWordCharacter(int)}, which is the definition every counter
+ * shares. Surrogates are never part of a word, so characters outside the Basic Multilingual Plane end the current
+ * word. Words are assembled in a reusable scratch array, so no objects are allocated per word.
+ * <p>
+ * A tokenizer carries a partial word from one call of {@link #feed(char[], int, int)} to the next. It is therefore not
+ * thread-safe and must only be used for one input at a time.
+ */
+public final class CharTokenizer {
+
+    /**
+     * The lowercased value of every ASCII character that is part of a word, and zero for every other character.
+     */
+    static final byte[] ASCII_WORD_BYTES = new byte[128];
+
+    static {
+        for (int c = 0; c < ASCII_WORD_BYTES.length; c++) {
+            if (isWordCharacter(c))
+                ASCII_WORD_BYTES[c] = (byte) Character.toLowerCase(c);
+        }
+    }
+
+    private final TokenSink sink;
+    private final WordBuffer word = new WordBuffer();
+
+    /**
+     * Constructs a CharTokenizer that passes every word it finds to the given sink.
+     *
+     * @param sink the sink that receives the words.
+     */
+    public CharTokenizer(TokenSink sink) {
+        if (sink == null)
+            throw new IllegalArgumentException("Sink cannot be null");
+
+        this.sink = sink;
+    }
+
+    /**
+     * Returns whether a character is part of a word: a letter, an apostrophe or a hyphen. Every other character
+     * separates words.
+     *
+     * @param c the character.
+     * @return true if the character is part of a word.
+     */
+    public static boolean isWordCharacter(int c) {
+        return Character.isAlphabetic(c) || c == '\'' || c == '-';
+    }
+
+    /**
+     * Reads the whole reader through the given buffer and passes every word in it to the sink.
+     *
+     * @param reader the text, it is not closed.
+     * @param buffer the buffer to read the text into.
+     * @throws IOException If an error occurs while reading.
+     */
+    public void tokenize(Reader reader, char[] buffer) throws IOException {
+        int numRead;
+        while ((numRead = reader.read(buffer)) != -1) {
+            feed(buffer, 0, numRead);
+        }
+        finish();
+    }
+
+    /**
+     * Tokenizes the next slice of input. A word that is still incomplete at the end of the slice is continued by the
+     * next call, or flushed by {@link #finish()}.
+     *
+     * @param chars  the array holding the input.
+     * @param offset the index of the first character to tokenize.
+     * @param length the number of characters to tokenize.
+     */
+    public void feed(char[] chars, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            add(chars[i]);
+        }
+    }
+
+    /**
+     * Tokenizes the next piece of text, like {@link #feed(char[], int, int)}.
+     *
+     * @param text the text to tokenize.
+     */
+    public void feed(CharSequence text) {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            add(text.charAt(i));
+        }
+    }
+
+    /**
+     * Flushes the word that is still being built at the end of the input, if any, and passes the end of the input on
+     * to the sink. The tokenizer can then be reused for another input.
+     */
+    public void finish() {
+        word.flush(sink);
+        sink.finish();
+    }
+
+    private void add(char c) {
+        if (c < 0x80) {
+            byte lower = ASCII_WORD_BYTES[c];
+            if (lower != 0) {
+                word.append(lower);
+            } else {
+                word.flush(sink);
+            }
+        } else if (isWordCharacter(c)) {
+            word.appendChar(Character.toLowerCase(c));
+        } else {
+            word.flush(sink);
+        }
+    }
+}
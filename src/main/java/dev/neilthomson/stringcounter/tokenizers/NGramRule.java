@@ -0,0 +1,71 @@
+package dev.neilthomson.stringcounter.tokenizers;
+
+import java.util.Arrays;
+
+/**
+ * Replaces the words with their n-grams: every run of {@code n} consecutive words, joined by single spaces. With
+ * {@code n} of 2 the text "to be or not" produces "to be", "be or" and "or not".
+ * <p>
+ * The stage keeps the last {@code n} words in a window that it reuses for every n-gram, so n-grams are no more
+ * expensive to count than words. N-grams do not span the end of an input, and an input of fewer than {@code n} words
+ * produces none.
+ */
+public final class NGramRule implements TokenRule {
+
+    private final int n;
+
+    /**
+     * Constructs a rule that produces the n-grams of the given size.
+     *
+     * @param n the number of words in every n-gram, 2 for bigrams and 3 for trigrams.
+     */
+    public NGramRule(int n) {
+        if (n < 2)
+            throw new IllegalArgumentException("N must be at least 2");
+
+        this.n = n;
+    }
+
+    @Override
+    public TokenSink stage(TokenSink next) {
+        return new TokenStage(next) {
+            private final int[] lengths = new int[n];
+            private byte[] window = new byte[16 * n];
+            private int windowLength;
+            private int words;
+
+            @Override
+            public void accept(byte[] bytes, int offset, int length) {
+                if (words == n) { // drop the oldest word and the space after it
+                    int dropped = lengths[0] + 1;
+                    windowLength -= dropped;
+                    System.arraycopy(window, dropped, window, 0, windowLength);
+                    System.arraycopy(lengths, 1, lengths, 0, n - 1);
+                    words--;
+                }
+
+                if (windowLength + length + 1 > window.length)
+                    window = Arrays.copyOf(window, Math.max(window.length * 2, windowLength + length + 1));
+                if (words > 0)
+                    window[windowLength++] = ' ';
+                System.arraycopy(bytes, offset, window, windowLength, length);
+                windowLength += length;
+                lengths[words++] = length;
+                if (words == n)
+                    next.accept(window, 0, windowLength);
+            }
+
+            @Override
+            public void finish() {
+                words = 0;
+                windowLength = 0;
+                next.finish();
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return n + "-grams";
+    }
+}
@@ -0,0 +1,58 @@
+package dev.neilthomson.stringcounter.tokenizers;
+
+import java.util.Arrays;
+
+/**
+ * Reduces English plurals and possessives to their stem, so that "cat", "cats" and "cat's" are counted as one word.
+ * <p>
+ * This is light stemming in the manner of the S-stemmer of Harman. A possessive {@code 's} is removed, which also
+ * turns contractions such as "it's" into "it". A final {@code ies} becomes {@code y}, except after {@code a} or
+ * {@code e}. A final {@code s} is removed unless it follows {@code u} or {@code s}, or the word ends in {@code aes},
+ * {@code ees}, {@code oes} or {@code ies}. Words of fewer than three bytes are left alone, and as only the ASCII end of
+ * a word is examined, words in other scripts pass through unchanged.
+ * <p>
+ * Removing a suffix only shortens the slice. The one rewrite, {@code ies} to {@code y}, is made in a scratch array
+ * that belongs to the stage.
+ */
+public final class StemRule implements TokenRule {
+
+    @Override
+    public TokenSink stage(TokenSink next) {
+        return new TokenStage(next) {
+            private byte[] scratch = new byte[64];
+
+            @Override
+            public void accept(byte[] bytes, int offset, int length) {
+                int end = offset + length;
+                if (length < 3 || bytes[end - 1] != 's') {
+                    next.accept(bytes, offset, length);
+                    return;
+                }
+
+                byte before = bytes[end - 2];
+                if (before == '\'') {
+                    next.accept(bytes, offset, length - 2);
+                } else if (before == 'u' || before == 's') {
+                    next.accept(bytes, offset, length);
+                } else if (before != 'e') {
+                    next.accept(bytes, offset, length - 1);
+                } else if (bytes[end - 3] == 'i' && length > 3 && bytes[end - 4] != 'a' && bytes[end - 4] != 'e') {
+                    if (scratch.length < length - 2)
+                        scratch = Arrays.copyOf(scratch, Math.max(scratch.length * 2, length));
+                    System.arraycopy(bytes, offset, scratch, 0, length - 3);
+                    scratch[length - 3] = 'y';
+                    next.accept(scratch, 0, length - 2);
+                } else {
+                    byte third = bytes[end - 3];
+                    boolean keep = third == 'i' || third == 'a' || third == 'o' || third == 'e';
+                    next.accept(bytes, offset, keep ? length : length - 1);
+                }
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "stem";
+    }
+}
@@ -0,0 +1,105 @@
+package dev.neilthomson.stringcounter.tokenizers;
+
+import dev.neilthomson.stringcounter.tables.ByteWordTable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Drops stop-words, such as "the" and "of", which are so frequent that they crowd out every other word.
+ * <p>
+ * The stop-words are split and lowercased by a {@link CharTokenizer} and kept in a {@link ByteWordTable}, so each word
+ * is looked up straight from the slice the tokenizer produced, without decoding it.
+ */
+public final class StopWordRule implements TokenRule {
+
+    /**
+     * A short list of English function words, the same as the default list of Lucene.
+     */
+    private static final List<String> ENGLISH = Arrays.asList(
+            "a", "an", "and", "are", "as", "at", "be", "but", "by", "for", "if", "in", "into", "is", "it", "no", "not",
+            "of", "on", "or", "such", "that", "the", "their", "then", "there", "these", "they", "this", "to", "was",
+            "will", "with");
+
+    private final ByteWordTable words;
+
+    /**
+     * Constructs a rule that drops the given words. Each is split into words by a {@link CharTokenizer}, so that it
+     * matches what the tokenizers produce.
+     *
+     * @param stopWords the words to drop.
+     */
+    public StopWordRule(Collection<String> stopWords) {
+        if (stopWords == null)
+            throw new IllegalArgumentException("Stop-words cannot be null");
+
+        ByteWordTable table = new ByteWordTable(stopWords.size());
+        CharTokenizer tokenizer = new CharTokenizer(table::add);
+        for (String stopWord : stopWords) {
+            tokenizer.feed(stopWord);
+            tokenizer.finish();
+        }
+        this.words = table;
+    }
+
+    /**
+     * Creates a rule that drops common English function words.
+     *
+     * @return the rule.
+     */
+    public static StopWordRule english() {
+        return new StopWordRule(ENGLISH);
+    }
+
+    /**
+     * Creates a rule that drops the words listed in a UTF-8 file, one or more per line. Blank lines and lines starting
+     * with {@code #} are ignored.
+     *
+     * @param path the file listing the stop-words.
+     * @return the rule.
+     * @throws IOException If the file cannot be read.
+     */
+    public static StopWordRule load(Path path) throws IOException {
+        List<String> stopWords = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty() && !line.startsWith("#"))
+                    stopWords.add(line);
+            }
+        }
+        return new StopWordRule(stopWords);
+    }
+
+    /**
+     * Returns the number of distinct stop-words.
+     *
+     * @return the number of words the rule drops.
+     */
+    public int size() {
+        return words.size();
+    }
+
+    @Override
+    public TokenSink stage(TokenSink next) {
+        return new TokenStage(next) {
+            @Override
+            public void accept(byte[] bytes, int offset, int length) {
+                if (words.get(bytes, offset, length) == 0)
+                    next.accept(bytes, offset, length);
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "stop-words(" + words.size() + ")";
+    }
+}
@@ -0,0 +1,98 @@
+package dev.neilthomson.stringcounter.tokenizers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Applies a chain of {@link TokenRule}s, in order, to the words produced by a {@link Utf8Tokenizer} or a
+ * {@link CharTokenizer} before they are counted.
+ * <p>
+ * Every rule works on the reusable UTF-8 byte slices the tokenizers produce, whichever of them produced the words, so
+ * a pipeline adds no allocation per word to counting. For example the pipeline
+ * {@code TokenPipeline.of(StopWordRule.english(), new StemRule(), new NGramRule(2))} drops stop-words, stems what is
+ * left and counts the pairs of consecutive stems.
+ * <p>
+ * A pipeline is immutable and can be shared between threads, while the chain of stages returned by
+ * {@link #sink(TokenSink)} must only be used for one input at a time.
+ */
+public final class TokenPipeline {
+
+    /**
+     * The pipeline without any rules, which counts the words exactly as the tokenizer splits them.
+     */
+    public static final TokenPipeline NONE = new TokenPipeline(Collections.emptyList());
+
+    private final List<TokenRule> rules;
+
+    /**
+     * Constructs a pipeline that applies the given rules in order.
+     *
+     * @param rules the rules, the first is applied to the words of the tokenizer.
+     */
+    public TokenPipeline(List<TokenRule> rules) {
+        if (rules == null || rules.contains(null))
+            throw new IllegalArgumentException("Rules cannot be null");
+
+        this.rules = Collections.unmodifiableList(new ArrayList<>(rules));
+    }
+
+    /**
+     * Creates a pipeline that applies the given rules in order.
+     *
+     * @param rules the rules, the first is applied to the words of the tokenizer.
+     * @return the pipeline.
+     */
+    public static TokenPipeline of(TokenRule... rules) {
+        return new TokenPipeline(Arrays.asList(rules));
+    }
+
+    /**
+     * Creates a new chain of stages that applies the rules and passes the words that come out of the last rule to the
+     * given sink. Without rules the sink itself is returned.
+     *
+     * @param counter the sink that counts the words.
+     * @return the sink to hand to a tokenizer.
+     */
+    public TokenSink sink(TokenSink counter) {
+        if (counter == null)
+            throw new IllegalArgumentException("Sink cannot be null");
+
+        TokenSink sink = counter;
+        for (int i = rules.size() - 1; i >= 0; i--) {
+            sink = rules.get(i).stage(sink);
+        }
+        return sink;
+    }
+
+    /**
+     * Returns the rules of the pipeline.
+     *
+     * @return the rules in the order they are applied.
+     */
+    public List<TokenRule> rules() {
+        return rules;
+    }
+
+    /**
+     * Returns whether the pipeline has no rules.
+     *
+     * @return true if words are counted as the tokenizer splits them.
+     */
+    public boolean isEmpty() {
+        return rules.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        if (rules.isEmpty())
+            return "none";
+
+        StringBuilder text = new StringBuilder();
+        for (TokenRule rule : rules) {
+            text.append(text.length() == 0 ? "" : " ").append(rule);
+        }
+        return text.toString();
+    }
+}
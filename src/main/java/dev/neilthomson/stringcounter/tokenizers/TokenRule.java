@@ -0,0 +1,22 @@
+package dev.neilthomson.stringcounter.tokenizers;
+
+/**
+ * Defines a rule that rewrites the stream of words produced by a tokenizer, for example by dropping, changing or
+ * combining words. Rules are chained into a {@link TokenPipeline}.
+ * <p>
+ * A rule is immutable and can be shared between threads. The work is done by the stages it creates, which may carry
+ * state from one word to the next and are only used for one input at a time. A stage must not allocate per word: it
+ * passes on a slice of the array it received, or of a scratch array of its own that it reuses.
+ */
+@FunctionalInterface
+public interface TokenRule {
+
+    /**
+     * Creates a stage that applies this rule to the words it accepts and passes the result on to the next sink. The
+     * stage must pass {@link TokenSink#finish()} on to the next sink as well.
+     *
+     * @param next the sink that receives the words produced by the stage.
+     * @return a new stage.
+     */
+    TokenSink stage(TokenSink next);
+}
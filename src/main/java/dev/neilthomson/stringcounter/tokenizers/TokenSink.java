@@ -0,0 +1,28 @@
+package dev.neilthomson.stringcounter.tokenizers;
+
+/**
+ * Receives the words produced by a tokenizer.
+ * <p>
+ * Words are passed as a slice of a byte array holding the lowercased word encoded in UTF-8. The array is owned by
+ * the tokenizer and is reused as soon as the call returns, so implementations must copy any bytes they need to keep,
+ * and must not modify them.
+ */
+@FunctionalInterface
+public interface TokenSink {
+
+    /**
+     * Accepts a single word.
+     *
+     * @param bytes  the array holding the word.
+     * @param offset the index of the first byte of the word.
+     * @param length the number of bytes in the word.
+     */
+    void accept(byte[] bytes, int offset, int length);
+
+    /**
+     * Signals the end of an input. Sinks that carry state from one word to the next, such as the stages of a
+     * {@link TokenPipeline}, reset it here so that they can be reused for the next input. Does nothing by default.
+     */
+    default void finish() {
+    }
+}
@@ -0,0 +1,33 @@
+package dev.neilthomson.stringcounter.tokenizers;
+
+/**
+ * A stage of a {@link TokenPipeline} that passes its words on to the next sink. Subclasses only have to implement
+ * {@link #accept(byte[], int, int)}, and override {@link #finish()} if they carry state between words.
+ */
+public abstract class TokenStage implements TokenSink {
+
+    /**
+     * The sink that receives the words produced by this stage.
+     */
+    protected final TokenSink next;
+
+    /**
+     * Constructs a stage that passes its words on to the given sink.
+     *
+     * @param next the sink that receives the words produced by this stage.
+     */
+    protected TokenStage(TokenSink next) {
+        if (next == null)
+            throw new IllegalArgumentException("Next sink cannot be null");
+
+        this.next = next;
+    }
+
+    /**
+     * Passes the end of the input on to the next sink.
+     */
+    @Override
+    public void finish() {
+        next.finish();
+    }
+}
@@ -0,0 +1,324 @@
+package dev.neilthomson.stringcounter.tokenizers;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Splits raw UTF-8 bytes into lowercased words without decoding them into characters first.
+ * <p>
+ * A word is a run of alphabetic characters, apostrophes and hyphens, as defined by
+ * {@link CharTokenizer#isWordCharacter(int)}. ASCII bytes are classified and lowercased with a lookup table, and only
+ * multi-byte sequences are decoded so that {@link CharTokenizer#isWordCharacter(int)} and
+ * {@link Character#toLowerCase(char)} can be applied to them. Characters outside the Basic Multilingual Plane and
+ * malformed sequences end the current word, matching the behaviour of decoding the bytes with an InputStreamReader.
+ * <p>
+ * Words that are made up only of ASCII bytes and lie entirely within one buffer are lowercased in place and handed
+ * to the {@link TokenSink} as a slice of that buffer. Every other word is assembled in a reusable scratch array, so
+ * no objects are allocated per word.
+ * <p>
+ * On JDK 17 and later, when the {@code jdk.incubator.vector} module has been added with
+ * {@code --add-modules=jdk.incubator.vector}, blocks of 64 ASCII bytes are classified with SIMD instructions and the
+ * words in them are found from the resulting bit mask. Blocks holding any other byte, and every JVM without the
+ * Vector API, take the byte by byte path, which splits the input into exactly the same words. The vector code is slow
+ * until the JIT has compiled it, so it pays off on large inputs and in a resident server rather than for a single small
+ * file, and it can be switched off with {@code -Dstringcounter.vector=false}.
+ * <p>
+ * A tokenizer carries a partial word, and a partial multi-byte sequence, from one call of
+ * {@link #feed(byte[], int, int)} to the next. It is therefore not thread-safe and must only be used for one input
+ * at a time.
+ */
+public final class Utf8Tokenizer {
+
+    /**
+     * The version of the rules that split and lowercase words. It must be increased whenever the same input would be
+     * split into different words, because counts saved by an earlier version no longer match what it would count.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * The lowercased value of every ASCII byte that is part of a word, and zero for every other byte.
+     */
+    private static final byte[] ASCII_WORD_BYTES = new byte[256];
+
+    static {
+        System.arraycopy(CharTokenizer.ASCII_WORD_BYTES, 0, ASCII_WORD_BYTES, 0, CharTokenizer.ASCII_WORD_BYTES.length);
+    }
+
+    /**
+     * Classifies blocks of ASCII bytes with SIMD instructions, or null if the Vector API is not available.
+     */
+    private static final BlockClassifier VECTOR = BlockClassifier.load();
+
+    /**
+     * The most times the distance to the next block is doubled in text where few blocks are all ASCII.
+     */
+    private static final int MAX_MISSES = 4;
+
+    private final TokenSink sink;
+    private final BlockClassifier classifier;
+    private final WordBuffer word = new WordBuffer();
+
+    private final byte[] pending = new byte[3];
+    private int pendingLength;
+    private int pendingExpected;
+
+    /**
+     * Constructs a Utf8Tokenizer that passes every word it finds to the given sink.
+     *
+     * @param sink the sink that receives the words.
+     */
+    public Utf8Tokenizer(TokenSink sink) {
+        this(sink, VECTOR);
+    }
+
+    /**
+     * Constructs a Utf8Tokenizer that classifies blocks of ASCII bytes with the given classifier.
+     *
+     * @param sink       the sink that receives the words.
+     * @param classifier the classifier, or null to classify every byte on its own.
+     */
+    Utf8Tokenizer(TokenSink sink, BlockClassifier classifier) {
+        if (sink == null)
+            throw new IllegalArgumentException("Sink cannot be null");
+
+        this.sink = sink;
+        this.classifier = classifier;
+    }
+
+    /**
+     * Returns whether tokenizers classify blocks of ASCII bytes with the Vector API in this JVM.
+     *
+     * @return true if SIMD instructions are used, false if every byte is classified on its own.
+     */
+    public static boolean isVectorized() {
+        return VECTOR != null;
+    }
+
+    /**
+     * Reads the whole input stream through the given buffer and passes every word in it to the sink.
+     *
+     * @param inputStream the stream of UTF-8 encoded text, it is not closed.
+     * @param buffer      the buffer to read the stream into.
+     * @throws IOException If an error occurs while reading from the input stream.
+     */
+    public void tokenize(InputStream inputStream, byte[] buffer) throws IOException {
+        int numRead;
+        while ((numRead = inputStream.read(buffer)) != -1) {
+            feed(buffer, 0, numRead);
+        }
+        finish();
+    }
+
+    /**
+     * Tokenizes the next slice of input. ASCII letters in the slice are lowercased in place.
+     * <p>
+     * A word or multi-byte sequence that is still incomplete at the end of the slice is kept and continued by the
+     * next call, or flushed by {@link #finish()}.
+     *
+     * @param bytes  the array holding the input.
+     * @param offset the index of the first byte to tokenize.
+     * @param length the number of bytes to tokenize.
+     */
+    public void feed(byte[] bytes, int offset, int length) {
+        int end = offset + length;
+        int i = offset;
+        if (pendingLength > 0) {
+            i = completePending(bytes, i, end);
+        }
+
+        int start = -1; // start of a word that is being lowercased in place, or -1 if it is in the scratch array
+        int blocksFrom = classifier == null ? Integer.MAX_VALUE : i; // where to try classifying a block again
+        int lastBlock = end - BlockClassifier.BLOCK_SIZE;
+        int misses = 0; // blocks in a row that were not ASCII, each one doubles the distance to the next try
+        while (i < end) {
+            if (i >= blocksFrom && i <= lastBlock) {
+                if (classifier.isAscii(bytes, i)) {
+                    misses = 0;
+                    start = feedBlock(bytes, i, classifier.wordBits(bytes, i), start);
+                    i += BlockClassifier.BLOCK_SIZE;
+                    continue;
+                }
+                blocksFrom = i + (BlockClassifier.BLOCK_SIZE << misses); // go byte by byte past the non-ASCII bytes
+                if (misses < MAX_MISSES)
+                    misses++;
+            }
+
+            int b = bytes[i] & 0xFF;
+            byte lower = ASCII_WORD_BYTES[b];
+            if (lower != 0) { // ASCII byte that is part of a word
+                bytes[i] = lower;
+                if (start < 0) {
+                    if (!word.isEmpty()) {
+                        word.append(lower);
+                    } else {
+                        start = i;
+                    }
+                }
+                i++;
+                continue;
+            }
+
+            if (b < 0x80) { // ASCII byte that ends a word
+                if (start >= 0) {
+                    sink.accept(bytes, start, i - start);
+                    start = -1;
+                } else {
+                    word.flush(sink);
+                }
+                i++;
+                continue;
+            }
+
+            int expected = sequenceLength(b);
+            if (expected == 1) { // malformed, or a character outside the Basic Multilingual Plane
+                start = endWord(bytes, start, i);
+                i++;
+                continue;
+            }
+
+            if (i + expected > end) { // the sequence continues in the next slice
+                if (start >= 0) {
+                    word.append(bytes, start, i - start);
+                    start = -1;
+                }
+                pendingExpected = expected;
+                while (i < end) {
+                    pending[pendingLength++] = bytes[i++];
+                }
+                break;
+            }
+
+            int c = decode(b, bytes[i + 1], expected == 3 ? bytes[i + 2] : 0, expected);
+            if (c < 0) { // malformed, the continuation bytes are treated as delimiters on their own
+                start = endWord(bytes, start, i);
+                i++;
+            } else if (CharTokenizer.isWordCharacter(c)) {
+                if (start >= 0) {
+                    word.append(bytes, start, i - start);
+                    start = -1;
+                }
+                word.appendChar(Character.toLowerCase((char) c));
+                i += expected;
+            } else {
+                start = endWord(bytes, start, i);
+                i += expected;
+            }
+        }
+
+        if (start >= 0) { // the word continues in the next slice
+            word.append(bytes, start, end - start);
+        }
+    }
+
+    /**
+     * Flushes the word that is still being built at the end of the input, if any, and passes the end of the input on
+     * to the sink. The tokenizer can then be reused for another input.
+     */
+    public void finish() {
+        pendingLength = 0; // a truncated sequence is malformed and ends the word
+        word.flush(sink);
+        sink.finish();
+    }
+
+    /**
+     * Tokenizes a block of ASCII bytes that have already been classified and lowercased, by jumping from one run of
+     * word bytes to the next with the bit mask of the block.
+     *
+     * @param offset the index of the first byte of the block.
+     * @param bits   the mask of the bytes of the block that are part of a word.
+     * @param start  the start of the word being lowercased in place when the block starts, or -1.
+     * @return the start of the word being lowercased in place when the block ends, or -1.
+     */
+    private int feedBlock(byte[] bytes, int offset, long bits, int start) {
+        int position = 0;
+        while (position < BlockClassifier.BLOCK_SIZE) {
+            long rest = bits >>> position;
+            if ((rest & 1) != 0) { // a run of word bytes, which may continue into the next block
+                int run = Long.numberOfTrailingZeros(~rest);
+                if (start < 0) {
+                    if (word.isEmpty()) {
+                        start = offset + position;
+                    } else {
+                        word.append(bytes, offset + position, run);
+                    }
+                }
+                position += run;
+            } else { // a run of delimiters, which ends the current word
+                start = endWord(bytes, start, offset + position);
+                position += rest == 0 ? BlockClassifier.BLOCK_SIZE - position : Long.numberOfTrailingZeros(rest);
+            }
+        }
+        return start;
+    }
+
+    /**
+     * Continues the multi-byte sequence left incomplete by the previous slice.
+     *
+     * @return the index of the first byte that has not been consumed.
+     */
+    private int completePending(byte[] bytes, int offset, int end) {
+        int i = offset;
+        while (pendingLength < pendingExpected && i < end && (bytes[i] & 0xC0) == 0x80) {
+            pending[pendingLength++] = bytes[i++];
+        }
+
+        if (pendingLength < pendingExpected) {
+            if (i < end) { // malformed, the byte that interrupted the sequence is tokenized as normal
+                pendingLength = 0;
+                word.flush(sink);
+            }
+            return i;
+        }
+
+        int c = decode(pending[0] & 0xFF, pending[1], pendingExpected == 3 ? pending[2] : 0, pendingExpected);
+        pendingLength = 0;
+        if (c >= 0 && CharTokenizer.isWordCharacter(c)) {
+            word.appendChar(Character.toLowerCase((char) c));
+        } else {
+            word.flush(sink);
+        }
+        return i;
+    }
+
+    /**
+     * Returns the number of bytes in the sequence started by the given lead byte, or 1 for lead bytes that cannot
+     * start a two or three byte sequence.
+     */
+    private static int sequenceLength(int lead) {
+        if (lead >= 0xC2 && lead <= 0xDF)
+            return 2;
+        if (lead >= 0xE0 && lead <= 0xEF)
+            return 3;
+        return 1;
+    }
+
+    /**
+     * Decodes a two or three byte sequence into a character, or returns -1 if the sequence is malformed.
+     */
+    private static int decode(int lead, byte b1, byte b2, int length) {
+        if ((b1 & 0xC0) != 0x80)
+            return -1;
+
+        if (length == 2)
+            return ((lead & 0x1F) << 6) | (b1 & 0x3F);
+
+        if ((b2 & 0xC0) != 0x80 || (lead == 0xE0 && (b1 & 0xFF) < 0xA0)) // overlong encoding
+            return -1;
+
+        return ((lead & 0x0F) << 12) | ((b1 & 0x3F) << 6) | (b2 & 0x3F);
+    }
+
+    /**
+     * Ends the word that is being built either in place or in the scratch array.
+     *
+     * @return -1, the new start of the in place word.
+     */
+    private int endWord(byte[] bytes, int start, int end) {
+        if (start >= 0) {
+            sink.accept(bytes, start, end - start);
+        } else {
+            word.flush(sink);
+        }
+        return -1;
+    }
+}
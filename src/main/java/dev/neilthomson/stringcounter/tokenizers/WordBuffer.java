@@ -0,0 +1,65 @@
+package dev.neilthomson.stringcounter.tokenizers;
+
+import java.util.Arrays;
+
+/**
+ * A reusable scratch array that the tokenizers assemble words in when a word cannot be handed to the sink as a slice
+ * of the input, such as a word that spans two buffers or a word that had to be decoded.
+ */
+final class WordBuffer {
+
+    private byte[] word = new byte[64];
+    private int length;
+
+    /**
+     * Returns whether a word is being assembled.
+     */
+    boolean isEmpty() {
+        return length == 0;
+    }
+
+    /**
+     * Passes the assembled word, if any, to the sink and starts a new word.
+     */
+    void flush(TokenSink sink) {
+        if (length > 0) {
+            sink.accept(word, 0, length);
+            length = 0;
+        }
+    }
+
+    /**
+     * Appends a character of the Basic Multilingual Plane, encoded in UTF-8.
+     */
+    void appendChar(char c) {
+        if (c < 0x80) {
+            append((byte) c);
+        } else if (c < 0x800) {
+            ensureCapacity(2);
+            word[length++] = (byte) (0xC0 | (c >> 6));
+            word[length++] = (byte) (0x80 | (c & 0x3F));
+        } else {
+            ensureCapacity(3);
+            word[length++] = (byte) (0xE0 | (c >> 12));
+            word[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            word[length++] = (byte) (0x80 | (c & 0x3F));
+        }
+    }
+
+    void append(byte b) {
+        ensureCapacity(1);
+        word[length++] = b;
+    }
+
+    void append(byte[] bytes, int offset, int count) {
+        ensureCapacity(count);
+        System.arraycopy(bytes, offset, word, length, count);
+        length += count;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > word.length) {
+            word = Arrays.copyOf(word, Math.max(word.length * 2, length + extra));
+        }
+    }
+}
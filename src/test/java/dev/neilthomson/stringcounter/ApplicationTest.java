@@ -1,9 +1,11 @@
 package dev.neilthomson.stringcounter;
 
 import dev.neilthomson.stringcounter.comparators.CountAndAlphaComparator;
+import dev.neilthomson.stringcounter.index.WordIndex;
 import dev.neilthomson.stringcounter.services.WordCounter;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -11,10 +13,13 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.*;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 
 @ExtendWith(MockitoExtension.class)
 public class ApplicationTest {
@@ -34,6 +39,24 @@ public class ApplicationTest {
         Mockito.verify(wordCounterMock).count(any(InputStream.class), any(CountAndAlphaComparator.class));
     }
 
+    @Test
+    public void shouldOnlyRequestTopWords() throws IOException {
+        List<Map.Entry<String, Long>> mockCounts = new ArrayList<>();
+        mockCounts.add(new AbstractMap.SimpleEntry<>("word", 2L));
+        Mockito.when(wordCounterMock.countTop(any(InputStream.class), any(CountAndAlphaComparator.class), eq(1))).thenReturn(mockCounts);
+        application.runFromFile("src/test/resources/test.txt", 1);
+        Mockito.verify(wordCounterMock).countTop(any(InputStream.class), any(CountAndAlphaComparator.class), eq(1));
+    }
+
+    @Test
+    public void savedIndexShouldHoldEveryWordWithTop(@TempDir Path directory) throws IOException {
+        final Path index = directory.resolve("test.idx");
+        Application.main(new String[]{"src/test/resources/test.txt", "--top", "1", "--save-index", index.toString()});
+        try (WordIndex saved = WordIndex.open(index)) {
+            assertEquals(1L, saved.count("lorem"), "A word outside the top should still be in the index");
+        }
+    }
+
     @Test
     public void shouldThrowIOExceptionIfInvalidFile() throws IOException {
         assertThrows(IOException.class, () -> application.runFromFile("invalid_file.txt"));
@@ -0,0 +1,39 @@
+package dev.neilthomson.stringcounter.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class ContentHashTest {
+
+    @Test
+    public void shouldMatchReferenceHashes() {
+        assertEquals(0xef46db3751d8e999L, ContentHash.of(new byte[0]), "The empty input should match XXH64");
+        assertEquals(0x44bc2cf5ad770999L, ContentHash.of("abc".getBytes(StandardCharsets.UTF_8)), "A short input should match XXH64");
+        assertEquals(0xfbcea83c8a378bf1L, ContentHash.of("Nobody inspects the spammish repetition".getBytes(StandardCharsets.UTF_8)),
+                "An input of more than one stripe should match XXH64");
+    }
+
+    @Test
+    public void shouldHashFileLikeArray() throws IOException {
+        final byte[] bytes = new byte[200_003];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (i * 31 + (i >>> 8));
+        }
+        final Path file = Files.createTempFile("hash", ".txt");
+        try {
+            Files.write(file, bytes);
+            assertEquals(ContentHash.of(bytes), ContentHash.of(file), "A file should hash like its contents across buffer refills");
+            bytes[100_000] ^= 1;
+            assertNotEquals(ContentHash.of(bytes), ContentHash.of(file), "A changed byte should change the hash");
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
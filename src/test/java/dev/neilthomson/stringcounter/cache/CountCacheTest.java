@@ -0,0 +1,130 @@
+package dev.neilthomson.stringcounter.cache;
+
+import dev.neilthomson.stringcounter.tables.ByteWordTable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CountCacheTest {
+
+    private static final String VERSION = "test/1";
+
+    @TempDir
+    Path directory;
+    @TempDir
+    Path files;
+
+    @Test
+    public void shouldLoadCachedCounts() throws IOException {
+        final Path file = write("a.txt", "one two two");
+        try (CountCache cache = CountCache.open(directory, VERSION, CountCache.DEFAULT_MAX_BYTES)) {
+            assertNull(cache.find(file, attributes(file)), "A file that was never cached should not be found");
+            cache.put(file, attributes(file), table("one", 1, "two", 2));
+            final ByteWordTable loaded = new ByteWordTable();
+            assertTrue(cache.load(cache.find(file, attributes(file)), loaded), "Cached counts should be loaded");
+            assertEquals(table("one", 1, "two", 2).entries(), loaded.entries(), "Loaded counts should equal the cached counts");
+        }
+    }
+
+    @Test
+    public void shouldKeepEntriesAcrossRuns() throws IOException {
+        final Path file = write("a.txt", "one two two");
+        try (CountCache cache = CountCache.open(directory, VERSION, CountCache.DEFAULT_MAX_BYTES)) {
+            cache.put(file, attributes(file), table("one", 1, "two", 2));
+        }
+        try (CountCache cache = CountCache.open(directory, VERSION, CountCache.DEFAULT_MAX_BYTES)) {
+            assertNotNull(cache.find(file, attributes(file)), "An entry should be found after the cache is reopened");
+        }
+    }
+
+    @Test
+    public void shouldMissChangedFiles() throws IOException {
+        final Path resized = write("a.txt", "one two two");
+        final Path edited = write("b.txt", "one two two");
+        try (CountCache cache = CountCache.open(directory, VERSION, CountCache.DEFAULT_MAX_BYTES)) {
+            cache.put(resized, attributes(resized), table("one", 1, "two", 2));
+            cache.put(edited, attributes(edited), table("one", 1, "two", 2));
+            write("a.txt", "one two two three");
+            write("b.txt", "one one two");
+            touch(edited);
+            assertNull(cache.find(resized, attributes(resized)), "A file of another size should not be found");
+            assertNull(cache.find(edited, attributes(edited)), "A file with other contents should not be found");
+        }
+    }
+
+    @Test
+    public void shouldHitTouchedButUnchangedFiles() throws IOException {
+        final Path file = write("a.txt", "one two two");
+        try (CountCache cache = CountCache.open(directory, VERSION, CountCache.DEFAULT_MAX_BYTES)) {
+            cache.put(file, attributes(file), table("one", 1, "two", 2));
+            touch(file);
+            assertNotNull(cache.find(file, attributes(file)), "A file with the same contents should be found");
+        }
+    }
+
+    @Test
+    public void shouldEmptyCacheOfOtherVersion() throws IOException {
+        final Path file = write("a.txt", "one two two");
+        try (CountCache cache = CountCache.open(directory, VERSION, CountCache.DEFAULT_MAX_BYTES)) {
+            cache.put(file, attributes(file), table("one", 1, "two", 2));
+        }
+        try (CountCache cache = CountCache.open(directory, "test/2", CountCache.DEFAULT_MAX_BYTES)) {
+            assertNull(cache.find(file, attributes(file)), "Counts of another version should not be found");
+            assertEquals(0, cache.totalBytes(), "Counts of another version should be deleted");
+        }
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedEntries() throws IOException {
+        final Path first = write("a.txt", "one");
+        final Path second = write("b.txt", "two");
+        final Path third = write("c.txt", "three");
+        try (CountCache cache = CountCache.open(directory, VERSION, CountCache.DEFAULT_MAX_BYTES)) {
+            cache.put(first, attributes(first), table("one", 1));
+            cache.put(second, attributes(second), table("two", 1));
+        }
+        final long entryBytes;
+        try (CountCache cache = CountCache.open(directory, VERSION, CountCache.DEFAULT_MAX_BYTES)) {
+            entryBytes = cache.totalBytes() / 2;
+        }
+        try (CountCache cache = CountCache.open(directory, VERSION, entryBytes * 2 + entryBytes / 2)) {
+            assertNotNull(cache.find(first, attributes(first)), "The first entry should be found");
+            cache.put(third, attributes(third), table("three", 1));
+            assertNull(cache.find(second, attributes(second)), "The least recently used entry should be evicted");
+            assertEquals(2, cache.size(), "The cache should stay within its size limit");
+        }
+    }
+
+    private Path write(String name, String text) throws IOException {
+        return Files.write(files.resolve(name), text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void touch(Path file) throws IOException {
+        final FileTime modified = Files.getLastModifiedTime(file);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modified.toMillis() + 60_000));
+    }
+
+    private static BasicFileAttributes attributes(Path file) throws IOException {
+        return Files.readAttributes(file, BasicFileAttributes.class);
+    }
+
+    private static ByteWordTable table(Object... wordsAndCounts) {
+        final ByteWordTable table = new ByteWordTable();
+        for (int i = 0; i < wordsAndCounts.length; i += 2) {
+            final byte[] word = ((String) wordsAndCounts[i]).getBytes(StandardCharsets.UTF_8);
+            table.add(word, 0, word.length, ((Integer) wordsAndCounts[i + 1]).longValue());
+        }
+        return table;
+    }
+}
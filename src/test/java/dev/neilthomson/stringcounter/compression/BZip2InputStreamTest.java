@@ -0,0 +1,57 @@
+package dev.neilthomson.stringcounter.compression;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import static dev.neilthomson.stringcounter.compression.CompressionTest.readAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class BZip2InputStreamTest {
+
+    @Test
+    public void shouldDecompressToOriginal() throws IOException {
+        final byte[] expected = Files.readAllBytes(Paths.get("src/test/resources/test.txt"));
+        try (InputStream inputStream = new BZip2InputStream(Files.newInputStream(Paths.get("src/test/resources/test.txt.bz2")))) {
+            assertArrayEquals(expected, readAll(inputStream), "Decompressed bytes should match the original file");
+        }
+    }
+
+    @Test
+    public void shouldReadConcatenatedStreams() throws IOException {
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(Files.readAllBytes(Paths.get("src/test/resources/german.txt")));
+        expected.write(Files.readAllBytes(Paths.get("src/test/resources/test.txt")));
+        try (InputStream inputStream = new BZip2InputStream(Files.newInputStream(Paths.get("src/test/resources/concatenated.bz2")))) {
+            assertArrayEquals(expected.toByteArray(), readAll(inputStream), "Every stream should be decompressed");
+        }
+    }
+
+    @Test
+    public void shouldStopAfterFirstStream() throws IOException {
+        final byte[] expected = Files.readAllBytes(Paths.get("src/test/resources/german.txt"));
+        try (InputStream inputStream = new BZip2InputStream(Files.newInputStream(Paths.get("src/test/resources/concatenated.bz2")), false)) {
+            assertArrayEquals(expected, readAll(inputStream), "Only the first stream should be decompressed");
+        }
+    }
+
+    @Test
+    public void shouldRejectCorruptBlock() throws IOException {
+        final byte[] compressed = Files.readAllBytes(Paths.get("src/test/resources/test.txt.bz2"));
+        compressed[compressed.length / 2] ^= 0x10;
+        assertThrows(IOException.class, () -> readAll(new BZip2InputStream(new ByteArrayInputStream(compressed))));
+    }
+
+    @Test
+    public void shouldRejectOtherFormats() {
+        final byte[] text = "plain text".getBytes(StandardCharsets.UTF_8);
+        assertThrows(IOException.class, () -> new BZip2InputStream(new ByteArrayInputStream(text)));
+    }
+}
@@ -0,0 +1,96 @@
+package dev.neilthomson.stringcounter.compression;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CompressionTest {
+
+    @Test
+    public void shouldDetectMagicBytes() throws IOException {
+        assertEquals(Compression.GZIP, Compression.detect(new byte[]{0x1F, (byte) 0x8B, 8, 0}, 4), "Gzip magic should be detected");
+        assertEquals(Compression.BZIP2, Compression.detect(Paths.get("src/test/resources/test.txt.bz2")), "Bzip2 magic should be detected");
+        assertEquals(Compression.ZSTD, Compression.detect(new byte[]{0x28, (byte) 0xB5, 0x2F, (byte) 0xFD}, 4), "Zstandard magic should be detected");
+    }
+
+    @Test
+    public void shouldPreferMagicBytesOverExtension() throws IOException {
+        final Path file = Files.createTempFile("plain", ".gz");
+        try {
+            Files.write(file, "not compressed".getBytes(StandardCharsets.UTF_8));
+            assertEquals(Compression.NONE, Compression.detect(file), "A plain file should not be detected from its extension");
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void shouldFallBackToExtensionForShortFiles() throws IOException {
+        final Path truncated = Files.createTempFile("truncated", ".bz2");
+        final Path empty = Files.createTempFile("empty", ".zst");
+        try {
+            Files.write(truncated, new byte[]{'B', 'Z'});
+            assertEquals(Compression.BZIP2, Compression.detect(truncated), "A short file should be detected from its extension");
+            assertEquals(Compression.NONE, Compression.detect(empty), "An empty file should be plain text");
+        } finally {
+            Files.delete(truncated);
+            Files.delete(empty);
+        }
+    }
+
+    @Test
+    public void shouldDecompressGzipStream() throws IOException {
+        final byte[] text = "the quick brown fox".getBytes(StandardCharsets.UTF_8);
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(text);
+        }
+        try (InputStream inputStream = CompressedInput.decompress(new ByteArrayInputStream(compressed.toByteArray()))) {
+            assertArrayEquals(text, readAll(inputStream), "Gzip input should be decompressed");
+        }
+    }
+
+    @Test
+    public void shouldPassPlainStreamThrough() throws IOException {
+        final byte[] text = "BZ".getBytes(StandardCharsets.UTF_8);
+        try (InputStream inputStream = CompressedInput.decompress(new ByteArrayInputStream(text))) {
+            assertArrayEquals(text, readAll(inputStream), "Plain input should be returned unchanged");
+        }
+    }
+
+    @Test
+    public void shouldDecompressZstandardStream() throws IOException {
+        final byte[] text = Files.readAllBytes(Paths.get("src/test/resources/test.txt"));
+        try (InputStream inputStream = CompressedInput.decompress(Files.newInputStream(Paths.get("src/test/resources/test.txt.zst")))) {
+            assertArrayEquals(text, readAll(inputStream), "Zstandard input should be decompressed without any codec on the classpath");
+        }
+    }
+
+    @Test
+    public void shouldThrowForTruncatedZstandard() {
+        final byte[] header = {0x28, (byte) 0xB5, 0x2F, (byte) 0xFD, 0, 0, 0, 0};
+        assertThrows(IOException.class, () -> readAll(CompressedInput.decompress(new ByteArrayInputStream(header))));
+    }
+
+    static byte[] readAll(InputStream inputStream) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[333];
+        int numRead;
+        while ((numRead = inputStream.read(buffer)) != -1) {
+            out.write(buffer, 0, numRead);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,67 @@
+package dev.neilthomson.stringcounter.compression;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.zip.GZIPOutputStream;
+
+import static dev.neilthomson.stringcounter.compression.CompressionTest.readAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class MemberReaderTest {
+
+    private static final String[] MEMBERS = {"the first member, ", "the second member, ", "and the last member"};
+
+    @Test
+    public void shouldFindEveryGzipMember() throws IOException {
+        final Path file = Files.createTempFile("members", ".gz");
+        try {
+            final long[] offsets = writeMembers(file);
+            assertArrayEquals(offsets, MemberReader.findMembers(file, Compression.GZIP), "Every member should be found");
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void shouldEndOnTheNextMember() throws IOException {
+        final Path file = Files.createTempFile("members", ".gz");
+        try (MemberReader reader = new MemberReader(file, Compression.GZIP, writeMembers(file)[1])) {
+            final byte[] member = readAll(reader.next());
+            assertArrayEquals(MEMBERS[1].getBytes(StandardCharsets.UTF_8), member, "Only the member at the offset should be read");
+            assertEquals(MemberReader.findMembers(file, Compression.GZIP)[2], reader.position(), "The reader should stop at the next member");
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void shouldReadBzip2StreamsInTurn() throws IOException {
+        final Path file = Paths.get("src/test/resources/concatenated.bz2");
+        try (MemberReader reader = new MemberReader(file, Compression.BZIP2, 0)) {
+            assertArrayEquals(Files.readAllBytes(Paths.get("src/test/resources/german.txt")), readAll(reader.next()), "The first stream should be read");
+            assertArrayEquals(Files.readAllBytes(Paths.get("src/test/resources/test.txt")), readAll(reader.next()), "The second stream should be read");
+            assertNull(reader.next(), "There should be no third stream");
+        }
+    }
+
+    private static long[] writeMembers(Path file) throws IOException {
+        final long[] offsets = new long[MEMBERS.length];
+        final ByteArrayOutputStream all = new ByteArrayOutputStream();
+        for (int i = 0; i < MEMBERS.length; i++) {
+            offsets[i] = all.size();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(all)) {
+                gzip.write(MEMBERS[i].getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        Files.write(file, all.toByteArray());
+        return offsets;
+    }
+}
@@ -0,0 +1,104 @@
+package dev.neilthomson.stringcounter.compression;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import static dev.neilthomson.stringcounter.compression.CompressionTest.readAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ZstdInputStreamTest {
+
+    @Test
+    public void shouldDecompressToOriginal() throws IOException {
+        final byte[] expected = Files.readAllBytes(Paths.get("src/test/resources/test.txt"));
+        try (InputStream inputStream = new ZstdInputStream(Files.newInputStream(Paths.get("src/test/resources/test.txt.zst")))) {
+            assertArrayEquals(expected, readAll(inputStream), "Decompressed bytes should match the original file");
+        }
+    }
+
+    @Test
+    public void shouldDecompressBlocksBeyondTheWindow() throws IOException {
+        // made by the reference encoder with a 128KB window, so matches only reach back into a sliding window
+        try (InputStream inputStream = new ZstdInputStream(Files.newInputStream(Paths.get("src/test/resources/generated.zst")))) {
+            assertArrayEquals(generatedText(), readAll(inputStream), "Every block should be decompressed");
+        }
+    }
+
+    @Test
+    public void shouldReadConcatenatedFramesAndSkipSkippableFrames() throws IOException {
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(Files.readAllBytes(Paths.get("src/test/resources/german.txt")));
+        expected.write(Files.readAllBytes(Paths.get("src/test/resources/test.txt")));
+        try (InputStream inputStream = new ZstdInputStream(Files.newInputStream(Paths.get("src/test/resources/concatenated.zst")))) {
+            assertArrayEquals(expected.toByteArray(), readAll(inputStream), "Every frame should be decompressed");
+        }
+    }
+
+    @Test
+    public void shouldStopAfterFirstFrame() throws IOException {
+        final byte[] expected = Files.readAllBytes(Paths.get("src/test/resources/german.txt"));
+        try (InputStream inputStream = new ZstdInputStream(Files.newInputStream(Paths.get("src/test/resources/concatenated.zst")), false)) {
+            assertArrayEquals(expected, readAll(inputStream), "Only the first frame should be decompressed");
+        }
+    }
+
+    @Test
+    public void shouldRejectChecksumMismatch() throws IOException {
+        final byte[] compressed = Files.readAllBytes(Paths.get("src/test/resources/test.txt.zst"));
+        compressed[compressed.length - 1] ^= 0x10;
+        assertThrows(IOException.class, () -> readAll(new ZstdInputStream(new ByteArrayInputStream(compressed))));
+    }
+
+    @Test
+    public void shouldRejectTruncatedFrame() throws IOException {
+        final byte[] compressed = Files.readAllBytes(Paths.get("src/test/resources/generated.zst"));
+        final byte[] truncated = Arrays.copyOf(compressed, compressed.length / 2);
+        assertThrows(IOException.class, () -> readAll(new ZstdInputStream(new ByteArrayInputStream(truncated))));
+    }
+
+    @Test
+    public void shouldRejectOtherFormats() {
+        final byte[] text = "plain text".getBytes(StandardCharsets.UTF_8);
+        assertThrows(IOException.class, () -> new ZstdInputStream(new ByteArrayInputStream(text)));
+    }
+
+    /**
+     * Generates the text that generated.zst was made from: words drawn with a skewed distribution from a random
+     * vocabulary, followed by a long run of a single character.
+     */
+    private static byte[] generatedText() {
+        final long[] seed = {42};
+        final String[] vocabulary = new String[64];
+        for (int i = 0; i < vocabulary.length; i++) {
+            final StringBuilder word = new StringBuilder();
+            for (long length = 2 + next(seed) % 9, j = 0; j < length; j++) {
+                word.append((char) ('a' + next(seed) % 26));
+            }
+            vocabulary[i] = word.toString();
+        }
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 12_000; i++) {
+            final long r = next(seed) % 64;
+            text.append(i == 0 ? "" : " ").append(vocabulary[(int) (r * r / 64)]);
+        }
+        text.append(' ');
+        for (int i = 0; i < 600_000; i++) {
+            text.append('-');
+        }
+        return text.append('\n').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long next(long[] seed) {
+        seed[0] = seed[0] * 6364136223846793005L + 1442695040888963407L;
+        return seed[0] >>> 33;
+    }
+}
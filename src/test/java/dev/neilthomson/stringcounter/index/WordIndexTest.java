@@ -0,0 +1,147 @@
+package dev.neilthomson.stringcounter.index;
+
+import dev.neilthomson.stringcounter.comparators.CountAndAlphaComparator;
+import dev.neilthomson.stringcounter.ranking.TopK;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WordIndexTest {
+
+    @Test
+    public void shouldLookUpEveryWord() throws IOException {
+        final List<Map.Entry<String, Long>> counts = counts(1000);
+        final Path file = write(counts);
+        try (WordIndex index = WordIndex.open(file)) {
+            for (Map.Entry<String, Long> entry : counts) {
+                assertEquals(entry.getValue().longValue(), index.count(entry.getKey()), "Every word should be found");
+            }
+            assertEquals(0, index.count("aaa"), "A word before every other word should not be found");
+            assertEquals(0, index.count("word500x"), "A word between two words should not be found");
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void shouldScanPrefixInByteOrder() throws IOException {
+        final List<Map.Entry<String, Long>> counts = counts(1000);
+        final Path file = write(counts);
+        try (WordIndex index = WordIndex.open(file)) {
+            final List<String> words = index.prefix("word12", Integer.MAX_VALUE).stream().map(Map.Entry::getKey).collect(Collectors.toList());
+            final List<String> expected = counts.stream().map(Map.Entry::getKey).filter(w -> w.startsWith("word12")).sorted().collect(Collectors.toList());
+            assertEquals(expected, words, "Every word with the prefix should be returned in order");
+            assertEquals(3, index.prefix("word", 3).size(), "The scan should stop at the limit");
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void shouldReturnTopWordsInCountOrder() throws IOException {
+        final List<Map.Entry<String, Long>> counts = counts(1000);
+        final Path file = write(counts);
+        try (WordIndex index = WordIndex.open(file)) {
+            final List<Map.Entry<String, Long>> sorted = new ArrayList<>(counts);
+            sorted.sort(new CountAndAlphaComparator(false));
+            assertEquals(TopK.truncate(sorted, 25), index.top(25), "The most frequent words should come first");
+            assertEquals(counts.size(), index.vocabularySize(), "The header should hold the vocabulary size");
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void shouldKeepNonAsciiWords() throws IOException {
+        final List<Map.Entry<String, Long>> counts = new ArrayList<>();
+        counts.add(new AbstractMap.SimpleImmutableEntry<>("gr\u00fc\u00dfe", 3L));
+        counts.add(new AbstractMap.SimpleImmutableEntry<>("gruss", 2L));
+        counts.add(new AbstractMap.SimpleImmutableEntry<>("\u00fcber", 1L));
+        final Path file = write(counts);
+        try (WordIndex index = WordIndex.open(file)) {
+            assertEquals(3, index.count("gr\u00fc\u00dfe"), "Non-ASCII words should be found");
+            assertEquals(2, index.prefix("gr", 10).size(), "Prefix scans should compare UTF-8 bytes");
+            assertEquals(6, index.totalCount(), "The header should hold the total count");
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void shouldOpenEmptyIndex() throws IOException {
+        final Path file = write(Collections.emptyList());
+        try (WordIndex index = WordIndex.open(file)) {
+            assertEquals(0, index.count("word"), "An empty index should not find any word");
+            assertTrue(index.top(10).isEmpty(), "An empty index should have no top words");
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void shouldDetectCorruption() throws IOException {
+        final Path file = write(counts(100));
+        try {
+            final byte[] bytes = Files.readAllBytes(file);
+            bytes[bytes.length / 2] ^= 1;
+            Files.write(file, bytes);
+            try (WordIndex index = WordIndex.open(file)) {
+                assertFalse(index.verify(), "A changed byte should not match the checksum");
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void shouldRejectOtherFiles() throws IOException {
+        final Path file = Files.createTempFile("index", ".txt");
+        try {
+            Files.write(file, "not an index, just some words that are long enough for a header".getBytes(StandardCharsets.UTF_8));
+            assertThrows(IOException.class, () -> WordIndex.open(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void shouldRejectDuplicateWords() throws IOException {
+        final List<Map.Entry<String, Long>> counts = new ArrayList<>();
+        counts.add(new AbstractMap.SimpleImmutableEntry<>("word", 1L));
+        counts.add(new AbstractMap.SimpleImmutableEntry<>("word", 2L));
+        final Path file = Files.createTempFile("index", ".idx");
+        try {
+            assertThrows(IllegalArgumentException.class, () -> WordIndexWriter.write(file, counts));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static List<Map.Entry<String, Long>> counts(int words) {
+        final List<Map.Entry<String, Long>> counts = new ArrayList<>();
+        for (int i = 0; i < words; i++) {
+            counts.add(new AbstractMap.SimpleImmutableEntry<>("word" + i, (long) (i * 7919 % 101)));
+        }
+        return counts;
+    }
+
+    private static Path write(List<Map.Entry<String, Long>> counts) throws IOException {
+        final Path file = Files.createTempFile("index", ".idx");
+        WordIndexWriter.write(file, counts);
+        return file;
+    }
+}
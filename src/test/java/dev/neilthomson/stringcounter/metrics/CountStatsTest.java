@@ -0,0 +1,94 @@
+package dev.neilthomson.stringcounter.metrics;
+
+import dev.neilthomson.stringcounter.comparators.CountAndAlphaComparator;
+import dev.neilthomson.stringcounter.services.BatchWordCounter;
+import dev.neilthomson.stringcounter.services.BufferedWordCounter;
+import dev.neilthomson.stringcounter.services.MappedParallelWordCounter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import javax.management.Attribute;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CountStatsTest {
+
+    private static final Path TEXT = Paths.get("src/test/resources/german.txt");
+
+    private final CountStats stats = CountStats.global();
+
+    @BeforeEach
+    public void resetStats() {
+        stats.reset();
+    }
+
+    @AfterEach
+    public void disableStats() {
+        stats.setEnabled(false);
+        stats.reset();
+    }
+
+    @Test
+    public void shouldRecordNothingWhenDisabled() throws IOException {
+        new MappedParallelWordCounter(64).count(TEXT, new CountAndAlphaComparator(false));
+        new BatchWordCounter(64, 2, 100).count(files(), new CountAndAlphaComparator(false));
+        assertEquals(0, stats.getRuns(), "No run should be recorded while collection is off");
+        assertEquals(0, stats.getBytesRead(), "No bytes should be recorded while collection is off");
+    }
+
+    @Test
+    public void shouldRecordBatchRun() throws IOException {
+        stats.setEnabled(true);
+        final List<Map.Entry<String, Long>> counts = new BatchWordCounter(64, 2, 100).count(files(), new CountAndAlphaComparator(false));
+        assertEquals(2 * Files.size(TEXT) + Files.size(Paths.get("src/test/resources/test.txt")), stats.getBytesRead(), "Every byte should be recorded");
+        assertEquals(tokens(counts), stats.getTokens(), "Every word should be recorded");
+        assertTrue(stats.getWorkerImbalance() >= 1 && stats.getTableLoadFactor() > 0, "The workers and table should be recorded");
+    }
+
+    @Test
+    public void shouldRecordMappedAndStreamRuns() throws IOException {
+        stats.setEnabled(true);
+        final List<Map.Entry<String, Long>> counts = new MappedParallelWordCounter(64).count(TEXT, new CountAndAlphaComparator(false));
+        new BufferedWordCounter(64, true).count(Files.newInputStream(TEXT), new CountAndAlphaComparator(false));
+        assertEquals(2 * Files.size(TEXT), stats.getBytesRead(), "The bytes of both runs should be recorded");
+        assertEquals(2 * tokens(counts), stats.getTokens(), "The words of both runs should be recorded");
+        assertEquals(counts.size(), stats.getDistinctWords(), "The vocabulary of the last run should be recorded");
+    }
+
+    @Test
+    public void shouldPublishMXBean() throws JMException, IOException {
+        CountStats.register();
+        final ObjectName name = new ObjectName(CountStats.OBJECT_NAME);
+        ManagementFactory.getPlatformMBeanServer().setAttribute(name, new Attribute("Enabled", true));
+        new BufferedWordCounter(64).count(Files.newInputStream(TEXT), new CountAndAlphaComparator(false));
+        assertEquals(1L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Runs"), "Runs should be readable through JMX");
+    }
+
+    private static List<Path> files() {
+        final List<Path> files = new ArrayList<>();
+        files.add(TEXT);
+        files.add(Paths.get("src/test/resources/test.txt"));
+        files.add(Paths.get("src/test/resources/german.txt").toAbsolutePath());
+        return files;
+    }
+
+    private static long tokens(List<Map.Entry<String, Long>> counts) {
+        long tokens = 0;
+        for (Map.Entry<String, Long> entry : counts) {
+            tokens += entry.getValue();
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,104 @@
+package dev.neilthomson.stringcounter.output;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CountWriterTest {
+
+    private static final List<Map.Entry<String, Long>> COUNTS = Arrays.asList(
+            new AbstractMap.SimpleImmutableEntry<>("the", 12L),
+            new AbstractMap.SimpleImmutableEntry<>("caf\u00e9", 3L),
+            new AbstractMap.SimpleImmutableEntry<>("a\tb\\\"c", 1L));
+
+    @Test
+    public void shouldWriteTextLikeStringFormat() throws IOException {
+        final StringBuilder expected = new StringBuilder();
+        for (Map.Entry<String, Long> entry : COUNTS) {
+            expected.append(String.format("%s: %d\n", entry.getKey(), entry.getValue()));
+        }
+        assertEquals(expected.toString(), write(OutputFormat.TEXT, COUNTS), "Text should match the previous output");
+    }
+
+    @Test
+    public void shouldEscapeTsvAndJsonLines() throws IOException {
+        assertEquals("the\t12\ncaf\u00e9\t3\na\\tb\\\\\"c\t1\n", write(OutputFormat.TSV, COUNTS),
+                "TSV should escape tabs and backslashes");
+        assertEquals("{\"word\":\"the\",\"count\":12}\n{\"word\":\"caf\u00e9\",\"count\":3}\n"
+                        + "{\"word\":\"a\\tb\\\\\\\"c\",\"count\":1}\n", write(OutputFormat.JSONL, COUNTS),
+                "JSON Lines should escape quotes, backslashes and control characters");
+    }
+
+    @Test
+    public void binaryShouldRoundTrip() throws IOException {
+        final List<Map.Entry<String, Long>> counts = new ArrayList<>(COUNTS);
+        counts.add(new AbstractMap.SimpleImmutableEntry<>("\ud801\udc28\u65e5", Long.MAX_VALUE));
+        counts.add(new AbstractMap.SimpleImmutableEntry<>(String.join("", Collections.nCopies(500, "long")), 0L));
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (CountWriter writer = new CountWriter(Channels.newChannel(bytes), OutputFormat.BINARY, 64)) {
+            writer.writeAll(counts);
+        }
+
+        final List<Map.Entry<String, Long>> read = new ArrayList<>();
+        final long words = BinaryCountReader.read(new ByteArrayInputStream(bytes.toByteArray()),
+                (word, count) -> read.add(new AbstractMap.SimpleImmutableEntry<>(word, count)));
+        assertEquals(counts, read, "Words and counts should be read back in order");
+        assertEquals(counts.size(), words, "Every word should be counted");
+    }
+
+    @Test
+    public void bytesShouldBeWrittenLikeTheirWords() throws IOException {
+        final ByteArrayOutputStream fromBytes = new ByteArrayOutputStream();
+        try (CountWriter writer = new CountWriter(Channels.newChannel(fromBytes), OutputFormat.BINARY, 48)) {
+            for (Map.Entry<String, Long> entry : COUNTS) {
+                final byte[] word = ("xx" + entry.getKey()).getBytes(StandardCharsets.UTF_8);
+                writer.accept(word, 2, word.length - 2, entry.getValue());
+            }
+        }
+        final ByteArrayOutputStream fromWords = new ByteArrayOutputStream();
+        try (CountWriter writer = new CountWriter(Channels.newChannel(fromWords), OutputFormat.BINARY, 48)) {
+            writer.writeAll(COUNTS);
+        }
+        assertArrayEquals(fromWords.toByteArray(), fromBytes.toByteArray(), "Bytes should be written like the words they encode");
+    }
+
+    @Test
+    public void shouldReplaceUnpairedSurrogates() throws IOException {
+        final String word = "a\ud801b";
+        assertEquals(new String(word.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8) + ": 1\n",
+                write(OutputFormat.TEXT, Arrays.asList(new AbstractMap.SimpleImmutableEntry<>(word, 1L))),
+                "Unpaired surrogates should be encoded like String.getBytes");
+    }
+
+    @Test
+    public void shouldRejectOtherFiles() {
+        assertThrows(IOException.class, () -> BinaryCountReader.read(new ByteArrayInputStream("the: 12\n".getBytes(StandardCharsets.UTF_8)),
+                (word, count) -> { }), "Text should not be read as binary counts");
+        assertThrows(IllegalArgumentException.class, () -> OutputFormat.of("xml"), "Unknown formats should be rejected");
+    }
+
+    /**
+     * Writes counts through a buffer small enough to be flushed several times.
+     */
+    private static String write(OutputFormat format, List<Map.Entry<String, Long>> counts) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (CountWriter writer = new CountWriter(Channels.newChannel(bytes), format, 48)) {
+            writer.writeAll(counts);
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,46 @@
+package dev.neilthomson.stringcounter.ranking;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SpaceSavingTest {
+
+    @Test
+    public void estimatesShouldStayWithinErrorBound() {
+        final SpaceSaving summary = new SpaceSaving(50);
+        final Map<String, Long> exact = new HashMap<>();
+        final Random random = new Random(11);
+        for (int i = 0; i < 50_000; i++) {
+            final String word = "w" + (int) Math.floor(Math.pow(random.nextDouble(), 3) * 2_000); // skewed towards low ids
+            final byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+            summary.add(bytes, 0, bytes.length);
+            exact.merge(word, 1L, Long::sum);
+        }
+
+        boolean withinBound = true;
+        for (Map.Entry<String, Long> entry : summary.entries()) {
+            final long overestimate = entry.getValue() - exact.get(entry.getKey());
+            withinBound &= overestimate >= 0 && overestimate <= summary.errorBound();
+        }
+        assertTrue(withinBound, "Every estimate should be at least the true count and within N / m of it");
+        assertTrue(summary.maximumError() <= summary.errorBound(), "Recorded errors should be within the bound");
+    }
+
+    @Test
+    public void shouldBeExactWhileCountersRemain() {
+        final SpaceSaving summary = new SpaceSaving(4);
+        final byte[] bytes = "aabbc".getBytes(StandardCharsets.UTF_8);
+        summary.add(bytes, 0, 1);
+        summary.add(bytes, 1, 1);
+        summary.add(bytes, 2, 1);
+        assertEquals(0L, summary.maximumError(), "No counter should have been taken over");
+        assertEquals(2, summary.entries().size(), "Each distinct word should have its own counter");
+    }
+}
@@ -0,0 +1,43 @@
+package dev.neilthomson.stringcounter.ranking;
+
+import dev.neilthomson.stringcounter.comparators.CountAndAlphaComparator;
+import org.junit.jupiter.api.Test;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TopKTest {
+
+    @Test
+    public void shouldMatchFullSort() {
+        final Random random = new Random(7);
+        final List<Map.Entry<String, Long>> entries = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>("w" + i, (long) random.nextInt(50)));
+        }
+        final List<Map.Entry<String, Long>> sorted = new ArrayList<>(entries);
+        sorted.sort(new CountAndAlphaComparator(false));
+        assertEquals(sorted.subList(0, 100), TopK.select(entries, new CountAndAlphaComparator(false), 100), "Selection should match the head of a full sort");
+    }
+
+    @Test
+    public void shouldReturnEverythingWhenKIsLarge() {
+        final List<Map.Entry<String, Long>> entries = new ArrayList<>();
+        entries.add(new AbstractMap.SimpleImmutableEntry<>("a", 1L));
+        entries.add(new AbstractMap.SimpleImmutableEntry<>("b", 2L));
+        final List<Map.Entry<String, Long>> selected = TopK.select(entries, new CountAndAlphaComparator(false), Integer.MAX_VALUE);
+        assertEquals(2, selected.size(), "Every entry should be returned");
+        assertEquals("b", selected.get(0).getKey(), "Entries should be sorted");
+    }
+
+    @Test
+    public void shouldRejectNegativeK() {
+        assertThrows(IllegalArgumentException.class, () -> TopK.select(new ArrayList<>(), new CountAndAlphaComparator(false), -1));
+    }
+}
@@ -0,0 +1,122 @@
+package dev.neilthomson.stringcounter.ranking;
+
+import dev.neilthomson.stringcounter.comparators.CountAndAlphaComparator;
+import dev.neilthomson.stringcounter.tables.ByteWordTable;
+import dev.neilthomson.stringcounter.tables.PartitionedMerge;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class WordCountListTest {
+
+    /**
+     * Characters that {@link String#compareToIgnoreCase(String)} folds in unusual ways, but no two of which fold to the
+     * same character, as the order of words that are equal ignoring case is not defined.
+     */
+    private static final String[] CHARACTERS = {
+            "a", "b", "z", "'", "-", "\u00e9", "\u00ff", "\u00b5", "\u0131", "\u017f", "\u03c2", "\u65e5", "\ufb00",
+            "\ud801\udc00"
+    };
+
+    @Test
+    public void shouldSortLikeCountAndAlphaComparator() {
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            final List<ByteWordTable> tables = randomTables(new Random(42));
+            for (boolean ascending : new boolean[]{false, true}) {
+                final CountAndAlphaComparator comparator = new CountAndAlphaComparator(ascending);
+                final List<Map.Entry<String, Long>> expected = merge(tables).entries();
+                expected.sort(comparator);
+                assertEquals(expected, WordCountList.sorted(PartitionedMerge.merge(tables, pool), comparator, pool),
+                        "Parallel sort should match sorting boxed entries");
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldStreamInSortedOrder() throws IOException {
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            final List<ByteWordTable> tables = randomTables(new Random(11));
+            for (boolean ascending : new boolean[]{false, true}) {
+                final CountAndAlphaComparator comparator = new CountAndAlphaComparator(ascending);
+                final List<Map.Entry<String, Long>> streamed = new ArrayList<>();
+                WordCountList.forEachSorted(PartitionedMerge.merge(tables, pool), comparator, pool,
+                        (word, count) -> streamed.add(new AbstractMap.SimpleImmutableEntry<>(word, count)));
+                assertEquals(WordCountList.sorted(PartitionedMerge.merge(tables, pool), comparator, pool), streamed,
+                        "Sorting in bands should match sorting the whole list");
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldSortWithAnyComparator() {
+        final List<ByteWordTable> tables = randomTables(new Random(7));
+        final Comparator<Map.Entry<String, Long>> comparator = Map.Entry.<String, Long>comparingByKey().reversed();
+        final List<Map.Entry<String, Long>> expected = merge(tables).entries();
+        expected.sort(comparator);
+        final ForkJoinPool pool = ForkJoinPool.commonPool();
+        assertEquals(expected, WordCountList.sorted(PartitionedMerge.merge(tables, pool), comparator, pool),
+                "Other comparators should sort boxed entries");
+    }
+
+    @Test
+    public void shouldReadAndReplaceEntries() {
+        final ByteWordTable table = new ByteWordTable();
+        add(table, "word", 3);
+        final WordCountList list = WordCountList.of(new ByteWordTable[]{table}, ForkJoinPool.commonPool());
+        list.set(0, new AbstractMap.SimpleImmutableEntry<>("other", 5L));
+        assertEquals("other", list.word(0), "Words should be replaced in place");
+        assertEquals(5L, list.count(0), "Counts should be replaced in place");
+        assertThrows(UnsupportedOperationException.class, () -> list.add(list.get(0)), "The size should be fixed");
+    }
+
+    /**
+     * Creates tables of random words, many shared between tables and with equal counts, with enough words to sort in
+     * parallel.
+     */
+    private static List<ByteWordTable> randomTables(Random random) {
+        final List<ByteWordTable> tables = new ArrayList<>();
+        for (int t = 0; t < 5; t++) {
+            final ByteWordTable table = new ByteWordTable();
+            for (int i = 0; i < 10_000; i++) {
+                final StringBuilder word = new StringBuilder();
+                final int length = 1 + random.nextInt(7);
+                for (int c = 0; c < length; c++) {
+                    word.append(CHARACTERS[random.nextInt(CHARACTERS.length)]);
+                }
+                add(table, word.toString(), 1 + random.nextInt(3));
+            }
+            tables.add(table);
+        }
+        return tables;
+    }
+
+    private static ByteWordTable merge(List<ByteWordTable> tables) {
+        final ByteWordTable merged = new ByteWordTable();
+        for (ByteWordTable table : tables) {
+            merged.addAll(table);
+        }
+        return merged;
+    }
+
+    private static void add(ByteWordTable table, String word, long count) {
+        final byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+        table.add(bytes, 0, bytes.length, count);
+    }
+}
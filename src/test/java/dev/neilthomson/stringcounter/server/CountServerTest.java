@@ -0,0 +1,136 @@
+package dev.neilthomson.stringcounter.server;
+
+import dev.neilthomson.stringcounter.comparators.CountAndAlphaComparator;
+import dev.neilthomson.stringcounter.ranking.TopK;
+import dev.neilthomson.stringcounter.services.BufferedWordCounter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CountServerTest {
+
+    private CountServer server;
+    private CountClient client;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        server = new CountServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2, null);
+        client = new CountClient("localhost:" + server.address().getPort());
+    }
+
+    @AfterEach
+    public void stopServer() {
+        server.close();
+    }
+
+    @Test
+    public void shouldCountFilesOnServer() throws IOException {
+        final List<Map.Entry<String, Long>> expected = new BufferedWordCounter(1024)
+                .count(Files.newInputStream(Paths.get("src/test/resources/test.txt")), new CountAndAlphaComparator(false));
+        assertEquals(CountServer.format(expected), client.count(Collections.singletonList("src/test/resources/test.txt"), -1),
+                "A file should be counted like the command line counts it");
+        assertEquals(CountServer.format(TopK.truncate(expected, 3)), client.count(Collections.singletonList("src/test/resources/test.txt"), 3),
+                "The top parameter should limit the counts");
+    }
+
+    @Test
+    public void shouldCountRequestBody() throws IOException {
+        final byte[] text = Files.readAllBytes(Paths.get("src/test/resources/german.txt"));
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream outputStream = new GZIPOutputStream(compressed)) {
+            outputStream.write(text);
+        }
+        final String expected = CountServer.format(new BufferedWordCounter(1024)
+                .count(new ByteArrayInputStream(text), new CountAndAlphaComparator(false)));
+        assertEquals(expected, client.count(new ByteArrayInputStream(text), -1), "A body should be counted");
+        assertEquals(expected, client.count(new ByteArrayInputStream(compressed.toByteArray()), -1), "A compressed body should be decompressed");
+    }
+
+    @Test
+    public void shouldCopyResponseBytes() throws IOException {
+        final byte[] text = "na\u00efve caf\u00e9 caf\u00e9".getBytes(StandardCharsets.UTF_8);
+        final ByteArrayOutputStream response = new ByteArrayOutputStream();
+        client.count(new ByteArrayInputStream(text), -1, response);
+        final String expected = CountServer.format(new BufferedWordCounter(1024)
+                .count(new ByteArrayInputStream(text), new CountAndAlphaComparator(false)));
+        assertEquals(expected, new String(response.toByteArray(), StandardCharsets.UTF_8),
+                "The response should be copied as the UTF-8 bytes sent by the server");
+    }
+
+    @Test
+    public void shouldServeConcurrentRequests() throws Exception {
+        final String expected = client.count(Collections.singletonList("src/test/resources/test.txt"), 5);
+        final ExecutorService clients = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<String>> responses = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                responses.add(clients.submit(() -> client.count(Collections.singletonList("src/test/resources/test.txt"), 5)));
+            }
+            for (Future<String> response : responses) {
+                assertEquals(expected, response.get(), "Every concurrent request should get the same counts");
+            }
+        } finally {
+            clients.shutdown();
+        }
+        assertTrue(client.stats().startsWith("path: requests=65 "), "Every request should be recorded in the histogram");
+    }
+
+    @Test
+    public void shouldRejectRequestsWhenTheQueueIsFull() throws Exception {
+        try (CountServer busy = new CountServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1, null)) {
+            final CountClient busyClient = new CountClient("localhost:" + busy.address().getPort());
+            final List<Socket> stalled = new ArrayList<>();
+            try {
+                // bodies that never arrive keep the counting thread and every queue slot busy
+                for (int i = 0; i < 17; i++) {
+                    final Socket socket = new Socket(InetAddress.getLoopbackAddress(), busy.address().getPort());
+                    socket.getOutputStream().write(("POST /count HTTP/1.1\r\nHost: localhost\r\nContent-Length: 1000\r\n\r\nword ")
+                            .getBytes(StandardCharsets.US_ASCII));
+                    socket.getOutputStream().flush();
+                    stalled.add(socket);
+                }
+                final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+                while (!busyClient.stats().contains("active=1 queued=16") && System.nanoTime() < deadline) {
+                    Thread.sleep(10);
+                }
+                final IOException e = assertThrows(IOException.class,
+                        () -> busyClient.count(Collections.singletonList("src/test/resources/test.txt"), -1));
+                assertTrue(e.getMessage().startsWith("Server returned 503"), "A request beyond the queue should be rejected");
+                assertTrue(busyClient.stats().contains("queued=16 rejected=1"), "Stats should still be served while the pool is full");
+            } finally {
+                for (Socket socket : stalled) {
+                    socket.close();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldReportMissingFile() {
+        final IOException e = assertThrows(IOException.class, () -> client.count(Collections.singletonList("missing-file.txt"), -1));
+        assertTrue(e.getMessage().startsWith("Server returned 404"), "A missing file should be reported as not found");
+    }
+}
@@ -0,0 +1,37 @@
+package dev.neilthomson.stringcounter.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void shouldReportPercentilesWithinBucketError() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int micros = 1; micros <= 10_000; micros++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(micros));
+        }
+        final long median = histogram.percentile(50);
+        assertTrue(median >= 5_000 && median <= 5_000 * 1.125, "The median should be within one bucket: " + median);
+        assertEquals(10_000, histogram.percentile(100), "The top percentile should be the maximum");
+        assertEquals(10_000, histogram.count(), "Every latency should be counted");
+    }
+
+    @Test
+    public void shouldPlaceEveryValueBelowItsBucketBound() {
+        for (long micros = 0; micros < 1_000_000; micros += 7) {
+            final int bucket = LatencyHistogram.bucket(micros);
+            assertTrue(micros <= LatencyHistogram.upperBound(bucket), "A value should not exceed its bucket bound: " + micros);
+            assertTrue(bucket == 0 || micros > LatencyHistogram.upperBound(bucket - 1), "A value should be above the previous bucket: " + micros);
+        }
+    }
+
+    @Test
+    public void shouldReportZeroWhenEmpty() {
+        assertEquals(0, new LatencyHistogram().percentile(99), "An empty histogram should report zero");
+    }
+}
@@ -0,0 +1,142 @@
+package dev.neilthomson.stringcounter.services;
+
+import dev.neilthomson.stringcounter.cache.CountCache;
+import dev.neilthomson.stringcounter.comparators.CountAndAlphaComparator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class BatchWordCounterTest {
+
+    @Test
+    public void shouldMergeSplitAndBatchedFiles(@TempDir Path directory) throws IOException {
+        final ByteArrayOutputStream all = new ByteArrayOutputStream();
+        final List<Path> files = writeFiles(directory, all);
+        final List<Map.Entry<String, Long>> expected = new BufferedWordCounter(1024)
+                .count(new ByteArrayInputStream(all.toByteArray()), new CountAndAlphaComparator(false));
+        final List<Map.Entry<String, Long>> counts = new BatchWordCounter(64, 4, 300).count(files, new CountAndAlphaComparator(false));
+        assertEquals(expected, counts, "Counts of all files should be merged");
+    }
+
+    @Test
+    public void shouldReportEveryFileOnce(@TempDir Path directory) throws IOException {
+        final List<Path> files = writeFiles(directory, new ByteArrayOutputStream());
+        final Map<Path, List<Map.Entry<String, Long>>> perFile = new HashMap<>();
+        new BatchWordCounter(64, 4, 300).count(files, new CountAndAlphaComparator(false), perFile::put);
+        final List<Map.Entry<String, Long>> expected = new BufferedWordCounter(1024)
+                .count(Files.newInputStream(files.get(0)), new CountAndAlphaComparator(false));
+        assertEquals(files.size(), perFile.size(), "Every file should be reported");
+        assertEquals(expected, perFile.get(files.get(0)), "A split file should be reported with the counts of all its ranges");
+    }
+
+    @Test
+    public void shouldReportFilesInTheirOrder(@TempDir Path directory) throws IOException {
+        final List<Path> files = writeFiles(directory, new ByteArrayOutputStream());
+        // the large first file is counted in ranges on several threads, so it finishes after files behind it
+        final List<Path> reported = new ArrayList<>();
+        new BatchWordCounter(64, 4, 300).count(files, new CountAndAlphaComparator(false), (path, counts) -> reported.add(path));
+        assertEquals(files, reported, "Files should be reported in the order they were given");
+    }
+
+    @Test
+    public void shouldDecompressCompressedFiles() throws IOException {
+        final Path gzip = Files.createTempFile("german", ".txt.gz");
+        try {
+            try (GZIPOutputStream outputStream = new GZIPOutputStream(Files.newOutputStream(gzip))) {
+                outputStream.write(Files.readAllBytes(Paths.get("src/test/resources/german.txt")));
+            }
+            final List<Path> files = new ArrayList<>();
+            files.add(Paths.get("src/test/resources/concatenated.bz2"));
+            files.add(gzip);
+            files.add(Paths.get("src/test/resources/test.txt"));
+            final ByteArrayOutputStream all = new ByteArrayOutputStream();
+            all.write(Files.readAllBytes(Paths.get("src/test/resources/german.txt")));
+            all.write(Files.readAllBytes(Paths.get("src/test/resources/test.txt")));
+            all.write(Files.readAllBytes(Paths.get("src/test/resources/german.txt")));
+            all.write(Files.readAllBytes(Paths.get("src/test/resources/test.txt")));
+            final List<Map.Entry<String, Long>> expected = new BufferedWordCounter(1024)
+                    .count(new ByteArrayInputStream(all.toByteArray()), new CountAndAlphaComparator(false));
+            assertEquals(expected, new BatchWordCounter(64, 2, 300).count(files, new CountAndAlphaComparator(false)), "Compressed files should be counted decompressed");
+        } finally {
+            Files.delete(gzip);
+        }
+    }
+
+    @Test
+    public void shouldCountOnlyChangedFilesWithCache(@TempDir Path directory, @TempDir Path cacheDirectory) throws IOException {
+        final List<Path> files = writeFiles(directory, new ByteArrayOutputStream());
+        final List<Map.Entry<String, Long>> expected = new BatchWordCounter(64, 4, 300).count(files, new CountAndAlphaComparator(false));
+        try (CountCache cache = CountCache.open(cacheDirectory, BatchWordCounter.VERSION, CountCache.DEFAULT_MAX_BYTES)) {
+            new BatchWordCounter(64, 4, 300).count(files, new CountAndAlphaComparator(false), null, cache);
+        }
+        try (CountCache cache = CountCache.open(cacheDirectory, BatchWordCounter.VERSION, CountCache.DEFAULT_MAX_BYTES)) {
+            assertEquals(expected, new BatchWordCounter(64, 4, 300).count(files, new CountAndAlphaComparator(false), null, cache),
+                    "Cached counts should equal the counts of the files");
+        }
+
+        Files.write(files.get(1), "changed words".getBytes(StandardCharsets.UTF_8));
+        final List<Map.Entry<String, Long>> changed = new BatchWordCounter(64, 4, 300).count(files, new CountAndAlphaComparator(false));
+        try (CountCache cache = CountCache.open(cacheDirectory, BatchWordCounter.VERSION, CountCache.DEFAULT_MAX_BYTES)) {
+            assertEquals(changed, new BatchWordCounter(64, 4, 300).count(files, new CountAndAlphaComparator(false), null, cache),
+                    "A changed file should be counted again");
+        }
+    }
+
+    @Test
+    public void shouldShareAnExecutorAcrossCalls(@TempDir Path directory) throws IOException {
+        final List<Path> files = writeFiles(directory, new ByteArrayOutputStream());
+        final List<Map.Entry<String, Long>> expected = new BatchWordCounter(64, 4, 300).count(files, new CountAndAlphaComparator(false));
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final BatchWordCounter counter = new BatchWordCounter(64, executor);
+            assertEquals(expected, counter.count(files, new CountAndAlphaComparator(false)), "Counts on a shared executor should match");
+            assertEquals(expected, counter.count(files, new CountAndAlphaComparator(false)), "A shared executor should be left running");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldThrowForMissingFile() {
+        final List<Path> files = new ArrayList<>();
+        files.add(Paths.get("missing-file.txt"));
+        assertThrows(IOException.class, () -> new BatchWordCounter(64).count(files, new CountAndAlphaComparator(false)));
+    }
+
+    /**
+     * Writes one file that is split into several ranges and many files that are batched together.
+     */
+    private static List<Path> writeFiles(Path directory, ByteArrayOutputStream all) throws IOException {
+        final List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            final StringBuilder text = new StringBuilder();
+            final int words = i == 0 ? 2_000 : i;
+            for (int j = 0; j < words; j++) {
+                text.append(j % 5 == 0 ? "The " : "gr\u00fc\u00dfe-").append("word").append((char) ('a' + (i + j) % 26)).append(". ");
+            }
+            final byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+            final Path file = directory.resolve("file" + i + ".txt");
+            Files.write(file, bytes);
+            all.write(bytes);
+            files.add(file);
+        }
+        return files;
+    }
+}
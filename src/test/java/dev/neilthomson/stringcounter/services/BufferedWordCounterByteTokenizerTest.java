@@ -0,0 +1,8 @@
+package dev.neilthomson.stringcounter.services;
+
+public class BufferedWordCounterByteTokenizerTest implements WordCounterTest<BufferedWordCounter> {
+    @Override
+    public BufferedWordCounter createWordCounter() {
+        return new BufferedWordCounter(1024, true);
+    }
+}
@@ -0,0 +1,108 @@
+package dev.neilthomson.stringcounter.services;
+
+import dev.neilthomson.stringcounter.comparators.CountAndAlphaComparator;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CompressedWordCounterTest implements WordCounterTest<CompressedWordCounter> {
+    @Override
+    public CompressedWordCounter createWordCounter() {
+        return new CompressedWordCounter(16, 4, 1);
+    }
+
+    @Test
+    public void shouldCountGzipMembersInParallel() throws IOException {
+        final String[] members = {"the gr\u00fc\u00dfe word", "s were cut, ", "between members and the ", "end"};
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        for (String member : members) {
+            compressed.write(gzip(member.getBytes(StandardCharsets.UTF_8), Deflater.DEFAULT_COMPRESSION));
+        }
+        assertEquals(expected(String.join("", members).getBytes(StandardCharsets.UTF_8)), countFile(compressed.toByteArray(), ".gz"),
+                "Words cut between members should be put back together");
+    }
+
+    @Test
+    public void shouldSkipFalseMemberStarts() throws IOException {
+        final byte[] text = "the header \u001f\u008b\b\u0000 end".getBytes(StandardCharsets.ISO_8859_1);
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        compressed.write(gzip(text, Deflater.NO_COMPRESSION));
+        compressed.write(gzip(text, Deflater.NO_COMPRESSION));
+        final ByteArrayOutputStream all = new ByteArrayOutputStream();
+        all.write(text);
+        all.write(text);
+        final Path file = Files.createTempFile("compressed", ".gz");
+        try {
+            Files.write(file, compressed.toByteArray());
+            // groups start at 0 and at the false header, so the second member is only reached by filling the gap
+            final List<Map.Entry<String, Long>> counts = new CompressedWordCounter(16, 4, 20).count(file, new CountAndAlphaComparator(false));
+            assertEquals(expected(all.toByteArray()), counts, "Header bytes inside stored data should not start a member");
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void shouldCountConcatenatedBzip2() throws IOException {
+        final ByteArrayOutputStream all = new ByteArrayOutputStream();
+        all.write(Files.readAllBytes(Paths.get("src/test/resources/german.txt")));
+        all.write(Files.readAllBytes(Paths.get("src/test/resources/test.txt")));
+        final List<Map.Entry<String, Long>> counts = createWordCounter().count(Paths.get("src/test/resources/concatenated.bz2"), new CountAndAlphaComparator(false));
+        assertEquals(expected(all.toByteArray()), counts, "Every bzip2 stream should be counted");
+    }
+
+    @Test
+    public void shouldCountConcatenatedZstandard() throws IOException {
+        final ByteArrayOutputStream all = new ByteArrayOutputStream();
+        all.write(Files.readAllBytes(Paths.get("src/test/resources/german.txt")));
+        all.write(Files.readAllBytes(Paths.get("src/test/resources/test.txt")));
+        final List<Map.Entry<String, Long>> counts = createWordCounter().count(Paths.get("src/test/resources/concatenated.zst"), new CountAndAlphaComparator(false));
+        assertEquals(expected(all.toByteArray()), counts, "Every Zstandard frame should be counted");
+    }
+
+    @Test
+    public void shouldDecompressStream() throws IOException {
+        final byte[] text = Files.readAllBytes(Paths.get("src/test/resources/test.txt"));
+        final List<Map.Entry<String, Long>> counts = createWordCounter()
+                .count(new ByteArrayInputStream(gzip(text, Deflater.BEST_COMPRESSION)), new CountAndAlphaComparator(false));
+        assertEquals(expected(text), counts, "A compressed stream should be decompressed");
+    }
+
+    private List<Map.Entry<String, Long>> countFile(byte[] contents, String suffix) throws IOException {
+        final Path file = Files.createTempFile("compressed", suffix);
+        try {
+            Files.write(file, contents);
+            return createWordCounter().count(file, new CountAndAlphaComparator(false));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static List<Map.Entry<String, Long>> expected(byte[] text) throws IOException {
+        return new BufferedWordCounter(1024).count(new ByteArrayInputStream(text), new CountAndAlphaComparator(false));
+    }
+
+    private static byte[] gzip(byte[] text, int level) throws IOException {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed) {
+            {
+                def.setLevel(level);
+            }
+        }) {
+            gzip.write(text);
+        }
+        return compressed.toByteArray();
+    }
+}
@@ -0,0 +1,30 @@
+package dev.neilthomson.stringcounter.services;
+
+import dev.neilthomson.stringcounter.comparators.CountAndAlphaComparator;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ConcurrentWordCounterTest implements WordCounterTest<ConcurrentWordCounter> {
+    @Override
+    public ConcurrentWordCounter createWordCounter() {
+        return new ConcurrentWordCounter(16, 4);
+    }
+
+    @Test
+    public void shouldMatchSingleThreadedCounting() throws IOException {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5_000; i++) {
+            text.append("the gr\u00fc\u00dfe word").append(i % 37).append(i % 3 == 0 ? "extraordinarilylongword " : ", ");
+        }
+        final byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        final List<Map.Entry<String, Long>> expected = new BufferedWordCounter(1024).count(new ByteArrayInputStream(bytes), new CountAndAlphaComparator(false));
+        assertEquals(expected, createWordCounter().count(new ByteArrayInputStream(bytes), new CountAndAlphaComparator(false)), "Blocks counted on several threads should give the same counts");
+    }
+}
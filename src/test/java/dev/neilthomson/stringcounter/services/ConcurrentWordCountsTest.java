@@ -0,0 +1,50 @@
+package dev.neilthomson.stringcounter.services;
+
+import dev.neilthomson.stringcounter.comparators.CountAndAlphaComparator;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ConcurrentWordCountsTest {
+
+    @Test
+    public void shouldCountChunksAppendedByManyThreads() throws InterruptedException {
+        final ConcurrentWordCounts counts = new ConcurrentWordCounts(4);
+        final byte[] chunk = "the cat and the hat".getBytes(StandardCharsets.UTF_8);
+        final List<Thread> producers = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            producers.add(new Thread(() -> {
+                for (int j = 0; j < 1_000; j++) {
+                    counts.append(chunk, 0, 4); // "the " leaves no open word
+                    counts.append(chunk, 4, chunk.length - 4);
+                    counts.finish();
+                }
+            }));
+        }
+        for (Thread producer : producers) {
+            producer.start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        final List<Map.Entry<String, Long>> snapshot = counts.snapshot(new CountAndAlphaComparator(false));
+        assertEquals("the", snapshot.get(0).getKey(), "The hottest word should be first");
+        assertEquals(16_000L, snapshot.get(0).getValue(), "No update should be lost between threads");
+    }
+
+    @Test
+    public void shouldCarryOpenWordsPerThread() {
+        final ConcurrentWordCounts counts = new ConcurrentWordCounts();
+        final byte[] bytes = "hello".getBytes(StandardCharsets.UTF_8);
+        counts.append(bytes, 0, 3);
+        counts.append(bytes, 3, 2);
+        counts.finish();
+        assertEquals("hello", counts.snapshot(new CountAndAlphaComparator(false)).get(0).getKey(), "Chunks from one thread should continue each other");
+    }
+}
@@ -0,0 +1,77 @@
+package dev.neilthomson.stringcounter.services;
+
+import dev.neilthomson.stringcounter.comparators.CountAndAlphaComparator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class DistributedWordCounterTest {
+
+    private static final String JAVA = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+    private static final long SPLIT_SIZE = 8 * 1024;
+    private static final long TIMEOUT_MILLIS = 60_000;
+
+    @Test
+    public void shouldMergeShardsFromPipesAndSockets(@TempDir Path directory) throws IOException {
+        final List<Path> files = writeFiles(directory);
+        final List<Map.Entry<String, Long>> expected = new BatchWordCounter(64).count(files, new CountAndAlphaComparator(false));
+        for (DistributedWordCounter.Transport transport : DistributedWordCounter.Transport.values()) {
+            final DistributedWordCounter counter = new DistributedWordCounter(2, SPLIT_SIZE, 1, TIMEOUT_MILLIS, transport,
+                    Collections.singletonList(JAVA));
+            assertEquals(expected, counter.count(files, new CountAndAlphaComparator(false)),
+                    "Worker counts should be merged like counting in one process");
+        }
+    }
+
+    @Test
+    public void shouldRetryFailedShards(@TempDir Path directory) throws IOException {
+        final List<Path> files = writeFiles(directory);
+        // the first worker to start fails, every later one runs java with the remaining arguments
+        final List<String> command = Arrays.asList("sh", "-c", "if mkdir \"$1\" 2>/dev/null; then exit 3; fi; shift; exec \"$0\" \"$@\"",
+                JAVA, directory.resolve("failed").toString());
+        final DistributedWordCounter counter = new DistributedWordCounter(2, SPLIT_SIZE, 2, TIMEOUT_MILLIS,
+                DistributedWordCounter.Transport.SOCKET, command);
+        assertEquals(new BatchWordCounter(64).count(files, new CountAndAlphaComparator(false)),
+                counter.count(files, new CountAndAlphaComparator(false)), "A failed shard should be counted again");
+    }
+
+    @Test
+    public void shouldFailAfterEveryAttempt() {
+        final DistributedWordCounter counter = new DistributedWordCounter(1, SPLIT_SIZE, 2, TIMEOUT_MILLIS,
+                DistributedWordCounter.Transport.PIPE, Arrays.asList("sh", "-c", "echo broken >&2; exit 3"));
+        final IOException failure = assertThrows(IOException.class, () -> counter.count(Paths.get("src/test/resources/test.txt"),
+                new CountAndAlphaComparator(false)), "A shard that always fails should fail the count");
+        assertEquals(1, failure.getCause().getSuppressed().length, "Every failed attempt should be reported");
+    }
+
+    /**
+     * Writes one file that is split into several shards and many files that are batched into one.
+     */
+    private static List<Path> writeFiles(Path directory) throws IOException {
+        final List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            final StringBuilder text = new StringBuilder();
+            final int words = i == 0 ? 2_000 : i;
+            for (int j = 0; j < words; j++) {
+                text.append(j % 5 == 0 ? "The " : "gr\u00fc\u00dfe-").append("word").append((char) ('a' + (i + j) % 26)).append(". ");
+            }
+            final Path file = directory.resolve("file" + i + ".txt");
+            Files.write(file, text.toString().getBytes(StandardCharsets.UTF_8));
+            files.add(file);
+        }
+        return files;
+    }
+}
@@ -0,0 +1,79 @@
+package dev.neilthomson.stringcounter.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EngineSelectorTest {
+
+    private static final long MB = 1024 * 1024;
+    private static final long HEAP = 1024 * MB;
+    // 1MB of text with a small vocabulary that stops growing halfway through
+    private static final EngineSelector.Sample SMALL_VOCABULARY =
+            new EngineSelector.Sample(MB, 200_000, 5_000, 100_000, 5_000, 40_000, 0, 0, false);
+    // 1MB of text in which nearly every word is new
+    private static final EngineSelector.Sample LARGE_VOCABULARY =
+            new EngineSelector.Sample(MB, 120_000, 115_000, 60_000, 58_000, 1_100_000, 0, 0, false);
+
+    @Test
+    public void shouldCountSmallFilesSequentially() {
+        final EngineSelector.Choice choice = EngineSelector.choose(EngineSelector.Engine.AUTO, 100_000, 8, HEAP, SMALL_VOCABULARY);
+        assertEquals(EngineSelector.Engine.BUFFERED, choice.engine(), "A small file should be counted on one thread");
+        assertTrue(choice.counter() instanceof BufferedWordCounter, "The chosen engine should create its counter");
+    }
+
+    @Test
+    public void shouldCountLargeFilesInParallel() {
+        final EngineSelector.Choice choice = EngineSelector.choose(EngineSelector.Engine.AUTO, 500 * MB, 8, HEAP, SMALL_VOCABULARY);
+        assertEquals(EngineSelector.Engine.PARALLEL, choice.engine(), "A large file should be split across the processors");
+        assertTrue(choice.counter() instanceof MappedParallelWordCounter, "The chosen engine should create its counter");
+    }
+
+    @Test
+    public void shouldCountSequentiallyOnOneProcessor() {
+        assertEquals(EngineSelector.Engine.BUFFERED,
+                EngineSelector.choose(EngineSelector.Engine.AUTO, 500 * MB, 1, HEAP, SMALL_VOCABULARY).engine(),
+                "One processor gains nothing from splitting the file");
+    }
+
+    @Test
+    public void shouldSpillVocabulariesLargerThanTheHeap() {
+        final EngineSelector.Choice choice = EngineSelector.choose(EngineSelector.Engine.AUTO, 2048 * MB, 8, 256 * MB, LARGE_VOCABULARY);
+        assertEquals(EngineSelector.Engine.SPILLING, choice.engine(), "Counts that do not fit in the heap should be spilled");
+        assertTrue(choice.vocabulary() > 100_000_000, "A vocabulary that keeps growing should be extrapolated");
+    }
+
+    @Test
+    public void shouldKeepTheRequestedEngine() {
+        assertEquals(EngineSelector.Engine.BUFFERED,
+                EngineSelector.choose(EngineSelector.Engine.BUFFERED, 500 * MB, 8, HEAP, SMALL_VOCABULARY).engine(),
+                "An engine given with --engine should not be replaced");
+    }
+
+    @Test
+    public void shouldOnlyPipelineWhenAskedTo() {
+        final EngineSelector.Choice choice = EngineSelector.choose(EngineSelector.Engine.PIPELINED, 500 * MB, 8, HEAP, SMALL_VOCABULARY);
+        assertTrue(choice.counter() instanceof PipelinedWordCounter, "The pipelined engine should create a pipelined counter");
+        assertEquals(EngineSelector.Engine.of("pipelined"), choice.engine(), "The pipelined engine should be found by its name");
+    }
+
+    @Test
+    public void shouldNotExtrapolateACompleteSample() throws IOException {
+        final byte[] text = "the cat and the hat and the bat".getBytes(StandardCharsets.UTF_8);
+        final EngineSelector.Sample sample = EngineSelector.Sample.of(new ByteArrayInputStream(text), EngineSelector.SAMPLE_SIZE);
+        assertEquals(5, EngineSelector.choose(EngineSelector.Engine.AUTO, text.length, 4, HEAP, sample).vocabulary(),
+                "A file read in full should report its own number of distinct words");
+    }
+
+    @Test
+    public void shouldRejectUnknownEngines() {
+        assertThrows(IllegalArgumentException.class, () -> EngineSelector.Engine.of("quantum"),
+                "An unknown engine should be rejected");
+    }
+}
@@ -0,0 +1,61 @@
+package dev.neilthomson.stringcounter.services;
+
+import dev.neilthomson.stringcounter.comparators.CountAndAlphaComparator;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class HashedWordCounterTest implements WordCounterTest<HashedWordCounter> {
+    @Override
+    public HashedWordCounter createWordCounter() {
+        return new HashedWordCounter(1024);
+    }
+
+    @Test
+    public void allocationShouldNotGrowWithInputSize() throws IOException {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean, "Thread allocation counters are not available");
+        final com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(allocations.isThreadAllocatedMemorySupported(), "Thread allocation counters are not supported");
+        allocations.setThreadAllocatedMemoryEnabled(true);
+
+        final byte[] small = repeat(10);
+        final byte[] large = repeat(1000);
+        for (int i = 0; i < 200; i++) { // warm up so that the measured runs are compiled, vector code included
+            allocatedBytes(allocations, small);
+            allocatedBytes(allocations, large);
+        }
+
+        final long smallAllocation = allocatedBytes(allocations, small);
+        final long largeAllocation = allocatedBytes(allocations, large);
+        assertTrue(largeAllocation < smallAllocation * 2,
+                "Allocation should stay flat, " + smallAllocation + " bytes for 10 copies and " + largeAllocation + " for 1000");
+    }
+
+    private long allocatedBytes(com.sun.management.ThreadMXBean allocations, byte[] input) throws IOException {
+        final HashedWordCounter wordCounter = createWordCounter();
+        final ByteArrayInputStream inputStream = new ByteArrayInputStream(input);
+        final long threadId = Thread.currentThread().getId();
+        final long before = allocations.getThreadAllocatedBytes(threadId);
+        wordCounter.count(inputStream, new CountAndAlphaComparator(false));
+        return allocations.getThreadAllocatedBytes(threadId) - before;
+    }
+
+    private byte[] repeat(int copies) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] text = "The quick brown fox jumps over the lazy dog. Gr\u00fc\u00dfen aus M\u00fcnchen! It's a check-mark.\n"
+                .getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < copies; i++) {
+            out.write(text);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,99 @@
+package dev.neilthomson.stringcounter.services;
+
+import dev.neilthomson.stringcounter.comparators.CountAndAlphaComparator;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertIterableEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class IncrementalWordCounterTest {
+
+    private static final String TEXT = "The caf\u00e9 sells CAF\u00c9 au lait, \u65e5\u672c tea \ud83d\ude00 and gr\u00fc\u00dfe-tea. The end";
+
+    @Test
+    public void shouldNotCountTheOpenWordUntilItEnds() {
+        final IncrementalWordCounter wordCounter = new IncrementalWordCounter();
+        wordCounter.append("hello wor");
+        assertIterableEquals(Arrays.asList("hello"), keys(wordCounter.snapshot(new CountAndAlphaComparator(false))), "The open word should not be counted");
+        wordCounter.append("ld ");
+        assertIterableEquals(Arrays.asList("hello", "world"), keys(wordCounter.snapshot(new CountAndAlphaComparator(false))), "The word should be completed by the next chunk");
+    }
+
+    @Test
+    public void byteChunksShouldMatchCountingTheWholeInput() throws IOException {
+        final byte[] bytes = TEXT.getBytes(StandardCharsets.UTF_8);
+        final Random random = new Random(5);
+        for (int iteration = 0; iteration < 50; iteration++) {
+            final IncrementalWordCounter wordCounter = new IncrementalWordCounter(8);
+            for (int position = 0; position < bytes.length; ) {
+                final int length = Math.min(bytes.length - position, random.nextInt(12));
+                wordCounter.append(bytes, position, length);
+                position += length;
+            }
+            wordCounter.finish();
+            assertEquals(expected(), wordCounter.snapshot(new CountAndAlphaComparator(false)), "Chunk boundaries should not change the counts");
+        }
+    }
+
+    @Test
+    public void charChunksShouldMatchCountingTheWholeInput() throws IOException {
+        final Random random = new Random(6);
+        for (int iteration = 0; iteration < 50; iteration++) {
+            final IncrementalWordCounter wordCounter = new IncrementalWordCounter(8);
+            for (int position = 0; position < TEXT.length(); ) {
+                final int length = Math.min(TEXT.length() - position, random.nextInt(12));
+                wordCounter.append(TEXT.subSequence(position, position + length));
+                position += length;
+            }
+            wordCounter.finish();
+            assertEquals(expected(), wordCounter.snapshot(new CountAndAlphaComparator(false)), "Chunk boundaries should not change the counts");
+        }
+    }
+
+    @Test
+    public void snapshotsShouldBeConsistentDuringIngestion() throws InterruptedException {
+        final IncrementalWordCounter wordCounter = new IncrementalWordCounter();
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final Thread producer = new Thread(() -> {
+            while (running.get()) {
+                wordCounter.append("one two ");
+            }
+        });
+        producer.start();
+
+        boolean consistent = true;
+        long previous = 0;
+        for (int i = 0; i < 200; i++) {
+            final List<Map.Entry<String, Long>> snapshot = wordCounter.snapshot(new CountAndAlphaComparator(false));
+            if (snapshot.size() == 2) {
+                consistent &= snapshot.get(0).getValue().equals(snapshot.get(1).getValue()) && snapshot.get(0).getValue() >= previous;
+                previous = snapshot.get(0).getValue();
+            }
+        }
+        running.set(false);
+        producer.join();
+        assertTrue(consistent, "Every snapshot should hold whole chunks and counts should never go backwards");
+    }
+
+    private static List<Map.Entry<String, Long>> expected() throws IOException {
+        return new BufferedWordCounter(1024).count(new ByteArrayInputStream(TEXT.getBytes(StandardCharsets.UTF_8)), new CountAndAlphaComparator(false));
+    }
+
+    private static List<String> keys(List<Map.Entry<String, Long>> entries) {
+        final String[] keys = new String[entries.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = entries.get(i).getKey();
+        }
+        return Arrays.asList(keys);
+    }
+}
@@ -0,0 +1,60 @@
+package dev.neilthomson.stringcounter.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class InputFilesTest {
+
+    @Test
+    public void shouldExpandDirectoriesAndGlobs() throws IOException {
+        final Path directory = Files.createTempDirectory("inputs");
+        final Path nested = Files.createDirectory(directory.resolve("nested"));
+        final Path first = Files.createFile(directory.resolve("a.txt"));
+        final Path second = Files.createFile(nested.resolve("b.txt"));
+        final Path other = Files.createFile(nested.resolve("c.log"));
+        try {
+            assertEquals(Arrays.asList(first, second, other), InputFiles.resolve(Collections.singletonList(directory.toString())),
+                    "Every file under a directory should be included");
+            assertEquals(Arrays.asList(first, second), InputFiles.resolve(Arrays.asList(directory + "/**.txt", first.toString())),
+                    "Globs should match files below their base directory without duplicates");
+        } finally {
+            for (Path path : Arrays.asList(first, second, other, nested, directory)) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void shouldFollowLinksToDirectories(@TempDir Path directory) throws IOException {
+        final Path target = Files.createDirectory(directory.resolve("target"));
+        Files.createFile(target.resolve("a.txt"));
+        final Path link = Files.createSymbolicLink(directory.resolve("link"), target);
+        assertEquals(Collections.singletonList(link.resolve("a.txt")), InputFiles.resolve(Collections.singletonList(link.toString())),
+                "A directory given through a link should be walked");
+    }
+
+    @Test
+    public void shouldThrowForInputsWithoutFiles(@TempDir Path directory) throws IOException {
+        final List<String> empty = Collections.singletonList(Files.createDirectory(directory.resolve("empty")).toString());
+        final List<String> unmatched = Collections.singletonList(directory + "/**.txt");
+        assertThrows(NoSuchFileException.class, () -> InputFiles.resolve(empty), "An empty directory should not be counted as nothing");
+        assertThrows(NoSuchFileException.class, () -> InputFiles.resolve(unmatched), "A glob that matches nothing should not be counted as nothing");
+    }
+
+    @Test
+    public void shouldThrowForMissingInput() {
+        final List<String> inputs = Collections.singletonList("missing-file.txt");
+        assertThrows(NoSuchFileException.class, () -> InputFiles.resolve(inputs));
+    }
+}
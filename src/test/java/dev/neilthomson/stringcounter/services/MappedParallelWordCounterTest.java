@@ -0,0 +1,77 @@
+package dev.neilthomson.stringcounter.services;
+
+import dev.neilthomson.stringcounter.comparators.CountAndAlphaComparator;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MappedParallelWordCounterTest implements WordCounterTest<MappedParallelWordCounter> {
+    @Override
+    public MappedParallelWordCounter createWordCounter() {
+        return new MappedParallelWordCounter(1024);
+    }
+
+    @Test
+    public void fileCountsShouldMatchStreamCounts() throws IOException {
+        final MappedParallelWordCounter wordCounter = new MappedParallelWordCounter(64, 16, ForkJoinPool.commonPool());
+        final Path path = Paths.get("src/test/resources/test.txt");
+        final List<Map.Entry<String, Long>> expected;
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            expected = new BufferedWordCounter(1024).count(inputStream, new CountAndAlphaComparator(false));
+        }
+        assertEquals(expected, wordCounter.count(path, new CountAndAlphaComparator(false)), "Chunked counts should match sequential counts");
+    }
+
+    @Test
+    public void byteTokenizerCountsShouldMatchStreamCounts() throws IOException {
+        final MappedParallelWordCounter wordCounter = new MappedParallelWordCounter(8, 16, ForkJoinPool.commonPool(), true);
+        final Path path = Paths.get("src/test/resources/german.txt");
+        final List<Map.Entry<String, Long>> expected;
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            expected = new BufferedWordCounter(1024).count(inputStream, new CountAndAlphaComparator(false));
+        }
+        assertEquals(expected, wordCounter.count(path, new CountAndAlphaComparator(false)), "Tokenized counts should match decoded counts");
+    }
+
+    @Test
+    public void shouldNotSplitMultiByteCharacters() throws IOException {
+        final MappedParallelWordCounter wordCounter = new MappedParallelWordCounter(2, 1, ForkJoinPool.commonPool());
+        final Path path = Files.createTempFile("german", ".txt");
+        try {
+            Files.write(path, "gr\u00fc\u00dfen gr\u00fc\u00dfen \u00fcber".getBytes(StandardCharsets.UTF_8));
+            final List<Map.Entry<String, Long>> counts = wordCounter.count(path, new CountAndAlphaComparator(false));
+            assertEquals(2L, counts.size(), "Words should not be split across chunks");
+            assertEquals("gr\u00fc\u00dfen", counts.get(0).getKey(), "UTF-8 characters should be kept whole");
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void shouldCountEmptyFile() throws IOException {
+        final MappedParallelWordCounter wordCounter = createWordCounter();
+        final Path path = Files.createTempFile("empty", ".txt");
+        try {
+            assertEquals(0L, wordCounter.count(path, new CountAndAlphaComparator(false)).size(), "An empty file has no words");
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void shouldThrowExceptionForNullPath() {
+        final MappedParallelWordCounter wordCounter = createWordCounter();
+        assertThrows(IllegalArgumentException.class, () -> wordCounter.count((Path) null, new CountAndAlphaComparator(false)));
+    }
+}
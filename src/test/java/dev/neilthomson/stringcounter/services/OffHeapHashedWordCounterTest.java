@@ -0,0 +1,8 @@
+package dev.neilthomson.stringcounter.services;
+
+public class OffHeapHashedWordCounterTest implements WordCounterTest<HashedWordCounter> {
+    @Override
+    public HashedWordCounter createWordCounter() {
+        return HashedWordCounter.offHeap(1024, 16, 256);
+    }
+}
@@ -0,0 +1,73 @@
+package dev.neilthomson.stringcounter.services;
+
+import dev.neilthomson.stringcounter.comparators.CountAndAlphaComparator;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class PipelinedWordCounterTest implements WordCounterTest<PipelinedWordCounter> {
+    @Override
+    public PipelinedWordCounter createWordCounter() {
+        return new PipelinedWordCounter(16, 2, 2);
+    }
+
+    @Test
+    public void shouldMergeManyFilesThroughFewBuffers() throws IOException {
+        final List<Path> files = new ArrayList<>();
+        final StringBuilder all = new StringBuilder();
+        try {
+            for (int i = 0; i < 12; i++) {
+                final String text = "The gr\u00fc\u00dfe word" + (char) ('a' + i) + " extraordinarilylongwordthatspansbuffers, the end\n";
+                final Path file = Files.createTempFile("pipelined", ".txt");
+                Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+                files.add(file);
+                all.append(text);
+            }
+            final List<Map.Entry<String, Long>> expected = new BufferedWordCounter(1024)
+                    .count(new ByteArrayInputStream(all.toString().getBytes(StandardCharsets.UTF_8)), new CountAndAlphaComparator(false));
+            assertEquals(expected, createWordCounter().count(files, new CountAndAlphaComparator(false)), "Files read on separate readers should be merged");
+        } finally {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void shouldCountFromPath() throws IOException {
+        final Path path = Paths.get("src/test/resources/test.txt");
+        final List<Map.Entry<String, Long>> expected;
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            expected = new BufferedWordCounter(1024).count(inputStream, new CountAndAlphaComparator(false));
+        }
+        assertEquals(expected, createWordCounter().count(path, new CountAndAlphaComparator(false)), "Counting a path should match counting a stream");
+    }
+
+    @Test
+    public void shouldDecompressCompressedFiles() throws IOException {
+        final Path plain = Paths.get("src/test/resources/test.txt");
+        final List<Map.Entry<String, Long>> expected = createWordCounter().count(Arrays.asList(plain, plain, plain), new CountAndAlphaComparator(false));
+        assertEquals(expected, createWordCounter().count(Arrays.asList(plain, Paths.get("src/test/resources/test.txt.bz2"),
+                Paths.get("src/test/resources/test.txt.zst")), new CountAndAlphaComparator(false)), "Compressed files should be counted decompressed");
+    }
+
+    @Test
+    public void shouldThrowForMissingFile() {
+        final List<Path> files = Collections.singletonList(Paths.get("missing-file.txt"));
+        assertThrows(IOException.class, () -> createWordCounter().count(files, new CountAndAlphaComparator(false)));
+    }
+}
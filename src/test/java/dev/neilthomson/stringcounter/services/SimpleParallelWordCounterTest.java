@@ -1,8 +1,34 @@
 package dev.neilthomson.stringcounter.services;
 
+import dev.neilthomson.stringcounter.comparators.CountAndAlphaComparator;
+import dev.neilthomson.stringcounter.tokenizers.NGramRule;
+import dev.neilthomson.stringcounter.tokenizers.StemRule;
+import dev.neilthomson.stringcounter.tokenizers.StopWordRule;
+import dev.neilthomson.stringcounter.tokenizers.TokenPipeline;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
 public class SimpleParallelWordCounterTest implements WordCounterTest<SimpleParallelWordCounter> {
     @Override
     public SimpleParallelWordCounter createWordCounter() {
         return new SimpleParallelWordCounter();
     }
+
+    @Test
+    public void shouldApplyRulesLikeSimpleWordCounter() throws IOException {
+        final TokenPipeline pipeline = TokenPipeline.of(StopWordRule.english(), new StemRule(), new NGramRule(2));
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            text.append("The cats of line ").append(i % 7).append(" and the ponies' stories of line ").append(i % 5).append(".\n");
+        }
+        final byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        assertEquals(new SimpleWordCounter(pipeline).count(new ByteArrayInputStream(bytes), new CountAndAlphaComparator(false)),
+                new SimpleParallelWordCounter(pipeline).count(new ByteArrayInputStream(bytes), new CountAndAlphaComparator(false)),
+                "Counting lines in parallel should not change the counts");
+    }
 }
@@ -1,8 +1,42 @@
 package dev.neilthomson.stringcounter.services;
 
+import dev.neilthomson.stringcounter.comparators.CountAndAlphaComparator;
+import dev.neilthomson.stringcounter.tokenizers.NGramRule;
+import dev.neilthomson.stringcounter.tokenizers.StemRule;
+import dev.neilthomson.stringcounter.tokenizers.StopWordRule;
+import dev.neilthomson.stringcounter.tokenizers.TokenPipeline;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
 public class SimpleWordCounterTest implements WordCounterTest<SimpleWordCounter> {
     @Override
     public SimpleWordCounter createWordCounter() {
         return new SimpleWordCounter();
     }
+
+    @Test
+    public void shouldApplyRulesLikeBufferedWordCounter() throws IOException {
+        final TokenPipeline pipeline = TokenPipeline.of(StopWordRule.english(), new StemRule());
+        final byte[] text = "The cats of the ponies,\nthe cat's toys and the pony's stories.\n".getBytes(StandardCharsets.UTF_8);
+        final List<Map.Entry<String, Long>> expected = new BufferedWordCounter(8, true, pipeline)
+                .count(new ByteArrayInputStream(text), new CountAndAlphaComparator(false));
+        assertEquals(expected, new SimpleWordCounter(pipeline).count(new ByteArrayInputStream(text), new CountAndAlphaComparator(false)),
+                "Rules should give the same counts as the buffered counter");
+        assertEquals("cat=2", expected.get(0).toString(), "Rules should have been applied");
+    }
+
+    @Test
+    public void shouldNotFormNGramsAcrossLines() throws IOException {
+        final byte[] text = "one two\nthree four\n".getBytes(StandardCharsets.UTF_8);
+        final List<Map.Entry<String, Long>> counts = new SimpleWordCounter(TokenPipeline.of(new NGramRule(2)))
+                .count(new ByteArrayInputStream(text), new CountAndAlphaComparator(false));
+        assertEquals("[one two=1, three four=1]", counts.toString(), "Every line should be tokenized on its own");
+    }
 }
@@ -0,0 +1,55 @@
+package dev.neilthomson.stringcounter.services;
+
+import dev.neilthomson.stringcounter.sketches.EstimatedCounts;
+import dev.neilthomson.stringcounter.sketches.WordSketch;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SketchWordCounterTest implements WordCounterTest<SketchWordCounter> {
+    @Override
+    public SketchWordCounter createWordCounter() {
+        return new SketchWordCounter(1024, 4096, 4, 10, 1024);
+    }
+
+    @Test
+    public void mergedSketchesShouldMatchASingleSketch() throws IOException {
+        final SketchWordCounter wordCounter = createWordCounter();
+        final WordSketch first = wordCounter.sketch(new ByteArrayInputStream("the cat and the dog".getBytes(StandardCharsets.UTF_8)));
+        final WordSketch second = wordCounter.sketch(new ByteArrayInputStream("the bird".getBytes(StandardCharsets.UTF_8)));
+        first.merge(second);
+        assertEquals(3L, first.estimate("the"), "Counts should be added across sketches");
+        assertEquals(5L, first.distinctCount(), "Distinct words should be counted once across sketches");
+    }
+
+    @Test
+    public void mismatchedSketchesShouldNotBeMerged() throws IOException {
+        final WordSketch first = createWordCounter().sketch(new ByteArrayInputStream("the cat and the dog".getBytes(StandardCharsets.UTF_8)));
+        final WordSketch second = new SketchWordCounter(1024, 4096, 4, 12, 1024).sketch(new ByteArrayInputStream("the bird".getBytes(StandardCharsets.UTF_8)));
+        assertThrows(IllegalArgumentException.class, () -> first.merge(second), "Sketches with different precisions should not be merged");
+        assertEquals(2L, first.estimate("the"), "A rejected merge should leave the counts unchanged");
+        assertEquals(5L, first.totalCount(), "A rejected merge should leave the total unchanged");
+    }
+
+    @Test
+    public void countsShouldReportTheirErrorBounds() throws IOException {
+        final EstimatedCounts counts = createWordCounter().count(new ByteArrayInputStream("the cat and the dog".getBytes(StandardCharsets.UTF_8)),
+                Map.Entry.<String, Long>comparingByValue().reversed());
+        assertEquals(5L, counts.totalCount(), "The counts should report the number of words they were estimated from");
+        assertEquals((long) Math.ceil(Math.E / 4096 * 5), counts.errorBound(), "The error bound should be e / width of the number of words");
+        assertTrue(counts.confidence() > 0.98 && counts.standardError() > 0.03 && counts.standardError() < 0.04,
+                "The confidence and standard error should follow from the depth and precision");
+    }
+
+    @Test
+    public void shouldRejectInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new SketchWordCounter(1024, 0, 4, 10, 1024));
+    }
+}
@@ -0,0 +1,35 @@
+package dev.neilthomson.stringcounter.services;
+
+import dev.neilthomson.stringcounter.comparators.CountAndAlphaComparator;
+import dev.neilthomson.stringcounter.ranking.SpaceSaving;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SpaceSavingWordCounterTest implements WordCounterTest<SpaceSavingWordCounter> {
+    @Override
+    public SpaceSavingWordCounter createWordCounter() {
+        return new SpaceSavingWordCounter(1024, 1024);
+    }
+
+    @Test
+    public void shouldFindHeavyHittersWithFewCounters() throws IOException {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1_000; i++) {
+            text.append("the ").append("word").append((char) ('a' + i % 26)).append((char) ('a' + i / 26)).append(' ');
+        }
+        final byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        final SpaceSavingWordCounter wordCounter = new SpaceSavingWordCounter(64, 10);
+        final List<Map.Entry<String, Long>> counts = wordCounter.countTop(new ByteArrayInputStream(bytes), new CountAndAlphaComparator(false), 1);
+        final SpaceSaving summary = wordCounter.summarize(new ByteArrayInputStream(bytes));
+        assertEquals("the", counts.get(0).getKey(), "A word above N / capacity should always be found");
+        assertTrue(counts.get(0).getValue() - 1_000 <= summary.errorBound(), "The estimate should be within the error bound");
+    }
+}
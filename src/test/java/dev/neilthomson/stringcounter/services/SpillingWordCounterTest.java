@@ -0,0 +1,102 @@
+package dev.neilthomson.stringcounter.services;
+
+import dev.neilthomson.stringcounter.comparators.CountAndAlphaComparator;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SpillingWordCounterTest implements WordCounterTest<SpillingWordCounter> {
+    @Override
+    public SpillingWordCounter createWordCounter() {
+        return new SpillingWordCounter(1024);
+    }
+
+    @Test
+    public void spilledCountsShouldMatchInMemoryCounts() throws IOException {
+        final byte[] input = generateInput();
+        final Path tempDirectory = Files.createTempDirectory("spill");
+        try {
+            final SpillingWordCounter wordCounter = new SpillingWordCounter(64, 512, tempDirectory);
+            final List<Map.Entry<String, Long>> expected = new BufferedWordCounter(1024)
+                    .count(new ByteArrayInputStream(input), new CountAndAlphaComparator(false));
+            final List<Map.Entry<String, Long>> counts = wordCounter.count(new ByteArrayInputStream(input), new CountAndAlphaComparator(false));
+            assertEquals(expected, counts, "Spilled and merged counts should match in memory counts");
+            assertEquals(0L, fileCount(tempDirectory), "Runs should be deleted once they are merged");
+        } finally {
+            Files.delete(tempDirectory);
+        }
+    }
+
+    @Test
+    public void shouldStreamResultsInOrder() throws IOException {
+        final SpillingWordCounter wordCounter = new SpillingWordCounter(16, 256, null);
+        final List<Map.Entry<String, Long>> expected;
+        try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream("test.txt")) {
+            expected = new BufferedWordCounter(1024).count(inputStream, new CountAndAlphaComparator(false));
+        }
+        final List<Map.Entry<String, Long>> streamed = new ArrayList<>();
+        try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream("test.txt")) {
+            wordCounter.count(inputStream, new CountAndAlphaComparator(false), streamed::add);
+        }
+        assertEquals(expected, streamed, "Entries should be streamed in comparator order");
+    }
+
+    @Test
+    public void shouldSpillRunsOfAboutTheBudget() throws IOException {
+        final int words = 20_000;
+        final long budget = 16 * 1024;
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            text.append("w");
+            for (int rest = i; rest > 0; rest /= 26) {
+                text.append((char) ('a' + rest % 26));
+            }
+            text.append(' ');
+        }
+        final Path tempDirectory = Files.createTempDirectory("spill");
+        try {
+            final long[] runs = new long[1];
+            final InputStream inputStream = new FilterInputStream(new ByteArrayInputStream(text.toString().getBytes(StandardCharsets.UTF_8))) {
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    runs[0] = Math.max(runs[0], fileCount(tempDirectory)); // only word runs exist while the input is read
+                    return super.read(b, off, len);
+                }
+            };
+            new SpillingWordCounter(1024, budget, tempDirectory).count(inputStream, new CountAndAlphaComparator(false), entry -> {
+            });
+            // every distinct word takes between 20 and 60 bytes of the table
+            assertTrue(runs[0] >= words * 20L / budget - 1 && runs[0] <= words * 60L / budget,
+                    "The table should spill once per budget of words, not once per word, but spilled " + runs[0] + " runs");
+        } finally {
+            Files.delete(tempDirectory);
+        }
+    }
+
+    private static byte[] generateInput() {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            text.append("word").append(Integer.toString(i % 3_000, 26).replaceAll("[0-9]", "z")).append(i % 7 == 0 ? ". " : " ");
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long fileCount(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
@@ -104,6 +104,21 @@ public interface WordCounterTest<T extends WordCounter> {
         }
     }
 
+    @Test
+    default void countTopShouldReturnMostFrequentWords() {
+        final WordCounter wordCounter = createWordCounter();
+        final String myString = "the cat and the dog and the bird";
+        final byte[] bytes = myString.getBytes(StandardCharsets.UTF_8);
+        try (InputStream inputStream = new ByteArrayInputStream(bytes)) {
+            final List<Map.Entry<String, Long>> counts = wordCounter.countTop(inputStream, new CountAndAlphaComparator(false), 2);
+            assertEquals(2L, counts.size(), "Only the requested number of entries should be returned");
+            assertEquals("the", counts.get(0).getKey(), "The most frequent word should be first");
+            assertEquals("and", counts.get(1).getKey(), "The second most frequent word should be second");
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     @Test
     default void shouldThrowExceptionForNullInputStream() {
         final WordCounter wordCounter = createWordCounter();
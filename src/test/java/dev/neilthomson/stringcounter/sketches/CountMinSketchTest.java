@@ -0,0 +1,56 @@
+package dev.neilthomson.stringcounter.sketches;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CountMinSketchTest {
+
+    @Test
+    public void estimatesShouldNeverUndercountAndRarelyExceedTheBound() {
+        final CountMinSketch sketch = new CountMinSketch(272, 5);
+        final Map<String, Long> exact = new HashMap<>();
+        final Random random = new Random(3);
+        for (int i = 0; i < 100_000; i++) {
+            final String word = "w" + random.nextInt(5_000);
+            final byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+            sketch.add(bytes, 0, bytes.length);
+            exact.merge(word, 1L, Long::sum);
+        }
+
+        int undercounts = 0;
+        int outside = 0;
+        for (Map.Entry<String, Long> entry : exact.entrySet()) {
+            final byte[] bytes = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            final long overestimate = sketch.estimate(bytes, 0, bytes.length) - entry.getValue();
+            undercounts += overestimate < 0 ? 1 : 0;
+            outside += overestimate > sketch.errorBound() ? 1 : 0;
+        }
+        assertEquals(0, undercounts, "An estimate should never be lower than the true count");
+        assertTrue(outside <= exact.size() * (1 - sketch.confidence()) * 2, "Estimates should be within the bound with the stated confidence");
+    }
+
+    @Test
+    public void mergeShouldAddCounters() {
+        final CountMinSketch first = new CountMinSketch(64, 3);
+        final CountMinSketch second = new CountMinSketch(64, 3);
+        final byte[] bytes = "word".getBytes(StandardCharsets.UTF_8);
+        first.add(bytes, 0, bytes.length);
+        second.add(bytes, 0, bytes.length);
+        first.merge(second);
+        assertEquals(2L, first.estimate(bytes, 0, bytes.length), "Merged counts should be added");
+        assertEquals(2L, first.totalCount(), "Merged totals should be added");
+    }
+
+    @Test
+    public void mergeShouldRejectDifferentDimensions() {
+        assertThrows(IllegalArgumentException.class, () -> new CountMinSketch(64, 3).merge(new CountMinSketch(32, 3)));
+    }
+}
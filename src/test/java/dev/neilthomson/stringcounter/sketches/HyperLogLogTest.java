@@ -0,0 +1,50 @@
+package dev.neilthomson.stringcounter.sketches;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HyperLogLogTest {
+
+    @Test
+    public void estimateShouldBeWithinThreeStandardErrors() {
+        final HyperLogLog sketch = new HyperLogLog(12);
+        for (int i = 0; i < 200_000; i++) {
+            final byte[] bytes = ("w" + i).getBytes(StandardCharsets.UTF_8);
+            sketch.add(bytes, 0, bytes.length);
+            sketch.add(bytes, 0, bytes.length);
+        }
+        final double error = Math.abs(sketch.estimate() - 200_000) / 200_000.0;
+        assertTrue(error <= 3 * sketch.standardError(), "Estimate " + sketch.estimate() + " should be close to 200000");
+    }
+
+    @Test
+    public void smallCardinalitiesShouldBeExact() {
+        final HyperLogLog sketch = new HyperLogLog(14);
+        for (String word : new String[]{"a", "b", "c", "a"}) {
+            sketch.add(word.getBytes(StandardCharsets.UTF_8), 0, 1);
+        }
+        assertEquals(3L, sketch.estimate(), "Linear counting should be exact for a handful of words");
+    }
+
+    @Test
+    public void mergeShouldGiveTheUnion() {
+        final HyperLogLog first = new HyperLogLog(14);
+        final HyperLogLog second = new HyperLogLog(14);
+        for (int i = 0; i < 100; i++) {
+            final byte[] bytes = ("w" + i).getBytes(StandardCharsets.UTF_8);
+            (i < 60 ? first : second).add(bytes, 0, bytes.length);
+        }
+        first.merge(second);
+        assertEquals(100L, first.estimate(), 2L, "Merged sketch should estimate the union");
+    }
+
+    @Test
+    public void shouldRejectInvalidPrecision() {
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(3));
+    }
+}
@@ -0,0 +1,92 @@
+package dev.neilthomson.stringcounter.tables;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ByteWordTableTest {
+
+    @Test
+    public void shouldCountWordsFromSlices() {
+        final ByteWordTable table = new ByteWordTable();
+        final byte[] bytes = "xwordxwordyword".getBytes(StandardCharsets.UTF_8);
+        table.add(bytes, 1, 4);
+        table.add(bytes, 6, 4);
+        table.add(bytes, 11, 4);
+        assertEquals(3L, table.get(bytes, 1, 4), "The same word in different slices should be counted together");
+        assertEquals(1, table.size(), "There should be a single distinct word");
+    }
+
+    @Test
+    public void shouldGrowBeyondExpectedWords() {
+        final ByteWordTable table = new ByteWordTable(0);
+        for (int i = 0; i < 10_000; i++) {
+            final byte[] word = ("word" + i).getBytes(StandardCharsets.UTF_8);
+            table.add(word, 0, word.length, i);
+        }
+        final byte[] last = "word9999".getBytes(StandardCharsets.UTF_8);
+        assertEquals(10_000, table.size(), "Every distinct word should be kept");
+        assertEquals(9999L, table.get(last, 0, last.length), "Counts should survive rehashing");
+    }
+
+    @Test
+    public void shouldMergeTables() {
+        final ByteWordTable first = new ByteWordTable();
+        final ByteWordTable second = new ByteWordTable();
+        final byte[] word = "word".getBytes(StandardCharsets.UTF_8);
+        final byte[] other = "other".getBytes(StandardCharsets.UTF_8);
+        first.add(word, 0, word.length);
+        second.add(word, 0, word.length, 2);
+        second.add(other, 0, other.length);
+        first.addAll(second);
+        assertEquals(3L, first.get(word, 0, word.length), "Counts of shared words should be summed");
+        assertEquals(2, first.size(), "Words only in the other table should be added");
+    }
+
+    @Test
+    public void usedMemoryShouldFallWhenCleared() {
+        final ByteWordTable table = new ByteWordTable(0);
+        for (int i = 0; i < 10_000; i++) {
+            final byte[] word = ("word" + i).getBytes(StandardCharsets.UTF_8);
+            table.add(word, 0, word.length);
+        }
+        final long full = table.usedMemory();
+        table.clear();
+        assertTrue(table.usedMemory() < full / 2, "A cleared table should not report the words it no longer holds");
+        assertEquals(full, table.usedMemory() + 10_000 * 20L + 78_890, "Only the index should stay in use");
+    }
+
+    @Test
+    public void copyShouldBeIndependent() {
+        final ByteWordTable table = new ByteWordTable();
+        final byte[] word = "word".getBytes(StandardCharsets.UTF_8);
+        table.add(word, 0, word.length);
+        final ByteWordTable copy = table.copy();
+        table.add(word, 0, word.length);
+        copy.add(word, 0, word.length, 5);
+        assertEquals(2L, table.get(word, 0, word.length), "The original should not see changes to the copy");
+        assertEquals(6L, copy.get(word, 0, word.length), "The copy should keep counting from the copied state");
+    }
+
+    @Test
+    public void partitionsShouldSplitWordsWithoutOverlap() {
+        final ByteWordTable table = new ByteWordTable();
+        for (int i = 0; i < 10_000; i++) {
+            final byte[] word = ("word" + i).getBytes(StandardCharsets.UTF_8);
+            table.add(word, 0, word.length, i);
+        }
+        final ByteWordTable merged = new ByteWordTable();
+        int size = 0;
+        for (int partition = 0; partition < 7; partition++) {
+            final ByteWordTable part = new ByteWordTable();
+            part.addPartition(table, partition, 7);
+            size += part.size();
+            merged.addAll(part);
+        }
+        assertEquals(table.size(), size, "Every word should fall into exactly one partition");
+        assertEquals(table.total(), merged.total(), "The partitions together should hold every count");
+    }
+}
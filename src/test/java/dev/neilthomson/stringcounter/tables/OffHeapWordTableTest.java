@@ -0,0 +1,58 @@
+package dev.neilthomson.stringcounter.tables;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class OffHeapWordTableTest {
+
+    @Test
+    public void shouldCountWordsFromSlices() {
+        final OffHeapWordTable table = new OffHeapWordTable();
+        final byte[] bytes = "xwordxwordyword".getBytes(StandardCharsets.UTF_8);
+        table.add(bytes, 1, 4);
+        table.add(bytes, 6, 4);
+        table.add(bytes, 11, 4);
+        assertEquals(3L, table.get(bytes, 1, 4), "The same word in different slices should be counted together");
+        assertEquals(1, table.size(), "There should be a single distinct word");
+    }
+
+    @Test
+    public void shouldGrowIntoNewSegments() {
+        final OffHeapWordTable table = new OffHeapWordTable(0, 64);
+        for (int i = 0; i < 10_000; i++) {
+            final byte[] word = ("word" + i).getBytes(StandardCharsets.UTF_8);
+            table.add(word, 0, word.length, i);
+        }
+        final byte[] last = "word9999".getBytes(StandardCharsets.UTF_8);
+        assertEquals(10_000, table.size(), "Every distinct word should be kept");
+        assertEquals(9999L, table.get(last, 0, last.length), "Counts should survive rehashing");
+    }
+
+    @Test
+    public void shouldKeepWordsLargerThanASegment() {
+        final OffHeapWordTable table = new OffHeapWordTable(8, 16);
+        final byte[] word = "supercalifragilisticexpialidocious".getBytes(StandardCharsets.UTF_8);
+        table.add(word, 0, word.length);
+        table.add(word, 0, word.length);
+        assertEquals(2L, table.get(word, 0, word.length), "Words larger than a segment should still be counted");
+    }
+
+    @Test
+    public void shouldVisitEveryWord() {
+        final OffHeapWordTable table = new OffHeapWordTable(8, 32);
+        final Map<String, Long> expected = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            final byte[] word = ("w" + i).getBytes(StandardCharsets.UTF_8);
+            table.add(word, 0, word.length, i + 1);
+            expected.put("w" + i, i + 1L);
+        }
+        final Map<String, Long> visited = new HashMap<>();
+        table.forEach((bytes, offset, length, count) -> visited.put(new String(bytes, offset, length, StandardCharsets.UTF_8), count));
+        assertEquals(expected, visited, "Every word and count should be visited");
+    }
+}
@@ -0,0 +1,125 @@
+package dev.neilthomson.stringcounter.tokenizers;
+
+import dev.neilthomson.stringcounter.tables.ByteWordTable;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertIterableEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class TokenPipelineTest {
+
+    @Test
+    public void shouldDropStopWords() {
+        final List<String> words = bytes(TokenPipeline.of(StopWordRule.english()), "The cat and THE dog of it", 1024);
+        assertIterableEquals(Arrays.asList("cat", "dog"), words, "Stop-words should be dropped whatever their case");
+    }
+
+    @Test
+    public void shouldStemPluralsAndPossessives() {
+        final List<String> words = bytes(TokenPipeline.of(new StemRule()),
+                "cats cat's ponies boxes goes bus glass is stories agrees caf\u00e9s", 1024);
+        assertIterableEquals(Arrays.asList("cat", "cat", "pony", "boxe", "goes", "bus", "glass", "is", "story", "agrees", "caf\u00e9"),
+                words, "Plurals and possessives should be reduced to their stem");
+    }
+
+    @Test
+    public void shouldFormNGramsWithinAnInput() {
+        final List<String> words = new ArrayList<>();
+        final Utf8Tokenizer tokenizer = new Utf8Tokenizer(TokenPipeline.of(new NGramRule(3)).sink(collect(words)));
+        feed(tokenizer, "to be, or not to", 1);
+        tokenizer.finish();
+        feed(tokenizer, "be that is", 2);
+        tokenizer.finish();
+        assertIterableEquals(Arrays.asList("to be or", "be or not", "or not to", "be that is"), words, "N-grams should span slices but not inputs");
+    }
+
+    @Test
+    public void shouldApplyRulesInOrder() {
+        final TokenPipeline pipeline = TokenPipeline.of(StopWordRule.english(), new StemRule(), new NGramRule(2));
+        final List<String> words = bytes(pipeline, "The cats of the ponies and the dogs", 1024);
+        assertIterableEquals(Arrays.asList("cat pony", "pony dog"), words, "Stop-words, stems and n-grams should be applied in turn");
+        assertEquals("stop-words(33) stem 2-grams", pipeline.toString(), "The pipeline should describe its rules");
+    }
+
+    @Test
+    public void charAndByteTokenizersShouldAgree() {
+        final TokenPipeline pipeline = TokenPipeline.of(StopWordRule.english(), new StemRule(), new NGramRule(2));
+        final String text = "Gr\u00fc\u00dfe an die Katzen's \u00dcBER-stories, the ponies' \u65e5\u672c cats\ud83d\ude00dogs";
+        final List<String> chars = new ArrayList<>();
+        final CharTokenizer tokenizer = new CharTokenizer(pipeline.sink(collect(chars)));
+        for (int i = 0; i < text.length(); i += 3) {
+            tokenizer.feed(text.subSequence(i, Math.min(i + 3, text.length())));
+        }
+        tokenizer.finish();
+        assertIterableEquals(bytes(pipeline, text, 5), chars, "Both tokenizers should produce the same words");
+    }
+
+    @Test
+    public void shouldLoadStopWordsFromFile() throws IOException {
+        final Path file = Files.createTempFile("stop", ".txt");
+        try {
+            Files.write(file, Arrays.asList("# stop-words", "", "Dog", "gr\u00fc\u00dfen check-mark"), StandardCharsets.UTF_8);
+            final StopWordRule rule = StopWordRule.load(file);
+            assertEquals(3, rule.size(), "Every word in the file should be a stop-word");
+            assertIterableEquals(Arrays.asList("cat"), bytes(TokenPipeline.of(rule), "dog cat gr\u00fc\u00dfen check-mark", 1024), "Listed words should be dropped");
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void shouldRejectInvalidRules() {
+        assertThrows(IllegalArgumentException.class, () -> new NGramRule(1));
+        assertThrows(IllegalArgumentException.class, () -> TokenPipeline.of(new StemRule(), null));
+    }
+
+    @Test
+    public void shouldNotAllocatePerWord() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean, "Allocation cannot be measured");
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final byte[] input = "The cats of the ponies and the dogs' stories, the cat's toys.\n".getBytes(StandardCharsets.UTF_8);
+        final ByteWordTable table = new ByteWordTable();
+        final Utf8Tokenizer tokenizer = new Utf8Tokenizer(TokenPipeline.of(StopWordRule.english(), new StemRule(), new NGramRule(2)).sink(table::add));
+        for (int i = 0; i < 20_000; i++) { // warm up, and grow the table and scratch arrays to their final size
+            tokenizer.feed(input, 0, input.length);
+        }
+
+        final long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        for (int i = 0; i < 10_000; i++) {
+            tokenizer.feed(input, 0, input.length);
+        }
+        final long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+        assertTrue(allocated < 8 * 1024, "Counting 60000 n-grams should not allocate, but allocated " + allocated + " bytes");
+    }
+
+    private static List<String> bytes(TokenPipeline pipeline, String text, int sliceSize) {
+        final List<String> words = new ArrayList<>();
+        final Utf8Tokenizer tokenizer = new Utf8Tokenizer(pipeline.sink(collect(words)));
+        feed(tokenizer, text, sliceSize);
+        tokenizer.finish();
+        return words;
+    }
+
+    private static void feed(Utf8Tokenizer tokenizer, String text, int sliceSize) {
+        final byte[] input = text.getBytes(StandardCharsets.UTF_8);
+        for (int offset = 0; offset < input.length; offset += sliceSize) {
+            tokenizer.feed(input, offset, Math.min(sliceSize, input.length - offset));
+        }
+    }
+
+    private static TokenSink collect(List<String> words) {
+        return (bytes, offset, length) -> words.add(new String(bytes, offset, length, StandardCharsets.UTF_8));
+    }
+}
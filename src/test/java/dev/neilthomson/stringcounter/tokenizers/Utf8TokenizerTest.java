@@ -0,0 +1,146 @@
+package dev.neilthomson.stringcounter.tokenizers;
+
+import dev.neilthomson.stringcounter.comparators.CountAndAlphaComparator;
+import dev.neilthomson.stringcounter.services.BufferedWordCounter;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertIterableEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class Utf8TokenizerTest {
+
+    private static final String[] FRAGMENTS = {
+            "word", "Word", "WORD", " ", "  ", ".", ",", "'", "-", "\n", "\t", "1", "42",
+            "gr\u00fc\u00dfen", "\u00dcBER", "\u0130stanbul", "\u212a", "\u023a", "\u00a0",
+            "\u65e5\u672c", "\ud83d\ude00", "caf\u00e9", "\u0391\u0392\u0393", "\ufeff"
+    };
+
+    private static final int ASCII_FRAGMENTS = 13;
+
+    private static final byte[][] MALFORMED = {
+            {(byte) 0xC3}, {(byte) 0x80}, {(byte) 0xC0, (byte) 0x81}, {(byte) 0xE0, (byte) 0x80, (byte) 0x81},
+            {(byte) 0xED, (byte) 0xA0, (byte) 0x80}, {(byte) 0xE1, (byte) 0x80}, {(byte) 0xF8}, {(byte) 0xFF},
+            {(byte) 0xF0, (byte) 0x90, (byte) 0x80}
+    };
+
+    @Test
+    public void shouldSplitAndLowercaseWords() {
+        final List<String> words = tokenize("Hello, W\u00d6RLD! it's check-mark".getBytes(StandardCharsets.UTF_8), 1024);
+        assertIterableEquals(Arrays.asList("hello", "w\u00f6rld", "it's", "check-mark"), words, "Words should be split and lowercased");
+    }
+
+    @Test
+    public void shouldCarryWordsAcrossSlices() {
+        final List<String> words = tokenize("gr\u00fc\u00dfen \u65e5\u672c word".getBytes(StandardCharsets.UTF_8), 1);
+        assertIterableEquals(Arrays.asList("gr\u00fc\u00dfen", "\u65e5\u672c", "word"), words, "Words and characters should span slices");
+    }
+
+    @Test
+    public void shouldMatchCharacterDecodingOnRandomInput() throws IOException {
+        final Random random = new Random(42);
+        for (int iteration = 0; iteration < 200; iteration++) {
+            final byte[] input = randomInput(random);
+            final int bufferSize = 1 + random.nextInt(16);
+            assertEquals(countWithCharacters(input), countWithBytes(input, bufferSize), "Byte tokenizer should match character decoding");
+        }
+    }
+
+    @Test
+    public void vectorScanningShouldMatchScalarScanning() {
+        final BlockClassifier classifier = BlockClassifier.load();
+        assumeTrue(classifier != null, "Vector API is not available");
+
+        final Random random = new Random(42);
+        for (int iteration = 0; iteration < 200; iteration++) {
+            final byte[] input = asciiHeavyInput(random);
+            final int sliceSize = 1 + random.nextInt(300);
+            assertIterableEquals(tokenize(input, sliceSize, null), tokenize(input, sliceSize, classifier),
+                    "Vector scanning should find the same words as scalar scanning");
+        }
+    }
+
+    @Test
+    public void blockClassifierShouldMatchWordCharacters() {
+        final BlockClassifier classifier = BlockClassifier.load();
+        assumeTrue(classifier != null, "Vector API is not available");
+
+        final Random random = new Random(42);
+        final byte[] block = new byte[BlockClassifier.BLOCK_SIZE + 3];
+        for (int iteration = 0; iteration < 1000; iteration++) {
+            final int offset = random.nextInt(4);
+            for (int i = 0; i < BlockClassifier.BLOCK_SIZE; i++) {
+                block[offset + i] = (byte) random.nextInt(128);
+            }
+            final String original = new String(block, offset, BlockClassifier.BLOCK_SIZE, StandardCharsets.US_ASCII);
+            long expected = 0;
+            for (int i = 0; i < BlockClassifier.BLOCK_SIZE; i++) {
+                if (CharTokenizer.isWordCharacter(original.charAt(i)))
+                    expected |= 1L << i;
+            }
+            assertEquals(expected, classifier.wordBits(block, offset), "Word bits should match the word characters of " + original);
+            assertEquals(original.toLowerCase(Locale.ROOT), new String(block, offset, BlockClassifier.BLOCK_SIZE, StandardCharsets.US_ASCII),
+                    "Letters should be lowercased in place");
+        }
+    }
+
+    private static byte[] randomInput(Random random) {
+        final java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+        final int fragments = random.nextInt(60);
+        for (int i = 0; i < fragments; i++) {
+            final byte[] bytes = random.nextInt(10) == 0
+                    ? MALFORMED[random.nextInt(MALFORMED.length)]
+                    : FRAGMENTS[random.nextInt(FRAGMENTS.length)].getBytes(StandardCharsets.UTF_8);
+            out.write(bytes, 0, bytes.length);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Returns mostly ASCII text, long enough to span many blocks, with the odd non-ASCII or malformed fragment.
+     */
+    private static byte[] asciiHeavyInput(Random random) {
+        final java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+        final int fragments = random.nextInt(400);
+        for (int i = 0; i < fragments; i++) {
+            final int kind = random.nextInt(60);
+            final byte[] bytes = kind == 0
+                    ? MALFORMED[random.nextInt(MALFORMED.length)]
+                    : FRAGMENTS[random.nextInt(kind == 1 ? FRAGMENTS.length : ASCII_FRAGMENTS)].getBytes(StandardCharsets.UTF_8);
+            out.write(bytes, 0, bytes.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static List<Map.Entry<String, Long>> countWithCharacters(byte[] input) throws IOException {
+        return new BufferedWordCounter(7).count(new ByteArrayInputStream(input), new CountAndAlphaComparator(false));
+    }
+
+    private static List<Map.Entry<String, Long>> countWithBytes(byte[] input, int bufferSize) throws IOException {
+        return new BufferedWordCounter(bufferSize, true).count(new ByteArrayInputStream(input), new CountAndAlphaComparator(false));
+    }
+
+    private static List<String> tokenize(byte[] input, int sliceSize) {
+        return tokenize(input, sliceSize, null);
+    }
+
+    private static List<String> tokenize(byte[] input, int sliceSize, BlockClassifier classifier) {
+        final List<String> words = new ArrayList<>();
+        final Utf8Tokenizer tokenizer = new Utf8Tokenizer((bytes, offset, length) -> words.add(new String(bytes, offset, length, StandardCharsets.UTF_8)), classifier);
+        for (int offset = 0; offset < input.length; offset += sliceSize) {
+            tokenizer.feed(input, offset, Math.min(sliceSize, input.length - offset));
+        }
+        tokenizer.finish();
+        return words;
+    }
+}